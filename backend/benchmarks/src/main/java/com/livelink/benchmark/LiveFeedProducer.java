@@ -0,0 +1,74 @@
+package com.livelink.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Stub real-time feed: writes delay updates to the backend's live feed
+ * socket at a fixed rate and reports the rate actually achieved, which
+ * drops below the target when ingestion pushes back.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.livelink.benchmark.LiveFeedProducer \
+ *     [port] [updates-per-second] [seconds] [departure-ids-file]
+ * </pre>
+ *
+ * Without a file of {@code scheduled_departures.id}s, random ids are used;
+ * those exercise the pipeline but are skipped by the upsert.
+ */
+public final class LiveFeedProducer {
+
+    private static final String[] STATUSES = {"on-time", "delayed", "delayed", "boarding"};
+
+    private LiveFeedProducer() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        List<String> departureIds = args.length > 3
+            ? Files.readAllLines(Path.of(args[3])).stream().map(String::strip)
+                .filter(id -> !id.isEmpty()).collect(Collectors.toList())
+            : IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID().toString()).collect(Collectors.toList());
+
+        Random random = new Random(42);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long sent = 0;
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.SECONDS.toNanos(seconds);
+        try (Socket socket = new Socket("localhost", port);
+             BufferedWriter writer = new BufferedWriter(
+                 new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            long next = started;
+            while (System.nanoTime() < deadline) {
+                String departureId = departureIds.get(random.nextInt(departureIds.size()));
+                String status = STATUSES[random.nextInt(STATUSES.length)];
+                int delay = "delayed".equals(status) ? 1 + random.nextInt(15) : 0;
+                Instant now = Instant.now();
+                writer.write(departureId + "," + status + "," + delay + ","
+                    + now.plusSeconds(delay * 60L) + "," + now + "\n");
+                sent++;
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    writer.flush();
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Sent %d updates in %.1f s (%.0f/s, target %d/s)%n", sent, elapsed, sent / elapsed, rate);
+    }
+}
@@ -0,0 +1,361 @@
+package com.livelink.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load against a running backend loaded with a
+ * {@link NetworkGenerator} network: requests start at the target rate
+ * whether or not earlier ones have answered, in a configurable mix of
+ * board polls, pincode boards, search keystrokes and alert lookups, while
+ * live updates arrive at their own churn rate on the backend's live feed
+ * socket ({@code livelink.ingest.socket-port}, loopback only, so the
+ * harness runs on the backend's host). Latency is measured from
+ * the time a request was due, so a stalled backend shows up in the tail
+ * instead of lowering the rate.
+ *
+ * <pre>
+ * java -Dlivelink.bench.mix=board:60,pincode:10,search:20,alerts:10 -Dlivelink.bench.churn=200 \
+ *     -Dlivelink.bench.feed-port=7070 -cp benchmarks/target/benchmarks.jar com.livelink.benchmark.LoadHarness \
+ *     [base-url] [network-dir] [requests-per-second] [seconds]
+ * </pre>
+ *
+ * Board polls send the ETag of the previous poll of the same stop, like
+ * the app does. Prints throughput and latency percentiles per request kind
+ * and writes them to {@code load-result.json}; with
+ * {@code -Dlivelink.bench.baseline=<file>} the changes against an earlier
+ * result are printed as well.
+ */
+public final class LoadHarness {
+
+    private static final int WARM_UP_SECONDS = 10;
+    // Requests in flight beyond this count as dropped, the client is saturated
+    private static final int MAX_IN_FLIGHT = 10_000;
+    private static final String[] STATUSES = {"on-time", "delayed", "delayed", "boarding"};
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final List<String[]> stops;
+    private final List<String> pincodes;
+    private final List<String> departureIds;
+    // Last ETag per board path
+    private final Map<String, String> boardEtags = new ConcurrentHashMap<>();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final Map<String, Recorder> recorders = new LinkedHashMap<>();
+    private final AtomicLong liveUpdates = new AtomicLong();
+    private volatile long measureFrom;
+
+    private LoadHarness(String baseUrl, Path network) throws IOException {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(8))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        this.stops = new ArrayList<>();
+        for (String line : Files.readAllLines(network.resolve("stops.tsv"))) {
+            if (!line.isBlank()) {
+                stops.add(line.split("\t"));
+            }
+        }
+        this.pincodes = stops.stream().map(stop -> stop[1]).distinct().toList();
+        Path departures = network.resolve("departure-ids.txt");
+        this.departureIds = Files.exists(departures)
+            ? Files.readAllLines(departures).stream().filter(id -> !id.isBlank()).toList()
+            : List.of();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        Path network = Path.of(args.length > 1 ? args[1] : "synthetic-network");
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 60;
+        Map<String, Integer> mix = mix(System.getProperty("livelink.bench.mix", "board:60,pincode:10,search:20,alerts:10"));
+        int churn = Integer.getInteger("livelink.bench.churn", 100);
+        int feedPort = Integer.getInteger("livelink.bench.feed-port", 7070);
+
+        LoadHarness harness = new LoadHarness(baseUrl, network);
+        mix.keySet().forEach(kind -> harness.recorders.put(kind, new Recorder()));
+        long started = System.nanoTime();
+        harness.measureFrom = started + TimeUnit.SECONDS.toNanos(WARM_UP_SECONDS);
+        long deadline = harness.measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+        Thread churnThread = null;
+        if (churn > 0 && !harness.departureIds.isEmpty()) {
+            churnThread = new Thread(() -> harness.feed(feedPort, churn, started, deadline), "live-churn");
+            churnThread.start();
+        }
+        harness.drive(rate, started, deadline, mix);
+        if (churnThread != null) {
+            churnThread.join();
+        }
+        // Let the last requests answer before reporting
+        harness.inFlight.tryAcquire(MAX_IN_FLIGHT, 30, TimeUnit.SECONDS);
+
+        Map<String, Object> result = harness.report(rate, churn, seconds);
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        mapper.writeValue(Path.of("load-result.json").toFile(), result);
+        String baseline = System.getProperty("livelink.bench.baseline");
+        if (baseline != null) {
+            compare(mapper.readTree(Path.of(baseline).toFile()), mapper.valueToTree(result));
+        }
+        System.exit(0);
+    }
+
+    private static Map<String, Integer> mix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] weight = part.strip().split(":");
+            if (!List.of("board", "pincode", "search", "alerts").contains(weight[0])) {
+                throw new IllegalArgumentException("Unknown request kind in mix: " + weight[0]);
+            }
+            mix.put(weight[0], Integer.parseInt(weight[1]));
+        }
+        return mix;
+    }
+
+    // Starts requests on a fixed schedule, catching up without pause when behind
+    private void drive(int rate, long started, long deadline, Map<String, Integer> mix) {
+        List<String> kinds = new ArrayList<>();
+        mix.forEach((kind, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                kinds.add(kind);
+            }
+        });
+        Random random = new Random(kinds.hashCode());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (long due = started; due < deadline; due += intervalNanos) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            String kind = kinds.get(random.nextInt(kinds.size()));
+            send(kind, request(kind, random), due);
+        }
+    }
+
+    private HttpRequest request(String kind, Random random) {
+        String[] stop = stops.get(random.nextInt(stops.size()));
+        return switch (kind) {
+            case "board" -> {
+                String path = "/api/v1/departures/stop/" + stop[0];
+                HttpRequest.Builder builder = get(path);
+                String etag = boardEtags.get(path);
+                yield (etag != null ? builder.header("If-None-Match", etag) : builder).build();
+            }
+            case "pincode" -> get("/api/v1/departures?pincode=" + pincodes.get(random.nextInt(pincodes.size()))).build();
+            case "search" -> {
+                // One keystroke of typing a stop name: a prefix of 2 to 8 characters
+                String name = stop[2];
+                String prefix = name.substring(0, Math.min(name.length(), 2 + random.nextInt(7)));
+                yield get("/api/v1/stops/search?q=" + URLEncoder.encode(prefix, StandardCharsets.UTF_8)).build();
+            }
+            case "alerts" -> get(random.nextBoolean() ? "/api/v1/alerts"
+                : "/api/v1/alerts?pincode=" + stop[1]).build();
+            default -> throw new IllegalArgumentException(kind);
+        };
+    }
+
+    // Writes live updates in the feed's line format on a fixed schedule;
+    // the socket's flow control slows it down when ingestion pushes back
+    private void feed(int port, int rate, long started, long deadline) {
+        Random random = new Random(42);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        try (Socket socket = new Socket(URI.create(baseUrl).getHost(), port);
+             BufferedWriter writer = new BufferedWriter(
+                 new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            for (long due = started; due < deadline; due += intervalNanos) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    writer.flush();
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                String status = STATUSES[random.nextInt(STATUSES.length)];
+                int delay = "delayed".equals(status) ? 1 + random.nextInt(15) : 0;
+                String id = departureIds.get(random.nextInt(departureIds.size()));
+                Instant now = Instant.now();
+                writer.write(id + "," + status + "," + delay + "," + now.plusSeconds(delay * 60L) + "," + now + "\n");
+                if (due >= measureFrom) {
+                    liveUpdates.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Live feed on port " + port + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).GET();
+    }
+
+    private void send(String kind, HttpRequest request, long due) {
+        Recorder recorder = recorders.get(kind);
+        boolean measured = due >= measureFrom;
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                recorder.dropped();
+            }
+            return;
+        }
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+            inFlight.release();
+            if (response != null && "board".equals(kind)) {
+                response.headers().firstValue("ETag").ifPresent(etag -> boardEtags.put(request.uri().getPath(), etag));
+            }
+            if (measured) {
+                int status = response != null ? response.statusCode() : -1;
+                recorder.record(System.nanoTime() - due, status);
+            }
+        });
+    }
+
+    private Map<String, Object> report(int rate, int churn, int seconds) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("targetRate", rate);
+        result.put("churnRate", churn);
+        result.put("liveUpdates", liveUpdates.get());
+        result.put("seconds", seconds);
+        Map<String, Object> kinds = new LinkedHashMap<>();
+        System.out.printf(Locale.ROOT, "%d req/s and %d live updates/s (%.0f/s fed) for %d s after %d s warm-up%n",
+            rate, churn, liveUpdates.get() / (double) seconds, seconds, WARM_UP_SECONDS);
+        System.out.printf("%-12s %9s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+            "kind", "req/s", "304", "errors", "dropped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Recorder all = new Recorder();
+        recorders.forEach((kind, recorder) -> {
+            kinds.put(kind, recorder.summary(seconds));
+            print(kind, recorder, seconds);
+            all.add(recorder);
+        });
+        print("all", all, seconds);
+        kinds.put("all", all.summary(seconds));
+        result.put("kinds", kinds);
+        return result;
+    }
+
+    private static void print(String kind, Recorder recorder, int seconds) {
+        Map<String, Object> summary = recorder.summary(seconds);
+        System.out.printf(Locale.ROOT, "%-12s %9.1f %8d %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n", kind,
+            summary.get("throughput"), summary.get("notModified"), summary.get("errors"), summary.get("dropped"),
+            summary.get("p50"), summary.get("p90"), summary.get("p99"), summary.get("p999"), summary.get("max"));
+    }
+
+    private static void compare(JsonNode baseline, JsonNode current) {
+        System.out.println("Change against baseline:");
+        current.get("kinds").fields().forEachRemaining(entry -> {
+            JsonNode before = baseline.path("kinds").path(entry.getKey());
+            if (before.isMissingNode()) {
+                return;
+            }
+            JsonNode after = entry.getValue();
+            System.out.printf(Locale.ROOT, "%-12s throughput %+6.1f%%  p50 %+6.1f%%  p99 %+6.1f%%  p99.9 %+6.1f%%%n",
+                entry.getKey(), change(before, after, "throughput"), change(before, after, "p50"),
+                change(before, after, "p99"), change(before, after, "p999"));
+        });
+    }
+
+    private static double change(JsonNode before, JsonNode after, String field) {
+        double old = before.path(field).asDouble();
+        return old == 0 ? 0 : (after.path(field).asDouble() - old) / old * 100;
+    }
+
+    /**
+     * Latencies of successful requests of one kind, and failure counts.
+     */
+    private static final class Recorder {
+
+        private long[] latencies = new long[4096];
+        private int count;
+        private long notModified;
+        private long errors;
+        private long dropped;
+
+        synchronized void record(long nanos, int status) {
+            if (status < 200 || status >= 400) {
+                errors++;
+                return;
+            }
+            if (status == 304) {
+                notModified++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        synchronized void dropped() {
+            dropped++;
+        }
+
+        synchronized void add(Recorder other) {
+            synchronized (other) {
+                for (int i = 0; i < other.count; i++) {
+                    record(other.latencies[i], 200);
+                }
+                notModified += other.notModified;
+                errors += other.errors;
+                dropped += other.dropped;
+            }
+        }
+
+        synchronized Map<String, Object> summary(int seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("throughput", count / (double) seconds);
+            summary.put("notModified", notModified);
+            summary.put("errors", errors);
+            summary.put("dropped", dropped);
+            summary.put("p50", percentile(sorted, 0.50));
+            summary.put("p90", percentile(sorted, 0.90));
+            summary.put("p99", percentile(sorted, 0.99));
+            summary.put("p999", percentile(sorted, 0.999));
+            summary.put("max", sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0);
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.livelink.benchmark;
+
+import com.livelink.gtfs.CopyWriter;
+import com.livelink.timetable.Timetable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates a synthetic network at production scale and loads it into
+ * Postgres with {@code COPY}: stops grouped into pincodes on a grid, lines
+ * running along random walks over neighbouring stops in both directions,
+ * a trip every headway from early morning to midnight, and a few alerts.
+ * Lines share stops, so boards mix several lines and journeys can change.
+ *
+ * <pre>
+ * java -Dlivelink.bench.jdbc-url=jdbc:postgresql://localhost:5432/livelink_db \
+ *     -cp benchmarks/target/benchmarks.jar com.livelink.benchmark.NetworkGenerator \
+ *     [stops] [lines] [output-dir]
+ * </pre>
+ *
+ * Ids start with {@code syn_}, and a run first deletes the rows of the
+ * previous one, so the sample data stays. Without a JDBC URL the rows are
+ * written as COPY files into the output directory instead. Either way
+ * {@code stops.tsv} and {@code departure-ids.txt} are written there for
+ * {@link LoadHarness} and {@link LiveFeedProducer}. The same stop and line
+ * counts and {@code -Dlivelink.bench.seed} give the same network.
+ */
+public final class NetworkGenerator {
+
+    private static final String PREFIX = "syn_";
+    private static final int STOPS_PER_PINCODE = 40;
+    private static final int FIRST_PINCODE = 70000;
+    private static final int MAX_SAMPLED_DEPARTURES = 100_000;
+    private static final int SERVICE_START = 5 * 3600;
+    private static final int SERVICE_END = 24 * 3600;
+    // Grid spacing in degrees, roughly 400 m between neighbouring stops
+    private static final double GRID_STEP = 0.004;
+
+    private static final String[] TOWN_STARTS = {
+        "Ober", "Unter", "Nieder", "Hoch", "Neu", "Alt", "Klein", "Groß", "Stein", "Rot",
+        "Wald", "Berg", "Bach", "Lind", "Eich", "Buch", "Kirch", "Mühl", "Schön", "Sonnen",
+    };
+    private static final String[] TOWN_ENDS = {
+        "heim", "hausen", "bach", "berg", "dorf", "feld", "stetten", "weiler", "hofen", "ingen",
+        "au", "burg", "tal", "wangen", "furt", "stadt", "hardt", "brunn", "rode", "wald",
+        "markt", "kirchen", "zell", "statt", "beuren",
+    };
+    private static final String[] PLACES = {
+        "Bahnhof", "Rathaus", "Marktplatz", "Kirche", "Schule", "Friedhof", "Post", "Schloss",
+        "Krankenhaus", "Sportplatz", "Lindenstraße", "Hauptstraße", "Bahnhofstraße", "Schillerstraße",
+        "Goethestraße", "Gartenstraße", "Bergstraße", "Kirchstraße", "Mühlweg", "Waldweg",
+        "Rosenstraße", "Talstraße", "Uhlandstraße", "Mörikestraße", "Industriegebiet", "Gewerbepark",
+        "Stadion", "Hallenbad", "Gymnasium", "Realschule", "Brücke", "Kelter", "Torplatz",
+        "Sonnenhalde", "Wilhelmsplatz", "Karlstraße", "Friedrichstraße", "Neue Mitte", "Parkplatz", "Ost",
+    };
+    private static final String[] ALERT_TYPES = {"warning", "info", "disruption"};
+    private static final String[] SEVERITIES = {"low", "medium", "high"};
+
+    private final Random random;
+    private final int stopCount;
+    private final int lineCount;
+    private final int columns;
+
+    private final String[] stopIds;
+    private final String[] stopNames;
+    private final String[] stopPincodes;
+    private final List<Line> lines = new ArrayList<>();
+
+    private NetworkGenerator(int stopCount, int lineCount, long seed) {
+        this.random = new Random(seed);
+        this.stopCount = stopCount;
+        this.lineCount = lineCount;
+        this.columns = (int) Math.ceil(Math.sqrt(stopCount));
+        this.stopIds = new String[stopCount];
+        this.stopNames = new String[stopCount];
+        this.stopPincodes = new String[stopCount];
+    }
+
+    public static void main(String[] args) throws IOException, SQLException {
+        int stops = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int lineCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Path out = Path.of(args.length > 2 ? args[2] : "synthetic-network");
+        long seed = Long.getLong("livelink.bench.seed", 42);
+        String url = System.getProperty("livelink.bench.jdbc-url");
+
+        NetworkGenerator generator = new NetworkGenerator(stops, lineCount, seed);
+        generator.generate();
+        Files.createDirectories(out);
+        long started = System.nanoTime();
+        long departures;
+        if (url != null) {
+            try (Connection connection = DriverManager.getConnection(url,
+                    System.getProperty("livelink.bench.jdbc-user", "livelink_user"),
+                    System.getProperty("livelink.bench.jdbc-password", "livelink_password"))) {
+                departures = generator.load(connection, out);
+            }
+        } else {
+            departures = generator.write(out);
+        }
+        generator.writeStopList(out.resolve("stops.tsv"));
+        System.out.printf("%d stops in %d pincodes, %d lines, %d departures %s in %.1f s%n",
+            stops, (stops + STOPS_PER_PINCODE - 1) / STOPS_PER_PINCODE, lineCount, departures,
+            url != null ? "loaded" : "written to " + out, (System.nanoTime() - started) / 1e9);
+    }
+
+    /**
+     * The network as an in-memory {@link Timetable}, without Postgres, for
+     * benchmarks of the timetable code. Same stops, lines and times as a
+     * load with the same counts and seed; departure ids are not.
+     */
+    public static Timetable timetable(int stopCount, int lineCount, long seed) {
+        NetworkGenerator generator = new NetworkGenerator(stopCount, lineCount, seed);
+        generator.generate();
+        return generator.buildTimetable();
+    }
+
+    private void generate() {
+        for (int i = 0; i < stopCount; i++) {
+            int pincode = i / STOPS_PER_PINCODE;
+            int place = i % STOPS_PER_PINCODE;
+            stopIds[i] = String.format(Locale.ROOT, "%sstop_%06d", PREFIX, i);
+            stopPincodes[i] = Integer.toString(FIRST_PINCODE + pincode);
+            stopNames[i] = town(pincode) + " " + PLACES[place % PLACES.length]
+                + (place >= PLACES.length ? " " + (place / PLACES.length + 1) : "");
+        }
+        for (int i = 0; i < lineCount; i++) {
+            lines.add(line(i));
+        }
+    }
+
+    private static String town(int pincode) {
+        String name = TOWN_STARTS[pincode % TOWN_STARTS.length]
+            + TOWN_ENDS[(pincode / TOWN_STARTS.length) % TOWN_ENDS.length];
+        int round = pincode / (TOWN_STARTS.length * TOWN_ENDS.length);
+        return round == 0 ? name : name + " " + (round + 1);
+    }
+
+    private Line line(int index) {
+        int kind = random.nextInt(10);
+        String type = kind < 7 ? "bus" : kind < 9 ? "tram" : "train";
+        String number = switch (type) {
+            case "train" -> "S" + (index + 1);
+            case "tram" -> "U" + (index + 1);
+            default -> Integer.toString(100 + index);
+        };
+        // Trains skip stops, so they cover more ground per hop
+        int step = type.equals("train") ? 3 : 1;
+        int length = type.equals("bus") ? 12 + random.nextInt(20) : 15 + random.nextInt(15);
+        int[] route = walk(length, step);
+        int[] hopSeconds = new int[route.length - 1];
+        for (int i = 0; i < hopSeconds.length; i++) {
+            hopSeconds[i] = 60 * (type.equals("train") ? 2 + random.nextInt(3) : 1 + random.nextInt(3));
+        }
+        int[] headways = type.equals("bus") ? new int[] {10, 15, 20, 30} : new int[] {5, 10, 15};
+        int headway = headways[random.nextInt(headways.length)] * 60;
+        int weekdays = random.nextInt(5) == 0 ? 0b0011111 : 0b1111111;
+        return new Line(String.format(Locale.ROOT, "%sline_%05d", PREFIX, index), number, type,
+            route, hopSeconds, headway, SERVICE_START + 60 * random.nextInt(headway / 60), weekdays);
+    }
+
+    // Random walk over grid neighbours without revisiting a stop, started
+    // over when it is stuck before the second stop
+    private int[] walk(int length, int step) {
+        int[] route = new int[length];
+        int current = random.nextInt(stopCount);
+        int size = 0;
+        route[size++] = current;
+        int[][] moves = {{step, 0}, {-step, 0}, {0, step}, {0, -step}, {step, step}, {-step, -step}};
+        while (size < length) {
+            int row = current / columns;
+            int column = current % columns;
+            int next = -1;
+            for (int attempt = 0; attempt < 8 && next < 0; attempt++) {
+                int[] move = moves[random.nextInt(moves.length)];
+                int candidate = (row + move[0]) * columns + column + move[1];
+                if (row + move[0] >= 0 && column + move[1] >= 0 && column + move[1] < columns
+                        && candidate < stopCount && !contains(route, size, candidate)) {
+                    next = candidate;
+                }
+            }
+            if (next < 0 && size == 1) {
+                current = random.nextInt(stopCount);
+                route[0] = current;
+                continue;
+            }
+            if (next < 0) {
+                break;
+            }
+            route[size++] = next;
+            current = next;
+        }
+        return Arrays.copyOf(route, size);
+    }
+
+    private static boolean contains(int[] route, int size, int stop) {
+        for (int i = 0; i < size; i++) {
+            if (route[i] == stop) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long load(Connection connection, Path out) throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("""
+                DELETE FROM live_departures WHERE scheduled_departure_id IN (
+                    SELECT id FROM scheduled_departures WHERE line_id LIKE 'syn\\_%')
+                """);
+            statement.execute("DELETE FROM scheduled_departures WHERE line_id LIKE 'syn\\_%'");
+            statement.execute("DELETE FROM routes WHERE line_id LIKE 'syn\\_%'");
+            statement.execute("DELETE FROM service_alerts WHERE description LIKE 'Synthetic%'");
+            statement.execute("DELETE FROM transport_lines WHERE id LIKE 'syn\\_%'");
+            statement.execute("DELETE FROM transport_stops WHERE id LIKE 'syn\\_%'");
+        }
+        PGConnection pg = connection.unwrap(PGConnection.class);
+        long departures;
+        try (PrintWriter sample = sampleWriter(out)) {
+            copy(pg, "transport_stops (id, name, stop_type, latitude, longitude, pincode, address, is_active)",
+                this::writeStops);
+            copy(pg, "transport_lines (id, line_number, transport_type, operator, color_code, is_active)",
+                this::writeLines);
+            copy(pg, "routes (line_id, from_stop_id, to_stop_id, sequence_order, travel_time_minutes)",
+                this::writeRoutes);
+            departures = copy(pg, "scheduled_departures "
+                + "(id, line_id, stop_id, departure_time, days_of_week, platform, direction, is_active)",
+                rows -> writeDepartures(rows, sample));
+            copy(pg, "service_alerts (alert_type, title, description, severity, affected_lines, "
+                + "start_time, end_time, is_active)", this::writeAlerts);
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE transport_stops, transport_lines, routes, scheduled_departures");
+        }
+        return departures;
+    }
+
+    private long write(Path out) throws IOException {
+        long departures;
+        try (PrintWriter sample = sampleWriter(out)) {
+            writeFile(out.resolve("transport_stops.copy"), this::writeStops);
+            writeFile(out.resolve("transport_lines.copy"), this::writeLines);
+            writeFile(out.resolve("routes.copy"), this::writeRoutes);
+            departures = writeFile(out.resolve("scheduled_departures.copy"), rows -> writeDepartures(rows, sample));
+            writeFile(out.resolve("service_alerts.copy"), this::writeAlerts);
+        }
+        return departures;
+    }
+
+    private static long copy(PGConnection connection, String table, Rows body) throws SQLException, IOException {
+        PGCopyOutputStream stream = new PGCopyOutputStream(connection, "COPY " + table + " FROM STDIN", 1 << 16);
+        try {
+            long rows = write(stream, body);
+            stream.endCopy();
+            return rows;
+        } finally {
+            if (stream.isActive()) {
+                stream.cancelCopy();
+            }
+        }
+    }
+
+    private static long writeFile(Path file, Rows body) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file)) {
+            return write(stream, body);
+        }
+    }
+
+    private static long write(OutputStream stream, Rows body) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+        CopyWriter rows = new CopyWriter(writer);
+        body.write(rows);
+        writer.flush();
+        return rows.getRows();
+    }
+
+    private static PrintWriter sampleWriter(Path out) throws IOException {
+        return new PrintWriter(Files.newBufferedWriter(out.resolve("departure-ids.txt")));
+    }
+
+    private void writeStops(CopyWriter rows) throws IOException {
+        for (int i = 0; i < stopCount; i++) {
+            double latitude = 48.6 + (i / columns) * GRID_STEP;
+            double longitude = 8.9 + (i % columns) * GRID_STEP * 1.5;
+            rows.text(stopIds[i]).text(stopNames[i]).text("bus")
+                .text(String.format(Locale.ROOT, "%.6f", latitude))
+                .text(String.format(Locale.ROOT, "%.6f", longitude))
+                .text(stopPincodes[i]).text(stopNames[i].substring(stopNames[i].indexOf(' ') + 1))
+                .bool(true).endRow();
+        }
+    }
+
+    private void writeLines(CopyWriter rows) throws IOException {
+        for (Line line : lines) {
+            rows.text(line.id()).text(line.number()).text(line.type()).text("Synthetic")
+                .text(String.format("#%06X", random.nextInt(0x1000000))).bool(true).endRow();
+        }
+    }
+
+    private void writeRoutes(CopyWriter rows) throws IOException {
+        for (Line line : lines) {
+            for (int i = 0; i < line.hopSeconds().length; i++) {
+                rows.text(line.id()).text(stopIds[line.route()[i]]).text(stopIds[line.route()[i + 1]])
+                    .number(i + 1).number(line.hopSeconds()[i] / 60).endRow();
+            }
+        }
+    }
+
+    // Sampled ids are spread evenly over all departures
+    private void writeDepartures(CopyWriter rows, PrintWriter sample) throws IOException {
+        long total = estimatedDepartures();
+        long sampleEvery = Math.max(1, total / MAX_SAMPLED_DEPARTURES);
+        long written = 0;
+        for (Line line : lines) {
+            for (int direction = 0; direction < 2; direction++) {
+                int[] offsets = new int[line.route().length];
+                for (int i = 1; i < offsets.length; i++) {
+                    int hop = direction == 0 ? i - 1 : line.hopSeconds().length - i;
+                    offsets[i] = offsets[i - 1] + line.hopSeconds()[hop];
+                }
+                int terminus = direction == 0 ? line.route()[line.route().length - 1] : line.route()[0];
+                String platform = line.type().equals("train") ? Integer.toString(direction + 1) : null;
+                for (int start = line.firstDeparture(); start + offsets[offsets.length - 1] < SERVICE_END;
+                         start += line.headway()) {
+                    // The terminus has arrivals only
+                    for (int i = 0; i < offsets.length - 1; i++) {
+                        int stop = direction == 0 ? line.route()[i] : line.route()[line.route().length - 1 - i];
+                        String id = new UUID(random.nextLong(), random.nextLong()).toString();
+                        rows.text(id).text(line.id()).text(stopIds[stop]).text(clock(start + offsets[i]))
+                            .weekdays(line.weekdays()).optional(platform).text(stopNames[terminus])
+                            .bool(true).endRow();
+                        if (written++ % sampleEvery == 0) {
+                            sample.println(id);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Timetable buildTimetable() {
+        Timetable.Builder builder = Timetable.builder(0);
+        for (int i = 0; i < stopCount; i++) {
+            builder.addStop(stopIds[i], stopNames[i], stopPincodes[i]);
+        }
+        long departures = 0;
+        for (Line line : lines) {
+            builder.addLine(line.id(), line.number(), line.type());
+            for (int i = 0; i < line.hopSeconds().length; i++) {
+                builder.addRouteLeg(line.id(), stopIds[line.route()[i]], stopIds[line.route()[i + 1]], i + 1,
+                    line.hopSeconds()[i]);
+            }
+            for (int direction = 0; direction < 2; direction++) {
+                int[] offsets = new int[line.route().length];
+                for (int i = 1; i < offsets.length; i++) {
+                    int hop = direction == 0 ? i - 1 : line.hopSeconds().length - i;
+                    offsets[i] = offsets[i - 1] + line.hopSeconds()[hop];
+                }
+                int terminus = direction == 0 ? line.route()[line.route().length - 1] : line.route()[0];
+                String platform = line.type().equals("train") ? Integer.toString(direction + 1) : null;
+                for (int start = line.firstDeparture(); start + offsets[offsets.length - 1] < SERVICE_END;
+                         start += line.headway()) {
+                    for (int i = 0; i < offsets.length - 1; i++) {
+                        int stop = direction == 0 ? line.route()[i] : line.route()[line.route().length - 1 - i];
+                        builder.addDeparture(PREFIX + "dep_" + departures++, line.id(), stopIds[stop],
+                            start + offsets[i], (byte) line.weekdays(), platform, stopNames[terminus]);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private long estimatedDepartures() {
+        long total = 0;
+        for (Line line : lines) {
+            total += 2L * (line.route().length - 1) * ((SERVICE_END - line.firstDeparture()) / line.headway());
+        }
+        return total;
+    }
+
+    private void writeAlerts(CopyWriter rows) throws IOException {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+        int alerts = Math.max(10, lineCount / 20);
+        for (int i = 0; i < alerts; i++) {
+            Line line = lines.get(random.nextInt(lines.size()));
+            int severity = random.nextInt(SEVERITIES.length);
+            rows.text(ALERT_TYPES[random.nextInt(ALERT_TYPES.length)])
+                .text("Line " + line.number() + ": " + (severity == 2 ? "service disrupted" : "changed stops"))
+                .text("Synthetic alert for " + stopNames[line.route()[0]] + " - " + stopNames[line.route()[line.route().length - 1]])
+                .text(SEVERITIES[severity])
+                .text("{" + line.number() + "}")
+                .text(now.minus(random.nextInt(48), ChronoUnit.HOURS).toString())
+                .text(random.nextBoolean() ? now.plus(1 + random.nextInt(72), ChronoUnit.HOURS).toString() : null)
+                .bool(true).endRow();
+        }
+    }
+
+    private void writeStopList(Path file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (int i = 0; i < stopCount; i++) {
+                writer.println(stopIds[i] + "\t" + stopPincodes[i] + "\t" + stopNames[i]);
+            }
+        }
+    }
+
+    private static String clock(int secondOfDay) {
+        return String.format(Locale.ROOT, "%02d:%02d:%02d",
+            secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    @FunctionalInterface
+    private interface Rows {
+        void write(CopyWriter rows) throws IOException;
+    }
+
+    private record Line(String id, String number, String type, int[] route, int[] hopSeconds,
+                        int headway, int firstDeparture, int weekdays) {}
+}
@@ -0,0 +1,75 @@
+package com.livelink.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.dto.ApiResponse;
+import com.livelink.encoding.CompactResponses;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a departures response, using the same
+ * ObjectMapper defaults Spring Boot configures for the controllers, as
+ * JSON and as the compact CBOR table sent for {@code Accept: application/cbor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private ObjectMapper objectMapper;
+    private CompactResponses compactResponses;
+    private List<ApiDeparture> departures;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        compactResponses = new CompactResponses();
+        inject(compactResponses, "objectMapper", objectMapper);
+        inject(compactResponses, "cborConverter", new MappingJackson2CborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()));
+        departures = SampleData.departures(rows);
+    }
+
+    @Benchmark
+    public byte[] serializeResponse() throws JsonProcessingException {
+        // The response is built per request, as the controllers do
+        return objectMapper.writeValueAsBytes(
+            ApiResponse.success(departures, "Departures retrieved for stop: stop_ludwigsburg_hbf"));
+    }
+
+    @Benchmark
+    public byte[] serializeCompactResponse() {
+        return compactResponses.writeCbor(compactResponses.compact(
+            ApiResponse.success(departures, "Departures retrieved for stop: stop_ludwigsburg_hbf"), null));
+    }
+
+    private static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
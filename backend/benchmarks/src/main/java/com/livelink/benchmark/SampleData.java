@@ -0,0 +1,156 @@
+package com.livelink.benchmark;
+
+import com.livelink.dto.ApiDeparture;
+import com.livelink.timetable.Timetable;
+
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic sample data shaped like the Ludwigsburg dummy data.
+ */
+public final class SampleData {
+
+    public static final String[] DEPARTURE_COLUMNS = {
+        "departure_id", "transport_type", "line_number", "destination", "departure_time",
+        "actual_departure_time", "platform", "status", "delay_minutes", "stop_id", "stop_name",
+        "next_departure_1", "next_departure_2", "next_departure_3"
+    };
+
+    private static final String[][] LINES = {
+        {"S4", "train", "Stuttgart Hauptbahnhof"},
+        {"S5", "train", "Bietigheim-Bissingen"},
+        {"443", "bus", "Schlossstraße"},
+        {"42", "bus", "Hauptbahnhof"},
+        {"421", "bus", "Kornwestheim"},
+        {"1", "tram", "Aldingen"},
+    };
+
+    private static final String[][] STOPS = {
+        {"stop_ludwigsburg_hbf", "Ludwigsburg Hauptbahnhof", "71634", "Bahnhofstraße 1"},
+        {"stop_arsenalplatz", "Arsenalplatz", "71634", "Arsenalplatz"},
+        {"stop_schlossstrasse", "Schlossstraße", "71634", "Schlossstraße"},
+        {"stop_marienplatz", "Marienplatz", "71636", "Marienplatz"},
+        {"stop_neckarweihingen", "Neckarweihingen Bahnhof", "71638", "Bahnhofstraße 15"},
+    };
+
+    private SampleData() {}
+
+    /**
+     * Rows as returned by the DeparturesService board queries.
+     */
+    public static List<Object[]> departureRows(int count) {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>(count);
+        LocalTime time = LocalTime.of(6, 0);
+        for (int i = 0; i < count; i++) {
+            String[] line = LINES[i % LINES.length];
+            String[] stop = STOPS[i % STOPS.length];
+            time = time.plusSeconds(30 + random.nextInt(120));
+            boolean delayed = random.nextInt(4) == 0;
+            int delay = delayed ? 1 + random.nextInt(10) : 0;
+            rows.add(new Object[] {
+                new UUID(random.nextLong(), random.nextLong()).toString(),
+                line[1],
+                line[0],
+                line[2],
+                Time.valueOf(time),
+                delayed ? Timestamp.valueOf(LocalDateTime.of(2024, 1, 20, 0, 0).with(time.plusMinutes(delay))) : null,
+                line[1].equals("train") ? Integer.toString(1 + random.nextInt(4)) : null,
+                delayed ? "delayed" : "on-time",
+                delay,
+                stop[0],
+                stop[1],
+                Time.valueOf(time.plusMinutes(15)),
+                Time.valueOf(time.plusMinutes(30)),
+                null,
+            });
+        }
+        return rows;
+    }
+
+    public static List<ApiDeparture> departures(int count) {
+        List<ApiDeparture> departures = new ArrayList<>(count);
+        for (Object[] row : departureRows(count)) {
+            ApiDeparture departure = new ApiDeparture();
+            departure.setId((String) row[0]);
+            departure.setTransportType((String) row[1]);
+            departure.setLineNumber((String) row[2]);
+            departure.setDestination((String) row[3]);
+            LocalTime time = ((Time) row[4]).toLocalTime();
+            departure.setScheduledDeparture(time.toString().substring(0, 5));
+            if (row[5] != null) {
+                departure.setActualDeparture(((Timestamp) row[5]).toLocalDateTime().toLocalTime().toString().substring(0, 5));
+            }
+            departure.setPlatform((String) row[6]);
+            departure.setStatus((String) row[7]);
+            if ((Integer) row[8] > 0) {
+                departure.setDelayMinutes((Integer) row[8]);
+            }
+            departure.setStopId((String) row[9]);
+            departure.setStopName((String) row[10]);
+            departure.setNextDepartures(List.of(
+                time.plusMinutes(15).toString().substring(0, 5),
+                time.plusMinutes(30).toString().substring(0, 5),
+                time.plusMinutes(45).toString().substring(0, 5)));
+            departures.add(departure);
+        }
+        return departures;
+    }
+
+    /**
+     * Timetable with {@code perStop} departures at each sample stop, spread
+     * over the sample lines across the whole day.
+     */
+    public static Timetable timetable(int perStop) {
+        Random random = new Random(11);
+        Timetable.Builder builder = Timetable.builder(1);
+        for (String[] stop : STOPS) {
+            builder.addStop(stop[0], stop[1], stop[2]);
+        }
+        for (String[] line : LINES) {
+            builder.addLine("line_" + line[0], line[0], line[1]);
+        }
+        byte everyDay = Timetable.dayMask(new Integer[] {1, 2, 3, 4, 5, 6, 7});
+        for (String[] stop : STOPS) {
+            for (int i = 0; i < perStop; i++) {
+                String[] line = LINES[i % LINES.length];
+                builder.addDeparture(new UUID(random.nextLong(), random.nextLong()).toString(),
+                    "line_" + line[0], stop[0], random.nextInt(24 * 60 * 60), everyDay, null, line[2]);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Stop rows as returned by StopsService, with {@code count} synthetic
+     * stops around the real ones.
+     */
+    public static List<Map<String, Object>> stopRows(int count) {
+        Random random = new Random(7);
+        List<Map<String, Object>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] stop = STOPS[i % STOPS.length];
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i < STOPS.length ? stop[0] : stop[0] + "_" + i);
+            row.put("name", i < STOPS.length ? stop[1] : stop[1] + " " + i);
+            row.put("stop_type", "bus");
+            row.put("latitude", BigDecimal.valueOf(48.85 + random.nextDouble() / 10));
+            row.put("longitude", BigDecimal.valueOf(9.15 + random.nextDouble() / 10));
+            row.put("pincode", stop[2]);
+            row.put("address", stop[3]);
+            row.put("is_active", true);
+            rows.add(row);
+        }
+        return rows;
+    }
+}
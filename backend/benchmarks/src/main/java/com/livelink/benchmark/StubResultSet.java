@@ -0,0 +1,127 @@
+package com.livelink.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory {@link ResultSet} over fixed rows, so row mappers can be
+ * benchmarked without a database. Supports the getters used by the backend
+ * by column label and by 1-based index.
+ */
+public final class StubResultSet implements InvocationHandler {
+
+    private final String[] labels;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<Object[]> rows;
+    private int cursor = -1;
+    private boolean wasNull;
+
+    private StubResultSet(String[] labels, List<Object[]> rows) {
+        this.labels = labels;
+        this.rows = rows;
+        for (int i = 0; i < labels.length; i++) {
+            columns.put(labels[i], i + 1);
+        }
+    }
+
+    public static ResultSet of(String[] labels, List<Object[]> rows) {
+        return (ResultSet) Proxy.newProxyInstance(StubResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class}, new StubResultSet(labels, rows));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        switch (method.getName()) {
+            case "next":
+                return ++cursor < rows.size();
+            case "beforeFirst":
+                cursor = -1;
+                return null;
+            case "getRow":
+                return cursor + 1;
+            case "close":
+                return null;
+            case "isClosed":
+                return false;
+            case "wasNull":
+                return wasNull;
+            case "findColumn":
+                return column(args[0]);
+            case "getMetaData":
+                return metaData();
+            case "getString":
+                return value(args[0]) == null ? null : value(args[0]).toString();
+            case "getInt": {
+                Object value = value(args[0]);
+                return value == null ? 0 : ((Number) value).intValue();
+            }
+            case "getLong": {
+                Object value = value(args[0]);
+                return value == null ? 0L : ((Number) value).longValue();
+            }
+            case "getBoolean": {
+                Object value = value(args[0]);
+                return value != null && (Boolean) value;
+            }
+            case "getTime":
+                return (Time) value(args[0]);
+            case "getTimestamp":
+                return (Timestamp) value(args[0]);
+            case "getObject":
+                return value(args[0]);
+            case "unwrap":
+                return proxy;
+            case "isWrapperFor":
+                return false;
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "StubResultSet[" + rows.size() + " rows]";
+            default:
+                throw new SQLException("Not supported by StubResultSet: " + method.getName());
+        }
+    }
+
+    private int column(Object key) throws SQLException {
+        if (key instanceof Integer index) {
+            return index;
+        }
+        Integer index = columns.get((String) key);
+        if (index == null) {
+            throw new SQLException("Unknown column: " + key);
+        }
+        return index;
+    }
+
+    private Object value(Object key) throws SQLException {
+        Object value = rows.get(cursor)[column(key) - 1];
+        wasNull = value == null;
+        return value;
+    }
+
+    private ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(StubResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSetMetaData.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getColumnCount":
+                        return labels.length;
+                    case "getColumnLabel":
+                    case "getColumnName":
+                        return labels[(Integer) args[0] - 1];
+                    default:
+                        throw new SQLException("Not supported by StubResultSet: " + method.getName());
+                }
+            });
+    }
+}
@@ -0,0 +1,127 @@
+package com.livelink.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load against a running backend, for comparing the
+ * request thread models: each of {@code concurrency} clients sends the
+ * next request as soon as the previous one answered, for a warm-up and
+ * then the measured seconds, and throughput and latency percentiles of
+ * the measured part are printed.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.livelink.benchmark.ThreadModelLoad \
+ *     [base-url] [concurrency] [seconds] [path] [post-body]
+ * </pre>
+ *
+ * With a body the request is a JSON POST, e.g. path
+ * {@code /api/v1/departures/live} and body {@code ["stop-1","stop-2"]};
+ * otherwise a GET such as {@code /api/v1/departures?pincode=71634}.
+ */
+public final class ThreadModelLoad {
+
+    private static final int WARM_UP_SECONDS = 10;
+
+    private ThreadModelLoad() {}
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        String path = args.length > 3 ? args[3] : "/api/v1/departures?pincode=71634";
+        String body = args.length > 4 ? args[4] : null;
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(30));
+        HttpRequest request = body != null
+            ? builder.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build()
+            : builder.GET().build();
+        HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(4))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+        long started = System.nanoTime();
+        long measureFrom = started + TimeUnit.SECONDS.toNanos(WARM_UP_SECONDS);
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        List<Future<Client>> results = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            results.add(clients.submit(() -> new Client().run(client, request, measureFrom, deadline)));
+        }
+
+        long[] latencies = new long[0];
+        long errors = 0;
+        for (Future<Client> result : results) {
+            Client done = result.get();
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + done.count);
+            System.arraycopy(done.latencies, 0, latencies, offset, done.count);
+            errors += done.errors;
+        }
+        clients.shutdown();
+        Arrays.sort(latencies);
+
+        System.out.printf("%s %s, %d clients, %d s after %d s warm-up%n",
+            body != null ? "POST" : "GET", path, concurrency, seconds, WARM_UP_SECONDS);
+        System.out.printf("Requests: %d ok, %d failed (%.0f/s)%n",
+            latencies.length, errors, latencies.length / (double) seconds);
+        if (latencies.length > 0) {
+            System.out.printf("Latency ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e6);
+        }
+        System.exit(0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static final class Client {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        Client run(HttpClient client, HttpRequest request, long measureFrom, long deadline) {
+            long now = System.nanoTime();
+            while (now < deadline) {
+                long sent = now;
+                boolean ok;
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    ok = response.statusCode() < 400;
+                } catch (Exception e) {
+                    ok = false;
+                }
+                now = System.nanoTime();
+                if (sent < measureFrom) {
+                    continue;
+                }
+                if (!ok) {
+                    errors++;
+                } else {
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = now - sent;
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.livelink.service;
+
+import com.livelink.benchmark.SampleData;
+import com.livelink.benchmark.StubResultSet;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.timetable.DepartureSlot;
+import com.livelink.timetable.ServiceDays;
+import com.livelink.timetable.Timetable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping of board query results into {@link ApiDeparture}, and the
+ * next-departures lookup of the materialized service days.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DepartureMappingBenchmark {
+
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private List<Object[]> data;
+    private List<DepartureSlot> slots;
+    private ZoneId zoneId;
+
+    @Setup
+    public void setUp() {
+        data = SampleData.departureRows(rows);
+        zoneId = ZoneId.of("Europe/Berlin");
+        Timetable timetable = SampleData.timetable(rows);
+        ServiceDays days = ServiceDays.materialize(timetable, MONDAY, 2, zoneId, LocalTime.MIDNIGHT);
+        slots = days.departuresAt("stop_ludwigsburg_hbf", MONDAY.atStartOfDay(zoneId).toInstant(),
+            MONDAY.plusDays(1).atStartOfDay(zoneId).toInstant().minusSeconds(1), rows);
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole blackhole) throws SQLException {
+        ResultSet rs = StubResultSet.of(SampleData.DEPARTURE_COLUMNS, data);
+        DeparturesService.DepartureRowMapper mapper = new DeparturesService.DepartureRowMapper(zoneId);
+        int rowNum = 0;
+        while (rs.next()) {
+            blackhole.consume(mapper.mapRow(rs, rowNum++));
+        }
+    }
+
+    @Benchmark
+    public void timetableNextDepartures(Blackhole blackhole) {
+        for (DepartureSlot slot : slots) {
+            blackhole.consume(slot.getNextDepartures(3));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.livelink.service;
+
+import com.livelink.benchmark.SampleData;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.search.StopSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stop search through the in-memory {@link StopSearchIndex}, compared with
+ * the SQL fallback of {@link StopsService} against a stub data source, or
+ * against a local Postgres when {@code -Dlivelink.bench.jdbc-url} is set
+ * (user and password default to the docker-compose credentials).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopSearchBenchmark {
+
+    @Param({"1000"})
+    public int stops;
+
+    @Param({"Haupt", "marienpl", "Schlossstrasse", "Ludwigsbrug"})
+    public String query;
+
+    private StopsService stopsService;
+    private StopSearchIndex index;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        DomainMetrics domainMetrics = new DomainMetrics();
+        inject(domainMetrics, "meterRegistry", new SimpleMeterRegistry());
+        stopsService = new StopsService();
+        inject(stopsService, "jdbcTemplate", jdbcTemplate());
+        inject(stopsService, "domainMetrics", domainMetrics);
+        index = new StopSearchIndex();
+        index.sync(SampleData.stopRows(stops));
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> searchIndex() {
+        return index.search(query, 20);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> searchDatabase() {
+        return stopsService.searchStopsInDatabase(query);
+    }
+
+    private static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private JdbcTemplate jdbcTemplate() {
+        String url = System.getProperty("livelink.bench.jdbc-url");
+        if (url != null) {
+            return new JdbcTemplate(new DriverManagerDataSource(url,
+                System.getProperty("livelink.bench.jdbc-user", "livelink_user"),
+                System.getProperty("livelink.bench.jdbc-password", "livelink_password")));
+        }
+        return new StubJdbcTemplate(SampleData.stopRows(stops));
+    }
+
+    /**
+     * Answers the search query in memory with the same LIKE semantics, so the
+     * benchmark measures the service layer rather than a database.
+     */
+    static final class StubJdbcTemplate extends JdbcTemplate {
+        private final List<Map<String, Object>> rows;
+
+        StubJdbcTemplate(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public List<Map<String, Object>> queryForList(String sql, Object... args) {
+            String contains = like(args[0]);
+            String prefix = like(args[args.length - 1]);
+            List<Map<String, Object>> matches = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                String name = ((String) row.get("name")).toLowerCase(Locale.ROOT);
+                String address = ((String) row.get("address")).toLowerCase(Locale.ROOT);
+                if (name.contains(contains) || address.contains(contains)) {
+                    matches.add(row);
+                }
+            }
+            matches.sort((a, b) -> {
+                boolean aPrefix = ((String) a.get("name")).toLowerCase(Locale.ROOT).startsWith(prefix);
+                boolean bPrefix = ((String) b.get("name")).toLowerCase(Locale.ROOT).startsWith(prefix);
+                if (aPrefix != bPrefix) {
+                    return aPrefix ? -1 : 1;
+                }
+                return ((String) a.get("name")).compareTo((String) b.get("name"));
+            });
+            return matches.size() > 20 ? matches.subList(0, 20) : matches;
+        }
+
+        private static String like(Object pattern) {
+            return ((String) pattern).replace("%", "").toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.livelink.timetable;
+
+import com.livelink.benchmark.NetworkGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConnectionScan#plan} between random stops of the network of
+ * {@link NetworkGenerator} at its default size, with the settings of
+ * {@code application.yml}, on the three materialized days around a
+ * Monday. {@code delayedPercent} of the departures of that Monday carry a
+ * delay of up to ten minutes. Most random pairs are not connected within
+ * the four hours searched, the slowest case; {@code connected} keeps only
+ * pairs with a journey.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class JourneyPlanBenchmark {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+    private static final int QUERIES = 256;
+
+    @Param({"20000"})
+    public int stops;
+
+    @Param({"2000"})
+    public int lines;
+
+    @Param({"0", "10"})
+    public int delayedPercent;
+
+    @Param({"false", "true"})
+    public boolean connected;
+
+    private LiveDelays delays;
+    private String[] from;
+    private String[] to;
+    private Instant[] departAt;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Timetable timetable = NetworkGenerator.timetable(stops, lines, 42);
+        Connections connections = Connections.build(
+            ServiceDays.materialize(timetable, MONDAY.minusDays(1), 3, ZONE, LocalTime.MIDNIGHT));
+        Random random = new Random(7);
+        List<LiveDelays.Report> reports = new ArrayList<>();
+        for (int stop = 0; stop < timetable.getStopCount(); stop++) {
+            StopTimetable stopTimetable = timetable.stopTimetable(stop);
+            for (int i = 0; i < stopTimetable.size(); i++) {
+                if (random.nextInt(100) < delayedPercent) {
+                    int second = stopTimetable.departureSeconds[i];
+                    reports.add(new LiveDelays.Report(stopTimetable.departureIds[i], timetable.stopIds[stop],
+                        second, 60 * (1 + random.nextInt(10)), false,
+                        MONDAY.atStartOfDay(ZONE).toInstant().plusSeconds(second)));
+                }
+            }
+        }
+        delays = LiveDelays.of(connections, reports, DelayPropagation.Rules.NONE);
+
+        from = new String[QUERIES];
+        to = new String[QUERIES];
+        departAt = new Instant[QUERIES];
+        for (int q = 0; q < QUERIES; ) {
+            from[q] = timetable.stopIds[random.nextInt(timetable.getStopCount())];
+            to[q] = timetable.stopIds[random.nextInt(timetable.getStopCount())];
+            departAt[q] = MONDAY.atTime(6 + random.nextInt(14), random.nextInt(60)).atZone(ZONE).toInstant();
+            if (!connected || !plan(q).isEmpty()) {
+                q++;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Journey> plan() {
+        return plan(next++ & (QUERIES - 1));
+    }
+
+    private List<Journey> plan(int q) {
+        return ConnectionScan.plan(delays, from[q], to[q], departAt[q], 4, 120, 240 * 60);
+    }
+}
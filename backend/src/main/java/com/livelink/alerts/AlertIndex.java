@@ -0,0 +1,251 @@
+package com.livelink.alerts;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory set of service alerts with a line → active alerts inverted
+ * index.
+ *
+ * Alerts are scheduled on a {@link TimerWheel} at their {@code start_time}
+ * and {@code end_time}; {@link #advance} applies the due transitions, so
+ * reads never compare timestamps. Readers see an immutable snapshot that
+ * is republished whenever the active set changes.
+ */
+public final class AlertIndex {
+
+    private static final long TICK_MILLIS = 1000;
+    // One revolution covers an hour; longer alerts wait for later rounds
+    private static final int SLOTS = 3600;
+
+    private static final Comparator<Alert> RANKING = Comparator
+        .comparingInt(Alert::severityRank).reversed()
+        .thenComparing(Comparator.comparingLong(Alert::startMillis).reversed())
+        .thenComparing(Alert::id);
+
+    private final Map<String, Alert> alerts = new HashMap<>();
+    private final Set<Alert> active = new HashSet<>();
+    private final TimerWheel<Transition> wheel;
+    private volatile Snapshot snapshot;
+
+    public AlertIndex(Instant now) {
+        this.wheel = new TimerWheel<>(TICK_MILLIS, SLOTS, now.toEpochMilli());
+        // Versions start at the creation time so they don't repeat across restarts
+        this.snapshot = new Snapshot(now.toEpochMilli(), now, List.of(), Map.of());
+    }
+
+    /**
+     * Makes the index hold exactly the given alert rows, keyed by {@code id}.
+     * Unchanged alerts keep their timers.
+     *
+     * @return ids of the alerts added, changed or removed
+     */
+    public synchronized List<String> sync(Collection<Map<String, Object>> rows, Instant now) {
+        long nowMillis = now.toEpochMilli();
+        Set<String> seen = new HashSet<>(rows.size() * 2);
+        List<String> changed = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            Alert alert = new Alert(row);
+            seen.add(alert.id());
+            Alert existing = alerts.get(alert.id());
+            if (existing != null && existing.row().equals(alert.row())) {
+                continue;
+            }
+            if (existing != null) {
+                active.remove(existing);
+            }
+            alerts.put(alert.id(), alert);
+            if (alert.startMillis() > nowMillis) {
+                wheel.schedule(new Transition(alert, true), alert.startMillis());
+            } else if (alert.endMillis() > nowMillis) {
+                activate(alert);
+            }
+            changed.add(alert.id());
+        }
+        for (Alert alert : List.copyOf(alerts.values())) {
+            if (!seen.contains(alert.id())) {
+                alerts.remove(alert.id());
+                active.remove(alert);
+                changed.add(alert.id());
+            }
+        }
+        if (!changed.isEmpty()) {
+            publish(now);
+        }
+        return changed;
+    }
+
+    /**
+     * Activates and expires the alerts whose start or end has passed.
+     *
+     * @return number of alerts that changed state
+     */
+    public synchronized int advance(Instant now) {
+        long nowMillis = now.toEpochMilli();
+        int[] transitions = {0};
+        wheel.advance(nowMillis, transition -> {
+            Alert alert = transition.alert();
+            if (alerts.get(alert.id()) != alert) {
+                // Replaced or removed since the timer was set
+                return;
+            }
+            if (transition.activate()) {
+                if (alert.endMillis() <= nowMillis) {
+                    // Started and ended while the wheel was not advanced
+                    alerts.remove(alert.id());
+                    return;
+                }
+                activate(alert);
+                transitions[0]++;
+            } else if (active.remove(alert)) {
+                alerts.remove(alert.id());
+                transitions[0]++;
+            }
+        });
+        if (transitions[0] > 0) {
+            publish(now);
+        }
+        return transitions[0];
+    }
+
+    /**
+     * Counter that moves whenever the set of active alerts changes.
+     */
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * Time the set of active alerts last changed.
+     */
+    public Instant getChangedAt() {
+        return snapshot.changedAt();
+    }
+
+    public int size() {
+        return snapshot.all().size();
+    }
+
+    public List<Map<String, Object>> active() {
+        return snapshot.all();
+    }
+
+    public List<Map<String, Object>> activeForLine(String lineNumber) {
+        return snapshot.byLine().getOrDefault(lineNumber, List.of());
+    }
+
+    /**
+     * Active alerts affecting any of the given lines, most severe first.
+     */
+    public List<Map<String, Object>> activeForLines(Collection<String> lineNumbers) {
+        Snapshot current = snapshot;
+        if (lineNumbers.isEmpty() || current.all().isEmpty()) {
+            return List.of();
+        }
+        Set<Map<String, Object>> matching = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String lineNumber : lineNumbers) {
+            matching.addAll(current.byLine().getOrDefault(lineNumber, List.of()));
+        }
+        if (matching.isEmpty()) {
+            return List.of();
+        }
+        // all() is already ranked, so filtering it keeps the order
+        List<Map<String, Object>> result = new ArrayList<>(matching.size());
+        for (Map<String, Object> alert : current.all()) {
+            if (matching.contains(alert)) {
+                result.add(alert);
+            }
+        }
+        return result;
+    }
+
+    private void activate(Alert alert) {
+        active.add(alert);
+        if (alert.endMillis() != Long.MAX_VALUE) {
+            wheel.schedule(new Transition(alert, false), alert.endMillis());
+        }
+    }
+
+    private void publish(Instant now) {
+        List<Alert> ranked = new ArrayList<>(active);
+        ranked.sort(RANKING);
+        List<Map<String, Object>> all = new ArrayList<>(ranked.size());
+        Map<String, List<Map<String, Object>>> byLine = new HashMap<>();
+        for (Alert alert : ranked) {
+            all.add(alert.row());
+            for (String line : alert.lines()) {
+                byLine.computeIfAbsent(line, key -> new ArrayList<>()).add(alert.row());
+            }
+        }
+        byLine.replaceAll((line, rows) -> List.copyOf(rows));
+        snapshot = new Snapshot(snapshot.version() + 1, now, List.copyOf(all), Map.copyOf(byLine));
+    }
+
+    private static int rankOf(Object severity) {
+        if ("high".equals(severity)) {
+            return 3;
+        }
+        if ("medium".equals(severity)) {
+            return 2;
+        }
+        return "low".equals(severity) ? 1 : 0;
+    }
+
+    private static long toMillis(Object timestamp, long fallback) {
+        if (timestamp instanceof Date date) {
+            return date.getTime();
+        }
+        if (timestamp instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        return fallback;
+    }
+
+    private record Transition(Alert alert, boolean activate) {}
+
+    private record Snapshot(long version, Instant changedAt, List<Map<String, Object>> all,
+                            Map<String, List<Map<String, Object>>> byLine) {}
+
+    private record Alert(String id, Map<String, Object> row, Set<String> lines,
+                         long startMillis, long endMillis, int severityRank) {
+
+        Alert(Map<String, Object> row) {
+            this(String.valueOf(row.get("id")),
+                Collections.unmodifiableMap(new LinkedHashMap<>(row)),
+                lines(row.get("affected_lines")),
+                toMillis(row.get("start_time"), Long.MIN_VALUE),
+                toMillis(row.get("end_time"), Long.MAX_VALUE),
+                rankOf(row.get("severity")));
+        }
+
+        private static Set<String> lines(Object affectedLines) {
+            if (affectedLines instanceof Collection<?> lines) {
+                return lines.stream().map(String::valueOf).collect(Collectors.toUnmodifiableSet());
+            }
+            return Set.of();
+        }
+
+        // Identity semantics: a changed row is a different alert
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.livelink.alerts;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: deadlines are bucketed into {@code slots} ticks of
+ * {@code tickMillis}, and deadlines further out than one revolution stay in
+ * their slot until their tick comes round. Scheduling is O(1) and each
+ * advance only visits the slots it passes.
+ *
+ * Not thread-safe; callers serialize {@link #schedule} and {@link #advance}.
+ */
+final class TimerWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Timer<T>>> wheel;
+    private long currentTick;
+    private int size;
+
+    TimerWheel(long tickMillis, int slots, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Schedules {@code item} to fire on the first {@link #advance} at or
+     * after {@code deadlineMillis}. Past deadlines fire on the next advance.
+     */
+    void schedule(T item, long deadlineMillis) {
+        // Rounded up, so a timer never fires before its deadline
+        long tick = Math.max(-Math.floorDiv(-deadlineMillis, tickMillis), currentTick + 1);
+        wheel.get(slot(tick)).add(new Timer<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Fires every timer due at {@code nowMillis}. Timers are collected
+     * before firing, so {@code fire} may schedule new ones.
+     */
+    void advance(long nowMillis, Consumer<T> fire) {
+        long target = nowMillis / tickMillis;
+        List<Timer<T>> due = new ArrayList<>();
+        if (target - currentTick >= wheel.size()) {
+            // Fell a full revolution behind; a single sweep covers every slot
+            for (int i = 1; i <= wheel.size(); i++) {
+                expire(wheel.get(slot(currentTick + i)), target, due);
+            }
+            currentTick = target;
+        } else {
+            while (currentTick < target) {
+                currentTick++;
+                expire(wheel.get(slot(currentTick)), currentTick, due);
+            }
+        }
+        due.sort((a, b) -> Long.compare(a.tick(), b.tick()));
+        for (Timer<T> timer : due) {
+            fire.accept(timer.item());
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void expire(List<Timer<T>> bucket, long upToTick, List<Timer<T>> due) {
+        Iterator<Timer<T>> timers = bucket.iterator();
+        while (timers.hasNext()) {
+            Timer<T> timer = timers.next();
+            if (timer.tick() <= upToTick) {
+                timers.remove();
+                size--;
+                due.add(timer);
+            }
+        }
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) wheel.size());
+    }
+
+    private record Timer<T>(T item, long tick) {}
+}
@@ -0,0 +1,67 @@
+package com.livelink.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Cache invalidation broadcast to all backend replicas.
+ *
+ * On the wire a message is the sequence number, the publishing node and
+ * the kind on the first line, followed by one key per line. Sequence
+ * numbers are assigned by Redis and increase by one per message.
+ *
+ * @param sequence  cluster-wide sequence number of the message
+ * @param origin    node that published it
+ * @param kind      what the keys identify; {@link Kind#ALL} drops everything
+ * @param keys      departure runs as {@code <service day>:<departure id>}, or
+ *                  stop, line or alert ids
+ */
+public record Invalidation(long sequence, String origin, Kind kind, List<String> keys) {
+
+    public enum Kind { DEPARTURE, STOP, LINE, ALERT, ALL }
+
+    /**
+     * Local full resync after messages may have been missed.
+     */
+    public static Invalidation resync(long sequence, String origin) {
+        return new Invalidation(sequence, origin, Kind.ALL, List.of());
+    }
+
+    public boolean affects(Kind other) {
+        return kind == Kind.ALL || kind == other;
+    }
+
+    /**
+     * Message without the sequence number, which the publish script prepends.
+     */
+    public static String payload(String origin, Kind kind, Collection<String> keys) {
+        StringBuilder payload = new StringBuilder(origin.length() + 16 + keys.size() * 40);
+        payload.append(origin).append(' ').append(kind.name());
+        for (String key : keys) {
+            payload.append('\n').append(key);
+        }
+        return payload.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static Invalidation parse(String message) {
+        int lineEnd = message.indexOf('\n');
+        String header = lineEnd < 0 ? message : message.substring(0, lineEnd);
+        String[] fields = header.split(" ");
+        if (fields.length != 3) {
+            throw new IllegalArgumentException("Malformed invalidation header: " + header);
+        }
+        long sequence = Long.parseLong(fields[0]);
+        Kind kind = Kind.valueOf(fields[2]);
+        List<String> keys = new ArrayList<>();
+        while (lineEnd >= 0) {
+            int next = message.indexOf('\n', lineEnd + 1);
+            keys.add(next < 0 ? message.substring(lineEnd + 1) : message.substring(lineEnd + 1, next));
+            lineEnd = next;
+        }
+        return new Invalidation(sequence, fields[1], kind, keys);
+    }
+}
@@ -0,0 +1,60 @@
+package com.livelink.cluster;
+
+/**
+ * Tracks the last invalidation sequence number a node has seen and tells
+ * when messages were missed.
+ *
+ * A gap between consecutive messages means some were lost while the
+ * subscription was down. The counter in Redis is also compared
+ * periodically: messages up to the counter read at the previous check
+ * should have arrived by the next one, and a counter below the last seen
+ * number means Redis lost it. Either way the node resyncs fully.
+ */
+public final class InvalidationSequence {
+
+    public enum Outcome { APPLY, RESYNC, IGNORE }
+
+    private static final long UNKNOWN = -1;
+
+    private long last = UNKNOWN;
+    private long checked = UNKNOWN;
+
+    public synchronized Outcome received(long sequence) {
+        if (last == UNKNOWN || sequence == last + 1) {
+            last = sequence;
+            return Outcome.APPLY;
+        }
+        if (sequence <= last) {
+            // Already covered by a resync; a reset counter is caught by check
+            return Outcome.IGNORE;
+        }
+        last = sequence;
+        return Outcome.RESYNC;
+    }
+
+    /**
+     * Compares with the counter in Redis.
+     *
+     * @return whether messages were missed and the node must resync
+     */
+    public synchronized boolean check(long counter) {
+        boolean missed = counter < last || (checked != UNKNOWN && last < checked);
+        if (missed) {
+            last = counter;
+        }
+        checked = counter;
+        return missed;
+    }
+
+    /**
+     * Starts over from the counter, after (re)subscribing.
+     */
+    public synchronized void restart(long counter) {
+        last = counter;
+        checked = counter;
+    }
+
+    public synchronized long getLast() {
+        return last;
+    }
+}
@@ -0,0 +1,30 @@
+package com.livelink.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.metrics.TimedCborConverter;
+import com.livelink.metrics.TimedJacksonConverter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+@Configuration
+public class MetricsConfig {
+
+    // Replaces Boot's default Jackson converter
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                 DomainMetrics domainMetrics) {
+        return new TimedJacksonConverter(objectMapper, domainMetrics);
+    }
+
+    // Same Jackson settings as JSON responses, for Accept: application/cbor
+    @Bean
+    public MappingJackson2CborHttpMessageConverter mappingJackson2CborHttpMessageConverter(
+            Jackson2ObjectMapperBuilder builder, DomainMetrics domainMetrics) {
+        return new TimedCborConverter(builder.factory(new CBORFactory()).build(), domainMetrics);
+    }
+}
@@ -0,0 +1,32 @@
+package com.livelink.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livelink.notification.FileNotificationSink;
+import com.livelink.notification.InMemoryNotificationSink;
+import com.livelink.notification.NotificationSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class NotificationConfig {
+
+    // A NotificationSink bean of the application's own, e.g. a push
+    // gateway, replaces the configured one
+    @Bean
+    @ConditionalOnMissingBean(NotificationSink.class)
+    public NotificationSink notificationSink(
+            @Value("${livelink.notifications.sink:memory}") String sink,
+            @Value("${livelink.notifications.file-path:notifications.jsonl}") String filePath,
+            @Value("${livelink.notifications.memory-capacity:10000}") int memoryCapacity,
+            ObjectMapper objectMapper) {
+        return switch (sink) {
+            case "file" -> new FileNotificationSink(Path.of(filePath), objectMapper);
+            case "memory" -> new InMemoryNotificationSink(memoryCapacity);
+            default -> throw new IllegalArgumentException("Unknown livelink.notifications.sink: " + sink);
+        };
+    }
+}
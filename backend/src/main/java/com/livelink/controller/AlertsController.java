@@ -1,10 +1,13 @@
 package com.livelink.controller;
 
 import com.livelink.dto.ApiResponse;
+import com.livelink.encoding.CompactResponses;
 import com.livelink.service.AlertsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -17,9 +20,17 @@ public class AlertsController {
     @Autowired
     private AlertsService alertsService;
 
+    @Autowired
+    private CompactResponses compactResponses;
+
     @GetMapping("/alerts")
     public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getActiveAlerts(
-            @RequestParam(required = false) String pincode) {
+            @RequestParam(required = false) String pincode, NativeWebRequest request) {
+        
+        String etag = alertsService.getAlertsEtag(pincode);
+        if (etag != null && compactResponses.checkNotModified(request, etag)) {
+            return null;
+        }
         
         List<Map<String, Object>> alerts = alertsService.getActiveAlerts(pincode);
         
@@ -27,16 +38,30 @@ public class AlertsController {
             ? "Active alerts retrieved for pincode: " + pincode
             : "All active alerts retrieved";
             
-        return ResponseEntity.ok(ApiResponse.success(alerts, message));
+        return ok(etag != null
+            ? ApiResponse.success(alerts, message, alertsService.getAlertsAsOf(pincode))
+            : ApiResponse.success(alerts, message));
     }
 
     @GetMapping("/alerts/line/{lineNumber}")
     public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getAlertsByLine(
-            @PathVariable String lineNumber) {
+            @PathVariable String lineNumber, NativeWebRequest request) {
+        
+        String etag = alertsService.getAlertsEtag(null);
+        if (etag != null && compactResponses.checkNotModified(request, etag)) {
+            return null;
+        }
         
         List<Map<String, Object>> alerts = alertsService.getAlertsByLine(lineNumber);
         
-        return ResponseEntity.ok(ApiResponse.success(alerts,
-            "Alerts retrieved for line: " + lineNumber));
+        String message = "Alerts retrieved for line: " + lineNumber;
+        return ok(etag != null
+            ? ApiResponse.success(alerts, message, alertsService.getAlertsAsOf(null))
+            : ApiResponse.success(alerts, message));
+    }
+
+    // Clients must revalidate, which the ETag makes cheap
+    private static <T> ResponseEntity<T> ok(T body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
     }
 }
\ No newline at end of file
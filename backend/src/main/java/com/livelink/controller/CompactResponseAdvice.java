@@ -0,0 +1,49 @@
+package com.livelink.controller;
+
+import com.livelink.dto.ApiResponse;
+import com.livelink.encoding.CompactResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.List;
+
+/**
+ * Applies {@code ?fields=} and the compact CBOR layout to every list
+ * response, see {@link CompactResponses}.
+ */
+@ControllerAdvice
+public class CompactResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired
+    private CompactResponses compactResponses;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(body instanceof ApiResponse<?> apiResponse) || !(apiResponse.getData() instanceof List<?>)) {
+            return body;
+        }
+        response.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        List<String> fields = request instanceof ServletServerHttpRequest servletRequest
+            ? CompactResponses.fields(servletRequest.getServletRequest().getParameter("fields"))
+            : null;
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(selectedContentType)) {
+            return compactResponses.compact(apiResponse, fields);
+        }
+        return fields != null ? compactResponses.project(apiResponse, fields) : body;
+    }
+}
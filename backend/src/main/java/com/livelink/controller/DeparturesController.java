@@ -1,12 +1,28 @@
 package com.livelink.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.livelink.dto.ApiResponse;
 import com.livelink.dto.ApiDeparture;
+import com.livelink.encoding.CompactResponses;
+import com.livelink.service.BoardCacheService;
+import com.livelink.service.DepartureStreamService;
 import com.livelink.service.DeparturesService;
+import com.livelink.service.Versioned;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -17,33 +33,130 @@ public class DeparturesController {
     @Autowired
     private DeparturesService departuresService;
 
+    @Autowired
+    private BoardCacheService boardCacheService;
+
+    @Autowired
+    private CompactResponses compactResponses;
+
+    @Autowired
+    private DepartureStreamService departureStreamService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("/departures")
     public ResponseEntity<ApiResponse<List<ApiDeparture>>> getDeparturesByPincode(
-            @RequestParam String pincode) {
+            @RequestParam String pincode, NativeWebRequest request) {
         
-        List<ApiDeparture> departures = departuresService.getDeparturesByPincode(pincode);
+        Versioned<List<ApiDeparture>> board = departuresService.getBoardByPincode(pincode);
+        if (compactResponses.checkNotModified(request, board.etag())) {
+            return null;
+        }
         
-        return ResponseEntity.ok(ApiResponse.success(departures, 
-            "Departures retrieved for pincode: " + pincode));
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(ApiResponse.success(board.data(),
+            "Departures retrieved for pincode: " + pincode, board.asOf()));
     }
 
-    @GetMapping("/departures/stop/{stopId}")
-    public ResponseEntity<ApiResponse<List<ApiDeparture>>> getDeparturesByStop(
-            @PathVariable String stopId) {
+    // Served as pre-rendered JSON or compact CBOR, an ApiResponse<List<ApiDeparture>>
+    // or ApiResponse<ApiTable>; projections are rendered per request
+    @GetMapping(value = "/departures/stop/{stopId}",
+                produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<?> getDeparturesByStop(
+            @PathVariable String stopId,
+            @RequestParam(required = false) String fields,
+            NativeWebRequest request) {
         
-        List<ApiDeparture> departures = departuresService.getDeparturesByStop(stopId);
+        String message = "Departures retrieved for stop: " + stopId;
+        if (fields != null) {
+            Versioned<List<ApiDeparture>> board = departuresService.getBoardByStop(stopId);
+            if (compactResponses.checkNotModified(request, board.etag())) {
+                return null;
+            }
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+                .body(ApiResponse.success(board.data(), message, board.asOf()));
+        }
+
+        boolean cbor = compactResponses.prefersCbor(request);
+        Versioned<byte[]> board = boardCacheService.getStopBoard(stopId, message, cbor);
+        if (compactResponses.checkNotModified(request, board.etag())) {
+            return null;
+        }
         
-        return ResponseEntity.ok(ApiResponse.success(departures,
-            "Departures retrieved for stop: " + stopId));
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache())
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON)
+            .body(board.data());
     }
 
-    @PostMapping("/departures/live")
-    public ResponseEntity<ApiResponse<List<ApiDeparture>>> getLiveDepartures(
-            @RequestBody List<String> stopIds) {
+    // JSON boards are an ApiResponse<List<ApiDeparture>> written while the
+    // departures are read, never held in memory as a whole; compact and
+    // projected responses are rendered from the full board
+    @PostMapping(value = "/departures/live",
+                 produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<StreamingResponseBody> getLiveDepartures(
+            @RequestBody List<String> stopIds,
+            @RequestParam(required = false) String fields,
+            NativeWebRequest request) {
         
-        List<ApiDeparture> departures = departuresService.getLiveDepartures(stopIds);
-        
-        return ResponseEntity.ok(ApiResponse.success(departures,
-            "Live departures retrieved"));
+        boolean cbor = compactResponses.prefersCbor(request);
+        List<String> projection = CompactResponses.fields(fields);
+        StreamingResponseBody body;
+        if (cbor || projection != null) {
+            Versioned<List<ApiDeparture>> board = departuresService.getLiveBoard(stopIds);
+            ApiResponse<List<ApiDeparture>> response = ApiResponse.success(board.data(),
+                "Live departures retrieved", board.asOf());
+            body = cbor
+                ? out -> out.write(compactResponses.writeCbor(compactResponses.compact(response, projection)))
+                : out -> out.write(objectMapper.writeValueAsBytes(compactResponses.project(response, projection)));
+        } else {
+            body = out -> writeLiveBoard(stopIds, out);
+        }
+
+        return ResponseEntity.ok()
+            .varyBy(HttpHeaders.ACCEPT)
+            .contentType(cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+
+    @GetMapping(value = "/departures/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDepartures(
+            @RequestParam List<String> stopIds) {
+
+        SseEmitter emitter = departureStreamService.subscribe(stopIds);
+
+        // Keep reverse proxies from buffering the event stream
+        return ResponseEntity.ok()
+            .header("X-Accel-Buffering", "no")
+            .body(emitter);
+    }
+
+    private void writeLiveBoard(List<String> stopIds, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            // The servlet container closes the response stream itself
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("data");
+            Instant asOf;
+            try {
+                asOf = departuresService.streamLiveBoard(stopIds, departure -> {
+                    try {
+                        generator.writeObject(departure);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            // ApiResponse's remaining fields; the timestamp is only known
+            // once every departure was read
+            generator.writeBooleanField("success", true);
+            generator.writeStringField("message", "Live departures retrieved");
+            generator.writeStringField("timestamp", asOf.toString());
+            generator.writeEndObject();
+        }
     }
-}
\ No newline at end of file
+}
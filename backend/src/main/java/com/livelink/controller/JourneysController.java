@@ -0,0 +1,59 @@
+package com.livelink.controller;
+
+import com.livelink.dto.ApiJourney;
+import com.livelink.dto.ApiResponse;
+import com.livelink.service.JourneyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1")
+@CrossOrigin(origins = {"http://localhost:3000", "http://frontend:3000"})
+public class JourneysController {
+
+    @Autowired
+    private JourneyService journeyService;
+
+    @GetMapping("/journeys")
+    public ResponseEntity<ApiResponse<List<ApiJourney>>> getJourneys(
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(required = false) String departAt,
+            @RequestParam(required = false) Integer maxTransfers) {
+
+        if (!journeyService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(
+                ApiResponse.error("Journey planning is disabled"));
+        }
+        Instant departure = Instant.now();
+        if (departAt != null) {
+            try {
+                departure = Instant.parse(departAt);
+            } catch (DateTimeParseException e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid departAt: " + departAt));
+            }
+        }
+        if (maxTransfers != null && (maxTransfers < 0 || maxTransfers > journeyService.getMaxTransfers())) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(
+                "maxTransfers must be between 0 and " + journeyService.getMaxTransfers()));
+        }
+        for (String stopId : List.of(from, to)) {
+            if (!journeyService.isKnownStop(stopId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                    ApiResponse.error("Unknown stop: " + stopId));
+            }
+        }
+
+        List<ApiJourney> journeys = journeyService.plan(from, to, departure,
+            maxTransfers != null ? maxTransfers : journeyService.getMaxTransfers());
+
+        return ResponseEntity.ok(ApiResponse.success(journeys,
+            "Journeys from " + from + " to " + to + " departing " + departure));
+    }
+}
@@ -1,13 +1,18 @@
 package com.livelink.controller;
 
 import com.livelink.dto.ApiResponse;
+import com.livelink.encoding.CompactResponses;
 import com.livelink.service.StopsService;
+import com.livelink.service.Versioned;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1")
@@ -17,23 +22,75 @@ public class StopsController {
     @Autowired
     private StopsService stopsService;
 
+    @Autowired
+    private CompactResponses compactResponses;
+
     @GetMapping("/stops")
     public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getStopsByPincode(
-            @RequestParam String pincode) {
+            @RequestParam String pincode, NativeWebRequest request) {
+        
+        String etag = stopsService.getStopsEtag();
+        if (etag != null && compactResponses.checkNotModified(request, etag)) {
+            return null;
+        }
         
         List<Map<String, Object>> stops = stopsService.getStopsByPincode(pincode);
         
-        return ResponseEntity.ok(ApiResponse.success(stops,
-            "Stops retrieved for pincode: " + pincode));
+        return ok(ApiResponse.success(stops,
+            "Stops retrieved for pincode: " + pincode, stopsService.getStopsAsOf()));
     }
 
     @GetMapping("/stops/search")
     public ResponseEntity<ApiResponse<List<Map<String, Object>>>> searchStops(
-            @RequestParam String q) {
+            @RequestParam String q, NativeWebRequest request) {
+        
+        String etag = stopsService.getStopsEtag();
+        if (etag != null && compactResponses.checkNotModified(request, etag)) {
+            return null;
+        }
         
         List<Map<String, Object>> stops = stopsService.searchStops(q);
         
-        return ResponseEntity.ok(ApiResponse.success(stops,
-            "Stop search results for query: " + q));
+        return ok(ApiResponse.success(stops,
+            "Stop search results for query: " + q, stopsService.getStopsAsOf()));
+    }
+
+    @GetMapping("/stops/nearby")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getNearbyStops(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) Integer radius,
+            @RequestParam(required = false) String userId,
+            @RequestParam(defaultValue = "false") boolean includeDepartures,
+            NativeWebRequest request) {
+
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("Invalid coordinates: " + lat + "," + lon));
+        }
+        if (radius != null && (radius <= 0 || radius > StopsService.MAX_RADIUS_METERS)) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(
+                "radius must be between 1 and " + StopsService.MAX_RADIUS_METERS + " meters"));
+        }
+        if (userId != null) {
+            try {
+                UUID.fromString(userId);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("Invalid user id: " + userId));
+            }
+        }
+
+        Versioned<List<Map<String, Object>>> stops =
+            stopsService.getNearbyStops(lat, lon, radius, userId, includeDepartures);
+        if (stops.etag() != null && compactResponses.checkNotModified(request, stops.etag())) {
+            return null;
+        }
+
+        return ok(ApiResponse.success(stops.data(),
+            "Stops near " + lat + "," + lon, stops.asOf()));
+    }
+
+    // Clients must revalidate, which the ETag makes cheap
+    private static <T> ResponseEntity<T> ok(T body) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
     }
 }
\ No newline at end of file
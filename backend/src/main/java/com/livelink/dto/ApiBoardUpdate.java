@@ -0,0 +1,26 @@
+package com.livelink.dto;
+
+import java.util.List;
+
+public class ApiBoardUpdate {
+    private String stopId;
+    private List<ApiDeparture> updated;
+    private List<String> removed;
+
+    // Constructors
+    public ApiBoardUpdate() {}
+
+    public ApiBoardUpdate(String stopId, List<ApiDeparture> updated, List<String> removed) {
+        this.stopId = stopId;
+        this.updated = updated;
+        this.removed = removed;
+    }
+
+    // Getters and setters
+    public String getStopId() { return stopId; }
+    public void setStopId(String stopId) { this.stopId = stopId; }
+    public List<ApiDeparture> getUpdated() { return updated; }
+    public void setUpdated(List<ApiDeparture> updated) { this.updated = updated; }
+    public List<String> getRemoved() { return removed; }
+    public void setRemoved(List<String> removed) { this.removed = removed; }
+}
@@ -1,6 +1,7 @@
 package com.livelink.dto;
 
 import java.util.List;
+import java.util.Objects;
 
 public class ApiDeparture {
     private String id;
@@ -44,4 +45,29 @@ public class ApiDeparture {
     public void setStopId(String stopId) { this.stopId = stopId; }
     public String getStopName() { return stopName; }
     public void setStopName(String stopName) { this.stopName = stopName; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ApiDeparture)) return false;
+        ApiDeparture that = (ApiDeparture) o;
+        return Objects.equals(id, that.id)
+            && Objects.equals(transportType, that.transportType)
+            && Objects.equals(lineNumber, that.lineNumber)
+            && Objects.equals(destination, that.destination)
+            && Objects.equals(scheduledDeparture, that.scheduledDeparture)
+            && Objects.equals(actualDeparture, that.actualDeparture)
+            && Objects.equals(platform, that.platform)
+            && Objects.equals(status, that.status)
+            && Objects.equals(delayMinutes, that.delayMinutes)
+            && Objects.equals(nextDepartures, that.nextDepartures)
+            && Objects.equals(stopId, that.stopId)
+            && Objects.equals(stopName, that.stopName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, transportType, lineNumber, destination, scheduledDeparture, actualDeparture,
+            platform, status, delayMinutes, nextDepartures, stopId, stopName);
+    }
 }
\ No newline at end of file
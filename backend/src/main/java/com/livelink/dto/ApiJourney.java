@@ -0,0 +1,26 @@
+package com.livelink.dto;
+
+import java.util.List;
+
+public class ApiJourney {
+    private String departure;
+    private String arrival;
+    private Integer durationMinutes;
+    private Integer transfers;
+    private List<ApiJourneyLeg> legs;
+
+    // Constructors
+    public ApiJourney() {}
+
+    // Getters and setters
+    public String getDeparture() { return departure; }
+    public void setDeparture(String departure) { this.departure = departure; }
+    public String getArrival() { return arrival; }
+    public void setArrival(String arrival) { this.arrival = arrival; }
+    public Integer getDurationMinutes() { return durationMinutes; }
+    public void setDurationMinutes(Integer durationMinutes) { this.durationMinutes = durationMinutes; }
+    public Integer getTransfers() { return transfers; }
+    public void setTransfers(Integer transfers) { this.transfers = transfers; }
+    public List<ApiJourneyLeg> getLegs() { return legs; }
+    public void setLegs(List<ApiJourneyLeg> legs) { this.legs = legs; }
+}
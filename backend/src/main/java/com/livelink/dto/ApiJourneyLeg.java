@@ -0,0 +1,51 @@
+package com.livelink.dto;
+
+public class ApiJourneyLeg {
+    private String departureId;
+    private String lineId;
+    private String lineNumber;
+    private String transportType;
+    private String destination;
+    private String platform;
+    private String fromStopId;
+    private String fromStopName;
+    private String toStopId;
+    private String toStopName;
+    private String scheduledDeparture;
+    private String scheduledArrival;
+    private Integer departureDelayMinutes;
+    private Integer arrivalDelayMinutes;
+
+    // Constructors
+    public ApiJourneyLeg() {}
+
+    // Getters and setters
+    public String getDepartureId() { return departureId; }
+    public void setDepartureId(String departureId) { this.departureId = departureId; }
+    public String getLineId() { return lineId; }
+    public void setLineId(String lineId) { this.lineId = lineId; }
+    public String getLineNumber() { return lineNumber; }
+    public void setLineNumber(String lineNumber) { this.lineNumber = lineNumber; }
+    public String getTransportType() { return transportType; }
+    public void setTransportType(String transportType) { this.transportType = transportType; }
+    public String getDestination() { return destination; }
+    public void setDestination(String destination) { this.destination = destination; }
+    public String getPlatform() { return platform; }
+    public void setPlatform(String platform) { this.platform = platform; }
+    public String getFromStopId() { return fromStopId; }
+    public void setFromStopId(String fromStopId) { this.fromStopId = fromStopId; }
+    public String getFromStopName() { return fromStopName; }
+    public void setFromStopName(String fromStopName) { this.fromStopName = fromStopName; }
+    public String getToStopId() { return toStopId; }
+    public void setToStopId(String toStopId) { this.toStopId = toStopId; }
+    public String getToStopName() { return toStopName; }
+    public void setToStopName(String toStopName) { this.toStopName = toStopName; }
+    public String getScheduledDeparture() { return scheduledDeparture; }
+    public void setScheduledDeparture(String scheduledDeparture) { this.scheduledDeparture = scheduledDeparture; }
+    public String getScheduledArrival() { return scheduledArrival; }
+    public void setScheduledArrival(String scheduledArrival) { this.scheduledArrival = scheduledArrival; }
+    public Integer getDepartureDelayMinutes() { return departureDelayMinutes; }
+    public void setDepartureDelayMinutes(Integer departureDelayMinutes) { this.departureDelayMinutes = departureDelayMinutes; }
+    public Integer getArrivalDelayMinutes() { return arrivalDelayMinutes; }
+    public void setArrivalDelayMinutes(Integer arrivalDelayMinutes) { this.arrivalDelayMinutes = arrivalDelayMinutes; }
+}
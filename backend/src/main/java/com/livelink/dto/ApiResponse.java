@@ -28,6 +28,16 @@ public class ApiResponse<T> {
         return response;
     }
 
+    /**
+     * Successful response stamped with the time its data was current rather
+     * than the time it was built, so unchanged data renders identically.
+     */
+    public static <T> ApiResponse<T> success(T data, String message, Instant asOf) {
+        ApiResponse<T> response = success(data, message);
+        response.setTimestamp(asOf.toString());
+        return response;
+    }
+
     public static <T> ApiResponse<T> error(String error) {
         ApiResponse<T> response = new ApiResponse<>();
         response.setSuccess(false);
@@ -0,0 +1,36 @@
+package com.livelink.dto;
+
+import java.util.List;
+
+/**
+ * Compact layout of a list response: one array of values per item, in
+ * the order of {@code fields}, instead of one object per item. Strings are
+ * stored once in {@code strings}; values of the {@code encodedFields} are
+ * indexes into it, or lists of indexes for list-valued fields.
+ */
+public class ApiTable {
+    private List<String> fields;
+    private List<String> encodedFields;
+    private List<String> strings;
+    private List<List<Object>> rows;
+
+    // Constructors
+    public ApiTable() {}
+
+    public ApiTable(List<String> fields, List<String> encodedFields, List<String> strings, List<List<Object>> rows) {
+        this.fields = fields;
+        this.encodedFields = encodedFields;
+        this.strings = strings;
+        this.rows = rows;
+    }
+
+    // Getters and setters
+    public List<String> getFields() { return fields; }
+    public void setFields(List<String> fields) { this.fields = fields; }
+    public List<String> getEncodedFields() { return encodedFields; }
+    public void setEncodedFields(List<String> encodedFields) { this.encodedFields = encodedFields; }
+    public List<String> getStrings() { return strings; }
+    public void setStrings(List<String> strings) { this.strings = strings; }
+    public List<List<Object>> getRows() { return rows; }
+    public void setRows(List<List<Object>> rows) { this.rows = rows; }
+}
@@ -0,0 +1,298 @@
+package com.livelink.encoding;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.dto.ApiResponse;
+import com.livelink.dto.ApiTable;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Smaller renderings of list responses for clients on slow connections.
+ *
+ * A {@code fields} parameter projects every item to the named fields;
+ * names an item does not have are ignored. Clients accepting
+ * {@code application/cbor} get the data as an {@link ApiTable}, which
+ * names each field once and stores each distinct string once, and no
+ * message. Other responses are left as they are.
+ */
+@Component
+public class CompactResponses {
+
+    // ApiDeparture properties in serialization order, read without a tree
+    private static final List<String> DEPARTURE_FIELDS = List.of(
+        "id", "transportType", "lineNumber", "destination", "scheduledDeparture", "actualDeparture",
+        "platform", "status", "delayMinutes", "nextDepartures", "stopId", "stopName");
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private ContentNegotiationManager contentNegotiationManager;
+
+    /**
+     * Requested field names, or null for all fields.
+     */
+    public static List<String> fields(String parameter) {
+        if (parameter == null || parameter.isBlank()) {
+            return null;
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for (String field : parameter.split(",")) {
+            if (!field.isBlank()) {
+                fields.add(field.strip());
+            }
+        }
+        return new ArrayList<>(fields);
+    }
+
+    /**
+     * Checks a conditional request against the entity tag of the
+     * representation it negotiates, so JSON and CBOR renderings of the same
+     * data never validate each other. A 304 varies by Accept like the full
+     * response.
+     */
+    public boolean checkNotModified(NativeWebRequest request, String etag) {
+        if (!request.checkNotModified(representationEtag(etag, prefersCbor(request)))) {
+            return false;
+        }
+        HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return true;
+    }
+
+    /**
+     * Entity tag of one rendering, e.g. {@code W/"d-12-28403921-cbor"}.
+     */
+    public static String representationEtag(String etag, boolean cbor) {
+        return etag.substring(0, etag.length() - 1) + (cbor ? "-cbor\"" : "-json\"");
+    }
+
+    /**
+     * Whether the client ranks CBOR above JSON; JSON wins ties and
+     * wildcards, as for every other endpoint.
+     */
+    public boolean prefersCbor(NativeWebRequest request) {
+        try {
+            for (MediaType accepted : contentNegotiationManager.resolveMediaTypes(request)) {
+                if (accepted.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return false;
+                }
+                if (accepted.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                    return true;
+                }
+            }
+        } catch (HttpMediaTypeNotAcceptableException e) {
+            return false;
+        }
+        return false;
+    }
+
+    public ApiResponse<JsonNode> project(ApiResponse<?> response, List<String> fields) {
+        ArrayNode items = objectMapper.valueToTree(response.getData());
+        for (JsonNode item : items) {
+            if (item instanceof ObjectNode object) {
+                object.retain(fields);
+            }
+        }
+        return withData(response, items, response.getMessage());
+    }
+
+    /**
+     * The response with its data as a table of the given fields, or all
+     * fields when null; unchanged when the items are not objects.
+     */
+    public ApiResponse<?> compact(ApiResponse<?> response, List<String> fields) {
+        List<?> items = (List<?>) response.getData();
+        if (items.stream().allMatch(ApiDeparture.class::isInstance)) {
+            return withData(response, table(items, fields != null ? fields : DEPARTURE_FIELDS,
+                (item, field) -> departureField((ApiDeparture) item, field)), null);
+        }
+        if (items.stream().allMatch(Map.class::isInstance)) {
+            return withData(response, table(items, fields != null ? fields : keysOf(items),
+                (item, field) -> ((Map<?, ?>) item).get(field)), null);
+        }
+        ArrayNode nodes = objectMapper.valueToTree(items);
+        List<JsonNode> objects = new ArrayList<>(nodes.size());
+        for (JsonNode node : nodes) {
+            if (!node.isObject()) {
+                return response;
+            }
+            objects.add(node);
+        }
+        return withData(response, table(objects, fields != null ? fields : fieldsOf(objects),
+            (item, field) -> plain(((JsonNode) item).get(field))), null);
+    }
+
+    public byte[] writeCbor(Object value) {
+        try {
+            return cborConverter.getObjectMapper().writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ApiTable table(List<?> items, List<String> fields, BiFunction<Object, String, Object> field) {
+        Object[][] values = new Object[items.size()][fields.size()];
+        // Fields holding only strings, or lists of them, are dictionary encoded
+        boolean[] encoded = new boolean[fields.size()];
+        Arrays.fill(encoded, true);
+        for (int row = 0; row < values.length; row++) {
+            Object item = items.get(row);
+            for (int i = 0; i < encoded.length; i++) {
+                Object value = field.apply(item, fields.get(i));
+                values[row][i] = value;
+                if (encoded[i] && value != null && !isText(value)) {
+                    encoded[i] = false;
+                }
+            }
+        }
+
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<List<Object>> rows = new ArrayList<>(values.length);
+        for (Object[] row : values) {
+            for (int i = 0; i < encoded.length; i++) {
+                if (!encoded[i] || row[i] == null) {
+                    continue;
+                }
+                if (row[i] instanceof List<?> list) {
+                    List<Integer> listIndexes = new ArrayList<>(list.size());
+                    for (Object element : list) {
+                        listIndexes.add(index((String) element, indexes, strings));
+                    }
+                    row[i] = listIndexes;
+                } else {
+                    row[i] = index((String) row[i], indexes, strings);
+                }
+            }
+            rows.add(Arrays.asList(row));
+        }
+
+        List<String> encodedFields = new ArrayList<>();
+        for (int i = 0; i < encoded.length; i++) {
+            if (encoded[i]) {
+                encodedFields.add(fields.get(i));
+            }
+        }
+        return new ApiTable(fields, encodedFields, strings, rows);
+    }
+
+    private static Object departureField(ApiDeparture departure, String field) {
+        return switch (field) {
+            case "id" -> departure.getId();
+            case "transportType" -> departure.getTransportType();
+            case "lineNumber" -> departure.getLineNumber();
+            case "destination" -> departure.getDestination();
+            case "scheduledDeparture" -> departure.getScheduledDeparture();
+            case "actualDeparture" -> departure.getActualDeparture();
+            case "platform" -> departure.getPlatform();
+            case "status" -> departure.getStatus();
+            case "delayMinutes" -> departure.getDelayMinutes();
+            case "nextDepartures" -> departure.getNextDepartures();
+            case "stopId" -> departure.getStopId();
+            case "stopName" -> departure.getStopName();
+            default -> null;
+        };
+    }
+
+    private static List<String> keysOf(List<?> items) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (Object item : items) {
+            for (Object key : ((Map<?, ?>) item).keySet()) {
+                keys.add(String.valueOf(key));
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    private static List<String> fieldsOf(List<JsonNode> items) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (JsonNode item : items) {
+            Iterator<String> names = item.fieldNames();
+            while (names.hasNext()) {
+                fields.add(names.next());
+            }
+        }
+        return new ArrayList<>(fields);
+    }
+
+    private static boolean isText(Object value) {
+        if (value instanceof String) {
+            return true;
+        }
+        if (!(value instanceof List<?> list)) {
+            return false;
+        }
+        for (Object element : list) {
+            if (!(element instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Strings and lists of strings unwrapped so they can be encoded
+    private static Object plain(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (value.isTextual()) {
+            return value.textValue();
+        }
+        if (value.isArray() && !value.isEmpty()) {
+            List<Object> elements = new ArrayList<>(value.size());
+            for (JsonNode element : value) {
+                if (!element.isTextual()) {
+                    return value;
+                }
+                elements.add(element.textValue());
+            }
+            return elements;
+        }
+        return value;
+    }
+
+    private static int index(String value, Map<String, Integer> indexes, List<String> strings) {
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(value, index);
+            strings.add(value);
+        }
+        return index;
+    }
+
+    private static <T> ApiResponse<T> withData(ApiResponse<?> response, T data, String message) {
+        ApiResponse<T> result = ApiResponse.success(data, message);
+        result.setTimestamp(response.getTimestamp());
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package com.livelink.gtfs;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes rows in the PostgreSQL {@code COPY ... FROM STDIN} text format:
+ * tab-separated columns, {@code \N} for null, backslash escapes for tabs,
+ * line breaks and backslashes in values.
+ */
+public final class CopyWriter {
+
+    private final Writer writer;
+    private boolean rowStarted;
+    private long rows;
+
+    public CopyWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public CopyWriter text(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("\\N");
+            return this;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> writer.write("\\\\");
+                case '\t' -> writer.write("\\t");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                default -> writer.write(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * A text column, null when the value is empty.
+     */
+    public CopyWriter optional(String value) throws IOException {
+        return text(value == null || value.isEmpty() ? null : value);
+    }
+
+    public CopyWriter number(long value) throws IOException {
+        separate();
+        writer.write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * An integer column, null for negative values.
+     */
+    public CopyWriter optionalNumber(long value) throws IOException {
+        return value < 0 ? text(null) : number(value);
+    }
+
+    public CopyWriter bool(boolean value) throws IOException {
+        separate();
+        writer.write(value ? 't' : 'f');
+        return this;
+    }
+
+    /**
+     * An {@code integer[]} column holding the ISO weekdays of a mask.
+     */
+    public CopyWriter weekdays(int mask) throws IOException {
+        separate();
+        writer.write('{');
+        boolean first = true;
+        for (int day = 1; day <= ServiceCalendar.DAYS; day++) {
+            if ((mask & (1 << (day - 1))) != 0) {
+                if (!first) {
+                    writer.write(',');
+                }
+                writer.write((char) ('0' + day));
+                first = false;
+            }
+        }
+        writer.write('}');
+        return this;
+    }
+
+    public void endRow() throws IOException {
+        writer.write('\n');
+        rowStarted = false;
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    private void separate() throws IOException {
+        if (rowStarted) {
+            writer.write('\t');
+        }
+        rowStarted = true;
+    }
+}
@@ -0,0 +1,144 @@
+package com.livelink.gtfs;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming reader for GTFS text files (RFC 4180 CSV with a header row).
+ *
+ * Records are read one at a time into a reused field array, so a
+ * {@code stop_times.txt} of any size is parsed in constant memory. Quoted
+ * fields may contain commas, doubled quotes and line breaks; a leading
+ * byte order mark is skipped.
+ */
+public final class GtfsCsv implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder(64);
+    private final Map<String, Integer> columns = new HashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private String[] record;
+    private long recordNumber;
+
+    public GtfsCsv(Reader reader) throws IOException {
+        this.reader = reader;
+        if (fill() && buffer[0] == '\uFEFF') {
+            position = 1;
+        }
+        if (!readRecord()) {
+            throw new IOException("Missing header row");
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            columns.put(fields.get(i).strip(), i);
+        }
+        record = new String[fields.size()];
+    }
+
+    /**
+     * Index of a column, or -1 when the file does not have it.
+     */
+    public int column(String name) {
+        return columns.getOrDefault(name, -1);
+    }
+
+    /**
+     * Index of a column the file must have.
+     *
+     * @throws IOException if the column is missing
+     */
+    public int requiredColumn(String name) throws IOException {
+        int index = column(name);
+        if (index < 0) {
+            throw new IOException("Missing column " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Advances to the next record, skipping blank lines.
+     */
+    public boolean next() throws IOException {
+        while (readRecord()) {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                continue;
+            }
+            recordNumber++;
+            for (int i = 0; i < record.length; i++) {
+                record[i] = i < fields.size() ? fields.get(i) : "";
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Field of the current record; empty when the column is missing or
+     * the record is short.
+     */
+    public String get(int column) {
+        return column >= 0 ? record[column] : "";
+    }
+
+    /**
+     * 1-based number of the current record, not counting the header.
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        if (position >= limit && !fill()) {
+            return false;
+        }
+        field.setLength(0);
+        boolean quoted = false;
+        while (position < limit || fill()) {
+            char c = buffer[position++];
+            if (quoted) {
+                if (c == '"') {
+                    if ((position < limit || fill()) && buffer[position] == '"') {
+                        field.append('"');
+                        position++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
@@ -0,0 +1,118 @@
+package com.livelink.gtfs;
+
+import java.util.Locale;
+
+/**
+ * Conversions from GTFS field values to the columns of the timetable
+ * tables.
+ */
+public final class GtfsValues {
+
+    public static final int BUS = 1;
+    public static final int TRAIN = 2;
+    public static final int TRAM = 4;
+
+    private GtfsValues() {}
+
+    /**
+     * Seconds since noon minus 12h of the service day for {@code H:MM:SS}
+     * or {@code HH:MM:SS}, which exceeds a day for trips past midnight;
+     * -1 for an empty field.
+     *
+     * @throws IllegalArgumentException if the time is malformed
+     */
+    public static int seconds(String time) {
+        String value = time.strip();
+        if (value.isEmpty()) {
+            return -1;
+        }
+        int firstColon = value.indexOf(':');
+        int secondColon = value.indexOf(':', firstColon + 1);
+        if (firstColon < 1 || secondColon != firstColon + 3 || value.length() != secondColon + 3) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        try {
+            int hours = Integer.parseInt(value, 0, firstColon, 10);
+            int minutes = Integer.parseInt(value, firstColon + 1, secondColon, 10);
+            int seconds = Integer.parseInt(value, secondColon + 1, value.length(), 10);
+            if (hours < 0 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59) {
+                throw new IllegalArgumentException("Invalid time: " + time);
+            }
+            return hours * 3600 + minutes * 60 + seconds;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+    }
+
+    /**
+     * {@code HH:MM:SS} of a second of the day, for a {@code time} column.
+     */
+    public static String clockTime(int secondOfDay) {
+        int hours = secondOfDay / 3600;
+        int minutes = secondOfDay / 60 % 60;
+        int seconds = secondOfDay % 60;
+        char[] text = {
+            (char) ('0' + hours / 10), (char) ('0' + hours % 10), ':',
+            (char) ('0' + minutes / 10), (char) ('0' + minutes % 10), ':',
+            (char) ('0' + seconds / 10), (char) ('0' + seconds % 10)
+        };
+        return new String(text);
+    }
+
+    /**
+     * {@link #BUS}, {@link #TRAIN} or {@link #TRAM} for a basic or
+     * extended GTFS {@code route_type}. Modes the schema has no type for
+     * (ferries, cable cars, taxis) count as buses.
+     */
+    public static int transportType(int routeType) {
+        if (routeType == 0 || routeType == 5 || routeType == 7 || routeType >= 900 && routeType < 1000
+            || routeType == 1400) {
+            return TRAM;
+        }
+        if (routeType == 1 || routeType == 2 || routeType == 12 || routeType >= 100 && routeType < 200
+            || routeType >= 300 && routeType < 500) {
+            return TRAIN;
+        }
+        return BUS;
+    }
+
+    /**
+     * {@code transport_type} of a single type, {@code stop_type} of a
+     * combination.
+     */
+    public static String typeName(int types) {
+        return switch (types) {
+            case TRAIN -> "train";
+            case TRAM -> "tram";
+            case BUS -> "bus";
+            default -> "mixed";
+        };
+    }
+
+    /**
+     * {@code #RRGGBB} for a GTFS {@code route_color}, or {@code null}.
+     */
+    public static String color(String routeColor) {
+        String value = routeColor.strip();
+        if (value.length() != 6) {
+            return null;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return "#" + value.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The value cut to a column width, or {@code null} when empty.
+     */
+    public static String column(String value, int width) {
+        String stripped = value.strip();
+        if (stripped.isEmpty()) {
+            return null;
+        }
+        return stripped.length() > width ? stripped.substring(0, width) : stripped;
+    }
+}
@@ -0,0 +1,127 @@
+package com.livelink.gtfs;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weekdays on which each GTFS service runs during the week starting at
+ * the import date, folded from {@code calendar.txt} and
+ * {@code calendar_dates.txt} into the {@code days_of_week} mask used by
+ * {@code scheduled_departures} (Monday = bit 0).
+ *
+ * Dated services cannot be expressed as weekdays in general; looking at a
+ * single week keeps holiday and replacement calendars from adding to the
+ * regular ones, and the nightly import moves the week along.
+ */
+public final class ServiceCalendar {
+
+    public static final int DAYS = 7;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final String[] WEEKDAY_COLUMNS = {
+        "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    };
+
+    private final LocalDate firstDate;
+    // Per service: bit i set when it runs on firstDate + i
+    private final Map<String, Integer> datesByService = new HashMap<>();
+
+    public ServiceCalendar(LocalDate firstDate) {
+        this.firstDate = firstDate;
+    }
+
+    public void readCalendar(GtfsCsv csv) throws IOException {
+        int serviceColumn = csv.requiredColumn("service_id");
+        int startColumn = csv.requiredColumn("start_date");
+        int endColumn = csv.requiredColumn("end_date");
+        int[] weekdayColumns = new int[WEEKDAY_COLUMNS.length];
+        for (int i = 0; i < weekdayColumns.length; i++) {
+            weekdayColumns[i] = csv.requiredColumn(WEEKDAY_COLUMNS[i]);
+        }
+        while (csv.next()) {
+            LocalDate start = date(csv, startColumn);
+            LocalDate end = date(csv, endColumn);
+            int dates = 0;
+            for (int i = 0; i < DAYS; i++) {
+                LocalDate date = firstDate.plusDays(i);
+                int weekday = date.getDayOfWeek().getValue() - 1;
+                if (!date.isBefore(start) && !date.isAfter(end) && "1".equals(csv.get(weekdayColumns[weekday]).strip())) {
+                    dates |= 1 << i;
+                }
+            }
+            datesByService.merge(csv.get(serviceColumn), dates, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * Applies added (type 1) and removed (type 2) dates; must follow
+     * {@link #readCalendar} when both files exist.
+     */
+    public void readCalendarDates(GtfsCsv csv) throws IOException {
+        int serviceColumn = csv.requiredColumn("service_id");
+        int dateColumn = csv.requiredColumn("date");
+        int typeColumn = csv.requiredColumn("exception_type");
+        while (csv.next()) {
+            long day = firstDate.until(date(csv, dateColumn), ChronoUnit.DAYS);
+            if (day < 0 || day >= DAYS) {
+                continue;
+            }
+            int bit = 1 << day;
+            String type = csv.get(typeColumn).strip();
+            if ("1".equals(type)) {
+                datesByService.merge(csv.get(serviceColumn), bit, (a, b) -> a | b);
+            } else if ("2".equals(type)) {
+                datesByService.computeIfPresent(csv.get(serviceColumn), (service, dates) -> dates & ~bit);
+            }
+        }
+    }
+
+    /**
+     * Weekday mask of a service; 0 when it does not run during the week.
+     */
+    public int weekdays(String serviceId) {
+        int dates = datesByService.getOrDefault(serviceId, 0);
+        int mask = 0;
+        for (int i = 0; i < DAYS; i++) {
+            if ((dates & (1 << i)) != 0) {
+                mask |= 1 << (firstDate.plusDays(i).getDayOfWeek().getValue() - 1);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Moves a weekday mask by {@code days}, e.g. for stop times past
+     * midnight of the day their trip started.
+     */
+    public static int shift(int mask, int days) {
+        int by = Math.floorMod(days, DAYS);
+        return ((mask << by) | (mask >>> (DAYS - by))) & 0x7f;
+    }
+
+    /**
+     * Service days between the one a trip started on and the one a stop
+     * time of it belongs to, for service days starting {@code dayStart}
+     * seconds after midnight. Times past midnight stay on the day the trip
+     * started as long as they are before {@code dayStart}.
+     */
+    public static int dayOffset(int seconds, int dayStart) {
+        int secondOfDay = seconds % SECONDS_PER_DAY;
+        return seconds / SECONDS_PER_DAY - (secondOfDay < dayStart ? 1 : 0);
+    }
+
+    private static LocalDate date(GtfsCsv csv, int column) throws IOException {
+        String value = csv.get(column).strip();
+        try {
+            return LocalDate.parse(value, DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid date '" + value + "' in record " + csv.getRecordNumber());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.livelink.live;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded buffer of pending live updates holding at most one state per
+ * departure: a newer report replaces the pending one, an older report is
+ * dropped.
+ *
+ * Producers block in {@link #offer} while {@code capacity} departures are
+ * pending, which pushes back on the feed when the writer falls behind.
+ * The writer {@link #take}s batches once the oldest pending update has
+ * waited for the coalescing window or a full batch is ready.
+ */
+public final class CoalescingBuffer {
+
+    public enum Outcome { ADDED, COALESCED, STALE }
+
+    private final int capacity;
+    private final int batchSize;
+    private final long windowNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final LinkedHashMap<String, LiveState> pending = new LinkedHashMap<>();
+    private long oldestNanos;
+    private boolean closed;
+
+    public CoalescingBuffer(int capacity, int batchSize, long windowMillis) {
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Adds an update, waiting while the buffer is full unless the update
+     * replaces a pending one.
+     *
+     * @throws IllegalStateException if the buffer is closed
+     */
+    public Outcome offer(LiveState state) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!closed && pending.size() >= capacity && !pending.containsKey(state.departureId())) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new IllegalStateException("Buffer is closed");
+            }
+            LiveState current = pending.get(state.departureId());
+            if (current != null) {
+                if (current.updatedAt().isAfter(state.updatedAt())) {
+                    return Outcome.STALE;
+                }
+                pending.put(state.departureId(), state);
+                return Outcome.COALESCED;
+            }
+            if (pending.isEmpty()) {
+                oldestNanos = System.nanoTime();
+            }
+            pending.put(state.departureId(), state);
+            if (pending.size() == 1 || pending.size() == batchSize) {
+                notEmpty.signal();
+            }
+            return Outcome.ADDED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to a batch of updates, oldest first, once the oldest has
+     * waited for the window or a full batch is pending. After {@link #close}
+     * the remaining updates are returned without waiting, and an empty list
+     * means the buffer is drained.
+     */
+    public List<LiveState> take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (!closed && pending.isEmpty()) {
+                notEmpty.await();
+            }
+            while (!closed && pending.size() < batchSize) {
+                long remaining = windowNanos - (System.nanoTime() - oldestNanos);
+                if (remaining <= 0) {
+                    break;
+                }
+                notEmpty.awaitNanos(remaining);
+            }
+            List<LiveState> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            Iterator<LiveState> oldest = pending.values().iterator();
+            while (oldest.hasNext() && batch.size() < batchSize) {
+                batch.add(oldest.next());
+                oldest.remove();
+            }
+            // The oldest-arrival time is kept for updates left behind, so a
+            // backlog drains batch after batch without waiting for new windows
+            notFull.signalAll();
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting updates and wakes the writer to drain the rest.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.livelink.live;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Parser for the live feed line format:
+ *
+ * <pre>
+ * departureId,status,delayMinutes,actualDeparture,reportedAt
+ * </pre>
+ *
+ * {@code departureId} is a {@code scheduled_departures.id}, the times are
+ * ISO-8601 instants and may be empty; a missing {@code reportedAt} means
+ * the time the line was read. Blank lines and lines starting with
+ * {@code #} carry no update.
+ */
+public final class FeedLines {
+
+    private FeedLines() {
+    }
+
+    /**
+     * The update on a line, or {@code null} for blank and comment lines.
+     *
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public static LiveState parse(String line, Instant now) {
+        String trimmed = line.strip();
+        if (trimmed.isEmpty() || trimmed.charAt(0) == '#') {
+            return null;
+        }
+        String[] fields = trimmed.split(",", -1);
+        if (fields.length < 3 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected 3 to 5 fields: " + line);
+        }
+
+        String departureId = fields[0].strip();
+        try {
+            UUID.fromString(departureId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid departure id: " + departureId);
+        }
+        String status = fields[1].strip();
+        if (!LiveState.isValidStatus(status)) {
+            throw new IllegalArgumentException("Invalid status: " + status);
+        }
+        int delayMinutes;
+        try {
+            delayMinutes = fields[2].isBlank() ? 0 : Integer.parseInt(fields[2].strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid delay: " + fields[2]);
+        }
+        if (delayMinutes < 0) {
+            throw new IllegalArgumentException("Negative delay: " + delayMinutes);
+        }
+        Instant actualDeparture = fields.length > 3 ? instant(fields[3], null) : null;
+        Instant reportedAt = fields.length > 4 ? instant(fields[4], now) : now;
+        return new LiveState(departureId, status, delayMinutes, actualDeparture, reportedAt);
+    }
+
+    private static Instant instant(String field, Instant fallback) {
+        if (field.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Instant.parse(field.strip());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + field);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.livelink.live;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * One run of a scheduled departure: the departure and the service day its
+ * live reports are filed under, as {@code live_departures.service_day}.
+ *
+ * @param serviceDay   calendar day of the run in {@code livelink.timezone}
+ * @param departureId  {@code scheduled_departures.id}
+ */
+public record LiveKey(LocalDate serviceDay, String departureId) {
+
+    private static final int HALF_DAY_SECONDS = 12 * 60 * 60;
+
+    /**
+     * Service day of the run a report is for, by the same rule as the
+     * {@code live_service_day} SQL function: the day whose departure is
+     * nearest the report.
+     */
+    public static LocalDate serviceDay(Instant reportedAt, LocalTime departure, ZoneId zoneId) {
+        LocalDateTime reported = LocalDateTime.ofInstant(reportedAt, zoneId);
+        int difference = departure.toSecondOfDay() - reported.toLocalTime().toSecondOfDay();
+        if (difference < -HALF_DAY_SECONDS) {
+            return reported.toLocalDate().plusDays(1);
+        }
+        if (difference > HALF_DAY_SECONDS) {
+            return reported.toLocalDate().minusDays(1);
+        }
+        return reported.toLocalDate();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key has no service day
+     */
+    public static LiveKey parse(String key) {
+        int separator = key.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Live key without service day: " + key);
+        }
+        try {
+            return new LiveKey(LocalDate.parse(key.substring(0, separator)), key.substring(separator + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed live key: " + key, e);
+        }
+    }
+
+    /**
+     * {@code <service day>:<departure id>}, as used in Redis keys and
+     * invalidation messages.
+     */
+    @Override
+    public String toString() {
+        return serviceDay + ":" + departureId;
+    }
+}
@@ -0,0 +1,26 @@
+package com.livelink.live;
+
+import java.time.Instant;
+
+/**
+ * Real-time state of one scheduled departure.
+ *
+ * @param departureId      {@code scheduled_departures.id}
+ * @param status           one of {@code on-time}, {@code delayed}, {@code cancelled}, {@code boarding}
+ * @param delayMinutes     reported delay, 0 when on time
+ * @param actualDeparture  actual or predicted departure time, may be {@code null}
+ * @param updatedAt        time the state was reported; later reports win
+ */
+public record LiveState(String departureId, String status, int delayMinutes,
+                        Instant actualDeparture, Instant updatedAt) {
+
+    public static final String ON_TIME = "on-time";
+    public static final String DELAYED = "delayed";
+    public static final String CANCELLED = "cancelled";
+    public static final String BOARDING = "boarding";
+
+    public static boolean isValidStatus(String status) {
+        return ON_TIME.equals(status) || DELAYED.equals(status)
+            || CANCELLED.equals(status) || BOARDING.equals(status);
+    }
+}
@@ -0,0 +1,160 @@
+package com.livelink.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Meters that split a request into the parts Micrometer's HTTP timers
+ * lump together: named SQL queries and their row counts, mapping of
+ * departures into DTOs, JSON serialization and requests per stop.
+ *
+ * Per-stop counters are tagged with the stop id for the first
+ * {@code livelink.metrics.max-tagged-stops} known stops seen; requests
+ * for any further stop count towards {@code stop="other"}, so the number
+ * of series stays bounded.
+ */
+@Component
+public class DomainMetrics {
+
+    static final String OTHER_STOP = "other";
+    private static final String NO_URI = "none";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.metrics.max-tagged-stops:200}")
+    private int maxTaggedStops;
+
+    private final Map<String, Timer> queryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failedQueryTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> queryRows = new ConcurrentHashMap<>();
+    private final Map<String, Timer> mappingTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> serializationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> stopCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a named query, recording its time and the number of rows it
+     * returned. Mapping done by the query's row mapper is part of the time.
+     */
+    public <T> List<T> query(String name, Supplier<List<T>> query) {
+        List<T> rows = timed(name, query);
+        recordRows(name, rows.size());
+        return rows;
+    }
+
+    /**
+     * Runs a named query that hands its rows on while reading them and
+     * returns how many there were. Whatever is done with the rows is part
+     * of the time.
+     */
+    public long streamedQuery(String name, LongSupplier query) {
+        long rows = timed(name, query::getAsLong);
+        recordRows(name, rows);
+        return rows;
+    }
+
+    /**
+     * Records the time spent turning departures from {@code source}
+     * ({@code timetable} or {@code sql}) into response DTOs.
+     */
+    public void recordMapping(String source, long nanos) {
+        mappingTimers.computeIfAbsent(source, key -> Timer.builder("livelink.departures.mapping")
+                .tag("source", key)
+                .description("Time to map departures into response DTOs")
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time spent serializing a response body, tagged with the
+     * URI template of the current request.
+     */
+    public void recordSerialization(long nanos) {
+        serializationTimers.computeIfAbsent(currentUri(), key -> Timer.builder("livelink.serialization")
+                .tag("uri", key)
+                .description("Time to serialize response bodies")
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts a request for a stop. Unknown stops are never given their own
+     * series, so made-up ids can't use up the tagged slots.
+     */
+    public void countStopRequest(String stopId, boolean known) {
+        Counter counter = known ? stopCounters.get(stopId) : null;
+        if (counter == null) {
+            counter = known && stopCounters.size() < maxTaggedStops
+                ? stopCounters.computeIfAbsent(stopId, this::stopCounter)
+                : stopCounters.computeIfAbsent(OTHER_STOP, this::stopCounter);
+        }
+        counter.increment();
+    }
+
+    private <T> T timed(String name, Supplier<T> query) {
+        long started = System.nanoTime();
+        T result;
+        try {
+            result = query.get();
+        } catch (RuntimeException e) {
+            failedQueryTimers.computeIfAbsent(name, key -> queryTimer(key, "error"))
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        queryTimers.computeIfAbsent(name, key -> queryTimer(key, "success"))
+            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private void recordRows(String name, long rows) {
+        queryRows.computeIfAbsent(name, key -> DistributionSummary.builder("livelink.db.query.rows")
+                .tag("query", key)
+                .description("Rows returned by a named query")
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(rows);
+    }
+
+    private Timer queryTimer(String name, String outcome) {
+        return Timer.builder("livelink.db.query")
+            .tag("query", name)
+            .tag("outcome", outcome)
+            .description("Time to run a named query and map its rows")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private Counter stopCounter(String stop) {
+        return Counter.builder("livelink.stop.requests")
+            .tag("stop", stop)
+            .description("Board requests per stop")
+            .register(meterRegistry);
+    }
+
+    private static String currentUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return NO_URI;
+        }
+        Object pattern = attributes.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+            RequestAttributes.SCOPE_REQUEST);
+        return pattern != null ? pattern.toString() : NO_URI;
+    }
+}
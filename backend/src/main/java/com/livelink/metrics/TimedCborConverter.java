@@ -0,0 +1,33 @@
+package com.livelink.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * CBOR counterpart of {@link TimedJacksonConverter}.
+ */
+public class TimedCborConverter extends MappingJackson2CborHttpMessageConverter {
+
+    private final DomainMetrics domainMetrics;
+
+    public TimedCborConverter(ObjectMapper objectMapper, DomainMetrics domainMetrics) {
+        super(objectMapper);
+        this.domainMetrics = domainMetrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        long started = System.nanoTime();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            domainMetrics.recordSerialization(System.nanoTime() - started);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.livelink.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter that records how long each response body takes to
+ * serialize and write.
+ */
+public class TimedJacksonConverter extends MappingJackson2HttpMessageConverter {
+
+    private final DomainMetrics domainMetrics;
+
+    public TimedJacksonConverter(ObjectMapper objectMapper, DomainMetrics domainMetrics) {
+        super(objectMapper);
+        this.domainMetrics = domainMetrics;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        long started = System.nanoTime();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            domainMetrics.recordSerialization(System.nanoTime() - started);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.livelink.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that stayed pinned to their carrier, blocking it
+ * for other requests, typically while waiting on I/O inside a
+ * {@code synchronized} block or a native frame.
+ *
+ * Listens to the JDK's {@code jdk.VirtualThreadPinned} events through an
+ * in-process JFR stream, counts them and logs the stack of each distinct
+ * pinning site once. Only runs when requests are served on virtual threads.
+ */
+@Component
+public class VirtualThreadPinningMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.fanout.pinned-threshold-ms:20}")
+    private long pinnedThresholdMs;
+
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!Threading.VIRTUAL.isActive(environment)) {
+            return;
+        }
+        Timer pinnedTimer = Timer.builder("livelink.vthreads.pinned")
+            .description("Virtual threads pinned to their carrier longer than the threshold")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        Counter pinnedSites = Counter.builder("livelink.vthreads.pinned.sites")
+            .description("Distinct code locations that pinned a virtual thread")
+            .register(meterRegistry);
+
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT)
+            .withThreshold(Duration.ofMillis(pinnedThresholdMs))
+            .withStackTrace();
+        stream.onEvent(PINNED_EVENT, event -> {
+            pinnedTimer.record(event.getDuration());
+            if (reportedSites.add(site(event))) {
+                pinnedSites.increment();
+                log.warn("Virtual thread pinned for {} ms:\n{}",
+                    event.getDuration().toMillis(), stack(event.getStackTrace()));
+            }
+        });
+        stream.startAsync();
+        log.info("Reporting virtual threads pinned longer than {} ms", pinnedThresholdMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private static String site(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        // The innermost application frame tells sites apart; JDK frames
+        // below it are the same for every blocking call
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String type = frame.getMethod().getType().getName();
+            if (type.startsWith("com.livelink.")) {
+                return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        RecordedFrame top = stackTrace.getFrames().get(0);
+        return top.getMethod().getType().getName() + "." + top.getMethod().getName();
+    }
+
+    private static String stack(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "    (no stack trace)";
+        }
+        StringBuilder stack = new StringBuilder();
+        int frames = 0;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frames++ == LOGGED_FRAMES) {
+                stack.append("    ...");
+                break;
+            }
+            stack.append("    at ")
+                .append(frame.getMethod().getType().getName()).append('.')
+                .append(frame.getMethod().getName()).append(':')
+                .append(frame.getLineNumber()).append('\n');
+        }
+        return stack.toString();
+    }
+}
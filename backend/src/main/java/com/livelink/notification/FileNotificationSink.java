@@ -0,0 +1,43 @@
+package com.livelink.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends notifications to a file as JSON lines, one batch per write.
+ */
+public class FileNotificationSink implements NotificationSink {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public FileNotificationSink(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void deliver(List<Notification> batch) {
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (Notification notification : batch) {
+                    writer.write(objectMapper.writeValueAsString(notification));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write notifications to " + path, e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.livelink.notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the latest notifications in memory, for development and tests.
+ */
+public class InMemoryNotificationSink implements NotificationSink {
+
+    private final int capacity;
+    private final ArrayDeque<Notification> recent = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long delivered;
+
+    public InMemoryNotificationSink(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void deliver(List<Notification> batch) {
+        lock.lock();
+        try {
+            for (Notification notification : batch) {
+                if (recent.size() == capacity) {
+                    recent.removeFirst();
+                }
+                recent.addLast(notification);
+            }
+            delivered += batch.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The latest notifications, oldest first.
+     */
+    public List<Notification> recent() {
+        lock.lock();
+        try {
+            return new ArrayList<>(recent);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDelivered() {
+        lock.lock();
+        try {
+            return delivered;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
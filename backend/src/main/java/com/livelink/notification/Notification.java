@@ -0,0 +1,21 @@
+package com.livelink.notification;
+
+import java.time.Instant;
+
+/**
+ * A message for one user about a delayed or cancelled departure or a
+ * service alert.
+ *
+ * @param userId     {@code users.id}
+ * @param kind       one of {@code delay}, {@code cancellation}, {@code disruption}
+ * @param subjectId  run ({@code <service day>:<departure id>}) or alert the
+ *                   message is about
+ * @param createdAt  time the event was matched
+ */
+public record Notification(String userId, String kind, String subjectId, String title, String message,
+                           Instant createdAt) {
+
+    public static final String DELAY = "delay";
+    public static final String CANCELLATION = "cancellation";
+    public static final String DISRUPTION = "disruption";
+}
@@ -0,0 +1,13 @@
+package com.livelink.notification;
+
+import java.util.List;
+
+/**
+ * Delivers notifications to users, a batch at a time. Batches hold at most
+ * one notification per user and subject. Implementations are called from
+ * a single thread.
+ */
+public interface NotificationSink {
+
+    void deliver(List<Notification> batch);
+}
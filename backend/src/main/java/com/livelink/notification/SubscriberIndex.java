@@ -0,0 +1,169 @@
+package com.livelink.notification;
+
+import com.livelink.timetable.Timetable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Users to notify, by the stops and lines an event concerns.
+ *
+ * Built from {@code user_preferences}: a user follows their home and work
+ * stops for delays, and for disruptions every line departing from them.
+ * Both are inverted into sorted arrays of user numbers, so matching an
+ * event reads one or a few arrays instead of the preferences. Preferred
+ * transport types are kept as a bit mask per user; no preference means
+ * every type. Immutable once built.
+ */
+public final class SubscriberIndex {
+
+    /**
+     * Notification settings of one user.
+     *
+     * @param transportTypes preferred transport types, empty for all
+     */
+    public record Subscription(String userId, String homeStopId, String workStopId, Set<String> transportTypes,
+                               boolean delays, boolean disruptions) {}
+
+    private static final List<String> TRANSPORT_TYPES = List.of("bus", "train", "tram");
+    private static final int[] NONE = new int[0];
+
+    private final String[] userIds;
+    private final byte[] typeMasks;
+    private final Map<String, int[]> delayUsersByStop;
+    private final Map<String, int[]> disruptionUsersByLine;
+    private final Timetable timetable;
+    private final long version;
+
+    private SubscriberIndex(String[] userIds, byte[] typeMasks, Map<String, int[]> delayUsersByStop,
+                            Map<String, int[]> disruptionUsersByLine, Timetable timetable, long version) {
+        this.userIds = userIds;
+        this.typeMasks = typeMasks;
+        this.delayUsersByStop = delayUsersByStop;
+        this.disruptionUsersByLine = disruptionUsersByLine;
+        this.timetable = timetable;
+        this.version = version;
+    }
+
+    /**
+     * Indexes the subscriptions; the timetable tells which lines serve
+     * each stop.
+     */
+    public static SubscriberIndex build(List<Subscription> subscriptions, Timetable timetable, long version) {
+        String[] userIds = new String[subscriptions.size()];
+        byte[] typeMasks = new byte[subscriptions.size()];
+        Map<String, Users> byStop = new HashMap<>();
+        Map<String, Users> byLine = new HashMap<>();
+        // Lines by stop and type mask, shared by the users of a stop
+        Map<String, Set<String>> linesAtStop = new HashMap<>();
+        for (int user = 0; user < userIds.length; user++) {
+            Subscription subscription = subscriptions.get(user);
+            userIds[user] = subscription.userId();
+            typeMasks[user] = typeMask(subscription.transportTypes());
+            Set<String> stops = new HashSet<>(2);
+            if (subscription.homeStopId() != null) {
+                stops.add(subscription.homeStopId());
+            }
+            if (subscription.workStopId() != null) {
+                stops.add(subscription.workStopId());
+            }
+            Set<String> lines = new HashSet<>();
+            for (String stopId : stops) {
+                if (subscription.delays()) {
+                    byStop.computeIfAbsent(stopId, key -> new Users()).add(user);
+                }
+                if (subscription.disruptions()) {
+                    lines.addAll(linesAtStop.computeIfAbsent(stopId + '/' + typeMasks[user],
+                        key -> timetable.lineNumbersAtStop(stopId, subscription.transportTypes())));
+                }
+            }
+            for (String line : lines) {
+                byLine.computeIfAbsent(line, key -> new Users()).add(user);
+            }
+        }
+        return new SubscriberIndex(userIds, typeMasks, toArrays(byStop), toArrays(byLine), timetable, version);
+    }
+
+    public static SubscriberIndex empty() {
+        return new SubscriberIndex(new String[0], new byte[0], Map.of(), Map.of(), null, 0);
+    }
+
+    public Timetable getTimetable() { return timetable; }
+    public long getVersion() { return version; }
+    public int size() { return userIds.length; }
+
+    public String userId(int user) {
+        return userIds[user];
+    }
+
+    /**
+     * Users following the stop for delays who take the transport type.
+     */
+    public int[] delayUsers(String stopId, String transportType) {
+        int[] users = delayUsersByStop.getOrDefault(stopId, NONE);
+        int bit = typeBit(transportType);
+        int[] matching = new int[users.length];
+        int count = 0;
+        for (int user : users) {
+            if (typeMasks[user] == 0 || (typeMasks[user] & bit) != 0) {
+                matching[count++] = user;
+            }
+        }
+        return count == users.length ? users : Arrays.copyOf(matching, count);
+    }
+
+    /**
+     * Users following any of the lines for disruptions, each once.
+     */
+    public int[] disruptionUsers(Collection<String> lineNumbers) {
+        if (lineNumbers.size() == 1) {
+            return disruptionUsersByLine.getOrDefault(lineNumbers.iterator().next(), NONE);
+        }
+        BitSet users = new BitSet(userIds.length);
+        for (String lineNumber : lineNumbers) {
+            for (int user : disruptionUsersByLine.getOrDefault(lineNumber, NONE)) {
+                users.set(user);
+            }
+        }
+        return users.stream().toArray();
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, Users> grouped) {
+        Map<String, int[]> arrays = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((key, users) -> arrays.put(key, Arrays.copyOf(users.users, users.size)));
+        return arrays;
+    }
+
+    private static byte typeMask(Set<String> transportTypes) {
+        int mask = 0;
+        for (String type : transportTypes) {
+            mask |= typeBit(type);
+        }
+        return (byte) mask;
+    }
+
+    // Unknown or missing types match only users without a preference
+    private static int typeBit(String transportType) {
+        int index = transportType != null ? TRANSPORT_TYPES.indexOf(transportType) : -1;
+        return index >= 0 ? 1 << index : 0;
+    }
+
+    // Growing array of user numbers, added in ascending order
+    private static final class Users {
+        int[] users = new int[4];
+        int size;
+
+        void add(int user) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+            }
+            users[size++] = user;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.livelink.search;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable uniform grid over stop coordinates for radius queries.
+ *
+ * Coordinates are held in primitive arrays and bucketed into cells of
+ * {@link #CELL_DEGREES}; a query only measures the stops of the cells
+ * overlapping the bounding box of its circle. Rows without coordinates
+ * are left out.
+ */
+public final class NearbyStopIndex {
+
+    // Roughly 550 m north-south, 370 m east-west at the latitude of Stuttgart
+    static final double CELL_DEGREES = 0.005;
+
+    private static final double EARTH_RADIUS_METERS = 6_371_000;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180;
+
+    private static final Comparator<Hit> BY_DISTANCE = Comparator.comparingDouble(Hit::distanceMeters);
+
+    private final List<Map<String, Object>> rows;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final Map<Long, int[]> cells;
+
+    private NearbyStopIndex(List<Map<String, Object>> rows, double[] latitudes, double[] longitudes,
+                            Map<Long, int[]> cells) {
+        this.rows = rows;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cells = cells;
+    }
+
+    public static NearbyStopIndex of(Collection<Map<String, Object>> stopRows) {
+        List<Map<String, Object>> rows = new ArrayList<>(stopRows.size());
+        for (Map<String, Object> row : stopRows) {
+            if (row.get("latitude") != null && row.get("longitude") != null) {
+                rows.add(row);
+            }
+        }
+        double[] latitudes = new double[rows.size()];
+        double[] longitudes = new double[rows.size()];
+        Map<Long, List<Integer>> grouped = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            latitudes[i] = toDouble(rows.get(i).get("latitude"));
+            longitudes[i] = toDouble(rows.get(i).get("longitude"));
+            grouped.computeIfAbsent(cellKey(cell(latitudes[i]), cell(longitudes[i])), key -> new ArrayList<>()).add(i);
+        }
+        Map<Long, int[]> cells = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((key, members) -> cells.put(key, members.stream().mapToInt(Integer::intValue).toArray()));
+        return new NearbyStopIndex(rows, latitudes, longitudes, cells);
+    }
+
+    public static NearbyStopIndex empty() {
+        return of(List.of());
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Up to {@code limit} stops within {@code radiusMeters}, nearest first.
+     */
+    public List<Hit> within(double latitude, double longitude, double radiusMeters, int limit) {
+        double latitudeDelta = radiusMeters / METERS_PER_DEGREE;
+        double cosLatitude = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double longitudeDelta = Math.min(radiusMeters / (METERS_PER_DEGREE * cosLatitude), 180);
+
+        List<Hit> hits = new ArrayList<>();
+        for (int cellLat = cell(latitude - latitudeDelta); cellLat <= cell(latitude + latitudeDelta); cellLat++) {
+            for (int cellLon = cell(longitude - longitudeDelta); cellLon <= cell(longitude + longitudeDelta); cellLon++) {
+                int[] members = cells.get(cellKey(cellLat, cellLon));
+                if (members == null) {
+                    continue;
+                }
+                for (int stop : members) {
+                    double distance = distanceMeters(latitude, longitude, latitudes[stop], longitudes[stop]);
+                    if (distance <= radiusMeters) {
+                        hits.add(new Hit(rows.get(stop), distance));
+                    }
+                }
+            }
+        }
+        hits.sort(BY_DISTANCE);
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Great-circle distance in meters (haversine).
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public static double toDouble(Object coordinate) {
+        return coordinate instanceof BigDecimal decimal ? decimal.doubleValue() : ((Number) coordinate).doubleValue();
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int cellLat, int cellLon) {
+        return ((long) cellLat << 32) | (cellLon & 0xFFFFFFFFL);
+    }
+
+    public record Hit(Map<String, Object> row, double distanceMeters) {}
+}
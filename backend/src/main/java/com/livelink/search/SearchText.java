@@ -0,0 +1,108 @@
+package com.livelink.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Normalization shared by indexing and querying, so that German spelling
+ * variants fold to the same form: "Schloßstraße", "Schlossstrasse" and
+ * "schlossstrasse" all become {@code schlossstrasse}, and "Mühle" and
+ * "Muehle" both become {@code muehle}. Typed "ae", "oe" and "ue" are kept,
+ * so "Feuerbach" stays {@code feuerbach}; names spelled with umlauts are
+ * also indexed in their {@link #foldBare bare} form for queries typed
+ * without them.
+ */
+public final class SearchText {
+
+    private SearchText() {}
+
+    public static String fold(String text) {
+        return fold(text, true);
+    }
+
+    /**
+     * Like {@link #fold}, but umlauts lose their dots instead of becoming
+     * digraphs: "Mühle" becomes {@code muhle}.
+     */
+    public static String foldBare(String text) {
+        return fold(text, false);
+    }
+
+    private static String fold(String text, boolean digraphs) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder folded = new StringBuilder(lower.length() + 4);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case 'ä' -> folded.append(digraphs ? "ae" : "a");
+                case 'ö' -> folded.append(digraphs ? "oe" : "o");
+                case 'ü' -> folded.append(digraphs ? "ue" : "u");
+                case 'ß' -> folded.append("ss");
+                default -> {
+                    if (c < 0x80) {
+                        folded.append(c);
+                    } else {
+                        // é, è, ç and friends lose their accents
+                        String stripped = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                        folded.append(stripped.charAt(0));
+                    }
+                }
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Alphanumeric tokens of an already folded string.
+     */
+    public static List<String> tokens(String folded) {
+        List<String> tokens = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean word = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Edit distance between {@code a} and {@code b}, or {@code max + 1} as
+     * soon as it is known to exceed {@code max}.
+     */
+    static int boundedDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+}
@@ -0,0 +1,358 @@
+package com.livelink.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory autocomplete index over stop names and addresses.
+ *
+ * Both fields are folded with {@link SearchText} and split into tokens,
+ * those with umlauts in both their digraph and their bare form. A
+ * sorted token map answers prefix lookups, and a trigram index over the
+ * token vocabulary narrows the candidates for typo-tolerant matches before
+ * the edit distance is computed. The same trigrams find tokens containing
+ * the query, so "platz" still finds "Arsenalplatz" as the old LIKE search
+ * did. Results are ranked name-prefix first, then token prefix matches in
+ * the name, then in the address, then infix matches, then fuzzy matches by
+ * number of edits.
+ *
+ * Reads are lock-free; {@link #sync} applies changes in place and only
+ * re-indexes rows that differ from the indexed ones.
+ */
+public final class StopSearchIndex {
+
+    private static final int NAME_PREFIX = 0;
+    private static final int NAME_TOKENS = 1;
+    private static final int ADDRESS_TOKENS = 2;
+    private static final int INFIX = 3;
+    private static final int FUZZY = 4;
+    private static final int MIN_INFIX_LENGTH = 3;
+
+    private static final Comparator<Match> RANKING = Comparator
+        .comparingInt(Match::tier)
+        .thenComparingInt(Match::edits)
+        .thenComparing(match -> match.entry().foldedName)
+        .thenComparing(match -> match.entry().id);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Set<Entry>> entriesByToken = new ConcurrentSkipListMap<>();
+    private final Map<String, Set<String>> tokensByGram = new ConcurrentHashMap<>();
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Makes the index contain exactly the given stop rows, keyed by their
+     * {@code id} column. Unchanged rows are left alone.
+     *
+     * @return number of stops added, changed or removed
+     */
+    public synchronized int sync(Collection<Map<String, Object>> rows) {
+        Set<String> seen = new HashSet<>(rows.size() * 2);
+        int changed = 0;
+        for (Map<String, Object> row : rows) {
+            String id = (String) row.get("id");
+            seen.add(id);
+            Entry existing = entries.get(id);
+            if (existing == null || !existing.row.equals(row)) {
+                if (existing != null) {
+                    unindex(existing);
+                }
+                index(new Entry(id, row));
+                changed++;
+            }
+        }
+        for (Entry entry : List.copyOf(entries.values())) {
+            if (!seen.contains(entry.id)) {
+                unindex(entry);
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Up to {@code limit} stop rows matching every token of the query.
+     */
+    public List<Map<String, Object>> search(String query, int limit) {
+        String folded = SearchText.fold(query).strip();
+        List<String> queryTokens = SearchText.tokens(folded);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        String selective = queryTokens.stream().max(Comparator.comparingInt(String::length)).get();
+        List<QueryToken> scorers = queryTokens.stream().map(QueryToken::new).toList();
+        // Keep only the best {@code limit} matches, worst on top
+        PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (Entry entry : candidates(selective)) {
+            Match match = score(entry, folded, scorers);
+            if (match != null) {
+                best.add(match);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+
+        Match[] ranked = best.toArray(new Match[0]);
+        Arrays.sort(ranked, RANKING);
+        List<Map<String, Object>> rows = new ArrayList<>(ranked.length);
+        for (Match match : ranked) {
+            rows.add(match.entry().row);
+        }
+        return rows;
+    }
+
+    private Set<Entry> candidates(String token) {
+        Set<Entry> candidates = new HashSet<>();
+        NavigableMap<String, Set<Entry>> prefixed =
+            entriesByToken.subMap(token, true, token + Character.MAX_VALUE, false);
+        prefixed.values().forEach(candidates::addAll);
+
+        if (token.length() >= MIN_INFIX_LENGTH) {
+            for (String similar : similarTokens(token, maxEdits(token))) {
+                Set<Entry> matching = entriesByToken.get(similar);
+                if (matching != null) {
+                    candidates.addAll(matching);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Vocabulary tokens containing {@code token}, or sharing enough trigrams
+     * with it to be within {@code maxEdits} of it or of one of its prefixes.
+     */
+    private Set<String> similarTokens(String token, int maxEdits) {
+        List<String> grams = grams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> tokens = tokensByGram.get(gram);
+            if (tokens != null) {
+                for (String candidate : tokens) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        // Every edit destroys at most three trigrams
+        int required = Math.max(1, grams.size() - 3 * maxEdits);
+        // A token containing the query has all of its grams but the anchored one
+        int requiredForInfix = Math.max(1, grams.size() - 1);
+        Set<String> similar = new HashSet<>();
+        shared.forEach((candidate, count) -> {
+            if (count >= requiredForInfix && candidate.contains(token)) {
+                similar.add(candidate);
+            } else if (count >= required && cost(token, candidate, maxEdits) >= 0) {
+                similar.add(candidate);
+            }
+        });
+        return similar;
+    }
+
+    private static Match score(Entry entry, String foldedQuery, List<QueryToken> queryTokens) {
+        boolean inName = true;
+        boolean infix = false;
+        int edits = 0;
+        for (QueryToken queryToken : queryTokens) {
+            int nameCost = queryToken.bestCost(entry.nameTokens);
+            if (nameCost == 0) {
+                continue;
+            }
+            int addressCost = queryToken.bestCost(entry.addressTokens);
+            if (addressCost == 0) {
+                inName = false;
+                continue;
+            }
+            if (contains(entry.nameTokens, queryToken.text) || contains(entry.addressTokens, queryToken.text)) {
+                infix = true;
+                continue;
+            }
+            int cost = nameCost < 0 ? addressCost : addressCost < 0 ? nameCost : Math.min(nameCost, addressCost);
+            if (cost < 0) {
+                return null;
+            }
+            edits += cost;
+        }
+        int tier;
+        if (edits > 0) {
+            tier = FUZZY;
+        } else if (infix) {
+            tier = INFIX;
+        } else if (!inName) {
+            tier = ADDRESS_TOKENS;
+        } else {
+            tier = entry.foldedName.startsWith(foldedQuery) || entry.bareName.startsWith(foldedQuery)
+                ? NAME_PREFIX : NAME_TOKENS;
+        }
+        return new Match(entry, tier, edits);
+    }
+
+    private static boolean contains(String[] tokens, String queryToken) {
+        if (queryToken.length() < MIN_INFIX_LENGTH) {
+            return false;
+        }
+        for (String token : tokens) {
+            if (token.contains(queryToken)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 0 if {@code token} starts with {@code queryToken}, otherwise the edit
+     * distance to the token or its same-length prefix, or -1 if that exceeds
+     * {@code maxEdits}.
+     */
+    private static int cost(String queryToken, String token, int maxEdits) {
+        if (token.startsWith(queryToken)) {
+            return 0;
+        }
+        if (maxEdits == 0) {
+            return -1;
+        }
+        int distance = SearchText.boundedDistance(queryToken, token, maxEdits);
+        if (token.length() > queryToken.length()) {
+            distance = Math.min(distance,
+                SearchText.boundedDistance(queryToken, token.substring(0, queryToken.length()), maxEdits));
+        }
+        return distance <= maxEdits ? distance : -1;
+    }
+
+    private static int maxEdits(String token) {
+        if (token.length() < 4) {
+            return 0;
+        }
+        return token.length() < 8 ? 1 : 2;
+    }
+
+    private void index(Entry entry) {
+        entries.put(entry.id, entry);
+        for (String token : entry.allTokens()) {
+            entriesByToken.compute(token, (key, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                    for (String gram : grams(key)) {
+                        tokensByGram.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(key);
+                    }
+                }
+                set.add(entry);
+                return set;
+            });
+        }
+    }
+
+    private void unindex(Entry entry) {
+        entries.remove(entry.id, entry);
+        for (String token : entry.allTokens()) {
+            entriesByToken.computeIfPresent(token, (key, set) -> {
+                set.remove(entry);
+                if (!set.isEmpty()) {
+                    return set;
+                }
+                for (String gram : grams(key)) {
+                    tokensByGram.computeIfPresent(gram, (g, tokens) -> {
+                        tokens.remove(key);
+                        return tokens.isEmpty() ? null : tokens;
+                    });
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Trigrams of the token anchored at its start, so that prefixes share
+     * their leading grams with the full token.
+     */
+    private static List<String> grams(String token) {
+        String anchored = "^" + token;
+        List<String> grams = new ArrayList<>(anchored.length());
+        for (int i = 0; i + 3 <= anchored.length(); i++) {
+            grams.add(anchored.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private record Match(Entry entry, int tier, int edits) {}
+
+    /**
+     * One query token with its costs memoized per vocabulary token, since
+     * many candidate stops share the same tokens.
+     */
+    private static final class QueryToken {
+        final String text;
+        final int maxEdits;
+        final Map<String, Integer> costs = new HashMap<>();
+
+        QueryToken(String text) {
+            this.text = text;
+            this.maxEdits = maxEdits(text);
+        }
+
+        int bestCost(String[] tokens) {
+            int best = -1;
+            for (String token : tokens) {
+                int cost = token.startsWith(text) ? 0
+                    : maxEdits == 0 ? -1
+                    : costs.computeIfAbsent(token, key -> cost(text, key, maxEdits));
+                if (cost == 0) {
+                    return 0;
+                }
+                if (cost > 0 && (best < 0 || cost < best)) {
+                    best = cost;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Entry {
+        final String id;
+        final Map<String, Object> row;
+        final String foldedName;
+        final String bareName;
+        final String[] nameTokens;
+        final String[] addressTokens;
+
+        Entry(String id, Map<String, Object> row) {
+            this.id = id;
+            this.row = Collections.unmodifiableMap(new LinkedHashMap<>(row));
+            this.foldedName = SearchText.fold((String) row.get("name"));
+            this.bareName = SearchText.foldBare((String) row.get("name"));
+            this.nameTokens = tokens(foldedName, bareName);
+            String address = (String) row.get("address");
+            this.addressTokens = tokens(SearchText.fold(address), SearchText.foldBare(address));
+        }
+
+        // Tokens of both forms, each once; they differ only around umlauts
+        private static String[] tokens(String folded, String bare) {
+            Set<String> tokens = new LinkedHashSet<>(SearchText.tokens(folded));
+            tokens.addAll(SearchText.tokens(bare));
+            return tokens.toArray(new String[0]);
+        }
+
+        Set<String> allTokens() {
+            Set<String> tokens = new HashSet<>(List.of(nameTokens));
+            tokens.addAll(List.of(addressTokens));
+            return tokens;
+        }
+    }
+}
@@ -1,22 +1,152 @@
 package com.livelink.service;
 
+import com.livelink.alerts.AlertIndex;
+import com.livelink.cluster.Invalidation;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.timetable.Timetable;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.sql.Array;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class AlertsService {
 
+    private static final Logger log = LoggerFactory.getLogger(AlertsService.class);
+
+    private static final String VERSION_SQL = """
+        SELECT COALESCE(MAX(version), 0)
+        FROM data_versions
+        WHERE table_name = 'service_alerts'
+        """;
+
+    // Future alerts are included so the timer wheel can activate them
+    private static final String ALERTS_SQL = """
+        SELECT
+            sa.id,
+            sa.alert_type,
+            sa.title,
+            sa.description,
+            sa.severity,
+            sa.affected_lines,
+            sa.start_time,
+            sa.end_time,
+            sa.is_active
+        FROM service_alerts sa
+        WHERE sa.is_active = true
+        AND (sa.end_time IS NULL OR sa.end_time >= CURRENT_TIMESTAMP)
+        """;
+
+    // Lines serving a pincode when the in-memory timetable is disabled
+    private static final String PINCODE_LINES_SQL = """
+        SELECT DISTINCT tl.line_number
+        FROM transport_stops ts
+        JOIN scheduled_departures sd ON sd.stop_id = ts.id
+        JOIN transport_lines tl ON tl.id = sd.line_id
+        WHERE ts.pincode = ?
+        AND ts.is_active = true
+        AND sd.is_active = true
+        AND tl.is_active = true
+        """;
+
+    private static final ColumnMapRowMapper ALERT_COLUMNS = new ColumnMapRowMapper();
+
+    private static final long NOT_LOADED = Long.MIN_VALUE;
+    private static final long UNKNOWN_VERSION = -1;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private ClusterInvalidationService clusterInvalidationService;
+
+    @Value("${livelink.alerts.enabled:true}")
+    private boolean enabled;
+
+    private final AlertIndex index = new AlertIndex(Instant.now());
+    private volatile long version = NOT_LOADED;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Entity tag of the active alerts for a pincode (or all of them), or
+     * {@code null} when alerts are read from the database on every request.
+     */
+    public String getAlertsEtag(String pincode) {
+        if (!enabled) {
+            return null;
+        }
+        if (version == NOT_LOADED) {
+            loadIfAbsent();
+        }
+        if (pincode != null && !pincode.isEmpty()) {
+            // Which lines serve the pincode comes from the timetable, or
+            // from the database on every request when it is disabled
+            if (!timetableService.isEnabled()) {
+                return null;
+            }
+            Timetable timetable = timetableService.getTimetable();
+            return Versioned.etag("a", index.getVersion(), timetable.getVersion(),
+                timetable.getLoadedAt().toEpochMilli());
+        }
+        return Versioned.etag("a", index.getVersion());
+    }
+
+    public Instant getAlertsAsOf(String pincode) {
+        Instant asOf = index.getChangedAt();
+        if (pincode != null && !pincode.isEmpty() && timetableService.isEnabled()) {
+            asOf = Versioned.latest(asOf, timetableService.getTimetable().getLoadedAt());
+        }
+        return asOf;
+    }
+
+    @Timed(value = "livelink.service", histogram = true)
     public List<Map<String, Object>> getActiveAlerts(String pincode) {
+        return requestCoalescer.coalesce("active-alerts", pincode != null ? pincode : "",
+            () -> activeAlerts(pincode));
+    }
+
+    private List<Map<String, Object>> activeAlerts(String pincode) {
+        if (enabled) {
+            if (version == NOT_LOADED) {
+                loadIfAbsent();
+            }
+            if (pincode != null && !pincode.isEmpty()) {
+                return index.activeForLines(lineNumbersInPincode(pincode));
+            }
+            return index.active();
+        }
+
         String sql = """
             SELECT 
                 sa.id,
@@ -35,14 +165,34 @@ public class AlertsService {
             """;
             
         if (pincode != null && !pincode.isEmpty()) {
-            sql += " AND EXISTS (SELECT 1 FROM transport_stops ts WHERE ts.pincode = ? AND sa.affected_lines && ARRAY(SELECT line_number FROM transport_lines tl JOIN scheduled_departures sd ON tl.id = sd.line_id WHERE sd.stop_id = ts.id))";
-            return jdbcTemplate.queryForList(sql, pincode);
+            String byPincode = sql + " AND EXISTS (SELECT 1 FROM transport_stops ts WHERE ts.pincode = ? AND sa.affected_lines && ARRAY(SELECT line_number FROM transport_lines tl JOIN scheduled_departures sd ON tl.id = sd.line_id WHERE sd.stop_id = ts.id))";
+            return domainMetrics.query("alerts.pincode", () -> jdbcTemplate.queryForList(byPincode, pincode));
         }
-        
-        return jdbcTemplate.queryForList(sql);
+
+        return domainMetrics.query("alerts.active", () -> jdbcTemplate.queryForList(sql));
     }
 
+    private Set<String> lineNumbersInPincode(String pincode) {
+        if (timetableService.isEnabled()) {
+            return timetableService.getTimetable().lineNumbersInPincode(pincode);
+        }
+        return new HashSet<>(domainMetrics.query("alerts.pincode.lines",
+            () -> jdbcTemplate.queryForList(PINCODE_LINES_SQL, String.class, pincode)));
+    }
+
+    @Timed(value = "livelink.service", histogram = true)
     public List<Map<String, Object>> getAlertsByLine(String lineNumber) {
+        return requestCoalescer.coalesce("alerts-by-line", lineNumber, () -> alertsByLine(lineNumber));
+    }
+
+    private List<Map<String, Object>> alertsByLine(String lineNumber) {
+        if (enabled) {
+            if (version == NOT_LOADED) {
+                loadIfAbsent();
+            }
+            return index.activeForLine(lineNumber);
+        }
+
         String sql = """
             SELECT 
                 sa.id,
@@ -62,6 +212,102 @@ public class AlertsService {
             ORDER BY sa.severity DESC, sa.start_time DESC
             """;
             
-        return jdbcTemplate.queryForList(sql, lineNumber);
+        return domainMetrics.query("alerts.line", () -> jdbcTemplate.queryForList(sql, lineNumber));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            try {
+                refresh();
+            } catch (DataAccessException e) {
+                log.warn("Initial alert load failed, retrying on first request", e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.alerts.tick-ms:1000}")
+    public void tick() {
+        if (enabled && version != NOT_LOADED) {
+            index.advance(Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.alerts.refresh-interval-ms:5000}",
+               initialDelayString = "${livelink.alerts.refresh-interval-ms:5000}")
+    public void refreshIfChanged() {
+        // The first replica to see an edit tells the others
+        clusterInvalidationService.publish(Invalidation.Kind.ALERT, reloadIfChanged());
+    }
+
+    @EventListener
+    public void onInvalidation(Invalidation invalidation) {
+        if (invalidation.affects(Invalidation.Kind.ALERT) && !clusterInvalidationService.isLocal(invalidation)) {
+            reloadIfChanged();
+        }
+    }
+
+    private List<String> reloadIfChanged() {
+        if (!enabled || version == NOT_LOADED) {
+            return List.of();
+        }
+        try {
+            long current = currentDataVersion();
+            if (current == UNKNOWN_VERSION || current != version) {
+                return refresh();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Alert refresh failed, keeping version {}", version, e);
+        }
+        return List.of();
+    }
+
+    private void loadIfAbsent() {
+        lock.lock();
+        try {
+            if (version == NOT_LOADED) {
+                refresh();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return ids of the alerts that changed
+     */
+    public List<String> refresh() {
+        lock.lock();
+        try {
+            long current = currentDataVersion();
+            List<Map<String, Object>> rows = domainMetrics.query("alerts.index", () -> jdbcTemplate.query(ALERTS_SQL,
+                (rs, rowNum) -> {
+                    Map<String, Object> row = ALERT_COLUMNS.mapRow(rs, rowNum);
+                    Array lines = rs.getArray("affected_lines");
+                    // NULL elements of the array name no line
+                    row.put("affected_lines", lines != null
+                        ? Arrays.stream((Object[]) lines.getArray()).filter(Objects::nonNull).toList()
+                        : List.of());
+                    return row;
+                }));
+            List<String> changed = index.sync(rows, Instant.now());
+            version = current;
+            if (!changed.isEmpty()) {
+                log.info("Alerts at version {}: {} active, {} changed", current, index.size(), changed.size());
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long currentDataVersion() {
+        try {
+            Long current = jdbcTemplate.queryForObject(VERSION_SQL, Long.class);
+            return current != null ? current : 0;
+        } catch (DataAccessException e) {
+            log.debug("data_versions not available", e);
+            return UNKNOWN_VERSION;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package com.livelink.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livelink.cluster.Invalidation;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.dto.ApiResponse;
+import com.livelink.encoding.CompactResponses;
+import com.livelink.metrics.DomainMetrics;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Fully serialized {@link ApiResponse} bodies of stop boards, so hot stops
+ * are written straight from bytes instead of being mapped and serialized
+ * on every request. Each entry holds the JSON and the compact CBOR body,
+ * each rendered the first time it is asked for.
+ *
+ * An entry is keyed by stop and tagged with the board's entity tag; it is
+ * re-rendered the first time a request sees a different tag, which happens
+ * when the stop's timetable or live states change or the board's minute
+ * advances. Entries are evicted least recently used once the cached bodies
+ * exceed {@code livelink.board-cache.max-bytes}. Stop invalidations from
+ * other replicas drop the stop's entry, a resync drops them all.
+ */
+@Service
+public class BoardCacheService {
+
+    // Rough per-entry overhead of the map node, entry and key
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    @Autowired
+    private DeparturesService departuresService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private CompactResponses compactResponses;
+
+    @Value("${livelink.board-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.board-cache.max-bytes:16777216}")
+    private long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter evictionCounter;
+    private Timer renderTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        Gauge.builder("livelink.board.cache.bytes", this, BoardCacheService::getCachedBytes)
+            .description("Bytes held by pre-rendered stop boards")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("livelink.board.cache.entries", this, BoardCacheService::getEntryCount)
+            .description("Pre-rendered stop boards")
+            .register(meterRegistry);
+        hitCounter = Counter.builder("livelink.board.cache.requests")
+            .tag("result", "hit")
+            .description("Stop board requests served from a pre-rendered body")
+            .register(meterRegistry);
+        missCounter = Counter.builder("livelink.board.cache.requests")
+            .tag("result", "miss")
+            .description("Stop board requests that rendered the body")
+            .register(meterRegistry);
+        evictionCounter = Counter.builder("livelink.board.cache.evictions")
+            .description("Pre-rendered stop boards evicted to stay within the size bound")
+            .register(meterRegistry);
+        renderTimer = Timer.builder("livelink.board.cache.render")
+            .description("Time to map and serialize one stop board")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /**
+     * Serialized response body of a stop board with its entity tag, as
+     * JSON or as compact CBOR.
+     */
+    @Timed(value = "livelink.service", histogram = true)
+    public Versioned<byte[]> getStopBoard(String stopId, String message, boolean cbor) {
+        Versioned<Supplier<List<ApiDeparture>>> board = departuresService.prepareBoardByStop(stopId);
+        Entry cached = null;
+        if (enabled) {
+            cached = get(stopId);
+            if (cached != null && !cached.etag().equals(board.etag())) {
+                cached = null;
+            }
+            byte[] body = cached == null ? null : cbor ? cached.cbor() : cached.json();
+            if (body != null) {
+                hitCounter.increment();
+                return new Versioned<>(body, board.etag(), board.asOf());
+            }
+        }
+        missCounter.increment();
+
+        long started = System.nanoTime();
+        List<ApiDeparture> departures = board.data().get();
+        long serializing = System.nanoTime();
+        ApiResponse<List<ApiDeparture>> response = ApiResponse.success(departures, message, board.asOf());
+        byte[] body;
+        if (cbor) {
+            body = compactResponses.writeCbor(compactResponses.compact(response, null));
+        } else {
+            try {
+                body = objectMapper.writeValueAsBytes(response);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        domainMetrics.recordSerialization(System.nanoTime() - serializing);
+        renderTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        // Unknown stops render empty boards; keep them from displacing real ones
+        if (enabled && !departures.isEmpty()) {
+            byte[] json = cbor ? (cached != null ? cached.json() : null) : body;
+            byte[] compact = cbor ? body : (cached != null ? cached.cbor() : null);
+            put(stopId, new Entry(board.etag(), json, compact));
+        }
+        return new Versioned<>(body, board.etag(), board.asOf());
+    }
+
+    @EventListener
+    public synchronized void onInvalidation(Invalidation invalidation) {
+        if (invalidation.kind() == Invalidation.Kind.ALL) {
+            entries.clear();
+            cachedBytes = 0;
+        } else if (invalidation.kind() == Invalidation.Kind.STOP) {
+            for (String stopId : invalidation.keys()) {
+                Entry removed = entries.remove(stopId);
+                if (removed != null) {
+                    cachedBytes -= weight(stopId, removed);
+                }
+            }
+        }
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private synchronized Entry get(String stopId) {
+        return entries.get(stopId);
+    }
+
+    private synchronized void put(String stopId, Entry entry) {
+        Entry previous = entries.put(stopId, entry);
+        cachedBytes += weight(stopId, entry);
+        if (previous != null) {
+            cachedBytes -= weight(stopId, previous);
+        }
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            cachedBytes -= weight(evicted.getKey(), evicted.getValue());
+            evictionCounter.increment();
+        }
+    }
+
+    private static long weight(String stopId, Entry entry) {
+        return length(entry.json()) + length(entry.cbor()) + entry.etag().length() + stopId.length()
+            + ENTRY_OVERHEAD_BYTES;
+    }
+
+    private static int length(byte[] body) {
+        return body != null ? body.length : 0;
+    }
+
+    // Either body is null until first requested
+    private record Entry(String etag, byte[] json, byte[] cbor) {}
+}
@@ -0,0 +1,271 @@
+package com.livelink.service;
+
+import com.livelink.cluster.Invalidation;
+import com.livelink.cluster.InvalidationSequence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the in-process caches of all backend replicas coherent.
+ *
+ * Nodes publish which departures, stops, lines or alerts they changed on a
+ * Redis channel; every node, the publisher included, hands the messages to
+ * its {@code @EventListener}s for {@link Invalidation}, which drop or
+ * refresh just the affected entries. Each message carries a sequence number
+ * from a Redis counter, so a node that missed messages notices the gap,
+ * or the counter running ahead, and instead publishes a local
+ * {@link Invalidation.Kind#ALL} resync. Caches may use long TTLs only while
+ * {@link #isCoherent()}.
+ */
+@Service
+public class ClusterInvalidationService implements MessageListener, SubscriptionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterInvalidationService.class);
+
+    static final String CHANNEL = "livelink:invalidations";
+    static final String SEQUENCE_KEY = "livelink:invalidations:sequence";
+
+    // Numbering and publishing in one step keeps the channel in sequence order
+    private static final RedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>("""
+        local sequence = redis.call('INCR', KEYS[1])
+        redis.call('PUBLISH', ARGV[1], sequence .. ' ' .. ARGV[2])
+        return sequence
+        """, Long.class);
+
+    // Beyond this many keys, or held back messages, peers are told to
+    // resync instead
+    private static final int MAX_KEYS = 10_000;
+    private static final int MAX_UNPUBLISHED = 1000;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.cluster.enabled:true}")
+    private boolean enabled;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final InvalidationSequence sequence = new InvalidationSequence();
+    // Listeners may reload snapshots; keep that off the Redis I/O thread
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<String> unpublished = new ArrayList<>();
+    // Held while sending to Redis, so not a monitor
+    private final ReentrantLock unpublishedLock = new ReentrantLock();
+    private volatile boolean subscribed;
+    private volatile boolean reachable;
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * Whether this node receives every invalidation, so caches relying on
+     * them may keep entries for long.
+     */
+    public boolean isCoherent() {
+        return enabled && subscribed && reachable;
+    }
+
+    public boolean isLocal(Invalidation invalidation) {
+        return nodeId.equals(invalidation.origin());
+    }
+
+    /**
+     * Broadcasts changed keys to all nodes. When Redis is unreachable the
+     * message is kept and sent by the next {@link #check()}.
+     */
+    public void publish(Invalidation.Kind kind, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        String payload = keys.size() <= MAX_KEYS
+            ? Invalidation.payload(nodeId, kind, keys)
+            : Invalidation.payload(nodeId, Invalidation.Kind.ALL, List.of());
+        unpublishedLock.lock();
+        try {
+            if (!unpublished.isEmpty()) {
+                holdBack(payload);
+                return;
+            }
+        } finally {
+            unpublishedLock.unlock();
+        }
+        try {
+            send(payload);
+        } catch (DataAccessException e) {
+            log.warn("Publishing {} {} invalidations failed, retrying: {}", keys.size(), kind, e.getMessage());
+            unpublishedLock.lock();
+            try {
+                holdBack(payload);
+            } finally {
+                unpublishedLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Invalidation invalidation;
+        try {
+            invalidation = Invalidation.parse(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed invalidation: {}", e.getMessage());
+            return;
+        }
+        switch (sequence.received(invalidation.sequence())) {
+            case APPLY -> dispatch(invalidation);
+            case RESYNC -> resync(invalidation.sequence(), "gap");
+            case IGNORE -> { }
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        dispatcher.execute(() -> {
+            subscribed = true;
+            try {
+                sequence.restart(readCounter());
+                reachable = true;
+            } catch (DataAccessException e) {
+                log.warn("Reading the invalidation sequence failed: {}", e.getMessage());
+                reachable = false;
+            }
+            // Anything published before the subscription was missed
+            resync(sequence.getLast(), "subscribed");
+        });
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        subscribed = false;
+    }
+
+    /**
+     * Sends held back messages and compares the Redis counter with the
+     * messages received, which catches a silently dropped subscription.
+     */
+    @Scheduled(fixedDelayString = "${livelink.cluster.check-ms:5000}",
+               initialDelayString = "${livelink.cluster.check-ms:5000}")
+    public void check() {
+        if (!enabled || !subscribed) {
+            return;
+        }
+        try {
+            flushUnpublished();
+            boolean missed = sequence.check(readCounter());
+            if (!reachable) {
+                reachable = true;
+                resync(sequence.getLast(), "reconnected");
+            } else if (missed) {
+                resync(sequence.getLast(), "stalled");
+            }
+        } catch (DataAccessException e) {
+            if (reachable) {
+                log.warn("Redis unreachable, caches fall back to short TTLs: {}", e.getMessage());
+            }
+            reachable = false;
+        }
+    }
+
+    private void send(String payload) {
+        redisTemplate.execute(PUBLISH_SCRIPT, List.of(SEQUENCE_KEY), CHANNEL, payload);
+    }
+
+    private void holdBack(String payload) {
+        if (unpublished.size() < MAX_UNPUBLISHED) {
+            unpublished.add(payload);
+        } else if (unpublished.size() == MAX_UNPUBLISHED) {
+            unpublished.clear();
+            unpublished.add(Invalidation.payload(nodeId, Invalidation.Kind.ALL, List.of()));
+        }
+    }
+
+    private void flushUnpublished() {
+        unpublishedLock.lock();
+        try {
+            while (!unpublished.isEmpty()) {
+                send(unpublished.get(0));
+                unpublished.remove(0);
+            }
+        } finally {
+            unpublishedLock.unlock();
+        }
+    }
+
+    private long readCounter() {
+        String counter = redisTemplate.opsForValue().get(SEQUENCE_KEY);
+        return counter != null ? Long.parseLong(counter) : 0;
+    }
+
+    private void resync(long at, String reason) {
+        log.info("Resyncing caches at invalidation {} ({})", at, reason);
+        Counter.builder("livelink.cluster.resyncs")
+            .tag("reason", reason)
+            .description("Full cache resyncs after missed invalidations")
+            .register(meterRegistry)
+            .increment();
+        dispatch(Invalidation.resync(at, nodeId));
+    }
+
+    private void dispatch(Invalidation invalidation) {
+        Counter.builder("livelink.cluster.invalidations")
+            .tag("kind", invalidation.kind().name().toLowerCase())
+            .description("Cache invalidations received")
+            .register(meterRegistry)
+            .increment();
+        dispatcher.execute(() -> {
+            try {
+                eventPublisher.publishEvent(invalidation);
+            } catch (RuntimeException e) {
+                log.warn("Applying invalidation {} failed", invalidation.sequence(), e);
+            }
+        });
+    }
+}
@@ -0,0 +1,212 @@
+package com.livelink.service;
+
+import com.livelink.live.LiveKey;
+import com.livelink.live.LiveState;
+import com.livelink.timetable.Connections;
+import com.livelink.timetable.DelayPropagation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live states of later departures derived from a delay reported upstream
+ * on the same trip, so the feed need not report every stop of a late
+ * vehicle.
+ *
+ * Each report is carried along its trip by {@link DelayPropagation} as it
+ * arrives, replacing whatever the previous report for the same departure
+ * derived. Derived states are kept in memory only, never written to Redis
+ * or {@code live_departures}; every replica derives them from the reports
+ * it writes or is told about. {@link LiveStateService} lays them over the
+ * reported states, where the later report wins. They are dropped once the
+ * last departure they delay has left.
+ */
+@Service
+public class DelayPropagationService {
+
+    private static final Logger log = LoggerFactory.getLogger(DelayPropagationService.class);
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.timezone:Europe/Berlin}")
+    private ZoneId zoneId;
+
+    @Value("${livelink.propagation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.propagation.decay:1.0}")
+    private double decay;
+
+    @Value("${livelink.propagation.catch-up-seconds:30}")
+    private int catchUpSeconds;
+
+    @Value("${livelink.propagation.min-delay-seconds:60}")
+    private int minDelaySeconds;
+
+    private volatile DelayPropagation propagation;
+    // Building the propagation takes a while on large timetables
+    private final ReentrantLock lock = new ReentrantLock();
+    // Derived states by run, and what each reported departure derived
+    private final Map<LiveKey, Derived> derived = new ConcurrentHashMap<>();
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    private Timer propagationTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        Gauge.builder("livelink.propagation.departures", derived, Map::size)
+            .description("Departures delayed by a report further up their trip")
+            .register(meterRegistry);
+        propagationTimer = Timer.builder("livelink.propagation")
+            .description("Time to carry live updates along their trips")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    public boolean isActive() {
+        return enabled && timetableService.isEnabled();
+    }
+
+    public DelayPropagation.Rules getRules() {
+        return enabled ? new DelayPropagation.Rules(decay, catchUpSeconds, minDelaySeconds) : DelayPropagation.Rules.NONE;
+    }
+
+    /**
+     * Propagates reported states along their trips. States older than the
+     * last one propagated for the same departure are ignored.
+     */
+    public void propagate(Collection<LiveState> states) {
+        if (!isActive() || states.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        DelayPropagation current;
+        try {
+            current = current();
+        } catch (DataAccessException e) {
+            log.warn("Delay propagation skipped, timetable unavailable: {}", e.getMessage());
+            return;
+        }
+        for (LiveState state : states) {
+            sources.compute(state.departureId(), (departureId, previous) -> {
+                if (previous != null && previous.reportedAt().isAfter(state.updatedAt())) {
+                    return previous;
+                }
+                if (previous != null) {
+                    forget(departureId, previous);
+                }
+                return derive(current, state);
+            });
+        }
+        propagationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lays derived states over the reported ones of the given runs where
+     * they come from a later report.
+     */
+    public void overlay(Collection<LiveKey> keys, Map<LiveKey, LiveState> states) {
+        if (derived.isEmpty()) {
+            return;
+        }
+        for (LiveKey key : keys) {
+            Derived entry = derived.get(key);
+            if (entry == null) {
+                continue;
+            }
+            LiveState reported = states.get(key);
+            if (reported == null || reported.updatedAt().isBefore(entry.state().updatedAt())) {
+                states.put(key, entry.state());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.propagation.sweep-ms:60000}")
+    public void dropDeparted() {
+        Instant now = Instant.now();
+        for (Map.Entry<String, Source> source : sources.entrySet()) {
+            if (source.getValue().lastDeparture().isBefore(now)
+                    && sources.remove(source.getKey(), source.getValue())) {
+                forget(source.getKey(), source.getValue());
+            }
+        }
+    }
+
+    private Source derive(DelayPropagation current, LiveState state) {
+        if (LiveState.CANCELLED.equals(state.status()) || state.delayMinutes() <= 0) {
+            return null;
+        }
+        List<DelayPropagation.Downstream> downstream =
+            current.propagate(state.departureId(), state.delayMinutes() * 60, state.updatedAt());
+        if (downstream.isEmpty()) {
+            return null;
+        }
+        List<LiveKey> keys = new ArrayList<>(downstream.size());
+        Instant lastDeparture = state.updatedAt();
+        for (DelayPropagation.Downstream later : downstream) {
+            Instant expected = later.scheduled().plusSeconds(later.delaySeconds());
+            Derived entry = new Derived(state.departureId(), new LiveState(later.departureId(), LiveState.DELAYED,
+                later.delaySeconds() / 60, expected, state.updatedAt()));
+            LiveKey key = new LiveKey(later.scheduled().atZone(zoneId).toLocalDate(), later.departureId());
+            // Two reports upstream on the same trip: the later one wins
+            derived.merge(key, entry,
+                (existing, added) -> existing.state().updatedAt().isAfter(added.state().updatedAt()) ? existing : added);
+            keys.add(key);
+            if (expected.isAfter(lastDeparture)) {
+                lastDeparture = expected;
+            }
+        }
+        return new Source(state.updatedAt(), keys, lastDeparture);
+    }
+
+    private void forget(String sourceId, Source source) {
+        for (LiveKey key : source.keys()) {
+            derived.computeIfPresent(key, (id, entry) -> entry.sourceId().equals(sourceId) ? null : entry);
+        }
+    }
+
+    private DelayPropagation current() {
+        Connections connections = timetableService.getConnections();
+        DelayPropagation current = propagation;
+        if (current != null && current.getConnections() == connections) {
+            return current;
+        }
+        lock.lock();
+        try {
+            current = propagation;
+            if (current == null || current.getConnections() != connections) {
+                current = DelayPropagation.build(connections, timetableService.getDepartureIndex(), getRules());
+                propagation = current;
+            }
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Derived(String sourceId, LiveState state) {}
+
+    private record Source(Instant reportedAt, List<LiveKey> keys, Instant lastDeparture) {}
+}
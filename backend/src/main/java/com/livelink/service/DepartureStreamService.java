@@ -0,0 +1,398 @@
+package com.livelink.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.livelink.dto.ApiBoardUpdate;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.dto.ApiResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes departure board changes to Server-Sent Events subscribers.
+ *
+ * Each tick rebuilds the board of every subscribed stop once, diffs it
+ * against the previous board and queues the serialized diff for all
+ * subscribers of that stop. Each subscriber's queue is written out by a
+ * sender task while it has events, so a client that stops reading holds
+ * up neither the tick nor other clients; once its queue is full it is
+ * disconnected.
+ *
+ * Senders run on virtual threads when requests do (Java 21 with
+ * {@code spring.threads.virtual.enabled}), otherwise on a fixed pool of
+ * {@code livelink.stream.sender-threads}. A sender stuck writing to a
+ * client holds its pool thread only until the container's write timeout
+ * fails the write; other subscribers' senders queue behind it meanwhile.
+ */
+@Service
+public class DepartureStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(DepartureStreamService.class);
+
+    @Autowired
+    private DeparturesService departuresService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${livelink.stream.max-subscribers:2000}")
+    private int maxSubscribers;
+
+    @Value("${livelink.stream.max-stops-per-subscriber:50}")
+    private int maxStopsPerSubscriber;
+
+    @Value("${livelink.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${livelink.stream.max-queued-events:20}")
+    private int maxQueuedEvents;
+
+    @Value("${livelink.stream.sender-threads:32}")
+    private int senderThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscriber>> subscribersByStop = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, ApiDeparture>> boards = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger senderCount = new AtomicInteger();
+    private Executor senders;
+
+    private Timer fanOutTimer;
+    private Counter rejectedCounter;
+    private Counter updateCounter;
+    private Counter laggingCounter;
+    private Counter failedBoardCounter;
+
+    @PostConstruct
+    void start() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-sender-");
+            executor.setVirtualThreads(true);
+            senders = executor;
+        } else {
+            // At most one sender task per subscriber is queued or running
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(senderThreads, senderThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "stream-sender-" + senderCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            senders = pool;
+        }
+        registerMeters();
+    }
+
+    private void registerMeters() {
+        Gauge.builder("livelink.stream.subscribers", subscribers, Set::size)
+            .description("Open departure stream connections")
+            .register(meterRegistry);
+        Gauge.builder("livelink.stream.stops", subscribersByStop, Map::size)
+            .description("Stops with at least one stream subscriber")
+            .register(meterRegistry);
+        fanOutTimer = Timer.builder("livelink.stream.fanout")
+            .description("Time from detecting a board change until it is written to a subscriber")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        rejectedCounter = Counter.builder("livelink.stream.rejected")
+            .description("Stream subscriptions rejected because the connection limit was reached")
+            .register(meterRegistry);
+        updateCounter = Counter.builder("livelink.stream.updates")
+            .description("Board update events queued for subscribers")
+            .register(meterRegistry);
+        laggingCounter = Counter.builder("livelink.stream.lagging")
+            .description("Subscribers disconnected because their event queue was full")
+            .register(meterRegistry);
+        failedBoardCounter = Counter.builder("livelink.stream.board.failures")
+            .description("Stop boards that could not be rebuilt in a tick")
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stopSenders() {
+        if (senders instanceof ThreadPoolExecutor pool) {
+            pool.shutdownNow();
+        }
+    }
+
+    public SseEmitter subscribe(List<String> stopIds) {
+        Set<String> stops = new LinkedHashSet<>(stopIds);
+        if (stops.isEmpty() || stops.size() > maxStopsPerSubscriber) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Between 1 and " + maxStopsPerSubscriber + " stop ids are required");
+        }
+        if (connections.incrementAndGet() > maxSubscribers) {
+            connections.decrementAndGet();
+            rejectedCounter.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "Departure stream connection limit reached");
+        }
+
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis), stops);
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+
+        // Hold the subscriber lock until the snapshot is queued, so a
+        // concurrent tick cannot queue an update ahead of it
+        subscriber.lock.lock();
+        try {
+            subscribers.add(subscriber);
+            for (String stopId : stops) {
+                subscribersByStop.computeIfAbsent(stopId, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+            }
+            List<ApiDeparture> snapshot = new ArrayList<>();
+            for (String stopId : stops) {
+                Map<String, ApiDeparture> board = boards.get(stopId);
+                if (board == null) {
+                    board = loadBoard(stopId);
+                    boards.putIfAbsent(stopId, board);
+                }
+                snapshot.addAll(board.values());
+            }
+            enqueue(subscriber, SseEmitter.event()
+                .name("snapshot")
+                .data(ApiResponse.success(snapshot, "Departure board snapshot"), MediaType.APPLICATION_JSON));
+        } catch (RuntimeException e) {
+            unsubscribe(subscriber);
+            throw e;
+        } finally {
+            subscriber.lock.unlock();
+        }
+        return subscriber.emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.stream.tick-ms:5000}")
+    public void publishChanges() {
+        for (Map.Entry<String, Set<Subscriber>> entry : subscribersByStop.entrySet()) {
+            String stopId = entry.getKey();
+            Set<Subscriber> stopSubscribers = entry.getValue();
+            if (stopSubscribers.isEmpty()) {
+                continue;
+            }
+
+            Map<String, ApiDeparture> current;
+            try {
+                current = loadBoard(stopId);
+            } catch (RuntimeException e) {
+                // The previous board stays, so the next tick diffs against it
+                failedBoardCounter.increment();
+                log.warn("Could not rebuild board of stop {} for its stream: {}", stopId, e.getMessage());
+                continue;
+            }
+            Map<String, ApiDeparture> previous = boards.put(stopId, current);
+            if (!subscribersByStop.containsKey(stopId)) {
+                // Last subscriber left while the board was being rebuilt
+                boards.remove(stopId);
+                continue;
+            }
+            ApiBoardUpdate update = diff(stopId, previous != null ? previous : Map.of(), current);
+            if (update == null) {
+                continue;
+            }
+
+            String payload;
+            try {
+                payload = objectMapper.writeValueAsString(update);
+            } catch (JsonProcessingException e) {
+                log.error("Could not serialize board update for stop {}", stopId, e);
+                continue;
+            }
+
+            Timer.Sample detected = Timer.start(meterRegistry);
+            for (Subscriber subscriber : stopSubscribers) {
+                enqueue(subscriber, SseEmitter.event().name("update").data(payload, MediaType.APPLICATION_JSON),
+                    detected);
+                updateCounter.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.stream.heartbeat-ms:15000}")
+    public void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, SseEmitter.event().comment("heartbeat"));
+        }
+    }
+
+    private Map<String, ApiDeparture> loadBoard(String stopId) {
+        Map<String, ApiDeparture> board = new LinkedHashMap<>();
+        for (ApiDeparture departure : departuresService.getLiveDepartures(List.of(stopId))) {
+            board.put(departure.getId(), departure);
+        }
+        return board;
+    }
+
+    private static ApiBoardUpdate diff(String stopId, Map<String, ApiDeparture> previous,
+                                       Map<String, ApiDeparture> current) {
+        List<ApiDeparture> updated = new ArrayList<>();
+        for (ApiDeparture departure : current.values()) {
+            if (!departure.equals(previous.get(departure.getId()))) {
+                updated.add(departure);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String departureId : previous.keySet()) {
+            if (!current.containsKey(departureId)) {
+                removed.add(departureId);
+            }
+        }
+        if (updated.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        return new ApiBoardUpdate(stopId, updated, removed);
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        enqueue(subscriber, event, null);
+    }
+
+    // Queues an event and starts a sender for the subscriber unless one is
+    // running; a subscriber whose queue is full is disconnected instead.
+    // Board updates carry the time their change was detected.
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event, Timer.Sample detected) {
+        boolean lagging = false;
+        subscriber.lock.lock();
+        try {
+            if (subscriber.closed) {
+                return;
+            }
+            if (subscriber.outbox.size() >= maxQueuedEvents) {
+                // A full queue always has its sender queued or running
+                lagging = true;
+                subscriber.dropped = true;
+            } else {
+                subscriber.outbox.addLast(new Queued(event, detected));
+                if (!subscriber.sending) {
+                    subscriber.sending = true;
+                    senders.execute(() -> drain(subscriber));
+                }
+            }
+        } finally {
+            subscriber.lock.unlock();
+        }
+        if (lagging) {
+            log.debug("Dropping departure stream subscriber with {} queued events", maxQueuedEvents);
+            laggingCounter.increment();
+            unsubscribe(subscriber);
+        }
+    }
+
+    // Sends queued events in order until the queue is empty; writes happen
+    // outside the lock, so queueing never waits on the socket. A dropped
+    // subscriber's emitter is completed here, once the write its sender may
+    // have been stuck in has returned, so no other thread waits on it.
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            Queued queued;
+            boolean dropped;
+            subscriber.lock.lock();
+            try {
+                queued = subscriber.closed ? null : subscriber.outbox.pollFirst();
+                dropped = subscriber.dropped;
+                if (queued == null) {
+                    subscriber.outbox.clear();
+                    subscriber.sending = false;
+                }
+            } finally {
+                subscriber.lock.unlock();
+            }
+            if (queued == null) {
+                if (dropped) {
+                    subscriber.emitter.complete();
+                }
+                return;
+            }
+            send(subscriber, queued);
+        }
+    }
+
+    private void send(Subscriber subscriber, Queued queued) {
+        try {
+            subscriber.emitter.send(queued.event());
+            if (queued.detected() != null) {
+                queued.detected().stop(fanOutTimer);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping departure stream subscriber: {}", e.getMessage());
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        subscriber.closed = true;
+        connections.decrementAndGet();
+        for (String stopId : subscriber.stopIds) {
+            subscribersByStop.computeIfPresent(stopId, (key, stopSubscribers) -> {
+                stopSubscribers.remove(subscriber);
+                if (stopSubscribers.isEmpty()) {
+                    boards.remove(key);
+                    return null;
+                }
+                return stopSubscribers;
+            });
+        }
+    }
+
+    private record Queued(SseEmitter.SseEventBuilder event, Timer.Sample detected) {}
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<String> stopIds;
+        // Guards the outbox and the sending and dropped flags
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Queued> outbox = new ArrayDeque<>();
+        private boolean sending;
+        // Disconnected for lagging; its sender completes the emitter
+        private boolean dropped;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, Set<String> stopIds) {
+            this.emitter = emitter;
+            this.stopIds = stopIds;
+        }
+    }
+}
@@ -0,0 +1,673 @@
+package com.livelink.service;
+
+import com.livelink.cluster.Invalidation;
+import com.livelink.gtfs.CopyWriter;
+import com.livelink.gtfs.GtfsCsv;
+import com.livelink.gtfs.GtfsValues;
+import com.livelink.gtfs.ServiceCalendar;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads a GTFS static feed into the timetable tables.
+ *
+ * The zip is read entry by entry and {@code stop_times.txt} is streamed
+ * straight into a {@code COPY} to a temporary staging table, so memory use
+ * is bounded by stops and trips, not stop times. The staged rows are then
+ * merged into {@code transport_lines}, {@code transport_stops},
+ * {@code scheduled_departures} and {@code routes} in the same transaction:
+ * readers keep seeing the previous timetable until the commit and are
+ * never blocked, and only rows that changed are rewritten. Rows the feed
+ * no longer contains are deactivated rather than deleted, because live
+ * departures and user preferences refer to them.
+ *
+ * Child stops and platforms are folded into their parent station, with
+ * the platform code kept on the departure. Departure ids are derived from
+ * trip id and stop sequence, so they survive reloads. The stops and lines
+ * whose rows changed are broadcast to all replicas after the commit.
+ */
+@Service
+public class GtfsImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(GtfsImportService.class);
+
+    private static final int ID_WIDTH = 50;
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final String CREATE_STAGING_SQL = """
+        CREATE TEMPORARY TABLE gtfs_lines (
+            id VARCHAR(50),
+            line_number VARCHAR(20),
+            transport_type VARCHAR(20),
+            operator VARCHAR(100),
+            color_code VARCHAR(7)
+        ) ON COMMIT DROP;
+        CREATE TEMPORARY TABLE gtfs_stops (
+            id VARCHAR(50),
+            name VARCHAR(255),
+            stop_type VARCHAR(20),
+            latitude DECIMAL(10, 8),
+            longitude DECIMAL(11, 8)
+        ) ON COMMIT DROP;
+        CREATE TEMPORARY TABLE gtfs_stop_times (
+            id UUID,
+            trip_id TEXT,
+            stop_sequence INTEGER,
+            line_id VARCHAR(50),
+            stop_id VARCHAR(50),
+            arrival_seconds INTEGER,
+            departure_seconds INTEGER,
+            departure_time TIME,
+            days_of_week INTEGER[],
+            platform VARCHAR(10),
+            direction VARCHAR(255),
+            boardable BOOLEAN
+        ) ON COMMIT DROP
+        """;
+
+    // Indexed after loading; ANALYZE because autovacuum skips temporary tables
+    private static final String INDEX_STAGING_SQL = """
+        ALTER TABLE gtfs_stop_times ADD PRIMARY KEY (id);
+        ANALYZE gtfs_lines;
+        ANALYZE gtfs_stops;
+        ANALYZE gtfs_stop_times
+        """;
+
+    private static final String MERGE_LINES_SQL = """
+        INSERT INTO transport_lines AS tl (id, line_number, transport_type, operator, color_code, is_active)
+        SELECT id, line_number, transport_type, operator, color_code, true
+        FROM gtfs_lines
+        ON CONFLICT (id) DO UPDATE SET
+            line_number = EXCLUDED.line_number,
+            transport_type = EXCLUDED.transport_type,
+            operator = EXCLUDED.operator,
+            color_code = EXCLUDED.color_code,
+            is_active = true
+        WHERE (tl.line_number, tl.transport_type, tl.operator, tl.color_code, tl.is_active)
+            IS DISTINCT FROM (EXCLUDED.line_number, EXCLUDED.transport_type, EXCLUDED.operator,
+                              EXCLUDED.color_code, true)
+        RETURNING tl.id
+        """;
+
+    // Known stops keep their pincode and address, which GTFS does not carry
+    private static final String MERGE_STOPS_SQL = """
+        INSERT INTO transport_stops AS ts (id, name, stop_type, latitude, longitude, pincode, is_active)
+        SELECT id, name, stop_type, latitude, longitude, ?, true
+        FROM gtfs_stops
+        ON CONFLICT (id) DO UPDATE SET
+            name = EXCLUDED.name,
+            stop_type = EXCLUDED.stop_type,
+            latitude = EXCLUDED.latitude,
+            longitude = EXCLUDED.longitude,
+            is_active = true
+        WHERE (ts.name, ts.stop_type, ts.latitude, ts.longitude, ts.is_active)
+            IS DISTINCT FROM (EXCLUDED.name, EXCLUDED.stop_type, EXCLUDED.latitude, EXCLUDED.longitude, true)
+        RETURNING ts.id
+        """;
+
+    // Written departures per stop and line
+    private static final String MERGE_DEPARTURES_SQL = """
+        WITH merged AS (
+            INSERT INTO scheduled_departures AS sd
+                (id, line_id, stop_id, departure_time, days_of_week, platform, direction, is_active)
+            SELECT id, line_id, stop_id, departure_time, days_of_week, platform, direction, true
+            FROM gtfs_stop_times
+            WHERE boardable
+            ON CONFLICT (id) DO UPDATE SET
+                line_id = EXCLUDED.line_id,
+                stop_id = EXCLUDED.stop_id,
+                departure_time = EXCLUDED.departure_time,
+                days_of_week = EXCLUDED.days_of_week,
+                platform = EXCLUDED.platform,
+                direction = EXCLUDED.direction,
+                is_active = true
+            WHERE (sd.line_id, sd.stop_id, sd.departure_time, sd.days_of_week, sd.platform, sd.direction, sd.is_active)
+                IS DISTINCT FROM (EXCLUDED.line_id, EXCLUDED.stop_id, EXCLUDED.departure_time, EXCLUDED.days_of_week,
+                                  EXCLUDED.platform, EXCLUDED.direction, true)
+            RETURNING sd.stop_id, sd.line_id
+        )
+        SELECT stop_id, line_id, COUNT(*) FROM merged GROUP BY stop_id, line_id
+        """;
+
+    private static final String DEACTIVATE_DEPARTURES_SQL = """
+        WITH deactivated AS (
+            UPDATE scheduled_departures sd
+            SET is_active = false
+            WHERE sd.is_active = true
+            AND NOT EXISTS (
+                SELECT 1 FROM gtfs_stop_times st
+                WHERE st.id = sd.id AND st.boardable
+            )
+            RETURNING sd.stop_id, sd.line_id
+        )
+        SELECT stop_id, line_id, COUNT(*) FROM deactivated GROUP BY stop_id, line_id
+        """;
+
+    private static final String DEACTIVATE_STOPS_SQL = """
+        UPDATE transport_stops ts
+        SET is_active = false
+        WHERE ts.is_active = true
+        AND NOT EXISTS (SELECT 1 FROM gtfs_stops gs WHERE gs.id = ts.id)
+        RETURNING ts.id
+        """;
+
+    private static final String DEACTIVATE_LINES_SQL = """
+        UPDATE transport_lines tl
+        SET is_active = false
+        WHERE tl.is_active = true
+        AND NOT EXISTS (SELECT 1 FROM gtfs_lines gl WHERE gl.id = tl.id)
+        RETURNING tl.id
+        """;
+
+    private static final String DELETE_ROUTES_SQL = """
+        DELETE FROM routes
+        WHERE line_id IN (SELECT id FROM gtfs_lines)
+        """;
+
+    // One chain of legs per line and direction, taken from the trip
+    // serving the most stops
+    private static final String INSERT_ROUTES_SQL = """
+        INSERT INTO routes (line_id, from_stop_id, to_stop_id, sequence_order, travel_time_minutes)
+        SELECT
+            line_id,
+            from_stop_id,
+            to_stop_id,
+            ROW_NUMBER() OVER (PARTITION BY trip_id ORDER BY stop_sequence),
+            GREATEST(COALESCE(ROUND((next_arrival_seconds - departure_seconds) / 60.0), 0), 0)
+        FROM (
+            SELECT
+                st.trip_id,
+                st.line_id,
+                st.stop_sequence,
+                st.stop_id AS from_stop_id,
+                LEAD(st.stop_id) OVER w AS to_stop_id,
+                st.departure_seconds,
+                LEAD(st.arrival_seconds) OVER w AS next_arrival_seconds
+            FROM gtfs_stop_times st
+            WHERE st.trip_id = ANY(?)
+            WINDOW w AS (PARTITION BY st.trip_id ORDER BY st.stop_sequence)
+        ) legs
+        WHERE to_stop_id IS NOT NULL
+        AND to_stop_id <> from_stop_id
+        """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ClusterInvalidationService clusterInvalidationService;
+
+    @Value("${livelink.gtfs.feed-path:}")
+    private String feedPath;
+
+    @Value("${livelink.gtfs.default-pincode:00000}")
+    private String defaultPincode;
+
+    @Value("${livelink.timezone:Europe/Berlin}")
+    private ZoneId zoneId;
+
+    @Value("${livelink.timetable.service-day-start:00:00}")
+    private String serviceDayStart;
+
+    public record ImportResult(int lines, int stops, long stopTimes, int departures, int deactivated, int routes,
+                               Set<String> changedStops, Set<String> changedLines) {}
+
+    /**
+     * Nightly reload of the configured feed; moves the imported service
+     * week along even when the file did not change.
+     */
+    @Scheduled(cron = "${livelink.gtfs.import-cron:0 30 2 * * *}", zone = "${livelink.timezone:Europe/Berlin}")
+    public void importConfiguredFeed() {
+        if (feedPath.isBlank()) {
+            return;
+        }
+        try {
+            importFeed(Path.of(feedPath));
+        } catch (IOException | RuntimeException e) {
+            log.error("GTFS import of {} failed, keeping the current timetable", feedPath, e);
+        }
+    }
+
+    /**
+     * Imports a GTFS zip for the service week starting today.
+     *
+     * @throws IOException if the feed cannot be read or is malformed
+     */
+    public synchronized ImportResult importFeed(Path zip) throws IOException {
+        if (!Files.isRegularFile(zip)) {
+            throw new IOException("No GTFS feed at " + zip);
+        }
+        long started = System.nanoTime();
+        String outcome = "error";
+        try (ZipFile feed = new ZipFile(zip.toFile(), StandardCharsets.UTF_8)) {
+            ImportResult result = transactionTemplate.execute(status -> {
+                try {
+                    return load(feed);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outcome = "success";
+            clusterInvalidationService.publish(Invalidation.Kind.STOP, result.changedStops());
+            clusterInvalidationService.publish(Invalidation.Kind.LINE, result.changedLines());
+            log.info("Imported GTFS feed {} in {} s: {} lines, {} stops, {} stop times, {} departures written, "
+                    + "{} deactivated, {} route legs",
+                zip, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started), result.lines(), result.stops(),
+                result.stopTimes(), result.departures(), result.deactivated(), result.routes());
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            Timer.builder("livelink.gtfs.import")
+                .tag("outcome", outcome)
+                .description("Time to import a GTFS feed")
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ImportResult load(ZipFile feed) throws IOException {
+        jdbcTemplate.execute(CREATE_STAGING_SQL);
+
+        Map<String, Stop> stops = readStops(feed);
+        ServiceCalendar calendar = readCalendar(feed);
+        Map<String, Line> lines = readLines(feed, readAgencies(feed));
+        Map<String, Trip> trips = readTrips(feed, lines, calendar);
+        long stopTimes = copyStopTimes(feed, stops, trips);
+        int lineCount = copyLines(lines);
+        int stopCount = copyStops(stops);
+        jdbcTemplate.execute(INDEX_STAGING_SQL);
+
+        Set<String> changedLines = new HashSet<>(jdbcTemplate.queryForList(MERGE_LINES_SQL, String.class));
+        Set<String> changedStops = new HashSet<>(
+            jdbcTemplate.queryForList(MERGE_STOPS_SQL, String.class, defaultPincode));
+        int departures = mergeDepartures(MERGE_DEPARTURES_SQL, changedStops, changedLines);
+        int deactivated = mergeDepartures(DEACTIVATE_DEPARTURES_SQL, changedStops, changedLines);
+        changedStops.addAll(jdbcTemplate.queryForList(DEACTIVATE_STOPS_SQL, String.class));
+        changedLines.addAll(jdbcTemplate.queryForList(DEACTIVATE_LINES_SQL, String.class));
+        jdbcTemplate.update(DELETE_ROUTES_SQL);
+        int routes = jdbcTemplate.update(INSERT_ROUTES_SQL, (Object) representativeTrips(trips));
+        return new ImportResult(lineCount, stopCount, stopTimes, departures, deactivated, routes,
+            changedStops, changedLines);
+    }
+
+    // Runs a departure statement reporting its rows per stop and line
+    private int mergeDepartures(String sql, Set<String> changedStops, Set<String> changedLines) {
+        int[] rows = {0};
+        jdbcTemplate.query(sql, rs -> {
+            changedStops.add(rs.getString(1));
+            changedLines.add(rs.getString(2));
+            rows[0] += rs.getInt(3);
+        });
+        return rows[0];
+    }
+
+    private Map<String, Stop> readStops(ZipFile feed) throws IOException {
+        Map<String, Stop> stops = new HashMap<>();
+        Map<String, String> parents = new HashMap<>();
+        try (GtfsCsv csv = open(feed, "stops.txt", true)) {
+            int idColumn = csv.requiredColumn("stop_id");
+            int nameColumn = csv.requiredColumn("stop_name");
+            int latitudeColumn = csv.column("stop_lat");
+            int longitudeColumn = csv.column("stop_lon");
+            int typeColumn = csv.column("location_type");
+            int parentColumn = csv.column("parent_station");
+            int platformColumn = csv.column("platform_code");
+            while (csv.next()) {
+                String type = csv.get(typeColumn).strip();
+                // Entrances, generic nodes and boarding areas have no departures
+                if (!type.isEmpty() && !type.equals("0") && !type.equals("1")) {
+                    continue;
+                }
+                String id = csv.get(idColumn).strip();
+                stops.put(id, new Stop(id, csv.get(nameColumn).strip(), csv.get(latitudeColumn).strip(),
+                    csv.get(longitudeColumn).strip(), GtfsValues.column(csv.get(platformColumn), 10)));
+                String parent = csv.get(parentColumn).strip();
+                if (!parent.isEmpty()) {
+                    parents.put(id, parent);
+                }
+            }
+        }
+        parents.forEach((child, parent) -> {
+            Stop station = stops.get(parent);
+            if (station != null) {
+                stops.get(child).station = station;
+            }
+        });
+        return stops;
+    }
+
+    private ServiceCalendar readCalendar(ZipFile feed) throws IOException {
+        ServiceCalendar calendar = new ServiceCalendar(LocalDate.now(zoneId));
+        try (GtfsCsv csv = open(feed, "calendar.txt", false)) {
+            if (csv != null) {
+                calendar.readCalendar(csv);
+            }
+        }
+        try (GtfsCsv csv = open(feed, "calendar_dates.txt", false)) {
+            if (csv != null) {
+                calendar.readCalendarDates(csv);
+            }
+        }
+        return calendar;
+    }
+
+    private Map<String, String> readAgencies(ZipFile feed) throws IOException {
+        Map<String, String> agencies = new HashMap<>();
+        try (GtfsCsv csv = open(feed, "agency.txt", false)) {
+            if (csv != null) {
+                int idColumn = csv.column("agency_id");
+                int nameColumn = csv.requiredColumn("agency_name");
+                while (csv.next()) {
+                    agencies.put(csv.get(idColumn).strip(), GtfsValues.column(csv.get(nameColumn), 100));
+                }
+            }
+        }
+        return agencies;
+    }
+
+    private Map<String, Line> readLines(ZipFile feed, Map<String, String> agencies) throws IOException {
+        Map<String, Line> lines = new LinkedHashMap<>();
+        // A route without agency_id belongs to the only agency
+        String soleAgency = agencies.size() == 1 ? agencies.values().iterator().next() : null;
+        try (GtfsCsv csv = open(feed, "routes.txt", true)) {
+            int idColumn = csv.requiredColumn("route_id");
+            int agencyColumn = csv.column("agency_id");
+            int shortNameColumn = csv.column("route_short_name");
+            int longNameColumn = csv.column("route_long_name");
+            int typeColumn = csv.requiredColumn("route_type");
+            int colorColumn = csv.column("route_color");
+            while (csv.next()) {
+                String id = checkId(csv.get(idColumn), "route_id");
+                String number = csv.get(shortNameColumn).isBlank() ? csv.get(longNameColumn) : csv.get(shortNameColumn);
+                String agencyId = csv.get(agencyColumn).strip();
+                int type;
+                try {
+                    type = GtfsValues.transportType(Integer.parseInt(csv.get(typeColumn).strip()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid route_type for route " + id);
+                }
+                lines.put(id, new Line(id, GtfsValues.column(number.isBlank() ? id : number, 20), type,
+                    agencyId.isEmpty() ? soleAgency : agencies.get(agencyId), GtfsValues.color(csv.get(colorColumn))));
+            }
+        }
+        return lines;
+    }
+
+    private Map<String, Trip> readTrips(ZipFile feed, Map<String, Line> lines, ServiceCalendar calendar)
+            throws IOException {
+        Map<String, Trip> trips = new HashMap<>();
+        try (GtfsCsv csv = open(feed, "trips.txt", true)) {
+            int idColumn = csv.requiredColumn("trip_id");
+            int routeColumn = csv.requiredColumn("route_id");
+            int serviceColumn = csv.requiredColumn("service_id");
+            int headsignColumn = csv.column("trip_headsign");
+            int directionColumn = csv.column("direction_id");
+            while (csv.next()) {
+                Line line = lines.get(csv.get(routeColumn).strip());
+                int weekdays = calendar.weekdays(csv.get(serviceColumn).strip());
+                if (line == null || weekdays == 0) {
+                    continue;
+                }
+                trips.put(csv.get(idColumn).strip(), new Trip(line, weekdays,
+                    GtfsValues.column(csv.get(headsignColumn), 255), csv.get(directionColumn).strip()));
+            }
+        }
+        return trips;
+    }
+
+    private long copyStopTimes(ZipFile feed, Map<String, Stop> stops, Map<String, Trip> trips) throws IOException {
+        int dayStart = LocalTime.parse(serviceDayStart).toSecondOfDay();
+        try (GtfsCsv csv = open(feed, "stop_times.txt", true)) {
+            int tripColumn = csv.requiredColumn("trip_id");
+            int sequenceColumn = csv.requiredColumn("stop_sequence");
+            int stopColumn = csv.requiredColumn("stop_id");
+            int arrivalColumn = csv.requiredColumn("arrival_time");
+            int departureColumn = csv.requiredColumn("departure_time");
+            int headsignColumn = csv.column("stop_headsign");
+            int pickupColumn = csv.column("pickup_type");
+            return copy("gtfs_stop_times", rows -> {
+                while (csv.next()) {
+                    String tripId = csv.get(tripColumn).strip();
+                    Trip trip = trips.get(tripId);
+                    if (trip == null) {
+                        continue;
+                    }
+                    Stop stop = stops.get(csv.get(stopColumn).strip());
+                    if (stop == null) {
+                        throw new IOException("Unknown stop in stop_times record " + csv.getRecordNumber());
+                    }
+                    Stop station = stop.station != null ? stop.station : stop;
+                    station.types |= trip.line.type;
+                    trip.stopCount++;
+                    trip.line.used = true;
+
+                    int sequence;
+                    int arrival;
+                    int departure;
+                    try {
+                        sequence = Integer.parseInt(csv.get(sequenceColumn).strip());
+                        arrival = GtfsValues.seconds(csv.get(arrivalColumn));
+                        departure = GtfsValues.seconds(csv.get(departureColumn));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Invalid stop_times record " + csv.getRecordNumber() + ": "
+                            + e.getMessage());
+                    }
+                    arrival = arrival >= 0 ? arrival : departure;
+                    departure = departure >= 0 ? departure : arrival;
+                    boolean boardable = departure >= 0 && !"1".equals(csv.get(pickupColumn).strip());
+                    String headsign = GtfsValues.column(csv.get(headsignColumn), 255);
+
+                    rows.text(UUID.nameUUIDFromBytes((tripId + ":" + sequence).getBytes(StandardCharsets.UTF_8))
+                            .toString())
+                        .text(tripId)
+                        .number(sequence)
+                        .text(trip.line.id)
+                        .text(checkId(station.id, "stop_id"))
+                        .optionalNumber(arrival)
+                        .optionalNumber(departure);
+                    if (departure >= 0) {
+                        rows.text(GtfsValues.clockTime(departure % SECONDS_PER_DAY))
+                            .weekdays(ServiceCalendar.shift(trip.weekdays,
+                                ServiceCalendar.dayOffset(departure, dayStart)));
+                    } else {
+                        rows.text(null).text(null);
+                    }
+                    rows.text(stop.platform)
+                        .text(headsign != null ? headsign : trip.headsign)
+                        .bool(boardable)
+                        .endRow();
+                }
+            });
+        }
+    }
+
+    private int copyLines(Map<String, Line> lines) throws IOException {
+        return (int) copy("gtfs_lines", rows -> {
+            for (Line line : lines.values()) {
+                if (line.used) {
+                    rows.text(line.id)
+                        .text(line.number)
+                        .text(GtfsValues.typeName(line.type))
+                        .text(line.operator)
+                        .text(line.color)
+                        .endRow();
+                }
+            }
+        });
+    }
+
+    private int copyStops(Map<String, Stop> stops) throws IOException {
+        return (int) copy("gtfs_stops", rows -> {
+            for (Stop stop : stops.values()) {
+                if (stop.types != 0) {
+                    rows.text(stop.id)
+                        .text(GtfsValues.column(stop.name.isEmpty() ? stop.id : stop.name, 255))
+                        .text(GtfsValues.typeName(stop.types))
+                        .optional(stop.latitude)
+                        .optional(stop.longitude)
+                        .endRow();
+                }
+            }
+        });
+    }
+
+    private static String[] representativeTrips(Map<String, Trip> trips) {
+        Map<String, Map.Entry<String, Trip>> longest = new HashMap<>();
+        trips.forEach((tripId, trip) -> {
+            String key = trip.line.id + '\u0000' + trip.directionId;
+            Map.Entry<String, Trip> current = longest.get(key);
+            if (current == null || trip.stopCount > current.getValue().stopCount
+                    || trip.stopCount == current.getValue().stopCount && tripId.compareTo(current.getKey()) < 0) {
+                longest.put(key, Map.entry(tripId, trip));
+            }
+        });
+        List<String> tripIds = new ArrayList<>(longest.size());
+        longest.values().forEach(entry -> tripIds.add(entry.getKey()));
+        return tripIds.toArray(new String[0]);
+    }
+
+    private long copy(String table, CopyBody body) throws IOException {
+        try {
+            return copyIn(table, body);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private long copyIn(String table, CopyBody body) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            PGCopyOutputStream stream = new PGCopyOutputStream(connection.unwrap(PGConnection.class),
+                "COPY " + table + " FROM STDIN", 1 << 16);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+                CopyWriter rows = new CopyWriter(writer);
+                body.write(rows);
+                writer.flush();
+                stream.endCopy();
+                return rows.getRows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (stream.isActive()) {
+                    stream.cancelCopy();
+                }
+            }
+        });
+    }
+
+    private static GtfsCsv open(ZipFile feed, String name, boolean required) throws IOException {
+        ZipEntry entry = feed.getEntry(name);
+        if (entry == null) {
+            if (required) {
+                throw new IOException("GTFS feed has no " + name);
+            }
+            return null;
+        }
+        return new GtfsCsv(new InputStreamReader(feed.getInputStream(entry), StandardCharsets.UTF_8));
+    }
+
+    private static String checkId(String value, String field) throws IOException {
+        String id = value.strip();
+        if (id.isEmpty() || id.length() > ID_WIDTH) {
+            throw new IOException("Unsupported " + field + " '" + id + "', ids have 1 to " + ID_WIDTH + " characters");
+        }
+        return id;
+    }
+
+    @FunctionalInterface
+    private interface CopyBody {
+        void write(CopyWriter rows) throws IOException;
+    }
+
+    private static final class Stop {
+        final String id;
+        final String name;
+        final String latitude;
+        final String longitude;
+        final String platform;
+        Stop station;
+        int types;
+
+        Stop(String id, String name, String latitude, String longitude, String platform) {
+            this.id = id;
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.platform = platform;
+        }
+    }
+
+    private static final class Line {
+        final String id;
+        final String number;
+        final int type;
+        final String operator;
+        final String color;
+        boolean used;
+
+        Line(String id, String number, int type, String operator, String color) {
+            this.id = id;
+            this.number = number;
+            this.type = type;
+            this.operator = operator;
+            this.color = color;
+        }
+    }
+
+    private static final class Trip {
+        final Line line;
+        final int weekdays;
+        final String headsign;
+        final String directionId;
+        int stopCount;
+
+        Trip(Line line, int weekdays, String headsign, String directionId) {
+            this.line = line;
+            this.weekdays = weekdays;
+            this.headsign = headsign;
+            this.directionId = directionId;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.livelink.service;
+
+import com.livelink.dto.ApiJourney;
+import com.livelink.dto.ApiJourneyLeg;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.timetable.ConnectionScan;
+import com.livelink.timetable.Connections;
+import com.livelink.timetable.Journey;
+import com.livelink.timetable.LiveDelays;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Plans journeys over the connections of the materialized service days,
+ * with the latest delays and cancellations from {@code live_departures}
+ * laid over them and carried on along their trips.
+ *
+ * The connections are rebuilt when the service days are rematerialized,
+ * the delays every few seconds; a query uses whatever snapshot is current.
+ */
+@Service
+public class JourneyService {
+
+    private static final Logger log = LoggerFactory.getLogger(JourneyService.class);
+
+    private static final String DELAYS_SQL = """
+        SELECT DISTINCT ON (ld.scheduled_departure_id)
+            ld.scheduled_departure_id,
+            sd.stop_id,
+            sd.departure_time,
+            ld.delay_minutes,
+            ld.status,
+            ld.updated_at
+        FROM live_departures ld
+        JOIN scheduled_departures sd ON sd.id = ld.scheduled_departure_id
+        WHERE ld.service_day >= CURRENT_DATE - 1
+        AND ld.updated_at >= CURRENT_TIMESTAMP - INTERVAL '12 hours'
+        ORDER BY ld.scheduled_departure_id, ld.updated_at DESC
+        """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private DelayPropagationService delayPropagationService;
+
+    @Value("${livelink.journeys.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.journeys.max-transfers:4}")
+    private int maxTransfers;
+
+    @Value("${livelink.journeys.transfer-seconds:120}")
+    private int transferSeconds;
+
+    @Value("${livelink.journeys.max-duration-minutes:240}")
+    private int maxDurationMinutes;
+
+    private volatile LiveDelays delays;
+    // Held while the connections are built, which takes seconds; waiting on
+    // a monitor that long would pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled && timetableService.isEnabled();
+    }
+
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    public boolean isKnownStop(String stopId) {
+        return timetableService.getTimetable().containsStop(stopId);
+    }
+
+    /**
+     * Fastest journeys for each number of transfers up to
+     * {@code transfers}, fewest transfers first.
+     */
+    @Timed(value = "livelink.service", histogram = true)
+    public List<ApiJourney> plan(String fromStopId, String toStopId, Instant departAt, int transfers) {
+        List<Journey> journeys = ConnectionScan.plan(currentDelays(), fromStopId, toStopId, departAt,
+            Math.min(transfers, maxTransfers), transferSeconds, maxDurationMinutes * 60);
+        List<ApiJourney> result = new ArrayList<>(journeys.size());
+        for (Journey journey : journeys) {
+            result.add(toApiJourney(journey));
+        }
+        return result;
+    }
+
+    /**
+     * Rebuilds the connections after the service days changed and takes a
+     * new snapshot of the live delays.
+     */
+    @Scheduled(fixedDelayString = "${livelink.journeys.delay-refresh-ms:10000}",
+               initialDelayString = "${livelink.journeys.delay-refresh-ms:10000}")
+    public void refreshDelays() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Connections connections = timetableService.getConnections();
+            List<LiveDelays.Report> reports = domainMetrics.query("journeys.delays",
+                () -> jdbcTemplate.query(DELAYS_SQL, (rs, rowNum) -> new LiveDelays.Report(
+                    rs.getString(1),
+                    rs.getString(2),
+                    rs.getTime(3).toLocalTime().toSecondOfDay(),
+                    rs.getInt(4) * 60,
+                    "cancelled".equals(rs.getString(5)),
+                    rs.getTimestamp(6).toInstant())));
+            delays = LiveDelays.of(connections, reports, delayPropagationService.getRules());
+        } catch (DataAccessException e) {
+            log.warn("Journey delay refresh failed, keeping the previous snapshot", e);
+        }
+    }
+
+    private static ApiJourney toApiJourney(Journey journey) {
+        ApiJourney result = new ApiJourney();
+        result.setDeparture(journey.departure().toString());
+        result.setArrival(journey.arrival().toString());
+        result.setDurationMinutes((int) Duration.between(journey.departure(), journey.arrival()).toMinutes());
+        result.setTransfers(journey.transfers());
+        List<ApiJourneyLeg> legs = new ArrayList<>(journey.legs().size());
+        for (Journey.Leg leg : journey.legs()) {
+            ApiJourneyLeg apiLeg = new ApiJourneyLeg();
+            apiLeg.setDepartureId(leg.departureId());
+            apiLeg.setLineId(leg.lineId());
+            apiLeg.setLineNumber(leg.lineNumber());
+            apiLeg.setTransportType(leg.transportType());
+            apiLeg.setDestination(leg.direction());
+            apiLeg.setPlatform(leg.platform());
+            apiLeg.setFromStopId(leg.fromStopId());
+            apiLeg.setFromStopName(leg.fromStopName());
+            apiLeg.setToStopId(leg.toStopId());
+            apiLeg.setToStopName(leg.toStopName());
+            apiLeg.setScheduledDeparture(leg.scheduledDeparture().toString());
+            apiLeg.setScheduledArrival(leg.scheduledArrival().toString());
+            apiLeg.setDepartureDelayMinutes(leg.departureDelaySeconds() / 60);
+            apiLeg.setArrivalDelayMinutes(leg.arrivalDelaySeconds() / 60);
+            legs.add(apiLeg);
+        }
+        result.setLegs(legs);
+        return result;
+    }
+
+    private LiveDelays currentDelays() {
+        LiveDelays current = delays;
+        if (current != null) {
+            return current;
+        }
+        lock.lock();
+        try {
+            if (delays == null) {
+                delays = LiveDelays.none(timetableService.getConnections());
+            }
+            return delays;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
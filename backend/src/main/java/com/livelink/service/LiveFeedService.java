@@ -0,0 +1,188 @@
+package com.livelink.service;
+
+import com.livelink.live.FeedLines;
+import com.livelink.live.LiveState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the real-time feed in the {@link FeedLines} format and hands the
+ * updates to {@link LiveIngestService}.
+ *
+ * Two sources can be enabled: a drop directory polled for {@code *.csv}
+ * files, which are moved to {@code processed/} once read, and a socket on
+ * the loopback interface accepting one update per line. Producers should
+ * write drop files under another name and rename them into place. A full
+ * ingest buffer stalls the readers, so socket producers are slowed down by
+ * TCP flow control.
+ */
+@Service
+public class LiveFeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveFeedService.class);
+
+    private static final String PROCESSED_DIR = "processed";
+
+    @Autowired
+    private LiveIngestService liveIngestService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.ingest.drop-dir:}")
+    private String dropDir;
+
+    @Value("${livelink.ingest.socket-port:0}")
+    private int socketPort;
+
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    void registerMeters() {
+        rejectedCounter = Counter.builder("livelink.ingest.updates")
+            .tag("result", "rejected")
+            .description("Feed lines that could not be parsed")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSocket() throws IOException {
+        if (!liveIngestService.isEnabled() || socketPort <= 0) {
+            return;
+        }
+        serverSocket = new ServerSocket(socketPort, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger connectionCount = new AtomicInteger();
+        connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "live-feed-" + connectionCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        connections.execute(this::acceptLoop);
+        log.info("Accepting live feed connections on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    @PreDestroy
+    void stopSocket() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+            connections.shutdownNow();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.ingest.drop-poll-ms:1000}")
+    public void pollDropDirectory() {
+        if (!liveIngestService.isEnabled() || dropDir.isBlank()) {
+            return;
+        }
+        Path directory = Path.of(dropDir);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.csv")) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            log.warn("Cannot list live feed drop directory {}: {}", directory, e.getMessage());
+            return;
+        }
+        // File names are expected to sort in the order they were produced
+        files.sort(null);
+        for (Path file : files) {
+            try {
+                ingestFile(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.warn("Reading live feed file {} failed: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void ingestFile(Path file) throws IOException, InterruptedException {
+        int lines;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            lines = ingest(reader, file.getFileName().toString());
+        }
+        Path processed = file.resolveSibling(PROCESSED_DIR);
+        Files.createDirectories(processed);
+        Files.move(file, processed.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Ingested {} lines from {}", lines, file);
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> readConnection(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Accepting live feed connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readConnection(Socket socket) {
+        String source = socket.getRemoteSocketAddress().toString();
+        try (socket; BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            int lines = ingest(reader, source);
+            log.debug("Live feed connection {} closed after {} lines", source, lines);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Live feed connection {} failed: {}", source, e.getMessage());
+        }
+    }
+
+    private int ingest(BufferedReader reader, String source) throws IOException, InterruptedException {
+        int count = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            count++;
+            LiveState state;
+            try {
+                state = FeedLines.parse(line, Instant.now());
+            } catch (IllegalArgumentException e) {
+                rejectedCounter.increment();
+                log.debug("Rejected line {} of {}: {}", count, source, e.getMessage());
+                continue;
+            }
+            if (state != null) {
+                liveIngestService.submit(state);
+            }
+        }
+        return count;
+    }
+}
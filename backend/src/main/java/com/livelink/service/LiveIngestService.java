@@ -0,0 +1,247 @@
+package com.livelink.service;
+
+import com.livelink.live.CoalescingBuffer;
+import com.livelink.live.LiveState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched writer for live updates arriving from the real-time feed.
+ *
+ * Updates are coalesced per departure in a bounded {@link CoalescingBuffer}
+ * and written by a single thread, one upsert statement per batch, followed
+ * by one pipelined Redis write for the overlay. The writer holds at most
+ * one pooled connection, so board queries keep the rest of the pool; when
+ * the database lags, the buffer fills and {@link #submit} blocks the feed.
+ */
+@Service
+public class LiveIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveIngestService.class);
+
+    // Departures unknown to scheduled_departures are skipped rather than
+    // failing the batch on the foreign key
+    private static final String UPSERT_BATCH_SQL = """
+        INSERT INTO live_departures
+            (service_day, scheduled_departure_id, actual_departure_time, delay_minutes, status, updated_at)
+        SELECT
+            live_service_day(to_timestamp(u.updated_ms / 1000.0), sd.departure_time),
+            u.departure_id,
+            to_timestamp(u.actual_ms / 1000.0),
+            u.delay_minutes,
+            u.status,
+            to_timestamp(u.updated_ms / 1000.0)
+        FROM unnest(?::uuid[], ?::bigint[], ?::int[], ?::varchar[], ?::bigint[])
+            AS u(departure_id, actual_ms, delay_minutes, status, updated_ms)
+        JOIN scheduled_departures sd ON sd.id = u.departure_id
+        ON CONFLICT (service_day, scheduled_departure_id) DO UPDATE SET
+            actual_departure_time = EXCLUDED.actual_departure_time,
+            delay_minutes = EXCLUDED.delay_minutes,
+            status = EXCLUDED.status,
+            updated_at = EXCLUDED.updated_at
+        WHERE live_departures.updated_at <= EXCLUDED.updated_at
+        """;
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LiveStateService liveStateService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.ingest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${livelink.ingest.coalesce-window-ms:500}")
+    private long coalesceWindowMillis;
+
+    @Value("${livelink.ingest.max-pending:20000}")
+    private int maxPending;
+
+    private CoalescingBuffer buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter receivedCounter;
+    private Counter coalescedCounter;
+    private Counter staleCounter;
+    private Counter writtenCounter;
+    private Counter failedCounter;
+    private DistributionSummary batchSizes;
+    private Timer batchTimer;
+    private Timer lagTimer;
+    private Timer backpressureTimer;
+
+    @PostConstruct
+    void start() {
+        buffer = new CoalescingBuffer(maxPending, batchSize, coalesceWindowMillis);
+        registerMeters();
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "live-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues an update for the next batch, blocking while the buffer is
+     * full.
+     */
+    public void submit(LiveState state) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Live ingestion is not running");
+        }
+        receivedCounter.increment();
+        long started = System.nanoTime();
+        CoalescingBuffer.Outcome outcome = buffer.offer(state);
+        backpressureTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        if (outcome == CoalescingBuffer.Outcome.COALESCED) {
+            coalescedCounter.increment();
+        } else if (outcome == CoalescingBuffer.Outcome.STALE) {
+            staleCounter.increment();
+        }
+    }
+
+    public int getPending() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        buffer.close();
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                List<LiveState> batch = buffer.take();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                writeWithRetry(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A failing database stalls the writer on the same batch; the buffer
+    // then fills up and pushes back on the feed
+    private void writeWithRetry(List<LiveState> batch) throws InterruptedException {
+        long delay = 100;
+        while (true) {
+            try {
+                write(batch);
+                return;
+            } catch (DataAccessException e) {
+                failedCounter.increment();
+                if (!running) {
+                    log.error("Dropping {} live updates on shutdown: {}", batch.size(), e.getMessage());
+                    return;
+                }
+                log.warn("Live update batch of {} failed, retrying in {} ms: {}", batch.size(), delay, e.getMessage());
+                Thread.sleep(delay);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    void write(List<LiveState> batch) {
+        int size = batch.size();
+        String[] departureIds = new String[size];
+        Long[] actualMillis = new Long[size];
+        int[] delays = new int[size];
+        String[] statuses = new String[size];
+        long[] updatedMillis = new long[size];
+        for (int i = 0; i < size; i++) {
+            LiveState state = batch.get(i);
+            departureIds[i] = state.departureId();
+            actualMillis[i] = state.actualDeparture() != null ? state.actualDeparture().toEpochMilli() : null;
+            delays[i] = state.delayMinutes();
+            statuses[i] = state.status();
+            updatedMillis[i] = state.updatedAt().toEpochMilli();
+        }
+
+        long started = System.nanoTime();
+        int written = jdbcTemplate.update(UPSERT_BATCH_SQL, departureIds, actualMillis, delays, statuses, updatedMillis);
+        liveStateService.writeOverlays(batch);
+        batchTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        batchSizes.record(size);
+        writtenCounter.increment(written);
+
+        Instant now = Instant.now();
+        for (LiveState state : batch) {
+            lagTimer.record(Duration.between(state.updatedAt(), now));
+        }
+    }
+
+    private void registerMeters() {
+        Gauge.builder("livelink.ingest.pending", this, LiveIngestService::getPending)
+            .description("Live updates waiting for the next batch")
+            .register(meterRegistry);
+        receivedCounter = counter("livelink.ingest.updates", "received", "Live updates received from the feed");
+        coalescedCounter = counter("livelink.ingest.updates", "coalesced", "Live updates that replaced a pending one");
+        staleCounter = counter("livelink.ingest.updates", "stale", "Live updates older than a pending one");
+        writtenCounter = counter("livelink.ingest.updates", "written", "Live departure rows inserted or updated");
+        failedCounter = Counter.builder("livelink.ingest.batch.failures")
+            .description("Live update batches that failed and were retried")
+            .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("livelink.ingest.batch.size")
+            .description("Live updates per written batch")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        batchTimer = Timer.builder("livelink.ingest.batch.write")
+            .description("Time to upsert one batch and write its overlay")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        lagTimer = Timer.builder("livelink.ingest.lag")
+            .description("Time from an update's report to its write")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        backpressureTimer = Timer.builder("livelink.ingest.backpressure")
+            .description("Time the feed waited for room in the buffer")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private Counter counter(String name, String result, String description) {
+        return Counter.builder(name)
+            .tag("result", result)
+            .description(description)
+            .register(meterRegistry);
+    }
+}
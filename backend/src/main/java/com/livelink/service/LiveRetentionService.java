@@ -0,0 +1,103 @@
+package com.livelink.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the daily partitions of {@code live_departures}: creates those of
+ * the next days ahead of time and drops, or with {@code archive} detaches,
+ * those older than {@code keep-days}. Live state is only read for today
+ * and yesterday, so old reports cost nothing until they are removed.
+ *
+ * The work is done by the partition functions of the schema, which take
+ * an advisory lock, so every replica may run it.
+ */
+@Service
+public class LiveRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveRetentionService.class);
+
+    private static final String CREATE_PARTITION_SQL = """
+        SELECT create_live_departures_partition(CURRENT_DATE + ?)
+        """;
+
+    private static final String DROP_PARTITIONS_SQL = """
+        SELECT drop_live_departures_partitions(CURRENT_DATE - ?, ?)
+        """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.live-retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.live-retention.keep-days:2}")
+    private int keepDays;
+
+    @Value("${livelink.live-retention.days-ahead:2}")
+    private int daysAhead;
+
+    @Value("${livelink.live-retention.archive:false}")
+    private boolean archive;
+
+    private Counter createdCounter;
+    private Counter removedCounter;
+
+    @PostConstruct
+    void registerMeters() {
+        createdCounter = Counter.builder("livelink.live.partitions")
+            .description("live_departures partitions created or removed by retention")
+            .tag("action", "created")
+            .register(meterRegistry);
+        removedCounter = Counter.builder("livelink.live.partitions")
+            .description("live_departures partitions created or removed by retention")
+            .tag("action", archive ? "archived" : "dropped")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${livelink.live-retention.cron:0 15 0 * * *}",
+               zone = "${livelink.timezone:Europe/Berlin}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int created = 0;
+            for (int day = 0; day <= daysAhead; day++) {
+                if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(CREATE_PARTITION_SQL, Boolean.class, day))) {
+                    created++;
+                }
+            }
+            // Today's partition counts as the first day kept
+            Integer removed = jdbcTemplate.queryForObject(DROP_PARTITIONS_SQL, Integer.class,
+                Math.max(keepDays, 1) - 1, archive);
+            createdCounter.increment(created);
+            removedCounter.increment(removed != null ? removed : 0);
+            if (created > 0 || (removed != null && removed > 0)) {
+                log.info("live_departures partitions: {} created, {} {}", created, removed,
+                    archive ? "archived" : "dropped");
+            }
+        } catch (DataAccessException e) {
+            log.warn("live_departures partition maintenance failed: {}", e.getMessage());
+        }
+    }
+}
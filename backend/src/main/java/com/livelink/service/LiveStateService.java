@@ -0,0 +1,446 @@
+package com.livelink.service;
+
+import com.livelink.cluster.Invalidation;
+import com.livelink.live.LiveKey;
+import com.livelink.live.LiveState;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.timetable.DepartureIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live delay overlay keyed by departure run, the {@code scheduled_departure_id}
+ * and the service day of {@code live_departures}, so a daily departure's
+ * state never carries over to the next day's run.
+ *
+ * State lives in Redis hashes shared by all replicas, fronted by a short-lived
+ * local near-cache that also remembers runs without live data. When
+ * Redis is unreachable, reads fall back to {@code live_departures}.
+ *
+ * Writes are broadcast as departure invalidations, so while the cluster is
+ * coherent the near-cache keeps entries for the longer coherent TTL and
+ * drops them when another replica reports a change.
+ *
+ * Delays are carried on to the later stops of their trips by
+ * {@link DelayPropagationService}, for written states and for those other
+ * replicas report; reads include the derived states.
+ */
+@Service
+public class LiveStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveStateService.class);
+
+    static final String KEY_PREFIX = "livelink:live:";
+
+    // Last writer wins by report time, so replayed or out-of-order reports
+    // never overwrite newer state
+    private static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>("""
+        local current = redis.call('HGET', KEYS[1], 'updated')
+        if current and tonumber(current) > tonumber(ARGV[4]) then
+            return 0
+        end
+        redis.call('HSET', KEYS[1], 'status', ARGV[1], 'delay', ARGV[2], 'actual', ARGV[3], 'updated', ARGV[4])
+        redis.call('PEXPIRE', KEYS[1], ARGV[5])
+        return 1
+        """, Long.class);
+
+    // One row per run, so each key finds at most one
+    private static final String LIVE_STATUS_SQL = """
+        SELECT
+            ld.scheduled_departure_id,
+            ld.actual_departure_time,
+            ld.status,
+            ld.delay_minutes,
+            ld.updated_at,
+            ld.service_day
+        FROM unnest(?::date[], ?::uuid[]) AS k(service_day, departure_id)
+        JOIN live_departures ld
+            ON ld.service_day = k.service_day
+            AND ld.scheduled_departure_id = k.departure_id
+        """;
+
+    private static final String RECENT_LIVE_STATUS_SQL = """
+        SELECT
+            scheduled_departure_id,
+            actual_departure_time,
+            status,
+            delay_minutes,
+            updated_at,
+            service_day
+        FROM live_departures
+        WHERE service_day >= CURRENT_DATE - 1
+        AND updated_at >= CURRENT_TIMESTAMP - INTERVAL '1 day'
+        """;
+
+    // Scheduled times of departures the timetable does not hold
+    private static final String DEPARTURE_TIMES_SQL = """
+        SELECT id, departure_time
+        FROM scheduled_departures
+        WHERE id = ANY(?::uuid[])
+        """;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private ClusterInvalidationService clusterInvalidationService;
+
+    @Autowired
+    private DelayPropagationService delayPropagationService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Value("${livelink.timezone:Europe/Berlin}")
+    private ZoneId zoneId;
+
+    @Value("${livelink.live.redis-ttl-ms:129600000}")
+    private long redisTtlMillis;
+
+    @Value("${livelink.live.near-cache-ttl-ms:2000}")
+    private long nearCacheTtlMillis;
+
+    @Value("${livelink.live.coherent-near-cache-ttl-ms:60000}")
+    private long coherentNearCacheTtlMillis;
+
+    @Value("${livelink.live.near-cache-max-entries:100000}")
+    private int nearCacheMaxEntries;
+
+    private final Map<LiveKey, CachedState> nearCache = new ConcurrentHashMap<>();
+    // Moves with every invalidation, so loads racing one are not cached
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Live state for each run that has any, reported or carried on from a
+     * delay earlier on its trip; runs without live data are absent from
+     * the result.
+     */
+    public Map<LiveKey, LiveState> getAll(Collection<LiveKey> keys) {
+        Map<LiveKey, LiveState> result = getReported(keys);
+        delayPropagationService.overlay(keys, result);
+        return result;
+    }
+
+    private Map<LiveKey, LiveState> getReported(Collection<LiveKey> keys) {
+        Map<LiveKey, LiveState> result = new HashMap<>();
+        List<LiveKey> misses = new ArrayList<>();
+        long now = System.nanoTime();
+        for (LiveKey key : keys) {
+            CachedState cached = nearCache.get(key);
+            if (cached != null && cached.expiresAt - now > 0) {
+                if (cached.state != null) {
+                    result.put(key, cached.state);
+                }
+            } else {
+                misses.add(key);
+            }
+        }
+        if (!misses.isEmpty()) {
+            long invalidationsBefore = invalidations.get();
+            Map<LiveKey, LiveState> loaded = load(misses);
+            boolean cacheable = invalidations.get() == invalidationsBefore;
+            long expiresAt = nearCacheExpiry();
+            if (cacheable) {
+                evictIfFull();
+            }
+            for (LiveKey key : misses) {
+                LiveState state = loaded.get(key);
+                if (cacheable) {
+                    nearCache.put(key, new CachedState(state, expiresAt));
+                }
+                if (state != null) {
+                    result.put(key, state);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the overlay for a batch of states in one Redis round trip,
+     * for {@link LiveIngestService} once it persisted their rows.
+     */
+    public void writeOverlays(List<LiveState> states) {
+        List<LiveKey> keys = keysOf(states);
+        List<Object> results = List.of();
+        boolean failed = false;
+        try {
+            results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (int i = 0; i < states.size(); i++) {
+                    redis.eval(WRITE_SCRIPT.getScriptAsString(), ReturnType.INTEGER, 1,
+                        writeArguments(keys.get(i), states.get(i)));
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Live overlay write failed for {} departures: {}", states.size(), e.getMessage());
+            failed = true;
+        }
+        long expiresAt = nearCacheExpiry();
+        evictIfFull();
+        List<String> invalidated = new ArrayList<>(states.size());
+        List<LiveKey> forwardedKeys = new ArrayList<>(states.size());
+        List<LiveState> forwarded = new ArrayList<>(states.size());
+        for (int i = 0; i < states.size(); i++) {
+            LiveState state = states.get(i);
+            boolean written = !failed && Long.valueOf(1).equals(results.get(i));
+            cacheWritten(keys.get(i), state, written, expiresAt);
+            invalidated.add(keys.get(i).toString());
+            if (written || failed) {
+                forwardedKeys.add(keys.get(i));
+                forwarded.add(state);
+            }
+        }
+        clusterInvalidationService.publish(Invalidation.Kind.DEPARTURE, invalidated);
+        delayPropagationService.propagate(forwarded);
+        notificationService.onLiveStates(forwardedKeys, forwarded);
+    }
+
+    // A state Redis kept as the latest is cached; one it rejected as older,
+    // or not written at all, is dropped so the next read loads the current one
+    private void cacheWritten(LiveKey key, LiveState state, boolean written, long expiresAt) {
+        if (written) {
+            nearCache.put(key, new CachedState(state, expiresAt));
+        } else {
+            invalidations.incrementAndGet();
+            nearCache.remove(key);
+        }
+    }
+
+    /**
+     * Service day of the run each state was reported for, in order. The
+     * scheduled time comes from the timetable, or from the database for
+     * departures it does not hold; unknown departures, which
+     * {@code live_departures} rejects, fall back to the day of the report.
+     */
+    private List<LiveKey> keysOf(List<LiveState> states) {
+        Map<String, LocalTime> scheduled = new HashMap<>();
+        List<String> unresolved = new ArrayList<>();
+        DepartureIndex departureIndex = timetableService.isEnabled() ? timetableService.getDepartureIndex() : null;
+        for (LiveState state : states) {
+            DepartureIndex.Departure departure =
+                departureIndex != null ? departureIndex.find(state.departureId()) : null;
+            if (departure != null) {
+                scheduled.put(state.departureId(), departure.scheduled());
+            } else {
+                unresolved.add(state.departureId());
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            try {
+                jdbcTemplate.query(DEPARTURE_TIMES_SQL, rs -> {
+                    scheduled.put(rs.getString(1), rs.getObject(2, LocalTime.class));
+                }, (Object) unresolved.toArray(new String[0]));
+            } catch (DataAccessException e) {
+                log.warn("Scheduled times of {} live departures unavailable: {}", unresolved.size(), e.getMessage());
+            }
+        }
+        List<LiveKey> keys = new ArrayList<>(states.size());
+        for (LiveState state : states) {
+            LocalTime departure = scheduled.get(state.departureId());
+            keys.add(new LiveKey(departure != null
+                ? LiveKey.serviceDay(state.updatedAt(), departure, zoneId)
+                : LocalDate.ofInstant(state.updatedAt(), zoneId), state.departureId()));
+        }
+        return keys;
+    }
+
+    /**
+     * Drops near-cache entries of runs changed on other replicas, or all
+     * of them on a resync.
+     */
+    @EventListener
+    public void onInvalidation(Invalidation invalidation) {
+        if (invalidation.kind() == Invalidation.Kind.ALL) {
+            invalidations.incrementAndGet();
+            nearCache.clear();
+        } else if (invalidation.kind() == Invalidation.Kind.DEPARTURE
+                && !clusterInvalidationService.isLocal(invalidation)) {
+            invalidations.incrementAndGet();
+            List<LiveKey> keys = new ArrayList<>(invalidation.keys().size());
+            try {
+                for (String key : invalidation.keys()) {
+                    keys.add(LiveKey.parse(key));
+                }
+            } catch (IllegalArgumentException e) {
+                // Keys without a service day match any run of their departures
+                log.debug("Dropping live near-cache on unkeyed invalidation: {}", e.getMessage());
+                nearCache.clear();
+                return;
+            }
+            for (LiveKey key : keys) {
+                nearCache.remove(key);
+            }
+            // The report is only in Redis; derive from it here as well
+            if (delayPropagationService.isActive()) {
+                delayPropagationService.propagate(getReported(keys).values());
+            }
+        }
+    }
+
+    /**
+     * Seeds Redis with the latest database state so a fresh Redis instance
+     * does not hide existing delays.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedFromDatabase() {
+        try {
+            List<Map.Entry<LiveKey, LiveState>> states =
+                jdbcTemplate.query(RECENT_LIVE_STATUS_SQL, (rs, rowNum) -> toKeyedLiveState(rs));
+            List<LiveState> seeded = new ArrayList<>(states.size());
+            for (Map.Entry<LiveKey, LiveState> state : states) {
+                writeRedis(state.getKey(), state.getValue());
+                seeded.add(state.getValue());
+            }
+            log.info("Seeded live overlay with {} departure runs", seeded.size());
+            delayPropagationService.propagate(seeded);
+        } catch (DataAccessException e) {
+            log.warn("Seeding live overlay failed", e);
+        }
+    }
+
+    // True when the state was newer than the one in Redis and replaced it
+    private boolean writeRedis(LiveKey key, LiveState state) {
+        String[] arguments = writeArguments(key, state);
+        Long written = redisTemplate.execute(WRITE_SCRIPT, List.of(arguments[0]),
+            (Object[]) Arrays.copyOfRange(arguments, 1, arguments.length));
+        return written != null && written == 1;
+    }
+
+    // Key followed by the script arguments
+    private String[] writeArguments(LiveKey key, LiveState state) {
+        return new String[] {
+            KEY_PREFIX + key,
+            state.status(),
+            Integer.toString(state.delayMinutes()),
+            state.actualDeparture() != null ? Long.toString(state.actualDeparture().toEpochMilli()) : "",
+            Long.toString(state.updatedAt().toEpochMilli()),
+            Long.toString(redisTtlMillis)
+        };
+    }
+
+    private Map<LiveKey, LiveState> load(List<LiveKey> keys) {
+        try {
+            return loadFromRedis(keys);
+        } catch (DataAccessException e) {
+            log.warn("Redis unavailable, reading live state from database: {}", e.getMessage());
+            return loadFromDatabase(keys);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<LiveKey, LiveState> loadFromRedis(List<LiveKey> keys) {
+        List<Object> hashes = domainMetrics.query("live.redis",
+            () -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection redis = (StringRedisConnection) connection;
+                for (LiveKey key : keys) {
+                    redis.hGetAll(KEY_PREFIX + key);
+                }
+                return null;
+            }));
+        Map<LiveKey, LiveState> result = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Map<String, String> hash = (Map<String, String>) hashes.get(i);
+            if (hash != null && !hash.isEmpty()) {
+                String actual = hash.get("actual");
+                result.put(keys.get(i), new LiveState(
+                    keys.get(i).departureId(),
+                    hash.get("status"),
+                    Integer.parseInt(hash.get("delay")),
+                    actual == null || actual.isEmpty() ? null : Instant.ofEpochMilli(Long.parseLong(actual)),
+                    Instant.ofEpochMilli(Long.parseLong(hash.get("updated")))));
+            }
+        }
+        return result;
+    }
+
+    private Map<LiveKey, LiveState> loadFromDatabase(List<LiveKey> keys) {
+        String[] days = new String[keys.size()];
+        String[] departureIds = new String[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            days[i] = keys.get(i).serviceDay().toString();
+            departureIds[i] = keys.get(i).departureId();
+        }
+        List<Map.Entry<LiveKey, LiveState>> states = domainMetrics.query("live.states",
+            () -> jdbcTemplate.query(LIVE_STATUS_SQL, (rs, rowNum) -> toKeyedLiveState(rs), days, departureIds));
+        Map<LiveKey, LiveState> result = new HashMap<>();
+        for (Map.Entry<LiveKey, LiveState> state : states) {
+            result.put(state.getKey(), state.getValue());
+        }
+        return result;
+    }
+
+    // Rows of LIVE_STATUS_SQL and RECENT_LIVE_STATUS_SQL
+    private static Map.Entry<LiveKey, LiveState> toKeyedLiveState(ResultSet rs) throws SQLException {
+        LiveState state = toLiveState(rs);
+        return Map.entry(new LiveKey(rs.getObject(6, LocalDate.class), state.departureId()), state);
+    }
+
+    private static LiveState toLiveState(ResultSet rs) throws SQLException {
+        Timestamp actual = rs.getTimestamp(2);
+        Timestamp updated = rs.getTimestamp(5);
+        return new LiveState(
+            rs.getString(1),
+            rs.getString(3),
+            rs.getInt(4),
+            actual != null ? actual.toInstant() : null,
+            updated != null ? updated.toInstant() : Instant.EPOCH);
+    }
+
+    private long nearCacheExpiry() {
+        long ttlMillis = clusterInvalidationService.isCoherent() ? coherentNearCacheTtlMillis : nearCacheTtlMillis;
+        return System.nanoTime() + ttlMillis * 1_000_000;
+    }
+
+    private void evictIfFull() {
+        if (nearCache.size() < nearCacheMaxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        nearCache.values().removeIf(cached -> cached.expiresAt - now <= 0);
+        if (nearCache.size() >= nearCacheMaxEntries) {
+            nearCache.clear();
+        }
+    }
+
+    private record CachedState(LiveState state, long expiresAt) {}
+}
@@ -0,0 +1,397 @@
+package com.livelink.service;
+
+import com.livelink.live.LiveKey;
+import com.livelink.live.LiveState;
+import com.livelink.notification.Notification;
+import com.livelink.notification.NotificationSink;
+import com.livelink.notification.SubscriberIndex;
+import com.livelink.timetable.DepartureIndex;
+import com.livelink.timetable.Timetable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells users about delays and cancellations at their home and work stops
+ * and about alerts on the lines serving them, as set in
+ * {@code user_preferences}.
+ *
+ * Live reports written on this replica and alerts as they become active
+ * are matched against a {@link SubscriberIndex} and queued by subject, a
+ * newer event replacing a queued one. A run of a departure is reported
+ * again only when its status changes or its delay moves by
+ * {@code min-change-minutes}.
+ * The queue is flushed to the {@link NotificationSink} in batches. Alerts
+ * are claimed in Redis first, so only one replica sends them.
+ */
+@Service
+public class NotificationService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationService.class);
+
+    private static final String VERSION_SQL = """
+        SELECT COALESCE(MAX(version), 0)
+        FROM data_versions
+        WHERE table_name = 'user_preferences'
+        """;
+
+    private static final String SUBSCRIPTIONS_SQL = """
+        SELECT
+            user_id,
+            home_stop_id,
+            work_stop_id,
+            preferred_transport_types,
+            notifications_delays,
+            notifications_disruptions
+        FROM user_preferences
+        WHERE user_id IS NOT NULL
+        AND (home_stop_id IS NOT NULL OR work_stop_id IS NOT NULL)
+        AND (notifications_delays = true OR notifications_disruptions = true)
+        """;
+
+    private static final String CLAIM_KEY_PREFIX = "livelink:notified:";
+    private static final DateTimeFormatter SERVICE_DAY = DateTimeFormatter.ofPattern("EEE d MMM", Locale.ENGLISH);
+    private static final long UNKNOWN_VERSION = -1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TimetableService timetableService;
+
+    @Autowired
+    private AlertsService alertsService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private NotificationSink sink;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.notifications.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.notifications.min-delay-minutes:5}")
+    private int minDelayMinutes;
+
+    @Value("${livelink.notifications.min-change-minutes:5}")
+    private int minChangeMinutes;
+
+    @Value("${livelink.notifications.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${livelink.notifications.claim-ttl-ms:86400000}")
+    private long claimTtlMillis;
+
+    private volatile SubscriberIndex index = SubscriberIndex.empty();
+    // Queued events by subject, the latest one per run or alert
+    private final Map<String, Event> pending = new ConcurrentHashMap<>();
+    private final Map<LiveKey, Notified> notifiedDepartures = new ConcurrentHashMap<>();
+    // Fingerprint of the content each active alert was sent with
+    private final Map<String, Integer> notifiedAlerts = new ConcurrentHashMap<>();
+
+    private Timer fanOutTimer;
+    private Timer deliveryTimer;
+    private Counter failedCounter;
+    private final Map<String, Counter> sentCounters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void registerMeters() {
+        Gauge.builder("livelink.notifications.subscribers", this, service -> service.index.size())
+            .description("Users with notifications for their home or work stops")
+            .register(meterRegistry);
+        Gauge.builder("livelink.notifications.pending", pending, Map::size)
+            .description("Events waiting to be sent")
+            .register(meterRegistry);
+        fanOutTimer = Timer.builder("livelink.notifications.fanout")
+            .description("Time to find the users an event concerns")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        deliveryTimer = Timer.builder("livelink.notifications.delivery")
+            .description("Time the sink took for a batch")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        failedCounter = Counter.builder("livelink.notifications.failed")
+            .description("Notifications the sink did not take")
+            .register(meterRegistry);
+        for (String kind : List.of(Notification.DELAY, Notification.CANCELLATION, Notification.DISRUPTION)) {
+            sentCounters.put(kind, Counter.builder("livelink.notifications.sent")
+                .description("Notifications handed to the sink")
+                .tag("kind", kind)
+                .register(meterRegistry));
+        }
+    }
+
+    public boolean isActive() {
+        return enabled && timetableService.isEnabled();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        refreshIfChanged();
+    }
+
+    /**
+     * Rebuilds the subscriber index when preferences or the timetable
+     * changed.
+     */
+    @Scheduled(fixedDelayString = "${livelink.notifications.refresh-interval-ms:60000}",
+               initialDelayString = "${livelink.notifications.refresh-interval-ms:60000}")
+    public void refreshIfChanged() {
+        if (!isActive()) {
+            return;
+        }
+        try {
+            long version = currentDataVersion();
+            Timetable timetable = timetableService.getTimetable();
+            SubscriberIndex current = index;
+            if (version != UNKNOWN_VERSION && version == current.getVersion() && timetable == current.getTimetable()) {
+                return;
+            }
+            long started = System.nanoTime();
+            List<SubscriberIndex.Subscription> subscriptions = jdbcTemplate.query(SUBSCRIPTIONS_SQL,
+                (rs, rowNum) -> new SubscriberIndex.Subscription(
+                    rs.getString(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    strings(rs.getArray(4)),
+                    rs.getBoolean(5),
+                    rs.getBoolean(6)));
+            index = SubscriberIndex.build(subscriptions, timetable, version);
+            log.info("Indexed notifications of {} users in {} ms",
+                subscriptions.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (DataAccessException e) {
+            log.warn("Notification subscribers not refreshed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queues notifications for live states reported to this replica;
+     * {@code keys} holds the run of each state, in the same order.
+     */
+    public void onLiveStates(List<LiveKey> keys, List<LiveState> states) {
+        if (!isActive() || index.size() == 0) {
+            return;
+        }
+        DepartureIndex departures = null;
+        for (int i = 0; i < states.size(); i++) {
+            LiveKey key = keys.get(i);
+            LiveState state = states.get(i);
+            String kind = kindOf(state);
+            Notified last = notifiedDepartures.get(key);
+            if (last != null && last.reportedAt().isAfter(state.updatedAt())) {
+                continue;
+            }
+            if (kind == null) {
+                // Back on time: the next delay of this run is news again
+                notifiedDepartures.remove(key);
+                continue;
+            }
+            if (last != null && last.kind().equals(kind)
+                    && Math.abs(last.delayMinutes() - state.delayMinutes()) < minChangeMinutes) {
+                continue;
+            }
+            if (departures == null) {
+                departures = timetableService.getDepartureIndex();
+            }
+            DepartureIndex.Departure departure = departures.find(state.departureId());
+            if (departure == null) {
+                continue;
+            }
+            notifiedDepartures.put(key, new Notified(kind, state.delayMinutes(), state.updatedAt()));
+            pending.put(key.toString(), departureEvent(kind, key, departure, state));
+        }
+    }
+
+    /**
+     * Queues notifications for alerts that became active or changed since
+     * the last check.
+     */
+    @Scheduled(fixedDelayString = "${livelink.notifications.alert-check-ms:5000}")
+    public void checkAlerts() {
+        if (!isActive() || index.size() == 0) {
+            return;
+        }
+        List<Map<String, Object>> alerts;
+        try {
+            alerts = alertsService.getActiveAlerts(null);
+        } catch (DataAccessException e) {
+            log.warn("Alerts not checked for notifications: {}", e.getMessage());
+            return;
+        }
+        Set<String> active = new HashSet<>();
+        for (Map<String, Object> alert : alerts) {
+            String alertId = String.valueOf(alert.get("id"));
+            active.add(alertId);
+            List<String> lines = strings(alert.get("affected_lines"));
+            int fingerprint = Objects.hash(alert.get("title"), alert.get("description"), alert.get("severity"), lines);
+            Integer last = notifiedAlerts.put(alertId, fingerprint);
+            if ((last != null && last == fingerprint) || lines.isEmpty()
+                    || !claim("alert:" + alertId + ":" + Integer.toHexString(fingerprint))) {
+                continue;
+            }
+            pending.put("alert:" + alertId, new Event(Notification.DISRUPTION, alertId,
+                String.valueOf(alert.get("title")), String.valueOf(alert.get("description")),
+                null, null, lines, Instant.now()));
+        }
+        notifiedAlerts.keySet().retainAll(active);
+    }
+
+    /**
+     * Sends the queued events, each to every user it concerns.
+     */
+    @Scheduled(fixedDelayString = "${livelink.notifications.flush-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        SubscriberIndex current = index;
+        List<Notification> batch = new ArrayList<>(batchSize);
+        for (String subject : List.copyOf(pending.keySet())) {
+            Event event = pending.remove(subject);
+            if (event == null) {
+                continue;
+            }
+            long started = System.nanoTime();
+            int[] users = event.lines() != null
+                ? current.disruptionUsers(event.lines())
+                : current.delayUsers(event.stopId(), event.transportType());
+            fanOutTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            for (int user : users) {
+                batch.add(new Notification(current.userId(user), event.kind(), event.subjectId(),
+                    event.title(), event.message(), event.createdAt()));
+                if (batch.size() == batchSize) {
+                    deliver(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deliver(batch);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.notifications.sweep-ms:3600000}")
+    public void dropOldDepartures() {
+        Instant cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
+        notifiedDepartures.values().removeIf(notified -> notified.reportedAt().isBefore(cutoff));
+    }
+
+    private void deliver(List<Notification> batch) {
+        long started = System.nanoTime();
+        try {
+            sink.deliver(batch);
+            for (Notification notification : batch) {
+                sentCounters.get(notification.kind()).increment();
+            }
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.warn("Notification sink failed for {} notifications: {}", batch.size(), e.getMessage());
+        }
+        deliveryTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private String kindOf(LiveState state) {
+        if (LiveState.CANCELLED.equals(state.status())) {
+            return Notification.CANCELLATION;
+        }
+        return state.delayMinutes() >= minDelayMinutes ? Notification.DELAY : null;
+    }
+
+    private static Event departureEvent(String kind, LiveKey key, DepartureIndex.Departure departure,
+                                        LiveState state) {
+        String line = departure.lineNumber() + " to " + departure.direction();
+        String title = Notification.CANCELLATION.equals(kind)
+            ? line + " cancelled"
+            : line + " delayed by " + state.delayMinutes() + " min";
+        String message = "The " + departure.scheduled() + " departure on " + SERVICE_DAY.format(key.serviceDay())
+            + " from " + departure.stopName()
+            + (Notification.CANCELLATION.equals(kind) ? " does not run." : " leaves " + state.delayMinutes()
+                + " minutes late.");
+        return new Event(kind, key.toString(), title, message, departure.stopId(),
+            departure.transportType(), null, Instant.now());
+    }
+
+    // Only the first replica to claim an alert sends it; without Redis
+    // every replica does
+    private boolean claim(String subject) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(CLAIM_KEY_PREFIX + subject, "1", Duration.ofMillis(claimTtlMillis)));
+        } catch (DataAccessException e) {
+            log.debug("Notification claim not checked in Redis", e);
+            return true;
+        }
+    }
+
+    private long currentDataVersion() {
+        try {
+            Long current = jdbcTemplate.queryForObject(VERSION_SQL, Long.class);
+            return current != null ? current : 0;
+        } catch (DataAccessException e) {
+            log.debug("data_versions not available", e);
+            return UNKNOWN_VERSION;
+        }
+    }
+
+    private static Set<String> strings(Array array) throws SQLException {
+        return array != null ? Set.copyOf(strings((Object) array)) : Set.of();
+    }
+
+    // Alerts from the index carry lists, those read by SQL arrays
+    private static List<String> strings(Object values) {
+        Object[] items;
+        try {
+            items = values instanceof Array array ? (Object[]) array.getArray()
+                : values instanceof Collection<?> collection ? collection.toArray()
+                : new Object[0];
+        } catch (SQLException e) {
+            return List.of();
+        }
+        List<String> strings = new ArrayList<>(items.length);
+        for (Object item : items) {
+            if (item != null) {
+                strings.add(item.toString());
+            }
+        }
+        return strings;
+    }
+
+    private record Event(String kind, String subjectId, String title, String message, String stopId,
+                         String transportType, List<String> lines, Instant createdAt) {}
+
+    private record Notified(String kind, int delayMinutes, Instant reportedAt) {}
+}
@@ -0,0 +1,120 @@
+package com.livelink.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs the independent JDBC lookups of one request concurrently on virtual
+ * threads, at most as many at a time as the connection pool holds, so
+ * waiting happens on the semaphore instead of as pool timeouts.
+ *
+ * Only active when requests are served on virtual threads (Java 21 with
+ * {@code spring.threads.virtual.enabled}). On platform threads every
+ * lookup would hold another pooled thread, so callers keep their single
+ * combined query.
+ */
+@Service
+public class QueryFanOutService {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryFanOutService.class);
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.fanout.enabled:false}")
+    private boolean enabled;
+
+    @Value("${livelink.fanout.max-concurrent-queries:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrentQueries;
+
+    private boolean active;
+    private Semaphore permits;
+    private SimpleAsyncTaskExecutor executor;
+    private Timer permitWaitTimer;
+
+    @PostConstruct
+    void start() {
+        active = enabled && Threading.VIRTUAL.isActive(environment);
+        if (enabled && !active) {
+            log.warn("livelink.fanout.enabled needs virtual threads (Java 21 and spring.threads.virtual.enabled); "
+                + "multi-stop boards keep using one query");
+        }
+        permits = new Semaphore(maxConcurrentQueries, true);
+        if (active) {
+            executor = new SimpleAsyncTaskExecutor("query-fanout-");
+            executor.setVirtualThreads(true);
+        }
+        Gauge.builder("livelink.fanout.permits.available", permits, Semaphore::availablePermits)
+            .description("Concurrent fan-out queries that may still start")
+            .register(meterRegistry);
+        permitWaitTimer = Timer.builder("livelink.fanout.permit.wait")
+            .description("Time a fan-out query waited for a connection permit")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Applies the lookup to every key concurrently and returns the results
+     * in key order. The first failure is rethrown once all lookups ended.
+     */
+    public <K, T> List<T> map(List<K> keys, Function<K, T> lookup) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            futures.add(CompletableFuture.supplyAsync(() -> withPermit(lookup, key), executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+
+    private <K, T> T withPermit(Function<K, T> lookup, K key) {
+        long started = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a query permit", e);
+        }
+        permitWaitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        try {
+            return lookup.apply(key);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.livelink.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical lookups share one computation. The first
+ * caller for a key runs it; callers arriving while it runs wait for it and
+ * get the same result, or the same exception. Nothing is kept once it
+ * completes, so results are exactly as fresh as without coalescing, and a
+ * burst of requests for one board costs one query instead of one pooled
+ * connection each.
+ *
+ * Lookups are named, and each can be switched off with
+ * {@code livelink.coalescing.lookups.<name>: false}. Results are shared
+ * between callers and must not be modified.
+ */
+@Service
+public class RequestCoalescer {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${livelink.coalescing.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, Lookup> lookups = new ConcurrentHashMap<>();
+
+    /**
+     * Result of {@code computation}, run by this caller unless one for the
+     * same lookup and key is already in flight.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String lookupName, Object key, Supplier<T> computation) {
+        Lookup lookup = lookups.computeIfAbsent(lookupName, this::lookup);
+        if (!lookup.enabled()) {
+            return computation.get();
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = lookup.inFlight().putIfAbsent(key, flight);
+        if (running != null) {
+            lookup.shared().increment();
+            return (T) await(running);
+        }
+        lookup.led().increment();
+        try {
+            T result = computation.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookup.inFlight().remove(key, flight);
+        }
+    }
+
+    private Lookup lookup(String name) {
+        boolean lookupEnabled = enabled
+            && environment.getProperty("livelink.coalescing.lookups." + name, Boolean.class, true);
+        Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+        Gauge.builder("livelink.coalescing.in.flight", inFlight, Map::size)
+            .description("Lookups being computed for coalesced callers")
+            .tag("lookup", name)
+            .register(meterRegistry);
+        return new Lookup(lookupEnabled, inFlight, count(name, "led"), count(name, "shared"));
+    }
+
+    private Counter count(String name, String result) {
+        return Counter.builder("livelink.coalescing.requests")
+            .description("Lookups computed (led) or answered by one already in flight (shared)")
+            .tag("lookup", name)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    // The leader's exception is rethrown as is, like a result it is shared
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Lookup(boolean enabled, Map<Object, CompletableFuture<Object>> inFlight,
+                          Counter led, Counter shared) {}
+}
@@ -0,0 +1,179 @@
+package com.livelink.service;
+
+import com.livelink.cluster.Invalidation;
+import com.livelink.search.NearbyStopIndex;
+import com.livelink.search.StopSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the {@link StopSearchIndex} and the {@link NearbyStopIndex} in line
+ * with {@code transport_stops}, re-reading the table only when its
+ * {@code data_versions} counter moves.
+ */
+@Service
+public class StopSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(StopSearchService.class);
+
+    private static final String VERSION_SQL = """
+        SELECT COALESCE(MAX(version), 0)
+        FROM data_versions
+        WHERE table_name = 'transport_stops'
+        """;
+
+    private static final String STOPS_SQL = """
+        SELECT
+            id,
+            name,
+            stop_type,
+            latitude,
+            longitude,
+            pincode,
+            address,
+            is_active
+        FROM transport_stops
+        WHERE is_active = true
+        """;
+
+    private static final long NOT_LOADED = Long.MIN_VALUE;
+    private static final long UNKNOWN_VERSION = -1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${livelink.search.enabled:true}")
+    private boolean enabled;
+
+    private final StopSearchIndex index = new StopSearchIndex();
+    private volatile NearbyStopIndex nearbyIndex = NearbyStopIndex.empty();
+    private volatile long version = NOT_LOADED;
+    private volatile Instant changedAt = Instant.EPOCH;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Entity tag of the indexed stops, or {@code null} while the index is
+     * disabled or not loaded yet.
+     */
+    public String getEtag() {
+        long current = version;
+        if (!enabled || current == NOT_LOADED) {
+            return null;
+        }
+        // Without data_versions the version stays -1, so the change time
+        // identifies the indexed stops instead
+        return Versioned.etag("s", current >= 0 ? current : "l" + changedAt.toEpochMilli());
+    }
+
+    /**
+     * Time the indexed stops last changed.
+     */
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    public List<Map<String, Object>> search(String query, int limit) {
+        if (version == NOT_LOADED) {
+            loadIfAbsent();
+        }
+        return index.search(query, limit);
+    }
+
+    public List<NearbyStopIndex.Hit> nearby(double latitude, double longitude, double radiusMeters, int limit) {
+        if (version == NOT_LOADED) {
+            loadIfAbsent();
+        }
+        return nearbyIndex.within(latitude, longitude, radiusMeters, limit);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            try {
+                refresh();
+            } catch (DataAccessException e) {
+                log.warn("Initial stop search index load failed, retrying on first search", e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.search.refresh-interval-ms:30000}",
+               initialDelayString = "${livelink.search.refresh-interval-ms:30000}")
+    public void refreshIfChanged() {
+        if (!enabled || version == NOT_LOADED) {
+            return;
+        }
+        try {
+            long current = currentDataVersion();
+            if (current == UNKNOWN_VERSION || current != version) {
+                refresh();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Stop search index refresh failed, keeping version {}", version, e);
+        }
+    }
+
+    @EventListener
+    public void onInvalidation(Invalidation invalidation) {
+        if (invalidation.affects(Invalidation.Kind.STOP)) {
+            refreshIfChanged();
+        }
+    }
+
+    private void loadIfAbsent() {
+        lock.lock();
+        try {
+            if (version == NOT_LOADED) {
+                refresh();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void refresh() {
+        lock.lock();
+        try {
+            long current = currentDataVersion();
+            long started = System.nanoTime();
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(STOPS_SQL);
+            int changed = index.sync(rows);
+            if (changed > 0 || version == NOT_LOADED) {
+                nearbyIndex = NearbyStopIndex.of(rows);
+                changedAt = Instant.now();
+            }
+            version = current;
+            log.info("Stop search index at version {}: {} stops, {} changed in {} ms",
+                current, index.size(), changed, (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long currentDataVersion() {
+        try {
+            Long current = jdbcTemplate.queryForObject(VERSION_SQL, Long.class);
+            return current != null ? current : 0;
+        } catch (DataAccessException e) {
+            log.debug("data_versions not available", e);
+            return UNKNOWN_VERSION;
+        }
+    }
+}
@@ -1,19 +1,65 @@
 package com.livelink.service;
 
+import com.livelink.dto.ApiDeparture;
+import com.livelink.metrics.DomainMetrics;
+import com.livelink.search.NearbyStopIndex;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class StopsService {
 
+    private static final int SEARCH_LIMIT = 20;
+
+    public static final int DEFAULT_RADIUS_METERS = 500;
+    public static final int MAX_RADIUS_METERS = 5000;
+    private static final int NEARBY_LIMIT = 50;
+    private static final int DEPARTURES_PER_STOP = 5;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private StopSearchService stopSearchService;
+
+    @Autowired
+    private DeparturesService departuresService;
+
+    @Autowired
+    private DomainMetrics domainMetrics;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * Entity tag of the stop data, or {@code null} when stops are read from
+     * the database on every request.
+     */
+    public String getStopsEtag() {
+        return stopSearchService.getEtag();
+    }
+
+    public Instant getStopsAsOf() {
+        return getStopsEtag() != null ? stopSearchService.getChangedAt() : Instant.now();
+    }
+
+    @Timed(value = "livelink.service", histogram = true)
     public List<Map<String, Object>> getStopsByPincode(String pincode) {
+        return requestCoalescer.coalesce("stops-by-pincode", pincode, () -> stopsByPincode(pincode));
+    }
+
+    private List<Map<String, Object>> stopsByPincode(String pincode) {
         String sql = """
             SELECT 
                 id,
@@ -30,10 +76,22 @@ public class StopsService {
             ORDER BY name ASC
             """;
             
-        return jdbcTemplate.queryForList(sql, pincode);
+        return domainMetrics.query("stops.pincode", () -> jdbcTemplate.queryForList(sql, pincode));
     }
 
+    @Timed(value = "livelink.service", histogram = true)
     public List<Map<String, Object>> searchStops(String query) {
+        return requestCoalescer.coalesce("stop-search", query, () -> search(query));
+    }
+
+    private List<Map<String, Object>> search(String query) {
+        if (stopSearchService.isEnabled()) {
+            return stopSearchService.search(query, SEARCH_LIMIT);
+        }
+        return searchStopsInDatabase(query);
+    }
+
+    List<Map<String, Object>> searchStopsInDatabase(String query) {
         String sql = """
             SELECT 
                 id,
@@ -56,6 +114,103 @@ public class StopsService {
         String searchPattern = "%" + query + "%";
         String exactPattern = query + "%";
         
-        return jdbcTemplate.queryForList(sql, searchPattern, searchPattern, exactPattern);
+        return domainMetrics.query("stops.search",
+            () -> jdbcTemplate.queryForList(sql, searchPattern, searchPattern, exactPattern));
+    }
+
+    /**
+     * Active stops within the radius, nearest first, each with a
+     * {@code distance_meters} column and, if requested, its next departures.
+     * Without an explicit radius the user's {@code max_walking_distance}
+     * applies.
+     */
+    @Timed(value = "livelink.service", histogram = true)
+    public Versioned<List<Map<String, Object>>> getNearbyStops(double latitude, double longitude,
+                                                               Integer radiusMeters, String userId,
+                                                               boolean includeDepartures) {
+        return requestCoalescer.coalesce("nearby-stops",
+            Arrays.asList(latitude, longitude, radiusMeters, userId, includeDepartures),
+            () -> nearbyStops(latitude, longitude, radiusMeters, userId, includeDepartures));
+    }
+
+    private Versioned<List<Map<String, Object>>> nearbyStops(double latitude, double longitude,
+                                                             Integer radiusMeters, String userId,
+                                                             boolean includeDepartures) {
+        int radius = radiusMeters != null ? radiusMeters : walkingDistance(userId);
+        radius = Math.min(radius, MAX_RADIUS_METERS);
+
+        List<NearbyStopIndex.Hit> hits = stopSearchService.isEnabled()
+            ? stopSearchService.nearby(latitude, longitude, radius, NEARBY_LIMIT)
+            : nearbyInDatabase(latitude, longitude, radius);
+
+        List<Map<String, Object>> stops = new ArrayList<>(hits.size());
+        for (NearbyStopIndex.Hit hit : hits) {
+            Map<String, Object> stop = new LinkedHashMap<>(hit.row());
+            stop.put("distance_meters", Math.round(hit.distanceMeters()));
+            stops.add(stop);
+        }
+        String etag = getStopsEtag();
+        Instant asOf = getStopsAsOf();
+        if (includeDepartures && !stops.isEmpty()) {
+            Versioned<List<ApiDeparture>> board = attachDepartures(stops);
+            etag = etag != null ? Versioned.combine(etag, board.etag()) : null;
+            asOf = Versioned.latest(asOf, board.asOf());
+        }
+        return new Versioned<>(stops, etag, asOf);
+    }
+
+    private int walkingDistance(String userId) {
+        if (userId == null) {
+            return DEFAULT_RADIUS_METERS;
+        }
+        String sql = """
+            SELECT max_walking_distance
+            FROM user_preferences
+            WHERE user_id = ?::uuid
+            AND max_walking_distance > 0
+            LIMIT 1
+            """;
+
+        List<Integer> distances = domainMetrics.query("stops.walkingDistance",
+            () -> jdbcTemplate.queryForList(sql, Integer.class, userId));
+        return distances.isEmpty() ? DEFAULT_RADIUS_METERS : distances.get(0);
+    }
+
+    // One board query for all returned stops, split per stop afterwards
+    private Versioned<List<ApiDeparture>> attachDepartures(List<Map<String, Object>> stops) {
+        List<String> stopIds = stops.stream().map(stop -> (String) stop.get("id")).collect(Collectors.toList());
+        Map<String, List<ApiDeparture>> byStop = new HashMap<>();
+        Versioned<List<ApiDeparture>> board = departuresService.getLiveBoard(stopIds, DEPARTURES_PER_STOP);
+        for (ApiDeparture departure : board.data()) {
+            byStop.computeIfAbsent(departure.getStopId(), key -> new ArrayList<>()).add(departure);
+        }
+        for (Map<String, Object> stop : stops) {
+            stop.put("departures", byStop.getOrDefault((String) stop.get("id"), List.of()));
+        }
+        return board;
+    }
+
+    private List<NearbyStopIndex.Hit> nearbyInDatabase(double latitude, double longitude, int radiusMeters) {
+        String sql = """
+            SELECT
+                id,
+                name,
+                stop_type,
+                latitude,
+                longitude,
+                pincode,
+                address,
+                is_active
+            FROM transport_stops
+            WHERE latitude BETWEEN ? AND ?
+            AND longitude BETWEEN ? AND ?
+            AND is_active = true
+            """;
+
+        double latitudeDelta = radiusMeters / 111_000.0;
+        double longitudeDelta = radiusMeters / (111_000.0 * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+        List<Map<String, Object>> rows = domainMetrics.query("stops.nearby", () -> jdbcTemplate.queryForList(sql,
+            latitude - latitudeDelta, latitude + latitudeDelta, longitude - longitudeDelta, longitude + longitudeDelta));
+        return NearbyStopIndex.of(rows).within(latitude, longitude, radiusMeters, NEARBY_LIMIT);
     }
-}
\ No newline at end of file
+}
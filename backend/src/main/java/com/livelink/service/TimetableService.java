@@ -0,0 +1,376 @@
+package com.livelink.service;
+
+import com.livelink.cluster.Invalidation;
+import com.livelink.timetable.Connections;
+import com.livelink.timetable.DepartureIndex;
+import com.livelink.timetable.ServiceDays;
+import com.livelink.timetable.Timetable;
+import com.livelink.timetable.TimetableSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Array;
+import java.sql.Time;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the in-memory {@link Timetable} and reloads it when the timetable
+ * tables or routes change, the {@link ServiceDays} materialized from it for
+ * yesterday, today and tomorrow, and the trip {@link Connections} of those.
+ *
+ * With {@code livelink.timetable.snapshot-path} set, every load is also
+ * written as a {@link TimetableSnapshot}. A starting node opens that
+ * instead of reading the timetable tables, and checks its version against
+ * {@code data_versions} in the background.
+ */
+@Service
+public class TimetableService {
+
+    private static final Logger log = LoggerFactory.getLogger(TimetableService.class);
+
+    static final String VERSION_SQL = """
+        SELECT COALESCE(SUM(version), 0)
+        FROM data_versions
+        WHERE table_name IN ('transport_stops', 'transport_lines', 'scheduled_departures', 'routes')
+        """;
+
+    private static final String STOPS_SQL = """
+        SELECT id, name, pincode
+        FROM transport_stops
+        WHERE is_active = true
+        """;
+
+    private static final String LINES_SQL = """
+        SELECT id, line_number, transport_type
+        FROM transport_lines
+        WHERE is_active = true
+        """;
+
+    private static final String DEPARTURES_SQL = """
+        SELECT
+            sd.id,
+            sd.line_id,
+            sd.stop_id,
+            sd.departure_time,
+            sd.days_of_week,
+            sd.platform,
+            sd.direction
+        FROM scheduled_departures sd
+        WHERE sd.is_active = true
+        """;
+
+    private static final String ROUTES_SQL = """
+        SELECT line_id, from_stop_id, to_stop_id, sequence_order, travel_time_minutes
+        FROM routes
+        """;
+
+    private static final long UNKNOWN_VERSION = -1;
+
+    // Yesterday's trips may still run after midnight, and a board window
+    // late in the evening reaches into tomorrow
+    private static final int MATERIALIZED_DAYS = 3;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${livelink.timetable.enabled:true}")
+    private boolean enabled;
+
+    @Value("${livelink.timezone:Europe/Berlin}")
+    private ZoneId zoneId;
+
+    @Value("${livelink.timetable.service-day-start:00:00}")
+    private String serviceDayStart;
+
+    @Value("${livelink.timetable.snapshot-path:}")
+    private String snapshotPath;
+
+    private volatile Timetable timetable;
+    private volatile ServiceDays serviceDays;
+    private volatile Connections connections;
+    private volatile DepartureIndex departureIndex;
+    // Held across JDBC reads, where a monitor would pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    // Building the connections takes seconds and must not hold up reloads
+    private final ReentrantLock connectionsLock = new ReentrantLock();
+    private final ReentrantLock departureIndexLock = new ReentrantLock();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Timetable getTimetable() {
+        Timetable current = timetable;
+        return current != null ? current : loadIfAbsent();
+    }
+
+    /**
+     * Departure instances around today, rematerialized when the timetable
+     * is reloaded or the date changes.
+     */
+    public ServiceDays getServiceDays() {
+        Timetable current = getTimetable();
+        LocalDate firstDate = LocalDate.now(zoneId).minusDays(1);
+        ServiceDays days = serviceDays;
+        if (days != null && days.getTimetable() == current && days.getFirstDate().equals(firstDate)) {
+            return days;
+        }
+        return materialize(firstDate);
+    }
+
+    /**
+     * Connections of the current service days, built on first use after
+     * each materialization.
+     */
+    public Connections getConnections() {
+        ServiceDays days = getServiceDays();
+        Connections current = connections;
+        if (current != null && current.getServiceDays() == days) {
+            return current;
+        }
+        connectionsLock.lock();
+        try {
+            current = connections;
+            if (current != null && current.getServiceDays() == days) {
+                return current;
+            }
+            long started = System.nanoTime();
+            current = Connections.build(days);
+            log.info("Built {} connections on {} trips in {} ms",
+                current.size(), current.getTripCount(), (System.nanoTime() - started) / 1_000_000);
+            connections = current;
+            return current;
+        } finally {
+            connectionsLock.unlock();
+        }
+    }
+
+    /**
+     * Departures of the current timetable by id, built on first use after
+     * each load.
+     */
+    public DepartureIndex getDepartureIndex() {
+        Timetable current = getTimetable();
+        DepartureIndex index = departureIndex;
+        if (index != null && index.getTimetable() == current) {
+            return index;
+        }
+        departureIndexLock.lock();
+        try {
+            index = departureIndex;
+            if (index == null || index.getTimetable() != current) {
+                index = DepartureIndex.build(current);
+                departureIndex = index;
+            }
+            return index;
+        } finally {
+            departureIndexLock.unlock();
+        }
+    }
+
+    /**
+     * Materializes the new day ahead of the first board request after
+     * midnight.
+     */
+    @Scheduled(cron = "${livelink.timetable.materialize-cron:0 0 0 * * *}",
+               zone = "${livelink.timezone:Europe/Berlin}")
+    public void materializeServiceDays() {
+        if (enabled && timetable != null) {
+            getServiceDays();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            if (openSnapshot()) {
+                Thread check = new Thread(this::refreshIfChanged, "timetable-snapshot-check");
+                check.setDaemon(true);
+                check.start();
+                return;
+            }
+            try {
+                reload();
+            } catch (DataAccessException e) {
+                log.warn("Initial timetable load failed, retrying on first request", e);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${livelink.timetable.refresh-interval-ms:30000}",
+               initialDelayString = "${livelink.timetable.refresh-interval-ms:30000}")
+    public void refreshIfChanged() {
+        Timetable current = timetable;
+        if (!enabled || current == null) {
+            return;
+        }
+        try {
+            long version = currentDataVersion();
+            if (version == UNKNOWN_VERSION || version != current.getVersion()) {
+                reload();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Timetable refresh failed, keeping version {}", current.getVersion(), e);
+        }
+    }
+
+    /**
+     * Checks for timetable edits right away when another replica reports
+     * changed stops or lines.
+     */
+    @EventListener
+    public void onInvalidation(Invalidation invalidation) {
+        if (invalidation.affects(Invalidation.Kind.STOP) || invalidation.affects(Invalidation.Kind.LINE)) {
+            refreshIfChanged();
+        }
+    }
+
+    private Timetable loadIfAbsent() {
+        lock.lock();
+        try {
+            Timetable current = timetable;
+            return current != null ? current : reload();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Timetable reload() {
+        Timetable loaded = load();
+        writeSnapshot(loaded);
+        return loaded;
+    }
+
+    private Timetable load() {
+        lock.lock();
+        try {
+            long version = currentDataVersion();
+            long started = System.nanoTime();
+
+            Timetable.Builder builder = Timetable.builder(version);
+            jdbcTemplate.query(STOPS_SQL, rs -> {
+                builder.addStop(rs.getString(1), rs.getString(2), rs.getString(3));
+            });
+            jdbcTemplate.query(LINES_SQL, rs -> {
+                builder.addLine(rs.getString(1), rs.getString(2), rs.getString(3));
+            });
+            jdbcTemplate.query(DEPARTURES_SQL, rs -> {
+                Time departureTime = rs.getTime(4);
+                Array days = rs.getArray(5);
+                builder.addDeparture(
+                    rs.getString(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    departureTime.toLocalTime().toSecondOfDay(),
+                    Timetable.dayMask((Integer[]) days.getArray()),
+                    rs.getString(6),
+                    rs.getString(7));
+            });
+            jdbcTemplate.query(ROUTES_SQL, rs -> {
+                builder.addRouteLeg(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                    rs.getInt(5) * 60);
+            });
+
+            Timetable loaded = builder.build();
+            timetable = loaded;
+            log.info("Loaded timetable version {}: {} stops, {} lines, {} departures, {} route legs in {} ms",
+                version, loaded.getStopCount(), loaded.getLineCount(), loaded.getDepartureCount(),
+                loaded.getRouteLegCount(), (System.nanoTime() - started) / 1_000_000);
+            materialize(LocalDate.now(zoneId).minusDays(1));
+            return loaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean openSnapshot() {
+        if (snapshotPath.isEmpty() || !Files.exists(Path.of(snapshotPath))) {
+            return false;
+        }
+        long started = System.nanoTime();
+        Timetable restored;
+        try {
+            restored = TimetableSnapshot.read(Path.of(snapshotPath));
+        } catch (IOException e) {
+            log.warn("Timetable snapshot {} not usable, loading from the database: {}", snapshotPath, e.getMessage());
+            return false;
+        }
+        lock.lock();
+        try {
+            if (timetable == null) {
+                timetable = restored;
+            }
+            log.info("Opened timetable snapshot version {}: {} stops, {} lines, {} departures in {} ms",
+                restored.getVersion(), restored.getStopCount(), restored.getLineCount(),
+                restored.getDepartureCount(), (System.nanoTime() - started) / 1_000_000);
+            materialize(LocalDate.now(zoneId).minusDays(1));
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private void writeSnapshot(Timetable loaded) {
+        if (snapshotPath.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            TimetableSnapshot.write(loaded, Path.of(snapshotPath));
+            log.info("Wrote timetable snapshot version {} to {} in {} ms",
+                loaded.getVersion(), snapshotPath, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Could not write timetable snapshot {}", snapshotPath, e);
+        }
+    }
+
+    // Always from the latest timetable, so a request holding an older one
+    // can't replace newer instances
+    private ServiceDays materialize(LocalDate firstDate) {
+        lock.lock();
+        try {
+            Timetable source = timetable;
+            ServiceDays days = serviceDays;
+            if (days != null && days.getTimetable() == source && days.getFirstDate().equals(firstDate)) {
+                return days;
+            }
+            long started = System.nanoTime();
+            days = ServiceDays.materialize(source, firstDate, MATERIALIZED_DAYS, zoneId, LocalTime.parse(serviceDayStart));
+            serviceDays = days;
+            log.info("Materialized {} departure instances for {} days from {} in {} ms",
+                days.getInstanceCount(), MATERIALIZED_DAYS, firstDate, (System.nanoTime() - started) / 1_000_000);
+            return days;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sum of the {@code data_versions} counters of the timetable tables, or
+     * {@link #UNKNOWN_VERSION} on databases created before the counters
+     * existed, in which case every refresh reloads.
+     */
+    long currentDataVersion() {
+        try {
+            Long version = jdbcTemplate.queryForObject(VERSION_SQL, Long.class);
+            return version != null ? version : 0;
+        } catch (DataAccessException e) {
+            log.debug("data_versions not available", e);
+            return UNKNOWN_VERSION;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.livelink.service;
+
+import java.time.Instant;
+import java.util.StringJoiner;
+
+/**
+ * Read result together with the version of the data it was built from.
+ *
+ * @param data  the result
+ * @param etag  weak entity tag that changes whenever {@code data} can change
+ * @param asOf  time the underlying data was last known to change
+ */
+public record Versioned<T>(T data, String etag, Instant asOf) {
+
+    /**
+     * Weak entity tag from version components, e.g. {@code W/"d-12-28403921"}.
+     */
+    public static String etag(Object... parts) {
+        StringJoiner tag = new StringJoiner("-", "W/\"", "\"");
+        for (Object part : parts) {
+            tag.add(String.valueOf(part));
+        }
+        return tag.toString();
+    }
+
+    /**
+     * Single weak entity tag covering all of the given ones.
+     */
+    public static String combine(String... etags) {
+        Object[] parts = new Object[etags.length];
+        for (int i = 0; i < etags.length; i++) {
+            parts[i] = etags[i].substring(3, etags[i].length() - 1);
+        }
+        return etag(parts);
+    }
+
+    public static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,59 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Precomputed {@code HH:mm} strings for every minute of the day, so board
+ * mapping never formats times per row.
+ */
+public final class ClockTimes {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final String[] HH_MM = new String[MINUTES_PER_DAY];
+
+    static {
+        for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+            int hours = minute / 60;
+            int minutes = minute % 60;
+            HH_MM[minute] = new String(new char[] {
+                (char) ('0' + hours / 10), (char) ('0' + hours % 10), ':',
+                (char) ('0' + minutes / 10), (char) ('0' + minutes % 10)
+            });
+        }
+    }
+
+    private ClockTimes() {}
+
+    /**
+     * {@code HH:mm} for a minute of the day; values outside one day wrap.
+     */
+    public static String ofMinute(int minuteOfDay) {
+        return HH_MM[Math.floorMod(minuteOfDay, MINUTES_PER_DAY)];
+    }
+
+    public static String ofSecond(int secondOfDay) {
+        return ofMinute(Math.floorDiv(secondOfDay, 60));
+    }
+
+    /**
+     * Local {@code HH:mm} of an instant in the given zone.
+     */
+    public static String ofInstant(Instant instant, ZoneId zone) {
+        long local = instant.getEpochSecond() + zone.getRules().getOffset(instant).getTotalSeconds();
+        return ofMinute((int) Math.floorMod(Math.floorDiv(local, 60), (long) MINUTES_PER_DAY));
+    }
+
+    /**
+     * Minute of day of a {@code HH:mm[:ss]} string as returned by JDBC for
+     * {@code TIME} columns, or -1 for {@code null}.
+     */
+    public static int minuteOf(String time) {
+        if (time == null) {
+            return -1;
+        }
+        return (time.charAt(0) - '0') * 600 + (time.charAt(1) - '0') * 60
+            + (time.charAt(3) - '0') * 10 + (time.charAt(4) - '0');
+    }
+}
@@ -0,0 +1,190 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Connection scan over {@link Connections} with live delays, bounded by
+ * the number of rides.
+ *
+ * One pass over the connections departing after the requested time keeps,
+ * per stop and ride count, the earliest arrival using at most that many
+ * rides. Riders stay on a trip without a transfer; changing to another
+ * trip needs {@code transferSeconds} at the stop. The journeys returned
+ * are the Pareto set over arrival time and transfers: each one arrives
+ * strictly earlier than every journey with fewer transfers.
+ */
+public final class ConnectionScan {
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+
+    private ConnectionScan() {}
+
+    /**
+     * Journeys from one stop to another departing at or after
+     * {@code departAt}, fewest transfers first; empty when the stops are
+     * unknown, equal or not connected within {@code maxDurationSeconds}.
+     */
+    public static List<Journey> plan(LiveDelays delays, String fromStopId, String toStopId, Instant departAt,
+                                     int maxTransfers, int transferSeconds, int maxDurationSeconds) {
+        Connections connections = delays.connections;
+        Timetable timetable = connections.timetable;
+        int origin = timetable.stopOf(fromStopId);
+        int target = timetable.stopOf(toStopId);
+        if (origin < 0 || target < 0 || origin == target) {
+            return List.of();
+        }
+        long originEpochSecond = connections.serviceDays.getOriginEpochSecond();
+        long requested = departAt.getEpochSecond() - originEpochSecond;
+        if (requested < Integer.MIN_VALUE / 2 || requested > Integer.MAX_VALUE / 2) {
+            return List.of();
+        }
+        int start = (int) requested;
+        int end = start + maxDurationSeconds;
+
+        int rides = maxTransfers + 1;
+        int stopCount = timetable.getStopCount();
+        int[][] earliest = new int[rides + 1][stopCount];
+        int[][] enteredBy = new int[rides + 1][stopCount];
+        int[][] exitedBy = new int[rides + 1][stopCount];
+        for (int[] arrivals : earliest) {
+            Arrays.fill(arrivals, UNREACHED);
+            arrivals[origin] = start;
+        }
+        // Fewest rides with which each trip was boarded, and where
+        int[] boardedWith = new int[connections.tripCount];
+        int[] boardedAt = new int[connections.tripCount];
+        Arrays.fill(boardedWith, UNREACHED);
+
+        int scheduled = ServiceDays.lowerBound(connections.departures, start);
+        int late = ServiceDays.lowerBound(delays.delayedDepartures, start);
+        while (true) {
+            while (scheduled < connections.size && delays.isAffected(scheduled)) {
+                scheduled++;
+            }
+            int connection;
+            int departure;
+            if (scheduled < connections.size && (late >= delays.delayed.length
+                    || connections.departures[scheduled] <= delays.delayedDepartures[late])) {
+                connection = scheduled;
+                departure = connections.departures[scheduled++];
+            } else if (late < delays.delayed.length) {
+                connection = delays.delayed[late];
+                departure = delays.delayedDepartures[late++];
+            } else {
+                break;
+            }
+            if (departure > end || departure > earliest[rides][target]) {
+                break;
+            }
+            if (delays.isCancelled(connection)) {
+                continue;
+            }
+
+            int trip = connections.trips[connection];
+            int stop = connections.departureStops[connection];
+            int with = boardedWith[trip];
+            for (int ride = 1; ride < with && ride <= rides; ride++) {
+                int reached = earliest[ride - 1][stop];
+                if (reached != UNREACHED && (ride == 1 ? reached : reached + transferSeconds) <= departure) {
+                    boardedWith[trip] = ride;
+                    boardedAt[trip] = connection;
+                    with = ride;
+                    break;
+                }
+            }
+            if (with > rides) {
+                continue;
+            }
+
+            int arrival = connections.arrivals[connection] + delays.arrivalDelay(connection);
+            int to = connections.arrivalStops[connection];
+            for (int ride = with; ride <= rides && arrival < earliest[ride][to]; ride++) {
+                earliest[ride][to] = arrival;
+                enteredBy[ride][to] = boardedAt[trip];
+                exitedBy[ride][to] = connection;
+            }
+        }
+
+        List<Journey> journeys = new ArrayList<>();
+        int bestArrival = UNREACHED;
+        for (int ride = 1; ride <= rides; ride++) {
+            if (earliest[ride][target] >= bestArrival) {
+                continue;
+            }
+            Journey journey = reconstruct(delays, origin, target, ride, earliest, enteredBy, exitedBy);
+            if (journey == null) {
+                continue;
+            }
+            // Joining rides on one trip can leave fewer transfers than rides,
+            // which beats earlier journeys with as many transfers
+            while (!journeys.isEmpty() && journeys.get(journeys.size() - 1).transfers() >= journey.transfers()) {
+                journeys.remove(journeys.size() - 1);
+            }
+            journeys.add(journey);
+            bestArrival = earliest[ride][target];
+        }
+        return journeys;
+    }
+
+    // Follows the ride pointers back from the target; consecutive rides on
+    // the same trip are joined
+    private static Journey reconstruct(LiveDelays delays, int origin, int target, int rides,
+                                       int[][] earliest, int[][] enteredBy, int[][] exitedBy) {
+        Connections connections = delays.connections;
+        List<int[]> rideList = new ArrayList<>();
+        int stop = target;
+        int ride = rides;
+        while (stop != origin) {
+            if (ride == 0 || earliest[ride][stop] == UNREACHED) {
+                return null;
+            }
+            int entered = enteredBy[ride][stop];
+            int exited = exitedBy[ride][stop];
+            if (!rideList.isEmpty() && connections.trips[rideList.get(0)[0]] == connections.trips[entered]) {
+                rideList.get(0)[0] = entered;
+            } else {
+                rideList.add(0, new int[] {entered, exited});
+            }
+            stop = connections.departureStops[entered];
+            ride--;
+        }
+
+        long originEpochSecond = connections.serviceDays.getOriginEpochSecond();
+        Timetable timetable = connections.timetable;
+        List<Journey.Leg> legs = new ArrayList<>(rideList.size());
+        for (int[] leg : rideList) {
+            int entered = leg[0];
+            int exited = leg[1];
+            int from = connections.departureStops[entered];
+            int to = connections.arrivalStops[exited];
+            StopTimetable stopTimetable = timetable.stopTimetable(from);
+            int index = connections.departureIndexes[entered];
+            int line = stopTimetable.lines[index];
+            legs.add(new Journey.Leg(
+                stopTimetable.departureIds[index],
+                timetable.lineIds[line],
+                timetable.lineNumbers[line],
+                timetable.lineTypes[line],
+                stopTimetable.directions[index],
+                stopTimetable.platforms[index],
+                timetable.stopIds[from],
+                timetable.stopNames[from],
+                timetable.stopIds[to],
+                timetable.stopNames[to],
+                Instant.ofEpochSecond(originEpochSecond + connections.departures[entered]),
+                Instant.ofEpochSecond(originEpochSecond + connections.arrivals[exited]),
+                delays.departureDelay(entered),
+                delays.arrivalDelay(exited)));
+        }
+        Journey.Leg first = legs.get(0);
+        Journey.Leg last = legs.get(legs.size() - 1);
+        return new Journey(
+            first.scheduledDeparture().plusSeconds(first.departureDelaySeconds()),
+            last.scheduledArrival().plusSeconds(last.arrivalDelaySeconds()),
+            legs.size() - 1,
+            legs);
+    }
+}
@@ -0,0 +1,273 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Elementary connections of the materialized service days, one per
+ * departure instance that has a route leg towards a next stop, sorted by
+ * departure time for connection-scan journey planning.
+ *
+ * The tables have no trips. A departure is joined to the leg of its line
+ * whose next stop has a departure of the same line and direction about
+ * one travel time later; that departure is the same vehicle moving on.
+ * Chains of joined connections form the trips a rider stays seated on.
+ * When no next departure matches, the vehicle ends its run at the next
+ * stop, and the leg is picked by the direction name or by being the
+ * line's last leg.
+ */
+public final class Connections {
+
+    // Window around the scheduled arrival in which the next departure of
+    // the same vehicle is looked for: travel times are whole minutes
+    private static final int EARLY_SECONDS = 120;
+    private static final int LATE_SECONDS = 600;
+
+    private static final int REPORT_REACH_SECONDS = 12 * 60 * 60;
+
+    final ServiceDays serviceDays;
+    final Timetable timetable;
+    final int size;
+    final int[] departureStops;
+    final int[] arrivalStops;
+    final int[] departures;
+    final int[] arrivals;
+    final int[] departureIndexes;
+    final int[] trips;
+    // The connection of the same trip arriving where this one departs, or -1
+    final int[] previous;
+    // The connection of the same trip departing where this one arrives, or -1
+    final int[] next;
+    final int tripCount;
+    // Per stop and ServiceDays position, the connection departing there or -1
+    private final int[][] connectionOfInstance;
+
+    private Connections(ServiceDays serviceDays, int size, int[] departureStops, int[] arrivalStops,
+                        int[] departures, int[] arrivals, int[] departureIndexes, int[] trips, int[] previous,
+                        int[] next, int tripCount, int[][] connectionOfInstance) {
+        this.serviceDays = serviceDays;
+        this.timetable = serviceDays.getTimetable();
+        this.size = size;
+        this.departureStops = departureStops;
+        this.arrivalStops = arrivalStops;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.departureIndexes = departureIndexes;
+        this.trips = trips;
+        this.previous = previous;
+        this.next = next;
+        this.tripCount = tripCount;
+        this.connectionOfInstance = connectionOfInstance;
+    }
+
+    public ServiceDays getServiceDays() { return serviceDays; }
+    public int size() { return size; }
+    public int getTripCount() { return tripCount; }
+
+    /**
+     * Connection departing at a stop's ServiceDays position, or -1.
+     */
+    int connectionAt(int stop, int position) {
+        return connectionOfInstance[stop][position];
+    }
+
+    /**
+     * Connection of the run of a stop's departure closest to
+     * {@code reportedAt}, or -1. Live state is kept per scheduled
+     * departure, not per run, so this is the run a report is taken for.
+     */
+    int connectionNear(int stop, int index, Instant reportedAt) {
+        long reported = reportedAt.getEpochSecond() - serviceDays.getOriginEpochSecond();
+        int[] offsets = serviceDays.offsets(stop);
+        int[] indexes = serviceDays.indexes(stop);
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        int from = (int) Math.max(Integer.MIN_VALUE, reported - REPORT_REACH_SECONDS);
+        for (int p = ServiceDays.lowerBound(offsets, from);
+             p < offsets.length && offsets[p] <= reported + REPORT_REACH_SECONDS; p++) {
+            long distance = Math.abs(offsets[p] - reported);
+            if (indexes[p] == index && distance < bestDistance) {
+                best = p;
+                bestDistance = distance;
+            }
+        }
+        return best >= 0 ? connectionOfInstance[stop][best] : -1;
+    }
+
+    public static Connections build(ServiceDays serviceDays) {
+        Timetable timetable = serviceDays.getTimetable();
+        RouteLegs legs = timetable.routeLegs();
+        int stopCount = timetable.getStopCount();
+
+        int[] instanceBase = new int[stopCount + 1];
+        for (int stop = 0; stop < stopCount; stop++) {
+            instanceBase[stop + 1] = instanceBase[stop] + serviceDays.offsets(stop).length;
+        }
+        int capacity = instanceBase[stopCount];
+        int[] departureStops = new int[capacity];
+        int[] arrivalStops = new int[capacity];
+        int[] departures = new int[capacity];
+        int[] arrivals = new int[capacity];
+        int[] departureIndexes = new int[capacity];
+        int[] instances = new int[capacity];
+        int[] nextInstances = new int[capacity];
+        int count = 0;
+
+        for (int stop = 0; stop < stopCount; stop++) {
+            int[] stopLegs = legs.from(stop);
+            if (stopLegs.length == 0) {
+                continue;
+            }
+            StopTimetable stopTimetable = timetable.stopTimetable(stop);
+            int[] offsets = serviceDays.offsets(stop);
+            int[] indexes = serviceDays.indexes(stop);
+            for (int position = 0; position < offsets.length; position++) {
+                int index = indexes[position];
+                int line = stopTimetable.lines[index];
+                String direction = stopTimetable.directions[index];
+                int offset = offsets[position];
+
+                int matchedLeg = -1;
+                int matchedPosition = -1;
+                int namedLeg = -1;
+                int lastLeg = -1;
+                int lastLegs = 0;
+                int onlyLeg = -1;
+                int candidates = 0;
+                for (int leg : stopLegs) {
+                    if (legs.lines[leg] != line) {
+                        continue;
+                    }
+                    candidates++;
+                    onlyLeg = leg;
+                    int target = legs.targets[leg];
+                    if (direction != null && direction.equals(timetable.stopNames[legs.termini[leg]])) {
+                        namedLeg = leg;
+                    }
+                    if (legs.termini[leg] == target) {
+                        lastLeg = leg;
+                        lastLegs++;
+                    }
+                    int next = continuation(serviceDays, target, line, direction, offset, offset + legs.seconds[leg]);
+                    if (next >= 0 && (matchedLeg < 0
+                            || serviceDays.offsets(target)[next]
+                                < serviceDays.offsets(legs.targets[matchedLeg])[matchedPosition])) {
+                        matchedLeg = leg;
+                        matchedPosition = next;
+                    }
+                }
+                int leg;
+                if (matchedLeg >= 0) {
+                    leg = matchedLeg;
+                } else if (namedLeg >= 0) {
+                    leg = namedLeg;
+                } else if (lastLegs == 1) {
+                    leg = lastLeg;
+                } else if (candidates == 1) {
+                    leg = onlyLeg;
+                } else {
+                    continue;
+                }
+
+                int target = legs.targets[leg];
+                int arrival = offset + legs.seconds[leg];
+                if (matchedLeg >= 0) {
+                    arrival = Math.min(arrival, serviceDays.offsets(target)[matchedPosition]);
+                }
+                departureStops[count] = stop;
+                arrivalStops[count] = target;
+                departures[count] = offset;
+                arrivals[count] = Math.max(arrival, offset);
+                departureIndexes[count] = index;
+                instances[count] = instanceBase[stop] + position;
+                nextInstances[count] = matchedLeg >= 0 ? instanceBase[target] + matchedPosition : -1;
+                count++;
+            }
+        }
+
+        // Sort by departure, then map instances to the sorted connections
+        long[] order = new long[count];
+        for (int n = 0; n < count; n++) {
+            order[n] = ((long) departures[n] << 32) | n;
+        }
+        Arrays.sort(order);
+        int[] byInstance = new int[capacity];
+        Arrays.fill(byInstance, -1);
+        for (int c = 0; c < count; c++) {
+            byInstance[instances[(int) order[c]]] = c;
+        }
+
+        int[] sortedDepartureStops = new int[count];
+        int[] sortedArrivalStops = new int[count];
+        int[] sortedDepartures = new int[count];
+        int[] sortedArrivals = new int[count];
+        int[] sortedIndexes = new int[count];
+        int[] next = new int[count];
+        int[] previous = new int[count];
+        Arrays.fill(previous, -1);
+        for (int c = 0; c < count; c++) {
+            int n = (int) order[c];
+            sortedDepartureStops[c] = departureStops[n];
+            sortedArrivalStops[c] = arrivalStops[n];
+            sortedDepartures[c] = departures[n];
+            sortedArrivals[c] = arrivals[n];
+            sortedIndexes[c] = departureIndexes[n];
+            next[c] = nextInstances[n] >= 0 ? byInstance[nextInstances[n]] : -1;
+        }
+        // Two runs claiming the same next departure: the first keeps it
+        for (int c = 0; c < count; c++) {
+            if (next[c] >= 0) {
+                if (previous[next[c]] < 0 && next[c] != c) {
+                    previous[next[c]] = c;
+                } else {
+                    next[c] = -1;
+                }
+            }
+        }
+
+        int[] trips = new int[count];
+        Arrays.fill(trips, -1);
+        int tripCount = 0;
+        for (int c = 0; c < count; c++) {
+            if (trips[c] >= 0 || previous[c] >= 0) {
+                continue;
+            }
+            int trip = tripCount++;
+            for (int t = c; t >= 0 && trips[t] < 0; t = next[t]) {
+                trips[t] = trip;
+            }
+        }
+        // Only chains closed into a loop are left
+        for (int c = 0; c < count; c++) {
+            if (trips[c] < 0) {
+                trips[c] = tripCount++;
+            }
+        }
+
+        int[][] connectionOfInstance = new int[stopCount][];
+        for (int stop = 0; stop < stopCount; stop++) {
+            connectionOfInstance[stop] = Arrays.copyOfRange(byInstance, instanceBase[stop], instanceBase[stop + 1]);
+        }
+        return new Connections(serviceDays, count, sortedDepartureStops, sortedArrivalStops, sortedDepartures,
+            sortedArrivals, sortedIndexes, trips, previous, next, tripCount, connectionOfInstance);
+    }
+
+    // Position of the next departure of the same line and direction at the
+    // target stop around the expected arrival, or -1
+    private static int continuation(ServiceDays serviceDays, int target, int line, String direction,
+                                    int departure, int expected) {
+        int[] offsets = serviceDays.offsets(target);
+        int[] indexes = serviceDays.indexes(target);
+        StopTimetable stopTimetable = serviceDays.getTimetable().stopTimetable(target);
+        int last = expected + LATE_SECONDS;
+        for (int p = ServiceDays.lowerBound(offsets, Math.max(departure, expected - EARLY_SECONDS));
+             p < offsets.length && offsets[p] <= last; p++) {
+            int index = indexes[p];
+            if (stopTimetable.lines[index] == line && Objects.equals(stopTimetable.directions[index], direction)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,114 @@
+package com.livelink.timetable;
+
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Finds the departures of a {@link Timetable} by id.
+ *
+ * Departures are numbered stop by stop, and their ordinals are kept in an
+ * open-addressing table keyed by departure id, which costs one int per
+ * slot instead of a map entry per departure.
+ */
+public final class DepartureIndex {
+
+    /**
+     * A scheduled departure with the names it is shown with.
+     */
+    public record Departure(String departureId, String stopId, String stopName, String lineNumber,
+                            String transportType, String direction, LocalTime scheduled) {}
+
+    private final Timetable timetable;
+    // First departure ordinal of each stop, and one past the last
+    private final int[] stopBase;
+    // Departure ordinal + 1 by hash of the departure id, 0 when free
+    private final int[] slots;
+    private final int mask;
+
+    private DepartureIndex(Timetable timetable, int[] stopBase, int[] slots) {
+        this.timetable = timetable;
+        this.stopBase = stopBase;
+        this.slots = slots;
+        this.mask = slots.length - 1;
+    }
+
+    public static DepartureIndex build(Timetable timetable) {
+        int stopCount = timetable.getStopCount();
+        int[] stopBase = new int[stopCount + 1];
+        for (int stop = 0; stop < stopCount; stop++) {
+            stopBase[stop + 1] = stopBase[stop] + timetable.stopTimetable(stop).size();
+        }
+        // At most half full, so probes stay short
+        int[] slots = new int[Integer.highestOneBit(Math.max(stopBase[stopCount], 1)) * 4];
+        int mask = slots.length - 1;
+        for (int stop = 0; stop < stopCount; stop++) {
+            String[] departureIds = timetable.stopTimetable(stop).departureIds;
+            for (int index = 0; index < departureIds.length; index++) {
+                int slot = hash(departureIds[index]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = stopBase[stop] + index + 1;
+            }
+        }
+        return new DepartureIndex(timetable, stopBase, slots);
+    }
+
+    public Timetable getTimetable() {
+        return timetable;
+    }
+
+    /**
+     * The departure with the given id, or {@code null} if the timetable has
+     * none.
+     */
+    public Departure find(String departureId) {
+        int ordinal = ordinalOf(departureId);
+        if (ordinal < 0) {
+            return null;
+        }
+        int stop = stopOf(ordinal);
+        StopTimetable stopTimetable = timetable.stopTimetable(stop);
+        int index = indexOf(stop, ordinal);
+        int line = stopTimetable.lines[index];
+        return new Departure(departureId, timetable.stopIds[stop], timetable.stopNames[stop],
+            timetable.lineNumbers[line], timetable.lineTypes[line], stopTimetable.directions[index],
+            LocalTime.ofSecondOfDay(stopTimetable.departureSeconds[index] % (24 * 60 * 60)));
+    }
+
+    int ordinalOf(String departureId) {
+        for (int slot = hash(departureId) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int ordinal = slots[slot] - 1;
+            int stop = stopOf(ordinal);
+            if (timetable.stopTimetable(stop).departureIds[ordinal - stopBase[stop]].equals(departureId)) {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    int stopOf(int ordinal) {
+        int found = Arrays.binarySearch(stopBase, ordinal);
+        if (found < 0) {
+            return -found - 2;
+        }
+        // Stops without departures share their base with the next stop
+        while (stopBase[found + 1] == ordinal) {
+            found++;
+        }
+        return found;
+    }
+
+    /**
+     * Position of a departure in its {@link StopTimetable}.
+     */
+    int indexOf(int stop, int ordinal) {
+        return ordinal - stopBase[stop];
+    }
+
+    // High bits mixed in, as HashMap does, since slots are picked by the low bits
+    private static int hash(String departureId) {
+        int h = departureId.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
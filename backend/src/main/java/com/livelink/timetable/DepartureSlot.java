@@ -0,0 +1,63 @@
+package com.livelink.timetable;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight view of one departure instance of {@link ServiceDays}.
+ */
+public final class DepartureSlot {
+
+    private final Timetable timetable;
+    private final StopTimetable stopTimetable;
+    private final int index;
+    private final ServiceDays serviceDays;
+    private final int position;
+    private final int offset;
+
+    DepartureSlot(ServiceDays serviceDays, StopTimetable stopTimetable, int index, int position, int offset) {
+        this.timetable = serviceDays.getTimetable();
+        this.stopTimetable = stopTimetable;
+        this.index = index;
+        this.serviceDays = serviceDays;
+        this.position = position;
+        this.offset = offset;
+    }
+
+    public String getDepartureId() { return stopTimetable.departureIds[index]; }
+    public int getSecondOfDay() { return stopTimetable.departureSeconds[index]; }
+    public String getPlatform() { return stopTimetable.platforms[index]; }
+    public String getDestination() { return stopTimetable.directions[index]; }
+    public String getLineId() { return timetable.lineIds[stopTimetable.lines[index]]; }
+    public String getLineNumber() { return timetable.lineNumbers[stopTimetable.lines[index]]; }
+    public String getTransportType() { return timetable.lineTypes[stopTimetable.lines[index]]; }
+    public String getStopId() { return timetable.stopIds[stopTimetable.stop]; }
+    public String getStopName() { return timetable.stopNames[stopTimetable.stop]; }
+
+    // Seconds from the start of the materialized days
+    int getOffset() { return offset; }
+
+    /**
+     * Calendar day this instance departs on, the {@code service_day} of
+     * its live reports.
+     */
+    public LocalDate getRunDay() {
+        return serviceDays.runDay(offset);
+    }
+
+    /**
+     * {@code HH:mm} times of the following departures of the same line and
+     * direction at this stop within the materialized days, across
+     * midnight.
+     */
+    public List<String> getNextDepartures(int count) {
+        int[] seconds = new int[count];
+        int found = serviceDays.following(stopTimetable.stop, position, seconds, count);
+        List<String> times = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            times.add(ClockTimes.ofSecond(seconds[i]));
+        }
+        return times;
+    }
+}
@@ -0,0 +1,20 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * A planned trip from one stop to another: rides on one or more lines with
+ * transfers between them at the same stop.
+ */
+public record Journey(Instant departure, Instant arrival, int transfers, List<Leg> legs) {
+
+    /**
+     * One ride, from boarding to alighting; delays are in seconds.
+     */
+    public record Leg(String departureId, String lineId, String lineNumber, String transportType,
+                      String direction, String platform,
+                      String fromStopId, String fromStopName, String toStopId, String toStopName,
+                      Instant scheduledDeparture, Instant scheduledArrival,
+                      int departureDelaySeconds, int arrivalDelaySeconds) {}
+}
@@ -0,0 +1,162 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Live delays and cancellations laid over a {@link Connections} network.
+ *
+ * Live state is kept per scheduled departure, not per run, so a report is
+ * applied to the run of its departure closest to the time it was made. A
+ * delay moves the connection leaving the stop and the arrival of the same
+ * trip at that stop; an arrival without a report of its own keeps the
+ * delay its trip departed with. Later connections of the trip without a
+ * report of their own are delayed as {@link DelayPropagation} carries the
+ * delay on. Delayed connections are kept in a separate list ordered by
+ * their delayed departure, which the scan merges with the scheduled order.
+ */
+public final class LiveDelays {
+
+    public record Report(String departureId, String stopId, int secondOfDay, int delaySeconds,
+                         boolean cancelled, Instant reportedAt) {}
+
+    final Connections connections;
+    private final BitSet departureAffected;
+    private final BitSet arrivalAffected;
+    private final BitSet cancelled;
+    private final Map<Integer, Integer> departureDelays;
+    private final Map<Integer, Integer> arrivalDelays;
+    final int[] delayed;
+    final int[] delayedDepartures;
+
+    private LiveDelays(Connections connections, BitSet departureAffected, BitSet arrivalAffected, BitSet cancelled,
+                       Map<Integer, Integer> departureDelays, Map<Integer, Integer> arrivalDelays,
+                       int[] delayed, int[] delayedDepartures) {
+        this.connections = connections;
+        this.departureAffected = departureAffected;
+        this.arrivalAffected = arrivalAffected;
+        this.cancelled = cancelled;
+        this.departureDelays = departureDelays;
+        this.arrivalDelays = arrivalDelays;
+        this.delayed = delayed;
+        this.delayedDepartures = delayedDepartures;
+    }
+
+    public static LiveDelays none(Connections connections) {
+        return new LiveDelays(connections, new BitSet(), new BitSet(), new BitSet(), Map.of(), Map.of(),
+            new int[0], new int[0]);
+    }
+
+    public static LiveDelays of(Connections connections, Collection<Report> reports,
+                                DelayPropagation.Rules rules) {
+        Timetable timetable = connections.timetable;
+        BitSet departureAffected = new BitSet(connections.size);
+        BitSet arrivalAffected = new BitSet(connections.size);
+        BitSet cancelled = new BitSet(connections.size);
+        Map<Integer, Integer> departureDelays = new HashMap<>();
+        Map<Integer, Integer> arrivalDelays = new HashMap<>();
+        Map<Integer, Integer> reportedDelays = new HashMap<>();
+
+        for (Report report : reports) {
+            if (!report.cancelled() && report.delaySeconds() == 0) {
+                continue;
+            }
+            int stop = timetable.stopOf(report.stopId());
+            if (stop < 0) {
+                continue;
+            }
+            int index = indexOf(timetable.stopTimetable(stop), report);
+            int connection = index >= 0 ? connections.connectionNear(stop, index, report.reportedAt()) : -1;
+            if (connection < 0) {
+                continue;
+            }
+            int arriving = connections.previous[connection];
+            departureAffected.set(connection);
+            if (report.cancelled()) {
+                cancelled.set(connection);
+            } else {
+                departureDelays.put(connection, report.delaySeconds());
+                reportedDelays.put(connection, report.delaySeconds());
+            }
+            if (arriving >= 0) {
+                arrivalAffected.set(arriving);
+                if (report.cancelled()) {
+                    cancelled.set(arriving);
+                } else {
+                    arrivalDelays.put(arriving, report.delaySeconds());
+                }
+            }
+        }
+
+        // Propagation stops at the next connection with a report of its own
+        for (Map.Entry<Integer, Integer> reported : reportedDelays.entrySet()) {
+            DelayPropagation.walk(connections, reported.getKey(), reported.getValue(), rules, (later, delay) -> {
+                if (departureAffected.get(later)) {
+                    return false;
+                }
+                departureDelays.put(later, delay);
+                return true;
+            });
+        }
+        for (int connection : departureDelays.keySet()) {
+            departureAffected.set(connection);
+        }
+
+        long[] order = new long[departureDelays.size()];
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : departureDelays.entrySet()) {
+            int connection = entry.getKey();
+            order[count++] = ((long) (connections.departures[connection] + entry.getValue()) << 32) | connection;
+        }
+        Arrays.sort(order);
+        int[] delayed = new int[count];
+        int[] delayedDepartures = new int[count];
+        for (int i = 0; i < count; i++) {
+            delayed[i] = (int) order[i];
+            delayedDepartures[i] = (int) (order[i] >> 32);
+        }
+        return new LiveDelays(connections, departureAffected, arrivalAffected, cancelled, departureDelays,
+            arrivalDelays, delayed, delayedDepartures);
+    }
+
+    public Connections getConnections() { return connections; }
+    public int getDelayedCount() { return delayed.length; }
+    public int getCancelledCount() { return cancelled.cardinality(); }
+
+    /**
+     * Whether the connection leaves off schedule, delayed or cancelled.
+     */
+    boolean isAffected(int connection) {
+        return departureAffected.get(connection);
+    }
+
+    boolean isCancelled(int connection) {
+        return cancelled.get(connection);
+    }
+
+    int departureDelay(int connection) {
+        return departureAffected.get(connection) ? departureDelays.getOrDefault(connection, 0) : 0;
+    }
+
+    int arrivalDelay(int connection) {
+        if (arrivalAffected.get(connection)) {
+            return arrivalDelays.getOrDefault(connection, 0);
+        }
+        return departureDelay(connection);
+    }
+
+    // Timetable index of the report's departure at its stop, or -1
+    private static int indexOf(StopTimetable stopTimetable, Report report) {
+        for (int i = stopTimetable.lowerBound(report.secondOfDay());
+             i < stopTimetable.size() && stopTimetable.departureSeconds[i] == report.secondOfDay(); i++) {
+            if (stopTimetable.departureIds[i].equals(report.departureId())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,91 @@
+package com.livelink.timetable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Legs of the {@code routes} table by departure stop: the line, the next
+ * stop, the travel time and the last stop of the chain of legs the leg
+ * belongs to, which tells the directions of a line apart.
+ */
+final class RouteLegs {
+
+    private static final int[] NONE = new int[0];
+
+    private final int[][] legsByStop;
+    final int[] lines;
+    final int[] targets;
+    final int[] seconds;
+    final int[] termini;
+
+    RouteLegs(int[][] legsByStop, int[] lines, int[] targets, int[] seconds, int[] termini) {
+        this.legsByStop = legsByStop;
+        this.lines = lines;
+        this.targets = targets;
+        this.seconds = seconds;
+        this.termini = termini;
+    }
+
+    int[] from(int stop) {
+        return stop < legsByStop.length ? legsByStop[stop] : NONE;
+    }
+
+    int size() {
+        return lines.length;
+    }
+
+    int[][] legsByStop() {
+        return legsByStop;
+    }
+
+    record Leg(int line, int from, int to, int sequence, int seconds) {}
+
+    /**
+     * Indexes the legs; a leg continues with the leg of the same line that
+     * starts at its target with the next sequence number.
+     */
+    static RouteLegs of(List<Leg> legs, int stopCount) {
+        Map<Long, Leg> bySequence = new HashMap<>();
+        for (Leg leg : legs) {
+            bySequence.putIfAbsent(key(leg.line(), leg.from(), leg.sequence()), leg);
+        }
+
+        int[] lines = new int[legs.size()];
+        int[] targets = new int[legs.size()];
+        int[] seconds = new int[legs.size()];
+        int[] termini = new int[legs.size()];
+        List<List<Integer>> byStop = new ArrayList<>(stopCount);
+        for (int stop = 0; stop < stopCount; stop++) {
+            byStop.add(new ArrayList<>(0));
+        }
+        for (int i = 0; i < legs.size(); i++) {
+            Leg leg = legs.get(i);
+            lines[i] = leg.line();
+            targets[i] = leg.to();
+            seconds[i] = leg.seconds();
+            Leg last = leg;
+            // Bounded so a circular line ends after one lap
+            for (int steps = 0; steps < legs.size(); steps++) {
+                Leg next = bySequence.get(key(last.line(), last.to(), last.sequence() + 1));
+                if (next == null) {
+                    break;
+                }
+                last = next;
+            }
+            termini[i] = last.to();
+            byStop.get(leg.from()).add(i);
+        }
+
+        int[][] legsByStop = new int[stopCount][];
+        for (int stop = 0; stop < stopCount; stop++) {
+            legsByStop[stop] = byStop.get(stop).stream().mapToInt(Integer::intValue).toArray();
+        }
+        return new RouteLegs(legsByStop, lines, targets, seconds, termini);
+    }
+
+    private static long key(int line, int stop, int sequence) {
+        return ((long) line << 42) | ((long) stop << 21) | (sequence & 0x1FFFFF);
+    }
+}
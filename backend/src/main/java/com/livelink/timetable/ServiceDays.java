@@ -0,0 +1,279 @@
+package com.livelink.timetable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Concrete departures of consecutive service days, materialized from a
+ * {@link Timetable} so a board is a single range scan over absolute times.
+ *
+ * Each stop holds its instances sorted by seconds from the start of the
+ * first materialized day, which keeps windows correct across midnight.
+ * Departures before {@code serviceDayStart} belong to the previous service
+ * day: their {@code days_of_week} refer to the day the trip started, and
+ * they run after midnight of it.
+ */
+public final class ServiceDays {
+
+    private static final Comparator<DepartureSlot> BY_OFFSET = Comparator.comparingInt(DepartureSlot::getOffset);
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final Timetable timetable;
+    private final LocalDate firstDate;
+    private final int dayCount;
+    private final long originEpochSecond;
+    private final ZoneId zoneId;
+
+    // Per stop: seconds from the origin, the StopTimetable index and the
+    // position of the next instance of the same line and direction, or -1
+    private final int[][] offsets;
+    private final int[][] indexes;
+    private final int[][] nextSameRoute;
+    private final int instanceCount;
+
+    private ServiceDays(Timetable timetable, LocalDate firstDate, int dayCount, long originEpochSecond,
+                        ZoneId zoneId, int[][] offsets, int[][] indexes, int[][] nextSameRoute) {
+        this.timetable = timetable;
+        this.firstDate = firstDate;
+        this.dayCount = dayCount;
+        this.originEpochSecond = originEpochSecond;
+        this.zoneId = zoneId;
+        this.offsets = offsets;
+        this.indexes = indexes;
+        this.nextSameRoute = nextSameRoute;
+        int count = 0;
+        for (int[] stopOffsets : offsets) {
+            count += stopOffsets.length;
+        }
+        this.instanceCount = count;
+    }
+
+    /**
+     * Materializes the service days {@code [firstDate, firstDate + dayCount)}.
+     */
+    public static ServiceDays materialize(Timetable timetable, LocalDate firstDate, int dayCount,
+                                          ZoneId zoneId, LocalTime serviceDayStart) {
+        int startSecond = serviceDayStart.toSecondOfDay();
+        long origin = firstDate.atStartOfDay(zoneId).toEpochSecond();
+
+        // Start of each calendar day touched, one past the last service day
+        // for the departures after midnight
+        long[] midnights = new long[dayCount + 2];
+        for (int day = 0; day < midnights.length; day++) {
+            midnights[day] = firstDate.plusDays(day).atStartOfDay(zoneId).toEpochSecond();
+        }
+
+        int stopCount = timetable.getStopCount();
+        int[][] offsets = new int[stopCount][];
+        int[][] indexes = new int[stopCount][];
+        int[][] next = new int[stopCount][];
+        for (int stop = 0; stop < stopCount; stop++) {
+            StopTimetable stopTimetable = timetable.stopTimetable(stop);
+            int split = stopTimetable.lowerBound(startSecond);
+
+            int size = 0;
+            for (int day = 0; day < dayCount; day++) {
+                int dayBit = Timetable.dayBit(firstDate.plusDays(day).getDayOfWeek());
+                for (int i = 0; i < stopTimetable.size(); i++) {
+                    if (stopTimetable.runsOn(i, dayBit)) {
+                        size++;
+                    }
+                }
+            }
+
+            int[] stopOffsets = new int[size];
+            int[] stopIndexes = new int[size];
+            int position = 0;
+            for (int day = 0; day < dayCount; day++) {
+                LocalDate date = firstDate.plusDays(day);
+                int dayBit = Timetable.dayBit(date.getDayOfWeek());
+                // Departures from the service day start on, then those after midnight
+                for (int n = 0; n < stopTimetable.size(); n++) {
+                    int i = n < stopTimetable.size() - split ? split + n : n - (stopTimetable.size() - split);
+                    if (!stopTimetable.runsOn(i, dayBit)) {
+                        continue;
+                    }
+                    int second = stopTimetable.departureSeconds[i];
+                    int calendarDay = i < split ? day + 1 : day;
+                    long epochSecond = epochSecond(midnights, calendarDay, firstDate, second, zoneId);
+                    stopOffsets[position] = (int) (epochSecond - origin);
+                    stopIndexes[position] = i;
+                    position++;
+                }
+            }
+            sortIfNeeded(stopOffsets, stopIndexes);
+
+            offsets[stop] = stopOffsets;
+            indexes[stop] = stopIndexes;
+            next[stop] = linkSameRoute(stopTimetable, stopIndexes);
+        }
+        return new ServiceDays(timetable, firstDate, dayCount, origin, zoneId, offsets, indexes, next);
+    }
+
+    public Timetable getTimetable() { return timetable; }
+    public LocalDate getFirstDate() { return firstDate; }
+    public int getDayCount() { return dayCount; }
+    public int getInstanceCount() { return instanceCount; }
+
+    long getOriginEpochSecond() {
+        return originEpochSecond;
+    }
+
+    /**
+     * Calendar day an instance departs on, which live reports for it are
+     * filed under; not the service day it was materialized for when it
+     * runs after midnight.
+     */
+    LocalDate runDay(int offset) {
+        return Instant.ofEpochSecond(originEpochSecond + offset).atZone(zoneId).toLocalDate();
+    }
+
+    int[] offsets(int stop) {
+        return offsets[stop];
+    }
+
+    int[] indexes(int stop) {
+        return indexes[stop];
+    }
+
+    /**
+     * Departures of one stop in {@code [from, to]}, ordered by time.
+     */
+    public List<DepartureSlot> departuresAt(String stopId, Instant from, Instant to, int limit) {
+        int stop = timetable.stopOf(stopId);
+        if (stop < 0) {
+            return List.of();
+        }
+        List<DepartureSlot> result = new ArrayList<>(Math.min(limit, 32));
+        collect(stop, offset(from), offset(to), limit, result);
+        return result;
+    }
+
+    /**
+     * Departures of every stop in a pincode area, merged by time.
+     */
+    public List<DepartureSlot> departuresInPincode(String pincode, Instant from, Instant to, int limit) {
+        return merge(timetable.stopsInPincode(pincode), from, to, limit, limit);
+    }
+
+    /**
+     * Departures of the given stops, at most {@code perStopLimit} from
+     * each, merged by time. Unknown stop ids are ignored.
+     */
+    public List<DepartureSlot> departuresAt(Collection<String> stopIds, Instant from, Instant to, int perStopLimit) {
+        int[] stops = stopIds.stream()
+            .distinct()
+            .mapToInt(timetable::stopOf)
+            .filter(stop -> stop >= 0)
+            .toArray();
+        return merge(stops, from, to, perStopLimit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Copies the departure seconds of up to {@code max} following instances
+     * of the same line and direction.
+     */
+    int following(int stop, int position, int[] seconds, int max) {
+        StopTimetable stopTimetable = timetable.stopTimetable(stop);
+        int found = 0;
+        for (int p = nextSameRoute[stop][position]; p >= 0 && found < max; p = nextSameRoute[stop][p]) {
+            seconds[found++] = stopTimetable.departureSeconds[indexes[stop][p]];
+        }
+        return found;
+    }
+
+    private List<DepartureSlot> merge(int[] stops, Instant from, Instant to, int perStopLimit, int limit) {
+        int fromOffset = offset(from);
+        int toOffset = offset(to);
+        List<DepartureSlot> result = new ArrayList<>();
+        for (int stop : stops) {
+            // No single stop can contribute more than the overall limit
+            collect(stop, fromOffset, toOffset, Math.min(perStopLimit, limit), result);
+        }
+        result.sort(BY_OFFSET);
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private void collect(int stop, int fromOffset, int toOffset, int limit, List<DepartureSlot> sink) {
+        int[] stopOffsets = offsets[stop];
+        StopTimetable stopTimetable = timetable.stopTimetable(stop);
+        int start = lowerBound(stopOffsets, fromOffset);
+        int end = (int) Math.min(upperBound(stopOffsets, toOffset), (long) start + limit);
+        for (int p = start; p < end; p++) {
+            sink.add(new DepartureSlot(this, stopTimetable, indexes[stop][p], p, stopOffsets[p]));
+        }
+    }
+
+    // Clamped so instants outside the materialized days select nothing
+    // instead of overflowing
+    private int offset(Instant instant) {
+        long seconds = instant.getEpochSecond() - originEpochSecond;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, seconds));
+    }
+
+    private static long epochSecond(long[] midnights, int calendarDay, LocalDate firstDate, int second,
+                                    ZoneId zoneId) {
+        if (midnights[calendarDay + 1] - midnights[calendarDay] == SECONDS_PER_DAY) {
+            return midnights[calendarDay] + second;
+        }
+        // Clocks change on this day; let the zone rules place the local time
+        return ZonedDateTime.of(firstDate.plusDays(calendarDay), LocalTime.ofSecondOfDay(second), zoneId)
+            .toEpochSecond();
+    }
+
+    static int lowerBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(int[] sorted, int value) {
+        return value == Integer.MAX_VALUE ? sorted.length : lowerBound(sorted, value + 1);
+    }
+
+    // Instances come out in order except around clock changes
+    private static void sortIfNeeded(int[] offsets, int[] indexes) {
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                long[] pairs = new long[offsets.length];
+                for (int j = 0; j < offsets.length; j++) {
+                    pairs[j] = ((long) offsets[j] << 32) | (indexes[j] & 0xFFFFFFFFL);
+                }
+                Arrays.sort(pairs);
+                for (int j = 0; j < pairs.length; j++) {
+                    offsets[j] = (int) (pairs[j] >> 32);
+                    indexes[j] = (int) pairs[j];
+                }
+                return;
+            }
+        }
+    }
+
+    private static int[] linkSameRoute(StopTimetable stopTimetable, int[] indexes) {
+        int[] next = new int[indexes.length];
+        int[] lastSeen = new int[stopTimetable.routeCount];
+        Arrays.fill(lastSeen, -1);
+        for (int p = indexes.length - 1; p >= 0; p--) {
+            int route = stopTimetable.routes[indexes[p]];
+            next[p] = lastSeen[route];
+            lastSeen[route] = p;
+        }
+        return next;
+    }
+}
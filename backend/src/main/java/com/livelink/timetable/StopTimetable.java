@@ -0,0 +1,99 @@
+package com.livelink.timetable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All scheduled departures of one stop, held as parallel arrays sorted by
+ * departure second-of-day. Instances are immutable once built.
+ */
+public final class StopTimetable {
+
+    final int stop;
+    final int[] departureSeconds;
+    final byte[] dayMasks;
+    final int[] lines;
+    final String[] departureIds;
+    final String[] platforms;
+    final String[] directions;
+    // Index of the next departure of the same line and direction, or -1
+    final int[] nextSameRoute;
+    // Dense id of each departure's line and direction within this stop
+    final int[] routes;
+    final int routeCount;
+
+    StopTimetable(int stop, int[] departureSeconds, byte[] dayMasks, int[] lines,
+                  String[] departureIds, String[] platforms, String[] directions) {
+        this.stop = stop;
+        this.departureSeconds = departureSeconds;
+        this.dayMasks = dayMasks;
+        this.lines = lines;
+        this.departureIds = departureIds;
+        this.platforms = platforms;
+        this.directions = directions;
+        this.routes = new int[lines.length];
+        this.nextSameRoute = new int[lines.length];
+        this.routeCount = linkSameRoute(lines, directions, routes, nextSameRoute);
+    }
+
+    // Restores an instance with its routes already linked
+    StopTimetable(int stop, int[] departureSeconds, byte[] dayMasks, int[] lines,
+                  String[] departureIds, String[] platforms, String[] directions,
+                  int[] routes, int[] nextSameRoute, int routeCount) {
+        this.stop = stop;
+        this.departureSeconds = departureSeconds;
+        this.dayMasks = dayMasks;
+        this.lines = lines;
+        this.departureIds = departureIds;
+        this.platforms = platforms;
+        this.directions = directions;
+        this.routes = routes;
+        this.nextSameRoute = nextSameRoute;
+        this.routeCount = routeCount;
+    }
+
+    public int size() {
+        return departureSeconds.length;
+    }
+
+    /**
+     * Index of the first departure at or after the given second-of-day.
+     */
+    int lowerBound(int secondOfDay) {
+        int low = 0;
+        int high = departureSeconds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departureSeconds[mid] < secondOfDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    boolean runsOn(int index, int dayBit) {
+        return (dayMasks[index] & dayBit) != 0;
+    }
+
+    private static int linkSameRoute(int[] lines, String[] directions, int[] routes, int[] next) {
+        Map<Route, Integer> routeIds = new HashMap<>();
+        int[] lastSeen = new int[lines.length];
+        for (int i = lines.length - 1; i >= 0; i--) {
+            Integer route = routeIds.get(new Route(lines[i], directions[i]));
+            if (route == null) {
+                route = routeIds.size();
+                routeIds.put(new Route(lines[i], directions[i]), route);
+                next[i] = -1;
+            } else {
+                next[i] = lastSeen[route];
+            }
+            routes[i] = route;
+            lastSeen[route] = i;
+        }
+        return routeIds.size();
+    }
+
+    private record Route(int line, String direction) {}
+}
@@ -0,0 +1,276 @@
+package com.livelink.timetable;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-optimized, immutable snapshot of the active timetable.
+ *
+ * Stop and line metadata is stored once in flat arrays and referenced by
+ * index; each stop keeps its departures as sorted primitive arrays so a
+ * time window is resolved with a binary search instead of a table scan.
+ */
+public final class Timetable {
+
+    final long version;
+    final Instant loadedAt;
+
+    final String[] stopIds;
+    final String[] stopNames;
+    final String[] stopPincodes;
+    final String[] lineIds;
+    final String[] lineNumbers;
+    final String[] lineTypes;
+
+    private final StopTimetable[] stopTimetables;
+    private final Map<String, Integer> stopIndex;
+    private final Map<String, int[]> stopsByPincode;
+    private final Map<String, Set<String>> lineNumbersByPincode;
+    private final int departureCount;
+    private final RouteLegs routeLegs;
+
+    Timetable(long version, Instant loadedAt, String[] stopIds, String[] stopNames, String[] stopPincodes,
+              String[] lineIds, String[] lineNumbers, String[] lineTypes,
+              StopTimetable[] stopTimetables, RouteLegs routeLegs) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.stopIds = stopIds;
+        this.stopNames = stopNames;
+        this.stopPincodes = stopPincodes;
+        this.lineIds = lineIds;
+        this.lineNumbers = lineNumbers;
+        this.lineTypes = lineTypes;
+        this.stopTimetables = stopTimetables;
+        this.routeLegs = routeLegs;
+
+        Map<String, Integer> index = new HashMap<>();
+        for (int stop = 0; stop < stopIds.length; stop++) {
+            index.put(stopIds[stop], stop);
+        }
+        this.stopIndex = Map.copyOf(index);
+
+        Map<String, List<Integer>> grouped = new HashMap<>();
+        for (int stop = 0; stop < stopIds.length; stop++) {
+            grouped.computeIfAbsent(stopPincodes[stop], key -> new ArrayList<>()).add(stop);
+        }
+        Map<String, int[]> byPincode = new HashMap<>();
+        grouped.forEach((pincode, stops) ->
+            byPincode.put(pincode, stops.stream().mapToInt(Integer::intValue).toArray()));
+        this.stopsByPincode = Map.copyOf(byPincode);
+
+        Map<String, Set<String>> linesByPincode = new HashMap<>();
+        for (int stop = 0; stop < stopIds.length; stop++) {
+            Set<String> lines = linesByPincode.computeIfAbsent(stopPincodes[stop], key -> new HashSet<>());
+            for (int line : stopTimetables[stop].lines) {
+                lines.add(lineNumbers[line]);
+            }
+        }
+        linesByPincode.replaceAll((pincode, lines) -> Set.copyOf(lines));
+        this.lineNumbersByPincode = Map.copyOf(linesByPincode);
+
+        int count = 0;
+        for (StopTimetable stopTimetable : stopTimetables) {
+            count += stopTimetable.size();
+        }
+        this.departureCount = count;
+    }
+
+    public static Builder builder(long version) {
+        return new Builder(version);
+    }
+
+    public static Timetable empty() {
+        return builder(0).build();
+    }
+
+    public long getVersion() { return version; }
+    public Instant getLoadedAt() { return loadedAt; }
+    public int getStopCount() { return stopIds.length; }
+    public int getLineCount() { return lineIds.length; }
+    public int getDepartureCount() { return departureCount; }
+    public int getRouteLegCount() { return routeLegs.size(); }
+
+    public boolean containsStop(String stopId) {
+        return stopIndex.containsKey(stopId);
+    }
+
+    int stopOf(String stopId) {
+        Integer stop = stopIndex.get(stopId);
+        return stop != null ? stop : -1;
+    }
+
+    int[] stopsInPincode(String pincode) {
+        return stopsByPincode.getOrDefault(pincode, new int[0]);
+    }
+
+    StopTimetable stopTimetable(int stop) {
+        return stopTimetables[stop];
+    }
+
+    RouteLegs routeLegs() {
+        return routeLegs;
+    }
+
+    /**
+     * Numbers of the lines with scheduled departures at any stop in the
+     * pincode area.
+     */
+    public Set<String> lineNumbersInPincode(String pincode) {
+        return lineNumbersByPincode.getOrDefault(pincode, Set.of());
+    }
+
+    /**
+     * Numbers of the lines departing from a stop, only those of the given
+     * transport types unless none are given.
+     */
+    public Set<String> lineNumbersAtStop(String stopId, Collection<String> transportTypes) {
+        Integer stop = stopIndex.get(stopId);
+        if (stop == null) {
+            return Set.of();
+        }
+        Set<String> lines = new HashSet<>();
+        for (int line : stopTimetables[stop].lines) {
+            if (transportTypes.isEmpty() || transportTypes.contains(lineTypes[line])) {
+                lines.add(lineNumbers[line]);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Bit for a day in the {@code days_of_week} mask, Monday = bit 0.
+     */
+    public static int dayBit(DayOfWeek day) {
+        return 1 << (day.getValue() - 1);
+    }
+
+    /**
+     * Mask for a {@code days_of_week} array using ISO numbering (1 = Monday).
+     */
+    public static byte dayMask(Integer[] daysOfWeek) {
+        int mask = 0;
+        for (Integer day : daysOfWeek) {
+            if (day != null && day >= 1 && day <= 7) {
+                mask |= 1 << (day - 1);
+            }
+        }
+        return (byte) mask;
+    }
+
+    public static final class Builder {
+        private final long version;
+        private final List<String> stopIds = new ArrayList<>();
+        private final List<String> stopNames = new ArrayList<>();
+        private final List<String> stopPincodes = new ArrayList<>();
+        private final List<String> lineIds = new ArrayList<>();
+        private final List<String> lineNumbers = new ArrayList<>();
+        private final List<String> lineTypes = new ArrayList<>();
+        private final Map<String, Integer> stopIndex = new HashMap<>();
+        private final Map<String, Integer> lineIndex = new HashMap<>();
+        private final Map<String, String> strings = new HashMap<>();
+        private final List<List<Row>> rowsByStop = new ArrayList<>();
+        private final List<RouteLegs.Leg> legs = new ArrayList<>();
+
+        private Builder(long version) {
+            this.version = version;
+        }
+
+        public Builder addStop(String id, String name, String pincode) {
+            if (!stopIndex.containsKey(id)) {
+                stopIndex.put(id, stopIds.size());
+                stopIds.add(id);
+                stopNames.add(intern(name));
+                stopPincodes.add(intern(pincode));
+                rowsByStop.add(new ArrayList<>());
+            }
+            return this;
+        }
+
+        public Builder addLine(String id, String lineNumber, String transportType) {
+            if (!lineIndex.containsKey(id)) {
+                lineIndex.put(id, lineIds.size());
+                lineIds.add(id);
+                lineNumbers.add(intern(lineNumber));
+                lineTypes.add(intern(transportType));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a departure; rows referencing unknown stops or lines are
+         * skipped, matching the inner joins of the SQL queries.
+         */
+        public Builder addDeparture(String id, String lineId, String stopId, int secondOfDay,
+                                    byte dayMask, String platform, String direction) {
+            Integer stop = stopIndex.get(stopId);
+            Integer line = lineIndex.get(lineId);
+            if (stop != null && line != null && dayMask != 0) {
+                rowsByStop.get(stop).add(
+                    new Row(id, line, secondOfDay, dayMask, intern(platform), intern(direction)));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a leg of the {@code routes} table; legs between unknown stops
+         * or of unknown lines are skipped.
+         */
+        public Builder addRouteLeg(String lineId, String fromStopId, String toStopId, int sequence,
+                                   int travelSeconds) {
+            Integer line = lineIndex.get(lineId);
+            Integer from = stopIndex.get(fromStopId);
+            Integer to = stopIndex.get(toStopId);
+            if (line != null && from != null && to != null && travelSeconds >= 0) {
+                legs.add(new RouteLegs.Leg(line, from, to, sequence, travelSeconds));
+            }
+            return this;
+        }
+
+        public Timetable build() {
+            StopTimetable[] stopTimetables = new StopTimetable[stopIds.size()];
+            for (int stop = 0; stop < stopTimetables.length; stop++) {
+                Row[] rows = rowsByStop.get(stop).toArray(new Row[0]);
+                Arrays.sort(rows, Comparator.comparingInt(Row::secondOfDay));
+                int[] seconds = new int[rows.length];
+                byte[] masks = new byte[rows.length];
+                int[] lines = new int[rows.length];
+                String[] ids = new String[rows.length];
+                String[] platforms = new String[rows.length];
+                String[] directions = new String[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    seconds[i] = rows[i].secondOfDay();
+                    masks[i] = rows[i].dayMask();
+                    lines[i] = rows[i].line();
+                    ids[i] = rows[i].id();
+                    platforms[i] = rows[i].platform();
+                    directions[i] = rows[i].direction();
+                }
+                stopTimetables[stop] = new StopTimetable(stop, seconds, masks, lines, ids, platforms, directions);
+            }
+            rowsByStop.clear();
+            RouteLegs routeLegs = RouteLegs.of(legs, stopIds.size());
+            legs.clear();
+            return new Timetable(version, Instant.now(),
+                stopIds.toArray(new String[0]), stopNames.toArray(new String[0]),
+                stopPincodes.toArray(new String[0]), lineIds.toArray(new String[0]),
+                lineNumbers.toArray(new String[0]), lineTypes.toArray(new String[0]),
+                stopTimetables, routeLegs);
+        }
+
+        private String intern(String value) {
+            return value == null ? null : strings.computeIfAbsent(value, key -> key);
+        }
+
+        private record Row(String id, int line, int secondOfDay, byte dayMask,
+                           String platform, String direction) {}
+    }
+}
@@ -0,0 +1,286 @@
+package com.livelink.timetable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary image of a {@link Timetable}, so a node can start serving without
+ * reading the timetable tables.
+ *
+ * Every distinct string is stored once in a table of UTF-8 bytes and
+ * referenced by index, -1 standing for null. Everything else is written
+ * as the primitive arrays the timetable holds, including the linked
+ * routes of each stop, so opening a snapshot is bulk copies out of a
+ * memory-mapped file and one decode per string, with no sorting or
+ * hashing. A CRC32 of the contents closes the file.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int magic, int format, long version, long loadedAt (epoch ms)
+ * strings:    int count, int byteCount, int[count + 1] offsets, byte[byteCount]
+ * stops:      int count, ref[count] ids, ref[count] names, ref[count] pincodes
+ * lines:      int count, ref[count] ids, ref[count] numbers, ref[count] types
+ * per stop:   int size, int routeCount, int[size] seconds, byte[size] day masks,
+ *             int[size] lines, ref[size] ids, ref[size] platforms, ref[size] directions,
+ *             int[size] routes, int[size] next same route
+ * route legs: int count, int[count] lines, targets, seconds, termini,
+ *             per stop int size, int[size] legs
+ * long crc32 of everything before it
+ * </pre>
+ */
+public final class TimetableSnapshot {
+
+    private static final int MAGIC = 0x4C4C5454;
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int TRAILER_BYTES = 8;
+
+    private TimetableSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot next to {@code path} and moves it into place, so
+     * readers never see a partial file.
+     */
+    public static void write(Timetable timetable, Path path) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Files.newOutputStream(temporary), crc), 1 << 16))) {
+                writeContents(timetable, out);
+                out.flush();
+                out.writeLong(crc.getValue());
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Opens a snapshot written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read, is not a snapshot of
+     *         this format or is damaged
+     */
+    public static Timetable read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_BYTES + TRAILER_BYTES) {
+                throw new IOException("Not a timetable snapshot: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IOException("Not a timetable snapshot of format " + FORMAT + ": " + path);
+        }
+        int end = buffer.capacity() - TRAILER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, end));
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new IOException("Damaged timetable snapshot: " + path);
+        }
+        buffer.position(8);
+        return readContents(new Input(buffer));
+    }
+
+    private static void writeContents(Timetable timetable, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeLong(timetable.version);
+        out.writeLong(timetable.loadedAt.toEpochMilli());
+
+        int stopCount = timetable.getStopCount();
+        Map<String, Integer> refs = new HashMap<>();
+        String[][] columns = {
+            timetable.stopIds, timetable.stopNames, timetable.stopPincodes,
+            timetable.lineIds, timetable.lineNumbers, timetable.lineTypes
+        };
+        for (String[] column : columns) {
+            collect(column, refs);
+        }
+        for (int stop = 0; stop < stopCount; stop++) {
+            StopTimetable stopTimetable = timetable.stopTimetable(stop);
+            collect(stopTimetable.departureIds, refs);
+            collect(stopTimetable.platforms, refs);
+            collect(stopTimetable.directions, refs);
+        }
+        writeStrings(refs, out);
+
+        out.writeInt(stopCount);
+        writeRefs(timetable.stopIds, refs, out);
+        writeRefs(timetable.stopNames, refs, out);
+        writeRefs(timetable.stopPincodes, refs, out);
+        out.writeInt(timetable.getLineCount());
+        writeRefs(timetable.lineIds, refs, out);
+        writeRefs(timetable.lineNumbers, refs, out);
+        writeRefs(timetable.lineTypes, refs, out);
+
+        for (int stop = 0; stop < stopCount; stop++) {
+            StopTimetable stopTimetable = timetable.stopTimetable(stop);
+            out.writeInt(stopTimetable.size());
+            out.writeInt(stopTimetable.routeCount);
+            writeInts(stopTimetable.departureSeconds, out);
+            out.write(stopTimetable.dayMasks);
+            writeInts(stopTimetable.lines, out);
+            writeRefs(stopTimetable.departureIds, refs, out);
+            writeRefs(stopTimetable.platforms, refs, out);
+            writeRefs(stopTimetable.directions, refs, out);
+            writeInts(stopTimetable.routes, out);
+            writeInts(stopTimetable.nextSameRoute, out);
+        }
+
+        RouteLegs legs = timetable.routeLegs();
+        out.writeInt(legs.size());
+        writeInts(legs.lines, out);
+        writeInts(legs.targets, out);
+        writeInts(legs.seconds, out);
+        writeInts(legs.termini, out);
+        for (int stop = 0; stop < stopCount; stop++) {
+            int[] from = legs.from(stop);
+            out.writeInt(from.length);
+            writeInts(from, out);
+        }
+    }
+
+    private static Timetable readContents(Input in) {
+        long version = in.buffer.getLong();
+        Instant loadedAt = Instant.ofEpochMilli(in.buffer.getLong());
+        String[] strings = in.stringTable();
+
+        int stopCount = in.buffer.getInt();
+        String[] stopIds = in.refs(stopCount, strings);
+        String[] stopNames = in.refs(stopCount, strings);
+        String[] stopPincodes = in.refs(stopCount, strings);
+        int lineCount = in.buffer.getInt();
+        String[] lineIds = in.refs(lineCount, strings);
+        String[] lineNumbers = in.refs(lineCount, strings);
+        String[] lineTypes = in.refs(lineCount, strings);
+
+        StopTimetable[] stopTimetables = new StopTimetable[stopCount];
+        for (int stop = 0; stop < stopCount; stop++) {
+            int size = in.buffer.getInt();
+            int routeCount = in.buffer.getInt();
+            int[] seconds = in.ints(size);
+            byte[] masks = new byte[size];
+            in.buffer.get(masks);
+            int[] lines = in.ints(size);
+            String[] ids = in.refs(size, strings);
+            String[] platforms = in.refs(size, strings);
+            String[] directions = in.refs(size, strings);
+            int[] routes = in.ints(size);
+            int[] nextSameRoute = in.ints(size);
+            stopTimetables[stop] = new StopTimetable(stop, seconds, masks, lines, ids, platforms, directions,
+                routes, nextSameRoute, routeCount);
+        }
+
+        int legCount = in.buffer.getInt();
+        int[] legLines = in.ints(legCount);
+        int[] targets = in.ints(legCount);
+        int[] legSeconds = in.ints(legCount);
+        int[] termini = in.ints(legCount);
+        int[][] legsByStop = new int[stopCount][];
+        for (int stop = 0; stop < stopCount; stop++) {
+            legsByStop[stop] = in.ints(in.buffer.getInt());
+        }
+        RouteLegs routeLegs = new RouteLegs(legsByStop, legLines, targets, legSeconds, termini);
+
+        return new Timetable(version, loadedAt, stopIds, stopNames, stopPincodes, lineIds, lineNumbers, lineTypes,
+            stopTimetables, routeLegs);
+    }
+
+    private static void collect(String[] values, Map<String, Integer> refs) {
+        for (String value : values) {
+            if (value != null) {
+                refs.putIfAbsent(value, refs.size());
+            }
+        }
+    }
+
+    private static void writeStrings(Map<String, Integer> refs, DataOutputStream out) throws IOException {
+        byte[][] encoded = new byte[refs.size()][];
+        refs.forEach((value, ref) -> encoded[ref] = value.getBytes(StandardCharsets.UTF_8));
+        out.writeInt(encoded.length);
+        int offset = 0;
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+        }
+        out.writeInt(offset);
+        offset = 0;
+        out.writeInt(0);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    private static void writeRefs(String[] values, Map<String, Integer> refs, DataOutputStream out)
+            throws IOException {
+        for (String value : values) {
+            out.writeInt(value != null ? refs.get(value) : -1);
+        }
+    }
+
+    private static void writeInts(int[] values, DataOutputStream out) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static final class Input {
+        final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int[] ints(int count) {
+            int[] values = new int[count];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+            return values;
+        }
+
+        // Equal strings come back as one instance, as the builder interns them
+        String[] refs(int count, String[] strings) {
+            int[] refs = ints(count);
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = refs[i] >= 0 ? strings[refs[i]] : null;
+            }
+            return values;
+        }
+
+        String[] stringTable() {
+            int count = buffer.getInt();
+            byte[] bytes = new byte[buffer.getInt()];
+            int[] offsets = ints(count + 1);
+            buffer.get(bytes);
+            String[] strings = new String[count];
+            for (int i = 0; i < count; i++) {
+                strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+            }
+            return strings;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.livelink.alerts;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Alert activation and expiry by the index's timer wheel, driven with
+ * explicit times instead of the wall clock.
+ */
+class AlertIndexTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-19T06:00:00Z");
+
+    private AlertIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new AlertIndex(NOW);
+    }
+
+    @Test
+    void activatesAtStartAndExpiresAtEnd() {
+        index.sync(List.of(alert("a", minutes(10), minutes(20), "U1")), NOW);
+        assertTrue(index.active().isEmpty());
+
+        assertEquals(0, index.advance(NOW.plus(minutes(10)).minusSeconds(1)));
+        assertEquals(1, index.advance(NOW.plus(minutes(10))));
+        assertEquals(List.of("a"), ids(index.activeForLine("U1")));
+
+        assertEquals(0, index.advance(NOW.plus(minutes(20)).minusSeconds(1)));
+        assertEquals(1, index.advance(NOW.plus(minutes(20))));
+        assertTrue(index.active().isEmpty());
+        assertTrue(index.activeForLine("U1").isEmpty());
+    }
+
+    @Test
+    void activatesStartMoreThanOneRevolutionAhead() {
+        // The wheel turns once an hour
+        index.sync(List.of(alert("later", Duration.ofHours(3), Duration.ofHours(4), "S1")), NOW);
+
+        Instant start = NOW.plus(Duration.ofHours(3));
+        for (Instant now = NOW.plusSeconds(60); now.isBefore(start); now = now.plusSeconds(60)) {
+            index.advance(now);
+            assertTrue(index.active().isEmpty(), "active at " + now);
+        }
+        assertEquals(1, index.advance(start));
+        assertEquals(List.of("later"), ids(index.active()));
+        assertEquals(1, index.advance(NOW.plus(Duration.ofHours(4))));
+        assertTrue(index.active().isEmpty());
+    }
+
+    @Test
+    void catchesUpMoreThanOneRevolutionAtOnce() {
+        index.sync(List.of(
+            alert("passed", minutes(30), minutes(90), "U1"),
+            alert("running", minutes(30), Duration.ofHours(5), "U2"),
+            alert("ahead", Duration.ofHours(3), Duration.ofHours(4), "U3")), NOW);
+        long version = index.getVersion();
+
+        // No advance for two hours, longer than the wheel's revolution
+        assertEquals(1, index.advance(NOW.plus(Duration.ofHours(2))));
+        assertEquals(List.of("running"), ids(index.active()));
+        assertEquals(version + 1, index.getVersion());
+
+        assertEquals(0, index.advance(NOW.plus(Duration.ofHours(2)).plusSeconds(1)));
+        assertEquals(1, index.advance(NOW.plus(Duration.ofHours(3))));
+        assertEquals(List.of("ahead", "running"), ids(index.active()));
+    }
+
+    @Test
+    void changedAlertReplacesPendingTimers() {
+        index.sync(List.of(alert("a", minutes(10), minutes(20), "U1")), NOW);
+        index.sync(List.of(alert("a", minutes(15), minutes(20), "U1")), NOW.plusSeconds(1));
+
+        assertEquals(0, index.advance(NOW.plus(minutes(10))));
+        assertTrue(index.active().isEmpty());
+        assertEquals(1, index.advance(NOW.plus(minutes(15))));
+        assertEquals(List.of("a"), ids(index.active()));
+    }
+
+    @Test
+    void alertWithoutEndStaysActive() {
+        Map<String, Object> row = alert("open", minutes(0), minutes(0), "U1");
+        row.remove("end_time");
+        index.sync(List.of(row), NOW);
+
+        index.advance(NOW.plus(Duration.ofDays(2)));
+        assertEquals(List.of("open"), ids(index.active()));
+    }
+
+    private static Map<String, Object> alert(String id, Duration start, Duration end, String line) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("severity", "medium");
+        row.put("affected_lines", List.of(line));
+        row.put("start_time", NOW.plus(start));
+        row.put("end_time", NOW.plus(end));
+        return row;
+    }
+
+    private static Duration minutes(long minutes) {
+        return Duration.ofMinutes(minutes);
+    }
+
+    private static List<String> ids(List<Map<String, Object>> alerts) {
+        return alerts.stream().map(alert -> (String) alert.get("id")).toList();
+    }
+}
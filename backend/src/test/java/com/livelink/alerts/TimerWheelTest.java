@@ -0,0 +1,89 @@
+package com.livelink.alerts;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A wheel of eight one-second slots, driven with explicit times from 0.
+ */
+class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int SLOTS = 8;
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(TICK_MILLIS, SLOTS, 0);
+    private final List<String> fired = new ArrayList<>();
+
+    @Test
+    void firesAtDeadlineNotBefore() {
+        wheel.schedule("a", 3500);
+
+        advance(3000);
+        assertTrue(fired.isEmpty());
+        advance(4000);
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesPastDeadlineOnNextAdvance() {
+        advance(5000);
+        wheel.schedule("late", 1000);
+
+        advance(5000);
+        assertTrue(fired.isEmpty());
+        advance(6000);
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    void keepsDeadlineBeyondOneRevolutionUntilItsRound() {
+        // 20 ticks ahead: its slot comes round twice before it is due
+        wheel.schedule("far", 20_000);
+
+        for (long now = 1000; now < 20_000; now += 1000) {
+            advance(now);
+        }
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.size());
+        advance(20_000);
+        assertEquals(List.of("far"), fired);
+    }
+
+    @Test
+    void catchesUpMoreThanOneRevolutionAtOnce() {
+        wheel.schedule("b", 5000);
+        wheel.schedule("a", 2000);
+        wheel.schedule("c", 30_000);
+
+        advance(12_000);
+        assertEquals(List.of("a", "b"), fired);
+        assertEquals(1, wheel.size());
+
+        advance(29_000);
+        assertEquals(List.of("a", "b"), fired);
+        advance(30_000);
+        assertEquals(List.of("a", "b", "c"), fired);
+    }
+
+    @Test
+    void firedTimerMaySchedule() {
+        wheel.schedule("first", 1000);
+
+        wheel.advance(1000, item -> {
+            fired.add(item);
+            wheel.schedule("second", 2000);
+        });
+        advance(2000);
+        assertEquals(List.of("first", "second"), fired);
+    }
+
+    private void advance(long nowMillis) {
+        wheel.advance(nowMillis, fired::add);
+    }
+}
@@ -0,0 +1,88 @@
+package com.livelink.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sequence tracking of a node subscribed when the Redis counter stood at 10.
+ */
+class InvalidationSequenceTest {
+
+    private InvalidationSequence sequence;
+
+    @BeforeEach
+    void setUp() {
+        sequence = new InvalidationSequence();
+        sequence.restart(10);
+    }
+
+    @Test
+    void appliesMessagesInOrder() {
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(11));
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(12));
+        assertEquals(12, sequence.getLast());
+        assertFalse(sequence.check(12));
+    }
+
+    @Test
+    void appliesFirstMessageBeforeAnyRestart() {
+        InvalidationSequence fresh = new InvalidationSequence();
+
+        assertEquals(InvalidationSequence.Outcome.APPLY, fresh.received(42));
+        assertEquals(InvalidationSequence.Outcome.APPLY, fresh.received(43));
+    }
+
+    @Test
+    void resyncsOnGapAndContinuesAfterIt() {
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(11));
+        assertEquals(InvalidationSequence.Outcome.RESYNC, sequence.received(14));
+        assertEquals(14, sequence.getLast());
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(15));
+    }
+
+    @Test
+    void ignoresDuplicateAndOlderMessages() {
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(11));
+        assertEquals(InvalidationSequence.Outcome.IGNORE, sequence.received(11));
+        assertEquals(InvalidationSequence.Outcome.IGNORE, sequence.received(9));
+        assertEquals(11, sequence.getLast());
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(12));
+    }
+
+    @Test
+    void resyncsWhenCounterFallsBelowLastSeen() {
+        sequence.received(11);
+        sequence.received(12);
+
+        // Redis was flushed and counts from scratch
+        assertTrue(sequence.check(3));
+        assertEquals(3, sequence.getLast());
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(4));
+        assertFalse(sequence.check(4));
+    }
+
+    @Test
+    void allowsMessagesInFlightUntilNextCheck() {
+        assertFalse(sequence.check(12));
+        sequence.received(11);
+        sequence.received(12);
+
+        assertFalse(sequence.check(12));
+    }
+
+    @Test
+    void resyncsWhenCounterStaysAheadOverTwoChecks() {
+        assertFalse(sequence.check(12));
+        sequence.received(11);
+
+        // Message 12 never arrived
+        assertTrue(sequence.check(12));
+        assertEquals(12, sequence.getLast());
+        assertEquals(InvalidationSequence.Outcome.APPLY, sequence.received(13));
+        assertFalse(sequence.check(13));
+    }
+}
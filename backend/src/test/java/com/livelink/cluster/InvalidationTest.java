@@ -0,0 +1,47 @@
+package com.livelink.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvalidationTest {
+
+    @Test
+    void parsesMessageWithKeys() {
+        Invalidation invalidation = Invalidation.parse("42 node-a DEPARTURE\n2026-10-19:d1\n2026-10-19:d2");
+
+        assertEquals(42, invalidation.sequence());
+        assertEquals("node-a", invalidation.origin());
+        assertEquals(Invalidation.Kind.DEPARTURE, invalidation.kind());
+        assertEquals(List.of("2026-10-19:d1", "2026-10-19:d2"), invalidation.keys());
+    }
+
+    @Test
+    void parsesMessageWithoutKeys() {
+        Invalidation invalidation = Invalidation.parse("43 node-b ALL");
+
+        assertEquals(43, invalidation.sequence());
+        assertEquals("node-b", invalidation.origin());
+        assertEquals(Invalidation.Kind.ALL, invalidation.kind());
+        assertTrue(invalidation.keys().isEmpty());
+        assertTrue(invalidation.affects(Invalidation.Kind.STOP));
+    }
+
+    @Test
+    void parsesPublishedPayloadOnceSequenced() {
+        String payload = Invalidation.payload("node-a", Invalidation.Kind.STOP, List.of("s1", "s2"));
+
+        assertEquals(new Invalidation(7, "node-a", Invalidation.Kind.STOP, List.of("s1", "s2")),
+            Invalidation.parse("7 " + payload));
+    }
+
+    @Test
+    void rejectsMalformedHeader() {
+        assertThrows(IllegalArgumentException.class, () -> Invalidation.parse("42 DEPARTURE\nd1"));
+        assertThrows(IllegalArgumentException.class, () -> Invalidation.parse("42 node-a EVERYTHING"));
+    }
+}
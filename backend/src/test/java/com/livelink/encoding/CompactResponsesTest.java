@@ -0,0 +1,228 @@
+package com.livelink.encoding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.livelink.dto.ApiDeparture;
+import com.livelink.dto.ApiResponse;
+import com.livelink.dto.ApiTable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactResponsesTest {
+
+    private static final String ETAG = "W/\"d-12-28403921\"";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CompactResponses compactResponses;
+    private List<ApiDeparture> departures;
+
+    @BeforeEach
+    void setUp() {
+        compactResponses = new CompactResponses();
+        ReflectionTestUtils.setField(compactResponses, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(compactResponses, "cborConverter", new MappingJackson2CborHttpMessageConverter());
+        ReflectionTestUtils.setField(compactResponses, "contentNegotiationManager", new ContentNegotiationManager());
+        departures = List.of(
+            departure("d1", "42", "Bahnhof", "08:00", "on-time", 0, List.of("08:20", "08:40")),
+            departure("d2", "42", "Bahnhof", "08:20", "delayed", 5, List.of("08:40")),
+            departure("d3", "S1", "Marbach", "08:25", "on-time", 0, null));
+    }
+
+    @Test
+    void storesEachStringOnce() {
+        ApiTable table = (ApiTable) compactResponses.compact(ApiResponse.success(departures, "3 departures"), null)
+            .getData();
+
+        assertEquals(new HashSet<>(table.getStrings()).size(), table.getStrings().size());
+        assertTrue(table.getEncodedFields().contains("lineNumber"));
+        assertTrue(table.getEncodedFields().contains("nextDepartures"));
+        assertFalse(table.getEncodedFields().contains("delayMinutes"));
+
+        int line = table.getFields().indexOf("lineNumber");
+        assertEquals(table.getRows().get(0).get(line), table.getRows().get(1).get(line));
+        assertEquals("42", table.getStrings().get((Integer) table.getRows().get(0).get(line)));
+        int next = table.getFields().indexOf("nextDepartures");
+        assertEquals(List.of(table.getStrings().indexOf("08:20"), table.getStrings().indexOf("08:40")),
+            table.getRows().get(0).get(next));
+        assertNull(table.getRows().get(2).get(next));
+        assertEquals(5, table.getRows().get(1).get(table.getFields().indexOf("delayMinutes")));
+    }
+
+    @Test
+    void encodesOnlyFieldsHoldingText() {
+        List<Map<String, Object>> stops = List.of(
+            row("id", "s1", "name", "Rathaus", "latitude", 48.89, "lines", List.of("42", "S1")),
+            row("id", "s2", "name", "Rathaus", "latitude", 48.9, "lines", List.of("42")));
+
+        ApiTable table = (ApiTable) compactResponses.compact(ApiResponse.success(stops), null).getData();
+
+        assertEquals(List.of("id", "name", "latitude", "lines"), table.getFields());
+        assertEquals(List.of("id", "name", "lines"), table.getEncodedFields());
+        assertEquals(List.of("s1", "Rathaus", "42", "S1", "s2"), table.getStrings());
+        assertEquals(Arrays.asList(4, 1, 48.9, List.of(2)), table.getRows().get(1));
+    }
+
+    @Test
+    void leavesResponsesOfOtherItemsAlone() {
+        ApiResponse<List<Integer>> numbers = ApiResponse.success(List.of(1, 2, 3));
+
+        assertSame(numbers, compactResponses.compact(numbers, null));
+    }
+
+    @Test
+    void parsesFieldsParameter() {
+        assertNull(CompactResponses.fields(null));
+        assertNull(CompactResponses.fields(" "));
+        assertEquals(List.of("lineNumber", "status"), CompactResponses.fields(" lineNumber,,status,lineNumber "));
+    }
+
+    @Test
+    void projectsToKnownFields() {
+        ApiResponse<JsonNode> projected = compactResponses.project(ApiResponse.success(departures, "3 departures"),
+            CompactResponses.fields("lineNumber,status,platformName"));
+
+        assertEquals("3 departures", projected.getMessage());
+        JsonNode first = projected.getData().get(0);
+        assertEquals(2, first.size());
+        assertEquals("42", first.get("lineNumber").textValue());
+        assertEquals("on-time", first.get("status").textValue());
+    }
+
+    @Test
+    void compactsToRequestedFields() {
+        ApiResponse<?> compacted = compactResponses.compact(ApiResponse.success(departures, "3 departures"),
+            CompactResponses.fields("destination,platformName,delayMinutes"));
+
+        ApiTable table = (ApiTable) compacted.getData();
+        assertNull(compacted.getMessage());
+        assertEquals(List.of("destination", "platformName", "delayMinutes"), table.getFields());
+        assertEquals(List.of("Bahnhof", "Marbach"), table.getStrings());
+        assertEquals(Arrays.asList(1, null, 0), table.getRows().get(2));
+    }
+
+    @Test
+    void tagsJsonAndCborSeparately() {
+        assertEquals("W/\"d-12-28403921-json\"", CompactResponses.representationEtag(ETAG, false));
+        assertEquals("W/\"d-12-28403921-cbor\"", CompactResponses.representationEtag(ETAG, true));
+    }
+
+    @Test
+    void validatesOnlyTheNegotiatedRendering() {
+        String cborTag = CompactResponses.representationEtag(ETAG, true);
+        String jsonTag = CompactResponses.representationEtag(ETAG, false);
+
+        assertTrue(notModified("application/cbor", cborTag));
+        assertFalse(notModified("application/cbor", jsonTag));
+        assertTrue(notModified("application/json", jsonTag));
+        assertFalse(notModified("application/json", cborTag));
+        assertFalse(notModified("*/*", cborTag));
+        assertTrue(notModified("application/cbor, application/json;q=0.5", cborTag));
+    }
+
+    @Test
+    void variesNotModifiedByAccept() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ServletWebRequest request = request("application/cbor", CompactResponses.representationEtag(ETAG, true),
+            response);
+
+        assertTrue(compactResponses.checkNotModified(request, ETAG));
+        assertEquals(304, response.getStatus());
+        assertEquals(HttpHeaders.ACCEPT, response.getHeader(HttpHeaders.VARY));
+    }
+
+    @Test
+    void decodesCborTableToTheJsonRows() throws IOException {
+        ApiResponse<?> compacted = compactResponses.compact(ApiResponse.success(departures), null);
+        JsonNode decoded = new CBORMapper().readTree(compactResponses.writeCbor(compacted));
+
+        assertEquals(objectMapper.valueToTree(departures), rows(decoded.get("data")));
+        assertTrue(decoded.get("success").booleanValue());
+    }
+
+    // Rebuilds the JSON items from a decoded ApiTable
+    private static ArrayNode rows(JsonNode table) {
+        List<String> fields = texts(table.get("fields"));
+        List<String> encoded = texts(table.get("encodedFields"));
+        List<String> strings = texts(table.get("strings"));
+        ArrayNode items = JsonNodeFactory.instance.arrayNode();
+        for (JsonNode row : table.get("rows")) {
+            ObjectNode item = items.addObject();
+            for (int i = 0; i < fields.size(); i++) {
+                JsonNode value = row.get(i);
+                if (!encoded.contains(fields.get(i)) || value.isNull()) {
+                    item.set(fields.get(i), value);
+                } else if (value.isArray()) {
+                    ArrayNode list = item.putArray(fields.get(i));
+                    value.forEach(index -> list.add(strings.get(index.intValue())));
+                } else {
+                    item.put(fields.get(i), strings.get(value.intValue()));
+                }
+            }
+        }
+        return items;
+    }
+
+    private static List<String> texts(JsonNode array) {
+        return StreamSupport.stream(array.spliterator(), false).map(JsonNode::textValue).toList();
+    }
+
+    private boolean notModified(String accept, String ifNoneMatch) {
+        return compactResponses.checkNotModified(request(accept, ifNoneMatch, new MockHttpServletResponse()), ETAG);
+    }
+
+    private static ServletWebRequest request(String accept, String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/departures/stop/s1");
+        request.addHeader(HttpHeaders.ACCEPT, accept);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        return new ServletWebRequest(request, response);
+    }
+
+    private static ApiDeparture departure(String id, String line, String destination, String scheduled,
+                                          String status, int delayMinutes, List<String> next) {
+        ApiDeparture departure = new ApiDeparture();
+        departure.setId(id);
+        departure.setTransportType(line.startsWith("S") ? "train" : "bus");
+        departure.setLineNumber(line);
+        departure.setDestination(destination);
+        departure.setScheduledDeparture(scheduled);
+        departure.setStatus(status);
+        departure.setDelayMinutes(delayMinutes);
+        departure.setNextDepartures(next);
+        departure.setStopId("s1");
+        departure.setStopName("Rathaus");
+        return departure;
+    }
+
+    private static Map<String, Object> row(Object... keysAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return row;
+    }
+}
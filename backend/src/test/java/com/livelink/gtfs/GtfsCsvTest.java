@@ -0,0 +1,117 @@
+package com.livelink.gtfs;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsCsvTest {
+
+    private static final String STOPS = "stop_id,stop_name,stop_desc\r\n"
+        + "s1,\"Bahnhof, Gleis 1\",\"Platform\nat the front\"\r\n"
+        + "s2,\"Der \"\"Alte\"\" Markt\",\"\"\r\n"
+        + "\r\n"
+        + "s3\n"
+        + "s4,Rathaus,\"\"\"\"";
+
+    @Test
+    void readsQuotedFieldsWithCommasLineBreaksAndQuotes() throws IOException {
+        assertStops(new GtfsCsv(new StringReader(STOPS)));
+    }
+
+    @Test
+    void readsRecordsAcrossRefills() throws IOException {
+        // One character per read splits every quote pair and line break
+        assertStops(new GtfsCsv(new OneCharReader(STOPS)));
+    }
+
+    @Test
+    void readsRecordLongerThanTheBuffer() throws IOException {
+        String name = "x".repeat(100_000);
+        GtfsCsv csv = new GtfsCsv(new StringReader("stop_id,stop_name\ns1,\"" + name + "\"\ns2,B\n"));
+
+        assertTrue(csv.next());
+        assertEquals(name, csv.get(1));
+        assertTrue(csv.next());
+        assertEquals("s2", csv.get(0));
+        assertEquals("B", csv.get(1));
+        assertFalse(csv.next());
+    }
+
+    @Test
+    void skipsByteOrderMarkAndStripsHeader() throws IOException {
+        GtfsCsv csv = new GtfsCsv(new StringReader("\uFEFFstop_id, stop_name\ns1,Rathaus\n"));
+
+        assertEquals(0, csv.column("stop_id"));
+        assertEquals(1, csv.column("stop_name"));
+        assertEquals(-1, csv.column("\uFEFFstop_id"));
+        assertTrue(csv.next());
+        assertEquals("s1", csv.get(csv.requiredColumn("stop_id")));
+    }
+
+    @Test
+    void skipsByteOrderMarkReadOnItsOwn() throws IOException {
+        GtfsCsv csv = new GtfsCsv(new OneCharReader("\uFEFFstop_id\ns1\n"));
+
+        assertEquals(0, csv.column("stop_id"));
+        assertTrue(csv.next());
+        assertEquals("s1", csv.get(0));
+    }
+
+    @Test
+    void rejectsMissingHeaderAndColumns() throws IOException {
+        assertThrows(IOException.class, () -> new GtfsCsv(new StringReader("")));
+
+        GtfsCsv csv = new GtfsCsv(new StringReader("stop_id\n"));
+        assertThrows(IOException.class, () -> csv.requiredColumn("stop_name"));
+        assertEquals("", csv.get(csv.column("stop_name")));
+    }
+
+    private static void assertStops(GtfsCsv csv) throws IOException {
+        assertTrue(csv.next());
+        assertEquals(1, csv.getRecordNumber());
+        assertEquals("s1", csv.get(0));
+        assertEquals("Bahnhof, Gleis 1", csv.get(1));
+        assertEquals("Platform\nat the front", csv.get(2));
+
+        assertTrue(csv.next());
+        assertEquals("Der \"Alte\" Markt", csv.get(1));
+        assertEquals("", csv.get(2));
+
+        // The blank line is skipped, the short record padded
+        assertTrue(csv.next());
+        assertEquals(3, csv.getRecordNumber());
+        assertEquals("s3", csv.get(0));
+        assertEquals("", csv.get(1));
+        assertEquals("", csv.get(2));
+
+        assertTrue(csv.next());
+        assertEquals("Rathaus", csv.get(1));
+        assertEquals("\"", csv.get(2));
+        assertFalse(csv.next());
+    }
+
+    private static final class OneCharReader extends Reader {
+        private final Reader reader;
+
+        OneCharReader(String text) {
+            this.reader = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return reader.read(buffer, offset, Math.min(length, 1));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.livelink.gtfs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GtfsValuesTest {
+
+    @Test
+    void readsTimesOfTheServiceDay() {
+        assertEquals(0, GtfsValues.seconds("00:00:00"));
+        assertEquals(8 * 3600 + 5 * 60, GtfsValues.seconds("8:05:00"));
+        assertEquals(8 * 3600 + 5 * 60 + 9, GtfsValues.seconds(" 08:05:09 "));
+    }
+
+    @Test
+    void readsTimesPastMidnight() {
+        assertEquals(24 * 3600, GtfsValues.seconds("24:00:00"));
+        assertEquals(25 * 3600 + 30 * 60 + 15, GtfsValues.seconds("25:30:15"));
+        assertEquals(48 * 3600 + 10 * 60, GtfsValues.seconds("48:10:00"));
+    }
+
+    @Test
+    void readsEmptyTimeAsMissing() {
+        assertEquals(-1, GtfsValues.seconds(""));
+        assertEquals(-1, GtfsValues.seconds("  "));
+    }
+
+    @Test
+    void rejectsMalformedTimes() {
+        for (String time : new String[] {
+                "08:05", "8:5:00", "08:05:0", ":05:00", "08:60:00", "08:05:60", "-1:00:00", "ab:cd:ef",
+                "08:05:00:00", "08-05-00"}) {
+            assertThrows(IllegalArgumentException.class, () -> GtfsValues.seconds(time), time);
+        }
+    }
+
+    @Test
+    void formatsClockTime() {
+        assertEquals("00:00:00", GtfsValues.clockTime(0));
+        assertEquals("08:05:09", GtfsValues.clockTime(8 * 3600 + 5 * 60 + 9));
+        assertEquals("23:59:59", GtfsValues.clockTime(24 * 3600 - 1));
+    }
+}
@@ -0,0 +1,129 @@
+package com.livelink.gtfs;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Calendars imported on Wednesday 2026-10-21, so the week runs from
+ * Wednesday to Tuesday across a Sunday and Monday.
+ */
+class ServiceCalendarTest {
+
+    private static final int MONDAY = 1;
+    private static final int TUESDAY = 1 << 1;
+    private static final int WEDNESDAY = 1 << 2;
+    private static final int THURSDAY = 1 << 3;
+    private static final int FRIDAY = 1 << 4;
+    private static final int SATURDAY = 1 << 5;
+    private static final int SUNDAY = 1 << 6;
+    private static final int WEEKDAYS = MONDAY | TUESDAY | WEDNESDAY | THURSDAY | FRIDAY;
+
+    private static final String CALENDAR = """
+        service_id,monday,tuesday,wednesday,thursday,friday,saturday,sunday,start_date,end_date
+        weekdays,1,1,1,1,1,0,0,20260101,20261231
+        daily_from_friday,1,1,1,1,1,1,1,20261023,20261231
+        daily_until_monday,1,1,1,1,1,1,1,20260101,20261026
+        daily_long_weekend,1,1,1,1,1,1,1,20261023,20261026
+        ended,1,1,1,1,1,1,1,20260101,20261020
+        split,1,0,0,0,0,0,0,20260101,20261231
+        split,0,0,0,0,0,0,1,20260101,20261231
+        """;
+
+    private ServiceCalendar calendar;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        calendar = new ServiceCalendar(LocalDate.of(2026, 10, 21));
+        calendar.readCalendar(csv(CALENDAR));
+    }
+
+    @Test
+    void readsWeekdaysOfRegularServices() {
+        assertEquals(WEEKDAYS, calendar.weekdays("weekdays"));
+        assertEquals(0, calendar.weekdays("ended"));
+        assertEquals(0, calendar.weekdays("unknown"));
+        assertEquals(MONDAY | SUNDAY, calendar.weekdays("split"));
+    }
+
+    @Test
+    void keepsOnlyDatesOfTheWeekInsideTheDateRange() {
+        assertEquals(FRIDAY | SATURDAY | SUNDAY | MONDAY | TUESDAY, calendar.weekdays("daily_from_friday"));
+        assertEquals(WEDNESDAY | THURSDAY | FRIDAY | SATURDAY | SUNDAY | MONDAY,
+            calendar.weekdays("daily_until_monday"));
+        assertEquals(FRIDAY | SATURDAY | SUNDAY | MONDAY, calendar.weekdays("daily_long_weekend"));
+    }
+
+    @Test
+    void appliesAddedAndRemovedDates() throws IOException {
+        calendar.readCalendarDates(csv("""
+            service_id,date,exception_type
+            weekdays,20261023,2
+            weekdays,20261025,1
+            daily_long_weekend,20261026,2
+            holiday,20261024,1
+            holiday,20261101,1
+            removed_only,20261022,2
+            ended,20261027,1
+            """));
+
+        assertEquals(MONDAY | TUESDAY | WEDNESDAY | THURSDAY | SUNDAY, calendar.weekdays("weekdays"));
+        assertEquals(FRIDAY | SATURDAY | SUNDAY, calendar.weekdays("daily_long_weekend"));
+        // Dates outside the week are ignored
+        assertEquals(SATURDAY, calendar.weekdays("holiday"));
+        assertEquals(0, calendar.weekdays("removed_only"));
+        assertEquals(TUESDAY, calendar.weekdays("ended"));
+    }
+
+    @Test
+    void rejectsInvalidDates() {
+        assertThrows(IOException.class, () -> calendar.readCalendarDates(csv("""
+            service_id,date,exception_type
+            weekdays,2026-10-23,2
+            """)));
+    }
+
+    @Test
+    void shiftsAcrossSundayAndMonday() {
+        assertEquals(MONDAY, ServiceCalendar.shift(SUNDAY, 1));
+        assertEquals(SUNDAY, ServiceCalendar.shift(MONDAY, -1));
+        assertEquals(TUESDAY | MONDAY, ServiceCalendar.shift(MONDAY | SUNDAY, 1));
+        assertEquals(SATURDAY | SUNDAY, ServiceCalendar.shift(SUNDAY | MONDAY, -1));
+        assertEquals(WEEKDAYS, ServiceCalendar.shift(WEEKDAYS, 7));
+        assertEquals(SUNDAY, ServiceCalendar.shift(MONDAY, -8));
+        assertEquals(0x7f, ServiceCalendar.shift(0x7f, 3));
+    }
+
+    @Test
+    void movesTimesPastMidnightToTheNextServiceDay() {
+        assertEquals(0, ServiceCalendar.dayOffset(8 * 3600, 0));
+        assertEquals(1, ServiceCalendar.dayOffset(24 * 3600, 0));
+        assertEquals(1, ServiceCalendar.dayOffset(25 * 3600 + 1800, 0));
+        assertEquals(2, ServiceCalendar.dayOffset(48 * 3600 + 600, 0));
+        // A Friday trip at 24:30 leaves on Saturday
+        assertEquals(SATURDAY, ServiceCalendar.shift(FRIDAY,
+            ServiceCalendar.dayOffset(24 * 3600 + 1800, 0)));
+    }
+
+    @Test
+    void keepsTimesBeforeTheDayStartOnTheirServiceDay() {
+        int dayStart = 3 * 3600;
+
+        assertEquals(0, ServiceCalendar.dayOffset(25 * 3600 + 1800, dayStart));
+        assertEquals(1, ServiceCalendar.dayOffset(27 * 3600, dayStart));
+        assertEquals(0, ServiceCalendar.dayOffset(3 * 3600, dayStart));
+        // 02:00 on Monday belongs to the Sunday service day
+        assertEquals(-1, ServiceCalendar.dayOffset(2 * 3600, dayStart));
+        assertEquals(SUNDAY, ServiceCalendar.shift(MONDAY, ServiceCalendar.dayOffset(2 * 3600, dayStart)));
+    }
+
+    private static GtfsCsv csv(String text) throws IOException {
+        return new GtfsCsv(new StringReader(text));
+    }
+}
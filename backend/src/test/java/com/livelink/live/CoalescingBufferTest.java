@@ -0,0 +1,116 @@
+package com.livelink.live;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingBufferTest {
+
+    private static final Instant REPORTED = Instant.parse("2026-10-19T06:00:00Z");
+    // Long enough that no test waits for it to pass
+    private static final long WINDOW_MILLIS = 60_000;
+
+    private final ExecutorService producer = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        producer.shutdownNow();
+    }
+
+    @Test
+    void newerReportReplacesPendingOne() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(10, 2, WINDOW_MILLIS);
+
+        assertEquals(CoalescingBuffer.Outcome.ADDED, buffer.offer(state("a", 0, 2)));
+        assertEquals(CoalescingBuffer.Outcome.COALESCED, buffer.offer(state("a", 30, 5)));
+        assertEquals(1, buffer.size());
+        assertEquals(CoalescingBuffer.Outcome.ADDED, buffer.offer(state("b", 0, 1)));
+
+        assertEquals(List.of(state("a", 30, 5), state("b", 0, 1)), buffer.take());
+    }
+
+    @Test
+    void olderReportIsDropped() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(10, 2, WINDOW_MILLIS);
+
+        buffer.offer(state("a", 30, 5));
+        assertEquals(CoalescingBuffer.Outcome.STALE, buffer.offer(state("a", 0, 2)));
+        buffer.offer(state("b", 0, 1));
+
+        assertEquals(List.of(state("a", 30, 5), state("b", 0, 1)), buffer.take());
+    }
+
+    @Test
+    void offerBlocksAtCapacityUntilTake() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(2, 2, WINDOW_MILLIS);
+        buffer.offer(state("a", 0, 1));
+        buffer.offer(state("b", 0, 1));
+
+        Future<CoalescingBuffer.Outcome> blocked = producer.submit(() -> buffer.offer(state("c", 0, 1)));
+        assertThrows(TimeoutException.class, () -> blocked.get(200, TimeUnit.MILLISECONDS));
+        // Replacing a pending update needs no room
+        assertEquals(CoalescingBuffer.Outcome.COALESCED, buffer.offer(state("a", 10, 2)));
+
+        assertEquals(List.of(state("a", 10, 2), state("b", 0, 1)), buffer.take());
+        assertEquals(CoalescingBuffer.Outcome.ADDED, blocked.get(5, TimeUnit.SECONDS));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    void releasesFullBatchBeforeWindowEnds() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(10, 3, WINDOW_MILLIS);
+        buffer.offer(state("a", 0, 1));
+
+        Future<List<LiveState>> batch = producer.submit(buffer::take);
+        assertThrows(TimeoutException.class, () -> batch.get(200, TimeUnit.MILLISECONDS));
+        buffer.offer(state("b", 0, 1));
+        buffer.offer(state("c", 0, 1));
+        buffer.offer(state("d", 0, 1));
+
+        List<LiveState> taken = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(3, taken.size());
+        assertEquals(state("a", 0, 1), taken.get(0));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    void closeDrainsRemainingUpdatesThenReturnsEmpty() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(10, 2, WINDOW_MILLIS);
+        buffer.offer(state("a", 0, 1));
+        buffer.offer(state("b", 0, 1));
+        buffer.offer(state("c", 0, 1));
+
+        buffer.close();
+
+        assertEquals(List.of(state("a", 0, 1), state("b", 0, 1)), buffer.take());
+        assertEquals(List.of(state("c", 0, 1)), buffer.take());
+        assertTrue(buffer.take().isEmpty());
+        assertThrows(IllegalStateException.class, () -> buffer.offer(state("d", 0, 1)));
+    }
+
+    @Test
+    void closeWakesWaitingWriter() throws Exception {
+        CoalescingBuffer buffer = new CoalescingBuffer(10, 2, WINDOW_MILLIS);
+
+        Future<List<LiveState>> batch = producer.submit(buffer::take);
+        assertThrows(TimeoutException.class, () -> batch.get(200, TimeUnit.MILLISECONDS));
+        buffer.close();
+
+        assertTrue(batch.get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    private static LiveState state(String departureId, int secondsAfter, int delayMinutes) {
+        return new LiveState(departureId, LiveState.DELAYED, delayMinutes, null, REPORTED.plusSeconds(secondsAfter));
+    }
+}
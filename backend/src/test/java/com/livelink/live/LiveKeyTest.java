@@ -0,0 +1,97 @@
+package com.livelink.live;
+
+import com.livelink.timetable.DepartureSlot;
+import com.livelink.timetable.ServiceDays;
+import com.livelink.timetable.Timetable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Live states are filed under the run they were reported for, by the rule
+ * of the {@code live_service_day} SQL function, and boards look them up
+ * by the run day of their slots.
+ */
+class LiveKeyTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDate SUNDAY = LocalDate.of(2026, 10, 18);
+    private static final LocalDate MONDAY = SUNDAY.plusDays(1);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    @Test
+    void fileReportUnderNearestRun() {
+        assertEquals(MONDAY, LiveKey.serviceDay(at(MONDAY, 8, 5), LocalTime.of(8, 0), ZONE));
+        assertEquals(TUESDAY, LiveKey.serviceDay(at(MONDAY, 23, 55), LocalTime.of(0, 10), ZONE));
+        assertEquals(MONDAY, LiveKey.serviceDay(at(TUESDAY, 0, 5), LocalTime.of(23, 50), ZONE));
+    }
+
+    @Test
+    void stateReportedYesterdayStaysOffTodaysRun() {
+        ServiceDays days = ServiceDays.materialize(timetable(second(8, 0)), SUNDAY, 2, ZONE, LocalTime.MIDNIGHT);
+        LiveKey yesterday = new LiveKey(LiveKey.serviceDay(at(SUNDAY, 8, 3), LocalTime.of(8, 0), ZONE), "d");
+        Map<LiveKey, LiveState> states = Map.of(yesterday,
+            new LiveState("d", LiveState.CANCELLED, 0, null, at(SUNDAY, 8, 3)));
+
+        DepartureSlot sunday = single(days.departuresAt("A", at(SUNDAY, 7, 0), at(SUNDAY, 9, 0), 10));
+        DepartureSlot monday = single(days.departuresAt("A", at(MONDAY, 7, 0), at(MONDAY, 9, 0), 10));
+
+        assertEquals(SUNDAY, sunday.getRunDay());
+        assertEquals(MONDAY, monday.getRunDay());
+        assertEquals(LiveState.CANCELLED, states.get(keyOf(sunday)).status());
+        assertNull(states.get(keyOf(monday)));
+    }
+
+    @Test
+    void departureAfterMidnightRunsOnNextCalendarDay() {
+        // With the service day starting at 03:00, Monday's 00:10 departure leaves on Tuesday
+        ServiceDays days = ServiceDays.materialize(timetable(second(0, 10)), MONDAY, 1, ZONE, LocalTime.of(3, 0));
+        DepartureSlot slot = single(days.departuresAt("A", at(MONDAY, 23, 0), at(TUESDAY, 1, 0), 10));
+
+        assertEquals(TUESDAY, slot.getRunDay());
+        assertEquals(slot.getRunDay(), LiveKey.serviceDay(at(MONDAY, 23, 55), LocalTime.of(0, 10), ZONE));
+    }
+
+    @Test
+    void parsesWhatItPrints() {
+        LiveKey key = new LiveKey(MONDAY, "6f1c0c1e-8d6e-4d8f-9a55-0c1b2d3e4f50");
+
+        assertEquals("2026-10-19:6f1c0c1e-8d6e-4d8f-9a55-0c1b2d3e4f50", key.toString());
+        assertEquals(key, LiveKey.parse(key.toString()));
+        assertThrows(IllegalArgumentException.class, () -> LiveKey.parse("6f1c0c1e-8d6e-4d8f-9a55-0c1b2d3e4f50"));
+    }
+
+    private static Timetable timetable(int departureSecond) {
+        return Timetable.builder(1)
+            .addStop("A", "Stop A", "71000")
+            .addLine("U1", "U1", "tram")
+            .addDeparture("d", "U1", "A", departureSecond, (byte) 127, null, "Stop B")
+            .build();
+    }
+
+    private static LiveKey keyOf(DepartureSlot slot) {
+        return new LiveKey(slot.getRunDay(), slot.getDepartureId());
+    }
+
+    private static DepartureSlot single(List<DepartureSlot> slots) {
+        assertEquals(1, slots.size());
+        return slots.get(0);
+    }
+
+    private static Instant at(LocalDate date, int hour, int minute) {
+        return date.atTime(hour, minute).atZone(ZONE).toInstant();
+    }
+
+    private static int second(int hour, int minute) {
+        return hour * 3600 + minute * 60;
+    }
+}
@@ -0,0 +1,137 @@
+package com.livelink.notification;
+
+import com.livelink.live.LiveKey;
+import com.livelink.live.LiveState;
+import com.livelink.service.NotificationService;
+import com.livelink.service.TimetableService;
+import com.livelink.timetable.Timetable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Live reports for the 08:15 bus 42 from Stop A, followed by one user for
+ * delays, on Monday and Tuesday. Delays of 5 minutes are reported, and
+ * again when they move by 5 minutes.
+ */
+class NotificationServiceTest {
+
+    private static final LiveKey MONDAY = new LiveKey(LocalDate.of(2026, 10, 19), "42_a");
+    private static final LiveKey TUESDAY = new LiveKey(LocalDate.of(2026, 10, 20), "42_a");
+    private static final Instant REPORTED = Instant.parse("2026-10-19T06:00:00Z");
+
+    private final InMemoryNotificationSink sink = new InMemoryNotificationSink(100);
+    private NotificationService service;
+
+    @BeforeEach
+    void setUp() {
+        Timetable timetable = Timetable.builder(1)
+            .addStop("A", "Stop A", "71634")
+            .addLine("42", "42", "bus")
+            .addDeparture("42_a", "42", "A", 8 * 3600 + 900, (byte) 127, null, "Stop B")
+            .build();
+        TimetableService timetableService = new TimetableService();
+        ReflectionTestUtils.setField(timetableService, "enabled", true);
+        ReflectionTestUtils.setField(timetableService, "timetable", timetable);
+
+        service = new NotificationService();
+        ReflectionTestUtils.setField(service, "timetableService", timetableService);
+        ReflectionTestUtils.setField(service, "sink", sink);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "minDelayMinutes", 5);
+        ReflectionTestUtils.setField(service, "minChangeMinutes", 5);
+        ReflectionTestUtils.setField(service, "batchSize", 10);
+        ReflectionTestUtils.setField(service, "index", SubscriberIndex.build(List.of(
+            new SubscriberIndex.Subscription("user", "A", null, Set.of(), true, false)), timetable, 1));
+        ReflectionTestUtils.invokeMethod(service, "registerMeters");
+    }
+
+    @Test
+    void notifiesDelayOfTheRun() {
+        report(MONDAY, 6, 0);
+
+        List<Notification> sent = sink.recent();
+        assertEquals(1, sent.size());
+        Notification notification = sent.get(0);
+        assertEquals("user", notification.userId());
+        assertEquals(Notification.DELAY, notification.kind());
+        assertEquals("2026-10-19:42_a", notification.subjectId());
+        assertEquals("42 to Stop B delayed by 6 min", notification.title());
+        assertTrue(notification.message().contains("08:15 departure on Mon 19 Oct from Stop A"),
+            notification.message());
+    }
+
+    @Test
+    void suppressesSmallChangesOfADelay() {
+        report(MONDAY, 6, 0);
+        report(MONDAY, 9, 1);
+        assertEquals(1, sink.recent().size());
+
+        report(MONDAY, 11, 2);
+        assertEquals(2, sink.recent().size());
+        assertEquals("42 to Stop B delayed by 11 min", sink.recent().get(1).title());
+    }
+
+    @Test
+    void notifiesWhenDelayTurnsIntoCancellation() {
+        report(MONDAY, 6, 0);
+        service.onLiveStates(List.of(MONDAY), List.of(
+            new LiveState("42_a", LiveState.CANCELLED, 6, null, REPORTED.plusSeconds(60))));
+        service.flush();
+
+        assertEquals(2, sink.recent().size());
+        assertEquals(Notification.CANCELLATION, sink.recent().get(1).kind());
+    }
+
+    @Test
+    void ignoresReportsOlderThanTheNotifiedOne() {
+        report(MONDAY, 6, 5);
+        report(MONDAY, 20, 1);
+
+        assertEquals(1, sink.recent().size());
+    }
+
+    @Test
+    void tracksEachRunOnItsOwn() {
+        report(MONDAY, 6, 0);
+        report(TUESDAY, 6, 0);
+
+        List<Notification> sent = sink.recent();
+        assertEquals(2, sent.size());
+        assertEquals(Set.of("2026-10-19:42_a", "2026-10-20:42_a"),
+            Set.of(sent.get(0).subjectId(), sent.get(1).subjectId()));
+    }
+
+    @Test
+    void backOnTimeResetsOnlyItsOwnRun() {
+        report(MONDAY, 6, 0);
+        report(TUESDAY, 6, 0);
+        report(MONDAY, 0, 1);
+        assertEquals(2, sink.recent().size());
+
+        // The next Monday delay is news again, the Tuesday one is not
+        report(MONDAY, 7, 2);
+        report(TUESDAY, 7, 2);
+
+        List<Notification> sent = sink.recent();
+        assertEquals(3, sent.size());
+        assertEquals("2026-10-19:42_a", sent.get(2).subjectId());
+    }
+
+    private void report(LiveKey key, int delayMinutes, int minutesLater) {
+        String status = delayMinutes > 0 ? LiveState.DELAYED : LiveState.ON_TIME;
+        service.onLiveStates(List.of(key), List.of(
+            new LiveState(key.departureId(), status, delayMinutes, null, REPORTED.plusSeconds(minutesLater * 60L))));
+        service.flush();
+    }
+}
@@ -0,0 +1,101 @@
+package com.livelink.notification;
+
+import com.livelink.timetable.Timetable;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Subscribers of two stops:
+ * <pre>
+ * A   S1 (train), 42 (bus)
+ * B   42 (bus), U1 (tram)
+ *
+ * 0 all     home A              any type   delays, disruptions
+ * 1 bus     home A, work B      bus        delays, disruptions
+ * 2 train   home B              train      delays
+ * 3 quiet   work A              any type   disruptions
+ * 4 any     home B              any type   delays
+ * </pre>
+ */
+class SubscriberIndexTest {
+
+    private SubscriberIndex index;
+
+    @BeforeEach
+    void setUp() {
+        Timetable timetable = Timetable.builder(1)
+            .addStop("A", "Stop A", "71634")
+            .addStop("B", "Stop B", "71634")
+            .addLine("S1", "S1", "train")
+            .addLine("42", "42", "bus")
+            .addLine("U1", "U1", "tram")
+            .addDeparture("s1_a", "S1", "A", 8 * 3600, (byte) 127, "1", "Stop B")
+            .addDeparture("42_a", "42", "A", 8 * 3600 + 600, (byte) 127, null, "Stop B")
+            .addDeparture("42_b", "42", "B", 8 * 3600 + 900, (byte) 127, null, "Stop C")
+            .addDeparture("u1_b", "U1", "B", 8 * 3600 + 1200, (byte) 127, null, "Stop D")
+            .build();
+        index = SubscriberIndex.build(List.of(
+            new SubscriberIndex.Subscription("all", "A", null, Set.of(), true, true),
+            new SubscriberIndex.Subscription("bus", "A", "B", Set.of("bus"), true, true),
+            new SubscriberIndex.Subscription("train", "B", null, Set.of("train"), true, false),
+            new SubscriberIndex.Subscription("quiet", null, "A", Set.of(), false, true),
+            new SubscriberIndex.Subscription("any", "B", null, Set.of(), true, false)), timetable, 7);
+    }
+
+    @Test
+    void indexesUsersInOrder() {
+        assertEquals(5, index.size());
+        assertEquals(7, index.getVersion());
+        assertEquals("all", index.userId(0));
+        assertEquals("any", index.userId(4));
+    }
+
+    @Test
+    void findsDelayUsersOfTheirOwnStops() {
+        assertArrayEquals(new int[] {0, 1}, index.delayUsers("A", "bus"));
+        assertArrayEquals(new int[] {1, 4}, index.delayUsers("B", "bus"));
+        assertArrayEquals(new int[0], index.delayUsers("C", "bus"));
+    }
+
+    @Test
+    void usersWithoutPreferenceMatchEveryType() {
+        assertArrayEquals(new int[] {0}, index.delayUsers("A", "train"));
+        assertArrayEquals(new int[] {0}, index.delayUsers("A", "tram"));
+        assertArrayEquals(new int[] {2, 4}, index.delayUsers("B", "train"));
+    }
+
+    @Test
+    void unknownTypeMatchesOnlyUsersWithoutPreference() {
+        assertArrayEquals(new int[] {0}, index.delayUsers("A", "ferry"));
+        assertArrayEquals(new int[] {4}, index.delayUsers("B", null));
+    }
+
+    @Test
+    void findsDisruptionUsersByLinesOfTheirPreferredTypes() {
+        assertArrayEquals(new int[] {0, 3}, index.disruptionUsers(List.of("S1")));
+        assertArrayEquals(new int[] {0, 1, 3}, index.disruptionUsers(List.of("42")));
+        // User 1 takes only buses and users 2 and 4 want no disruptions
+        assertArrayEquals(new int[0], index.disruptionUsers(List.of("U1")));
+    }
+
+    @Test
+    void returnsEachDisruptionUserOnceAcrossLines() {
+        assertArrayEquals(new int[] {0, 1, 3}, index.disruptionUsers(List.of("S1", "42", "U1")));
+        assertArrayEquals(new int[] {0, 3}, index.disruptionUsers(List.of("S1", "X9")));
+    }
+
+    @Test
+    void emptyIndexHasNoUsers() {
+        SubscriberIndex empty = SubscriberIndex.empty();
+
+        assertEquals(0, empty.size());
+        assertArrayEquals(new int[0], empty.delayUsers("A", "bus"));
+        assertArrayEquals(new int[0], empty.disruptionUsers(List.of("S1", "42")));
+    }
+}
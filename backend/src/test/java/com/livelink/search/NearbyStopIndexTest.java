@@ -0,0 +1,142 @@
+package com.livelink.search;
+
+import com.livelink.service.StopsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Radius queries checked against measuring every stop, on random stops
+ * around Ludwigsburg and stops placed on cell boundaries.
+ */
+class NearbyStopIndexTest {
+
+    private static final double LATITUDE = 48.8975;
+    private static final double LONGITUDE = 9.1920;
+
+    private static final Comparator<NearbyStopIndex.Hit> NEAREST = Comparator
+        .comparingDouble(NearbyStopIndex.Hit::distanceMeters)
+        .thenComparing(hit -> (String) hit.row().get("id"));
+
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+    private NearbyStopIndex index;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            rows.add(stop("r" + i, LATITUDE + (random.nextDouble() - 0.5) * 0.2,
+                LONGITUDE + (random.nextDouble() - 0.5) * 0.3));
+        }
+        // Corners and edges of the cells around the centre
+        double cell = NearbyStopIndex.CELL_DEGREES;
+        for (int i = -3; i <= 3; i++) {
+            for (int j = -3; j <= 3; j++) {
+                double latitude = (Math.floor(LATITUDE / cell) + i) * cell;
+                double longitude = (Math.floor(LONGITUDE / cell) + j) * cell;
+                rows.add(stop("c" + i + "/" + j, latitude, longitude));
+                rows.add(stop("e" + i + "/" + j, latitude, longitude + cell / 2));
+            }
+        }
+        index = NearbyStopIndex.of(rows);
+    }
+
+    @Test
+    void findsTheSameStopsAsMeasuringEveryOne() {
+        Random random = new Random(7);
+        for (int query = 0; query < 200; query++) {
+            double latitude = LATITUDE + (random.nextDouble() - 0.5) * 0.2;
+            double longitude = LONGITUDE + (random.nextDouble() - 0.5) * 0.3;
+            double radius = 50 + random.nextDouble() * (StopsService.MAX_RADIUS_METERS - 50);
+            assertSameAsBruteForce(latitude, longitude, radius, Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    void searchesAroundCellBoundaries() {
+        double cell = NearbyStopIndex.CELL_DEGREES;
+        double latitude = Math.floor(LATITUDE / cell) * cell;
+        double longitude = Math.floor(LONGITUDE / cell) * cell;
+        for (double radius : new double[] {1, 100, cell * 111_000, 1000}) {
+            assertSameAsBruteForce(latitude, longitude, radius, Integer.MAX_VALUE);
+            assertSameAsBruteForce(latitude - 1e-9, longitude + 1e-9, radius, Integer.MAX_VALUE);
+            assertSameAsBruteForce(latitude + cell / 2, longitude - cell / 2, radius, Integer.MAX_VALUE);
+        }
+        assertEquals("c0/0", index.within(latitude, longitude, 1, 10).get(0).row().get("id"));
+    }
+
+    @Test
+    void searchesTheLargestRadius() {
+        int radius = StopsService.MAX_RADIUS_METERS;
+        List<NearbyStopIndex.Hit> hits = assertSameAsBruteForce(LATITUDE, LONGITUDE, radius, Integer.MAX_VALUE);
+
+        assertTrue(hits.size() > 100);
+        assertTrue(hits.get(hits.size() - 1).distanceMeters() <= radius);
+    }
+
+    @Test
+    void cutsOffAtTheLimit() {
+        List<NearbyStopIndex.Hit> hits = assertSameAsBruteForce(LATITUDE, LONGITUDE, 2000, 10);
+
+        assertEquals(10, hits.size());
+        assertTrue(index.within(LATITUDE, LONGITUDE, 2000, 0).isEmpty());
+    }
+
+    @Test
+    void skipsRowsWithoutCoordinates() {
+        Map<String, Object> unplaced = new HashMap<>();
+        unplaced.put("id", "u");
+        unplaced.put("latitude", null);
+        unplaced.put("longitude", LONGITUDE);
+        NearbyStopIndex decimals = NearbyStopIndex.of(List.of(unplaced,
+            Map.of("id", "d", "latitude", new BigDecimal("48.8975"), "longitude", new BigDecimal("9.1921"))));
+
+        assertEquals(1, decimals.size());
+        List<NearbyStopIndex.Hit> hits = decimals.within(LATITUDE, LONGITUDE, 100, 10);
+        assertEquals(1, hits.size());
+        assertEquals(7.3, hits.get(0).distanceMeters(), 0.1);
+    }
+
+    private List<NearbyStopIndex.Hit> assertSameAsBruteForce(double latitude, double longitude, double radius,
+                                                             int limit) {
+        List<NearbyStopIndex.Hit> expected = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            double distance = NearbyStopIndex.distanceMeters(latitude, longitude,
+                (Double) row.get("latitude"), (Double) row.get("longitude"));
+            if (distance <= radius) {
+                expected.add(new NearbyStopIndex.Hit(row, distance));
+            }
+        }
+        expected.sort(NEAREST);
+        if (expected.size() > limit) {
+            expected = expected.subList(0, limit);
+        }
+
+        List<NearbyStopIndex.Hit> hits = index.within(latitude, longitude, radius, limit);
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).distanceMeters() <= hits.get(i).distanceMeters());
+        }
+        // Stops at the same distance, e.g. the corners around a corner, may come in any order
+        assertEquals(ids(expected), ids(hits.stream().sorted(NEAREST).toList()),
+            () -> "within " + radius + " m of " + latitude + ", " + longitude);
+        return hits;
+    }
+
+    private static List<Object> ids(List<NearbyStopIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.row().get("id")).toList();
+    }
+
+    private static Map<String, Object> stop(String id, double latitude, double longitude) {
+        return Map.of("id", id, "latitude", latitude, "longitude", longitude);
+    }
+}
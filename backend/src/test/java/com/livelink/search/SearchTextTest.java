@@ -0,0 +1,52 @@
+package com.livelink.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchTextTest {
+
+    @Test
+    void foldsSharpSAndUmlautsToTheirSpelledOutForm() {
+        assertEquals("schlossstrasse", SearchText.fold("Schloßstraße"));
+        assertEquals("schlossstrasse", SearchText.fold("Schlossstrasse"));
+        assertEquals("muehle", SearchText.fold("Mühle"));
+        assertEquals("muehle", SearchText.fold("Muehle"));
+        assertEquals("koenigstrasse", SearchText.fold("KÖNIGSTRASSE"));
+    }
+
+    @Test
+    void keepsTypedVowelPairs() {
+        assertEquals("feuerbach", SearchText.fold("Feuerbach"));
+        assertEquals("bauer", SearchText.fold("Bauer"));
+        assertEquals("michael", SearchText.fold("Michael"));
+        assertEquals("feuerbach", SearchText.foldBare("Feuerbach"));
+    }
+
+    @Test
+    void foldsUmlautsToBareVowels() {
+        assertEquals("muhle", SearchText.foldBare("Mühle"));
+        assertEquals("schlossstrasse", SearchText.foldBare("Schloßstraße"));
+    }
+
+    @Test
+    void stripsAccents() {
+        assertEquals("cafe", SearchText.fold("Café"));
+        assertEquals("", SearchText.fold(null));
+    }
+
+    @Test
+    void splitsTokens() {
+        assertEquals(List.of("am", "marienplatz", "1"), SearchText.tokens(SearchText.fold("Am Marienplatz-1")));
+    }
+
+    @Test
+    void boundsEditDistance() {
+        assertEquals(0, SearchText.boundedDistance("bahnhof", "bahnhof", 2));
+        assertEquals(1, SearchText.boundedDistance("bahnhof", "banhof", 2));
+        assertEquals(2, SearchText.boundedDistance("mareinpl", "marienpl", 2));
+        assertEquals(2, SearchText.boundedDistance("bahnhof", "rathaus", 1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.livelink.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StopSearchIndexTest {
+
+    private final List<Map<String, Object>> rows = new ArrayList<>(List.of(
+        stop("1", "Marienplatz", "Marienplatz 1"),
+        stop("2", "Am Marienplatz", "Hauptstraße 3"),
+        stop("3", "Rathaus", "Marienplatz 8"),
+        stop("4", "Obermarienplatz", "Kirchweg 2"),
+        stop("5", "Mareinplatz", "Feldweg 1"),
+        stop("6", "Schloßstraße", "Schloßstraße 10"),
+        stop("7", "Mühlhausen Bahnhof", "Bahnhofstraße 1"),
+        stop("8", "Feuerbach", "Stuttgarter Straße 40")));
+
+    private StopSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new StopSearchIndex();
+        assertEquals(rows.size(), index.sync(rows));
+    }
+
+    @Test
+    void ranksPrefixBeforeTokenInfixAndFuzzyMatches() {
+        assertEquals(List.of("1", "2", "3", "4", "5"), ids(index.search("marienpl", 10)));
+    }
+
+    @Test
+    void keepsTheBestMatchesUpToTheLimit() {
+        assertEquals(List.of("1", "2"), ids(index.search("marienpl", 2)));
+        assertEquals(List.of(), index.search("marienpl", 0));
+        assertEquals(List.of(), index.search(" - ", 10));
+    }
+
+    @Test
+    void findsSharpSWrittenEitherWay() {
+        assertEquals(List.of("6"), ids(index.search("Schlossstrasse", 10)));
+        assertEquals(List.of("6"), ids(index.search("Schloßstraße", 10)));
+        assertEquals(List.of("6"), ids(index.search("schlossstr", 10)));
+    }
+
+    @Test
+    void findsUmlautsWrittenAnyWay() {
+        for (String query : List.of("Mühlhausen", "Muehlhausen", "Muhlhausen", "muhl")) {
+            assertEquals(List.of("7"), ids(index.search(query, 10)), query);
+        }
+    }
+
+    @Test
+    void keepsVowelPairsWithoutUmlauts() {
+        assertEquals(List.of("8"), ids(index.search("feuerb", 10)));
+        assertEquals(List.of(), index.search("furbach", 10));
+    }
+
+    @Test
+    void requiresEveryQueryToken() {
+        assertEquals(List.of("7"), ids(index.search("bahnhof muhl", 10)));
+        assertEquals(List.of("3"), ids(index.search("rathaus marienplatz", 10)));
+    }
+
+    @Test
+    void leavesUnchangedRowsAlone() {
+        assertEquals(0, index.sync(rows));
+    }
+
+    @Test
+    void reindexesChangedRows() {
+        rows.set(2, stop("3", "Rathausplatz", "Marienplatz 8"));
+
+        assertEquals(1, index.sync(rows));
+        assertEquals(List.of("3"), ids(index.search("rathausplatz", 10)));
+        assertEquals("Rathausplatz", index.search("rathaus", 10).get(0).get("name"));
+    }
+
+    @Test
+    void dropsRemovedRowsButKeepsSharedTokens() {
+        rows.remove(0);
+
+        assertEquals(1, index.sync(rows));
+        assertEquals(rows.size(), index.size());
+        assertEquals(List.of("2", "3", "4", "5"), ids(index.search("marienpl", 10)));
+
+        rows.add(stop("9", "Marienplatz Süd", "Marienplatz 2"));
+        assertEquals(1, index.sync(rows));
+        assertEquals("9", index.search("marienplatz sud", 10).get(0).get("id"));
+        assertTrue(index.search("obermarienplatz", 10).stream().anyMatch(row -> row.get("id").equals("4")));
+    }
+
+    private static Map<String, Object> stop(String id, String name, String address) {
+        return Map.of("id", id, "name", name, "address", address);
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rows) {
+        return rows.stream().map(row -> row.get("id")).toList();
+    }
+}
@@ -0,0 +1,169 @@
+package com.livelink.service;
+
+import com.livelink.live.LiveKey;
+import com.livelink.live.LiveState;
+import com.livelink.timetable.Timetable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reports on today's run of one S1 trip, ten minutes between stops:
+ * <pre>
+ * S1   A 08:00 -> B 08:10 -> C 08:20 -> D 08:30 -> E 08:40
+ * </pre>
+ * Each stop makes up one minute, down to a minimum of one minute.
+ */
+class DelayPropagationServiceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    private final LocalDate today = LocalDate.now(ZONE);
+    private final List<LiveKey> later = List.of(key("b"), key("c"), key("d"));
+    private DelayPropagationService service;
+
+    @BeforeEach
+    void setUp() {
+        Timetable timetable = Timetable.builder(1)
+            .addStop("A", "Stop A", "71634")
+            .addStop("B", "Stop B", "71634")
+            .addStop("C", "Stop C", "71634")
+            .addStop("D", "Stop D", "71634")
+            .addStop("E", "Stop E", "71634")
+            .addLine("S1", "S1", "train")
+            .addRouteLeg("S1", "A", "B", 1, 600)
+            .addRouteLeg("S1", "B", "C", 2, 600)
+            .addRouteLeg("S1", "C", "D", 3, 600)
+            .addRouteLeg("S1", "D", "E", 4, 600)
+            .addDeparture("a", "S1", "A", 8 * 3600, (byte) 127, "1", "Stop E")
+            .addDeparture("b", "S1", "B", 8 * 3600 + 600, (byte) 127, "1", "Stop E")
+            .addDeparture("c", "S1", "C", 8 * 3600 + 1200, (byte) 127, "1", "Stop E")
+            .addDeparture("d", "S1", "D", 8 * 3600 + 1800, (byte) 127, "1", "Stop E")
+            .build();
+        TimetableService timetableService = new TimetableService();
+        ReflectionTestUtils.setField(timetableService, "enabled", true);
+        ReflectionTestUtils.setField(timetableService, "zoneId", ZONE);
+        ReflectionTestUtils.setField(timetableService, "serviceDayStart", "00:00");
+        ReflectionTestUtils.setField(timetableService, "timetable", timetable);
+
+        service = new DelayPropagationService();
+        ReflectionTestUtils.setField(service, "timetableService", timetableService);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "zoneId", ZONE);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "decay", 1.0);
+        ReflectionTestUtils.setField(service, "catchUpSeconds", 60);
+        ReflectionTestUtils.setField(service, "minDelaySeconds", 60);
+        ReflectionTestUtils.invokeMethod(service, "registerMeters");
+    }
+
+    @Test
+    void derivesDelaysOfLaterDepartures() {
+        service.propagate(List.of(delayed("a", 5, 8, 1)));
+
+        Map<LiveKey, LiveState> states = overlay(Map.of());
+        assertEquals(3, states.size());
+        assertEquals(4, states.get(key("b")).delayMinutes());
+        assertEquals(3, states.get(key("c")).delayMinutes());
+        assertEquals(2, states.get(key("d")).delayMinutes());
+        assertEquals(LiveState.DELAYED, states.get(key("b")).status());
+        assertEquals(at(8, 14), states.get(key("b")).actualDeparture());
+    }
+
+    @Test
+    void laterReportReplacesWhatTheEarlierOneDerived() {
+        service.propagate(List.of(delayed("a", 5, 8, 1)));
+        service.propagate(List.of(delayed("a", 2, 8, 3)));
+
+        Map<LiveKey, LiveState> states = overlay(Map.of());
+        assertEquals(List.of(key("b")), List.copyOf(states.keySet()));
+        assertEquals(1, states.get(key("b")).delayMinutes());
+    }
+
+    @Test
+    void ignoresReportOlderThanThePropagatedOne() {
+        service.propagate(List.of(delayed("a", 2, 8, 3)));
+        service.propagate(List.of(delayed("a", 10, 8, 2)));
+
+        assertEquals(1, overlay(Map.of()).size());
+    }
+
+    @Test
+    void dropsDerivedStatesWhenBackOnTimeOrCancelled() {
+        service.propagate(List.of(delayed("a", 5, 8, 1)));
+        service.propagate(List.of(new LiveState("a", LiveState.ON_TIME, 0, null, at(8, 2))));
+        assertTrue(overlay(Map.of()).isEmpty());
+
+        service.propagate(List.of(delayed("a", 5, 8, 3)));
+        service.propagate(List.of(new LiveState("a", LiveState.CANCELLED, 0, null, at(8, 4))));
+        assertTrue(overlay(Map.of()).isEmpty());
+    }
+
+    @Test
+    void keepsStateFromTheLaterOfTwoReportsOnTheTrip() {
+        service.propagate(List.of(delayed("b", 10, 8, 12)));
+        service.propagate(List.of(delayed("a", 3, 8, 5)));
+
+        Map<LiveKey, LiveState> states = overlay(Map.of());
+        assertEquals(2, states.get(key("b")).delayMinutes());
+        assertEquals(9, states.get(key("c")).delayMinutes());
+        assertEquals(8, states.get(key("d")).delayMinutes());
+
+        // Forgetting the report on A leaves those derived from B alone
+        service.propagate(List.of(new LiveState("a", LiveState.ON_TIME, 0, null, at(8, 6))));
+        states = overlay(Map.of());
+        assertEquals(List.of(key("c"), key("d")), later.stream().filter(states::containsKey).toList());
+    }
+
+    @Test
+    void newerReportedStateWinsOverDerivedOne() {
+        service.propagate(List.of(delayed("a", 5, 8, 1)));
+        LiveState reportedLater = new LiveState("c", LiveState.ON_TIME, 0, null, at(8, 18));
+        LiveState reportedEarlier = new LiveState("d", LiveState.ON_TIME, 0, null, at(7, 50));
+
+        Map<LiveKey, LiveState> states = overlay(Map.of(key("c"), reportedLater, key("d"), reportedEarlier));
+
+        assertEquals(reportedLater, states.get(key("c")));
+        assertEquals(2, states.get(key("d")).delayMinutes());
+        assertEquals(4, states.get(key("b")).delayMinutes());
+    }
+
+    @Test
+    void leavesOtherRunsAlone() {
+        service.propagate(List.of(delayed("a", 5, 8, 1)));
+
+        Map<LiveKey, LiveState> states = new HashMap<>();
+        service.overlay(List.of(new LiveKey(today.plusDays(1), "b")), states);
+
+        assertTrue(states.isEmpty());
+    }
+
+    private Map<LiveKey, LiveState> overlay(Map<LiveKey, LiveState> reported) {
+        Map<LiveKey, LiveState> states = new HashMap<>(reported);
+        service.overlay(later, states);
+        return states;
+    }
+
+    private LiveState delayed(String departureId, int delayMinutes, int hour, int minute) {
+        return new LiveState(departureId, LiveState.DELAYED, delayMinutes, null, at(hour, minute));
+    }
+
+    private LiveKey key(String departureId) {
+        return new LiveKey(today, departureId);
+    }
+
+    private Instant at(int hour, int minute) {
+        return today.atTime(hour, minute).atZone(ZONE).toInstant();
+    }
+}
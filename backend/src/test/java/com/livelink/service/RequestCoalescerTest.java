@@ -0,0 +1,170 @@
+package com.livelink.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Callers on one key while the first of them is held inside its
+ * computation until all others are waiting.
+ */
+class RequestCoalescerTest {
+
+    private static final int CALLERS = 16;
+
+    private final MockEnvironment environment = new MockEnvironment();
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private MeterRegistry meterRegistry;
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = coalescer(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void sharesOneComputationAmongConcurrentCallers() throws Exception {
+        Object board = new Object();
+        List<Future<Object>> results = callConcurrently("board", "stop-1", () -> board);
+
+        assertEquals(1, calls.get());
+        for (Future<Object> result : results) {
+            assertSame(board, result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, count("board", "led"));
+        assertEquals(CALLERS - 1, count("board", "shared"));
+        assertEquals(0, meterRegistry.get("livelink.coalescing.in.flight").tag("lookup", "board").gauge().value());
+    }
+
+    @Test
+    void sharesFailureAndReleasesKey() throws Exception {
+        IllegalStateException failure = new IllegalStateException("database down");
+        List<Future<Object>> results = callConcurrently("board", "stop-1", () -> {
+            throw failure;
+        });
+
+        for (Future<Object> result : results) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, thrown.getCause());
+        }
+        assertEquals(1, calls.get());
+
+        assertEquals("recovered", coalescer.coalesce("board", "stop-1", () -> "recovered"));
+        assertEquals(2, count("board", "led"));
+    }
+
+    @Test
+    void runsOtherKeysAndLookupsAlongside() throws Exception {
+        Future<Object> leader = executor.submit(() -> coalescer.coalesce("board", "stop-1", blocking(() -> "one")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertEquals("two", coalescer.coalesce("board", "stop-2", () -> "two"));
+        assertEquals("alerts", coalescer.coalesce("alerts", "stop-1", () -> "alerts"));
+        release.countDown();
+        assertEquals("one", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, count("board", "shared"));
+    }
+
+    @Test
+    void bypassesDisabledLookup() throws Exception {
+        environment.setProperty("livelink.coalescing.lookups.board", "false");
+        coalescer = coalescer(true);
+        assertBypassed();
+    }
+
+    @Test
+    void bypassesEveryLookupWhenDisabled() throws Exception {
+        coalescer = coalescer(false);
+        assertBypassed();
+    }
+
+    private void assertBypassed() throws Exception {
+        Future<Object> first = executor.submit(() -> coalescer.coalesce("board", "stop-1", blocking(() -> "first")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        assertEquals("second", coalescer.coalesce("board", "stop-1", () -> {
+            calls.incrementAndGet();
+            return "second";
+        }));
+        release.countDown();
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals(2, calls.get());
+        assertEquals(0, count("board", "led"));
+        assertEquals(0, count("board", "shared"));
+    }
+
+    /**
+     * Starts a leader that blocks in {@code computation}, then the other
+     * callers, and releases the leader once they all wait for it.
+     */
+    private List<Future<Object>> callConcurrently(String lookup, Object key, Supplier<Object> computation)
+            throws InterruptedException {
+        List<Future<Object>> results = new ArrayList<>();
+        Supplier<Object> counted = blocking(computation);
+        results.add(executor.submit(() -> coalescer.coalesce(lookup, key, counted)));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> coalescer.coalesce(lookup, key, counted)));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count(lookup, "shared") < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        return results;
+    }
+
+    private Supplier<Object> blocking(Supplier<Object> computation) {
+        return () -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return computation.get();
+        };
+    }
+
+    private RequestCoalescer coalescer(boolean enabled) {
+        meterRegistry = new SimpleMeterRegistry();
+        RequestCoalescer coalescer = new RequestCoalescer();
+        ReflectionTestUtils.setField(coalescer, "environment", environment);
+        ReflectionTestUtils.setField(coalescer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "enabled", enabled);
+        return coalescer;
+    }
+
+    private double count(String lookup, String result) {
+        return meterRegistry.get("livelink.coalescing.requests").tag("lookup", lookup).tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,154 @@
+package com.livelink.timetable;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Journeys over a hand-built network on one Monday:
+ * <pre>
+ * S1   A 08:00 -> C 08:30 -> D 09:00
+ * U1   A 08:05 -> B 08:15
+ * U2   B 08:20 -> D 08:30
+ * 100  B 08:25 -> D 08:45
+ * </pre>
+ */
+class ConnectionScanTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+    private static final int TRANSFER_SECONDS = 120;
+    private static final int MAX_DURATION_SECONDS = 4 * 60 * 60;
+
+    private Connections connections;
+
+    @BeforeEach
+    void setUp() {
+        Timetable timetable = Timetable.builder(1)
+            .addStop("A", "Stop A", "71000")
+            .addStop("B", "Stop B", "71000")
+            .addStop("C", "Stop C", "71000")
+            .addStop("D", "Stop D", "71000")
+            .addLine("S1", "S1", "train")
+            .addLine("U1", "U1", "tram")
+            .addLine("U2", "U2", "tram")
+            .addLine("100", "100", "bus")
+            .addRouteLeg("S1", "A", "C", 1, 1800)
+            .addRouteLeg("S1", "C", "D", 2, 1800)
+            .addRouteLeg("U1", "A", "B", 1, 600)
+            .addRouteLeg("U2", "B", "D", 1, 600)
+            .addRouteLeg("100", "B", "D", 1, 1200)
+            .addDeparture("s1_a", "S1", "A", second(8, 0), (byte) 127, "1", "Stop D")
+            .addDeparture("s1_c", "S1", "C", second(8, 30), (byte) 127, "1", "Stop D")
+            .addDeparture("u1_a", "U1", "A", second(8, 5), (byte) 127, null, "Stop B")
+            .addDeparture("u2_b", "U2", "B", second(8, 20), (byte) 127, null, "Stop D")
+            .addDeparture("100_b", "100", "B", second(8, 25), (byte) 127, null, "Stop D")
+            .build();
+        connections = Connections.build(ServiceDays.materialize(timetable, MONDAY, 1, ZONE, LocalTime.MIDNIGHT));
+    }
+
+    @Test
+    void returnsFastestJourneyPerTransferCount() {
+        List<Journey> journeys = plan(LiveDelays.none(connections), "A", "D", at(7, 55), 4);
+
+        assertEquals(2, journeys.size());
+        Journey direct = journeys.get(0);
+        assertEquals(0, direct.transfers());
+        assertEquals(at(8, 0), direct.departure());
+        assertEquals(at(9, 0), direct.arrival());
+        assertEquals(List.of("s1_a"), departureIds(direct));
+        assertEquals("D", direct.legs().get(0).toStopId());
+
+        Journey changing = journeys.get(1);
+        assertEquals(1, changing.transfers());
+        assertEquals(at(8, 30), changing.arrival());
+        assertEquals(List.of("u1_a", "u2_b"), departureIds(changing));
+    }
+
+    @Test
+    void limitsTransfers() {
+        List<Journey> journeys = plan(LiveDelays.none(connections), "A", "D", at(7, 55), 0);
+
+        assertEquals(1, journeys.size());
+        assertEquals(List.of("s1_a"), departureIds(journeys.get(0)));
+    }
+
+    @Test
+    void boardsDelayedConnectionAfterLaterScheduledOne() {
+        assertEquals(List.of("100_b"), departureIds(plan(LiveDelays.none(connections), "B", "D", at(8, 22), 4).get(0)));
+
+        LiveDelays delays = LiveDelays.of(connections,
+            List.of(report("u2_b", "B", second(8, 20), 480, false)), DelayPropagation.Rules.NONE);
+        List<Journey> journeys = plan(delays, "B", "D", at(8, 22), 4);
+
+        assertEquals(1, delays.getDelayedCount());
+        assertEquals(1, journeys.size());
+        Journey journey = journeys.get(0);
+        assertEquals(List.of("u2_b"), departureIds(journey));
+        assertEquals(at(8, 28), journey.departure());
+        assertEquals(at(8, 38), journey.arrival());
+        assertEquals(at(8, 20), journey.legs().get(0).scheduledDeparture());
+        assertEquals(480, journey.legs().get(0).departureDelaySeconds());
+        assertEquals(480, journey.legs().get(0).arrivalDelaySeconds());
+    }
+
+    @Test
+    void skipsCancelledDeparture() {
+        LiveDelays delays = LiveDelays.of(connections,
+            List.of(report("u1_a", "A", second(8, 5), 0, true)), DelayPropagation.Rules.NONE);
+        List<Journey> journeys = plan(delays, "A", "D", at(7, 55), 4);
+
+        assertEquals(1, delays.getCancelledCount());
+        assertEquals(1, journeys.size());
+        assertEquals(List.of("s1_a"), departureIds(journeys.get(0)));
+    }
+
+    @Test
+    void cancellationAlsoCancelsArrivalAtThatStop() {
+        LiveDelays delays = LiveDelays.of(connections,
+            List.of(report("s1_c", "C", second(8, 30), 0, true)), DelayPropagation.Rules.NONE);
+
+        assertEquals(2, delays.getCancelledCount());
+        assertTrue(plan(delays, "A", "C", at(7, 55), 4).isEmpty());
+        List<Journey> journeys = plan(delays, "A", "D", at(7, 55), 4);
+        assertEquals(1, journeys.size());
+        assertEquals(List.of("u1_a", "u2_b"), departureIds(journeys.get(0)));
+    }
+
+    @Test
+    void ignoresUnknownAndEqualStops() {
+        assertTrue(plan(LiveDelays.none(connections), "A", "X", at(7, 55), 4).isEmpty());
+        assertTrue(plan(LiveDelays.none(connections), "A", "A", at(7, 55), 4).isEmpty());
+        assertTrue(plan(LiveDelays.none(connections), "A", "D", at(8, 6), 4).isEmpty());
+    }
+
+    private List<Journey> plan(LiveDelays delays, String from, String to, Instant departAt, int maxTransfers) {
+        return ConnectionScan.plan(delays, from, to, departAt, maxTransfers, TRANSFER_SECONDS, MAX_DURATION_SECONDS);
+    }
+
+    private static LiveDelays.Report report(String departureId, String stopId, int secondOfDay, int delaySeconds,
+                                            boolean cancelled) {
+        return new LiveDelays.Report(departureId, stopId, secondOfDay, delaySeconds, cancelled,
+            at(secondOfDay / 3600, secondOfDay / 60 % 60).plusSeconds(60));
+    }
+
+    private static List<String> departureIds(Journey journey) {
+        return journey.legs().stream().map(Journey.Leg::departureId).toList();
+    }
+
+    private static int second(int hour, int minute) {
+        return hour * 3600 + minute * 60;
+    }
+
+    private static Instant at(int hour, int minute) {
+        return MONDAY.atTime(hour, minute).atZone(ZONE).toInstant();
+    }
+}
@@ -0,0 +1,158 @@
+package com.livelink.timetable;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * One S1 trip on a Monday, ten minutes between stops:
+ * <pre>
+ * S1   A 08:00 -> B 08:10 -> C 08:20 -> D 08:30 -> E 08:40
+ * </pre>
+ */
+class DelayPropagationTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final LocalDate MONDAY = LocalDate.of(2026, 10, 19);
+
+    private Connections connections;
+
+    @BeforeEach
+    void setUp() {
+        Timetable timetable = Timetable.builder(1)
+            .addStop("A", "Stop A", "71634")
+            .addStop("B", "Stop B", "71634")
+            .addStop("C", "Stop C", "71634")
+            .addStop("D", "Stop D", "71634")
+            .addStop("E", "Stop E", "71634")
+            .addLine("S1", "S1", "train")
+            .addRouteLeg("S1", "A", "B", 1, 600)
+            .addRouteLeg("S1", "B", "C", 2, 600)
+            .addRouteLeg("S1", "C", "D", 3, 600)
+            .addRouteLeg("S1", "D", "E", 4, 600)
+            .addDeparture("a", "S1", "A", second(8, 0), (byte) 127, "1", "Stop E")
+            .addDeparture("b", "S1", "B", second(8, 10), (byte) 127, "1", "Stop E")
+            .addDeparture("c", "S1", "C", second(8, 20), (byte) 127, "1", "Stop E")
+            .addDeparture("d", "S1", "D", second(8, 30), (byte) 127, "1", "Stop E")
+            .build();
+        connections = Connections.build(ServiceDays.materialize(timetable, MONDAY, 1, ZONE, LocalTime.MIDNIGHT));
+    }
+
+    @Test
+    void decaysAndCatchesUpPerStep() {
+        DelayPropagation.Rules rules = new DelayPropagation.Rules(0.5, 30, 1);
+
+        assertEquals(270, rules.next(600));
+        assertEquals(105, rules.next(270));
+        assertEquals(22, rules.next(105));
+    }
+
+    @Test
+    void visitsLaterStopsOfTheTrip() {
+        List<String> visited = new ArrayList<>();
+        List<Integer> delays = new ArrayList<>();
+        DelayPropagation.walk(connections, connectionOf("a"), 600, new DelayPropagation.Rules(1.0, 60, 60),
+            (connection, delay) -> {
+                visited.add(departureIdOf(connection));
+                delays.add(delay);
+                return true;
+            });
+
+        assertEquals(List.of("b", "c", "d"), visited);
+        assertEquals(List.of(540, 480, 420), delays);
+    }
+
+    @Test
+    void stopsBelowMinimumDelay() {
+        List<Integer> delays = new ArrayList<>();
+        DelayPropagation.walk(connections, connectionOf("a"), 600, new DelayPropagation.Rules(0.5, 30, 100),
+            (connection, delay) -> delays.add(delay));
+
+        assertEquals(List.of(270, 105), delays);
+    }
+
+    @Test
+    void stopsWhenTheStepSaysSo() {
+        List<String> visited = new ArrayList<>();
+        DelayPropagation.walk(connections, connectionOf("a"), 600, new DelayPropagation.Rules(1.0, 0, 60),
+            (connection, delay) -> visited.add(departureIdOf(connection)) && visited.size() < 2);
+
+        assertEquals(List.of("b", "c"), visited);
+    }
+
+    @Test
+    void endsLoopedTripAfterOneLap() {
+        connections.next[connectionOf("d")] = connectionOf("a");
+        List<String> visited = new ArrayList<>();
+        DelayPropagation.walk(connections, connectionOf("a"), 600, new DelayPropagation.Rules(1.0, 0, 60),
+            (connection, delay) -> visited.add(departureIdOf(connection)));
+
+        assertEquals(List.of("b", "c", "d"), visited);
+    }
+
+    @Test
+    void boundsLoopNotThroughTheStart() {
+        connections.next[connectionOf("d")] = connectionOf("b");
+        List<String> visited = new ArrayList<>();
+        DelayPropagation.walk(connections, connectionOf("a"), 600, new DelayPropagation.Rules(1.0, 0, 60),
+            (connection, delay) -> visited.add(departureIdOf(connection)));
+
+        assertEquals(connections.size(), visited.size());
+        assertEquals(List.of("b", "c", "d", "b"), visited);
+    }
+
+    @Test
+    void propagatesReportToLaterDepartures() {
+        DelayPropagation propagation = DelayPropagation.build(connections, null,
+            new DelayPropagation.Rules(1.0, 60, 60));
+
+        List<DelayPropagation.Downstream> downstream = propagation.propagate("b", 300, at(8, 12));
+
+        assertEquals(List.of(
+            new DelayPropagation.Downstream("c", at(8, 20), 240),
+            new DelayPropagation.Downstream("d", at(8, 30), 180)), downstream);
+    }
+
+    @Test
+    void propagatesNothingForUnknownEndingOrPunctualDepartures() {
+        DelayPropagation propagation = DelayPropagation.build(connections, null,
+            new DelayPropagation.Rules(1.0, 60, 60));
+
+        assertTrue(propagation.propagate("x", 300, at(8, 2)).isEmpty());
+        assertTrue(propagation.propagate("a", 0, at(8, 2)).isEmpty());
+        assertTrue(propagation.propagate("d", 300, at(8, 32)).isEmpty());
+        assertTrue(DelayPropagation.build(connections, null, DelayPropagation.Rules.NONE)
+            .propagate("a", 300, at(8, 2)).isEmpty());
+    }
+
+    private int connectionOf(String departureId) {
+        for (int c = 0; c < connections.size(); c++) {
+            if (departureIdOf(c).equals(departureId)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException(departureId);
+    }
+
+    private String departureIdOf(int connection) {
+        return connections.timetable.stopTimetable(connections.departureStops[connection])
+            .departureIds[connections.departureIndexes[connection]];
+    }
+
+    private static int second(int hour, int minute) {
+        return hour * 3600 + minute * 60;
+    }
+
+    private static Instant at(int hour, int minute) {
+        return MONDAY.atTime(hour, minute).atZone(ZONE).toInstant();
+    }
+}
@@ -0,0 +1,120 @@
+package com.livelink.timetable;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TimetableSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private Timetable timetable;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Added out of order, with two lines and both directions at stop B,
+        // so sorting and the same-route links have something to do
+        timetable = Timetable.builder(42)
+            .addStop("A", "Stop A", "71000")
+            .addStop("B", "Stop B", "71000")
+            .addStop("C", "Stop C", "71001")
+            .addLine("S1", "S1", "train")
+            .addLine("42", "42", "bus")
+            .addRouteLeg("S1", "A", "B", 1, 300)
+            .addRouteLeg("S1", "B", "C", 2, 420)
+            .addRouteLeg("S1", "C", "B", 1, 420)
+            .addRouteLeg("42", "B", "C", 1, 600)
+            .addDeparture("s1_b_0830", "S1", "B", 30600, (byte) 0b1111111, "2", "Stop C")
+            .addDeparture("s1_a_0800", "S1", "A", 28800, (byte) 0b1111111, "1", "Stop C")
+            .addDeparture("42_b_0815", "42", "B", 29700, (byte) 0b0011111, null, "Stop C")
+            .addDeparture("s1_b_0805", "S1", "B", 29100, (byte) 0b1111111, "2", "Stop C")
+            .addDeparture("s1_b_0810", "S1", "B", 29400, (byte) 0b1111111, "1", "Stop A")
+            .addDeparture("42_b_0845", "42", "B", 31500, (byte) 0b0011111, null, null)
+            .addDeparture("s1_c_0800", "S1", "C", 28800, (byte) 0b1100000, null, "Stop A")
+            .build();
+        file = directory.resolve("timetable.snapshot");
+        TimetableSnapshot.write(timetable, file);
+    }
+
+    @Test
+    void readsWhatWasWritten() throws IOException {
+        Timetable read = TimetableSnapshot.read(file);
+
+        assertEquals(timetable.version, read.version);
+        assertEquals(timetable.loadedAt.toEpochMilli(), read.loadedAt.toEpochMilli());
+        assertArrayEquals(timetable.stopIds, read.stopIds);
+        assertArrayEquals(timetable.stopNames, read.stopNames);
+        assertArrayEquals(timetable.stopPincodes, read.stopPincodes);
+        assertArrayEquals(timetable.lineIds, read.lineIds);
+        assertArrayEquals(timetable.lineNumbers, read.lineNumbers);
+        assertArrayEquals(timetable.lineTypes, read.lineTypes);
+        assertEquals(timetable.getDepartureCount(), read.getDepartureCount());
+        for (int stop = 0; stop < timetable.getStopCount(); stop++) {
+            StopTimetable expected = timetable.stopTimetable(stop);
+            StopTimetable actual = read.stopTimetable(stop);
+            assertArrayEquals(expected.departureIds, actual.departureIds);
+            assertArrayEquals(expected.departureSeconds, actual.departureSeconds);
+            assertArrayEquals(expected.dayMasks, actual.dayMasks);
+            assertArrayEquals(expected.lines, actual.lines);
+            assertArrayEquals(expected.platforms, actual.platforms);
+            assertArrayEquals(expected.directions, actual.directions);
+            assertArrayEquals(expected.routes, actual.routes);
+            assertArrayEquals(expected.nextSameRoute, actual.nextSameRoute);
+            assertEquals(expected.routeCount, actual.routeCount);
+        }
+
+        RouteLegs expectedLegs = timetable.routeLegs();
+        RouteLegs actualLegs = read.routeLegs();
+        assertArrayEquals(expectedLegs.lines, actualLegs.lines);
+        assertArrayEquals(expectedLegs.targets, actualLegs.targets);
+        assertArrayEquals(expectedLegs.seconds, actualLegs.seconds);
+        assertArrayEquals(expectedLegs.termini, actualLegs.termini);
+        assertArrayEquals(expectedLegs.legsByStop(), actualLegs.legsByStop());
+    }
+
+    @Test
+    void keepsDepartureOrderLinksAndNullPlatforms() throws IOException {
+        StopTimetable stopB = TimetableSnapshot.read(file).stopTimetable(1);
+
+        assertArrayEquals(new String[] {"s1_b_0805", "s1_b_0810", "42_b_0815", "s1_b_0830", "42_b_0845"},
+            stopB.departureIds);
+        assertArrayEquals(new String[] {"2", "1", null, "2", null}, stopB.platforms);
+        assertArrayEquals(new String[] {"Stop C", "Stop A", "Stop C", "Stop C", null}, stopB.directions);
+        assertArrayEquals(new int[] {3, -1, -1, -1, -1}, stopB.nextSameRoute);
+    }
+
+    @Test
+    void rejectsTruncatedFile() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> TimetableSnapshot.read(file));
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> TimetableSnapshot.read(file));
+
+        Files.write(file, Arrays.copyOf(bytes, 16));
+        assertThrows(IOException.class, () -> TimetableSnapshot.read(file));
+    }
+
+    @Test
+    void rejectsFlippedBit() throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        for (int position : new int[] {0, 5, bytes.length / 2, bytes.length - 9, bytes.length - 1}) {
+            byte[] damaged = bytes.clone();
+            damaged[position] ^= 0x10;
+            Files.write(file, damaged);
+            assertThrows(IOException.class, () -> TimetableSnapshot.read(file), "bit flipped at " + position);
+        }
+    }
+}
@@ -63,15 +63,23 @@ CREATE TABLE scheduled_departures (
     is_active BOOLEAN DEFAULT true
 );
 
--- Live departure updates
+-- Live departure updates, partitioned by service day: the day of the
+-- departure run in the session time zone, as CURRENT_DATE in the board
+-- queries (see live_service_day). Partitions are created ahead and dropped
+-- by the backend's retention job
 CREATE TABLE live_departures (
-    id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    service_day DATE NOT NULL DEFAULT CURRENT_DATE,
     scheduled_departure_id UUID REFERENCES scheduled_departures(id),
     actual_departure_time TIMESTAMP WITH TIME ZONE,
     delay_minutes INTEGER DEFAULT 0,
     status VARCHAR(20) NOT NULL CHECK (status IN ('on-time', 'delayed', 'cancelled', 'boarding')),
-    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
-);
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (service_day, id)
+) PARTITION BY RANGE (service_day);
+
+-- Reports for days without a partition of their own
+CREATE TABLE live_departures_default PARTITION OF live_departures DEFAULT;
 
 -- Service alerts
 CREATE TABLE service_alerts (
@@ -117,10 +125,16 @@ INSERT INTO transport_lines (id, line_number, transport_type, operator, color_co
 ('line_tram1', '1', 'tram', 'SSB', '#F39C12');
 
 -- Add indexes for performance
-CREATE INDEX idx_live_departures_scheduled_id ON live_departures(scheduled_departure_id);
-CREATE INDEX idx_live_departures_updated_at ON live_departures(updated_at);
+-- One row per departure and service day: the live feed upserts the latest state
+CREATE UNIQUE INDEX idx_live_departures_scheduled_id ON live_departures(service_day, scheduled_departure_id);
 CREATE INDEX idx_scheduled_departures_stop_line ON scheduled_departures(stop_id, line_id);
-CREATE INDEX idx_transport_stops_pincode ON transport_stops(pincode);
+-- Covers the departure scan of the board queries, so it is answered from the index
+CREATE INDEX idx_scheduled_departures_board ON scheduled_departures(stop_id, departure_time)
+    INCLUDE (id, line_id, direction, platform, days_of_week)
+    WHERE is_active = true;
+-- Covers the stops of a pincode for pincode boards
+CREATE INDEX idx_transport_stops_pincode ON transport_stops(pincode) INCLUDE (id, is_active);
+CREATE INDEX idx_transport_stops_location ON transport_stops(latitude, longitude);
 CREATE INDEX idx_service_alerts_active ON service_alerts(is_active, start_time);
 
 -- Function to update timestamps
@@ -137,4 +151,117 @@ CREATE TRIGGER update_users_updated_at BEFORE UPDATE ON users
     FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
 
 CREATE TRIGGER update_user_preferences_updated_at BEFORE UPDATE ON user_preferences
-    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
\ No newline at end of file
+    FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- Data version counters, bumped once per modifying statement so the backend
+-- can detect timetable edits without scanning the tables
+CREATE TABLE data_versions (
+    table_name VARCHAR(63) PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE OR REPLACE FUNCTION bump_data_version()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO data_versions (table_name, version) VALUES (TG_TABLE_NAME, 1)
+    ON CONFLICT (table_name) DO UPDATE
+        SET version = data_versions.version + 1,
+            updated_at = CURRENT_TIMESTAMP;
+    RETURN NULL;
+END;
+$$ language 'plpgsql';
+
+CREATE TRIGGER bump_transport_stops_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON transport_stops
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+CREATE TRIGGER bump_transport_lines_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON transport_lines
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+CREATE TRIGGER bump_scheduled_departures_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON scheduled_departures
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+CREATE TRIGGER bump_routes_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON routes
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+CREATE TRIGGER bump_service_alerts_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON service_alerts
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+CREATE TRIGGER bump_user_preferences_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON user_preferences
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_data_version();
+
+-- Service day of the run a live report is for, in the session time zone,
+-- which the backend sets to livelink.timezone: the day whose departure is
+-- nearest the report, so a 23:55 report on a 00:10 departure belongs to
+-- the next day and a 00:05 report on a late 23:50 departure to the last
+CREATE OR REPLACE FUNCTION live_service_day(reported_at TIMESTAMPTZ, departure TIME)
+RETURNS DATE AS $$
+    SELECT reported_at::date + CASE
+        WHEN departure - reported_at::time < INTERVAL '-12 hours' THEN 1
+        WHEN departure - reported_at::time > INTERVAL '12 hours' THEN -1
+        ELSE 0
+    END
+$$ LANGUAGE sql STABLE;
+
+-- Creates the live_departures partition of a service day, moving reports
+-- for it out of the default partition. Returns false if it existed
+CREATE OR REPLACE FUNCTION create_live_departures_partition(for_day DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    partition_name TEXT := 'live_departures_' || to_char(for_day, 'YYYYMMDD');
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('live_departures_partitions'));
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    CREATE TEMP TABLE live_departures_moved (LIKE live_departures) ON COMMIT DROP;
+    WITH moved AS (
+        DELETE FROM live_departures_default WHERE service_day = for_day RETURNING *
+    )
+    INSERT INTO live_departures_moved SELECT * FROM moved;
+    EXECUTE format('CREATE TABLE %I PARTITION OF live_departures FOR VALUES FROM (%L) TO (%L)',
+        partition_name, for_day, for_day + 1);
+    INSERT INTO live_departures SELECT * FROM live_departures_moved;
+    DROP TABLE live_departures_moved;
+    RETURN true;
+END;
+$$ language 'plpgsql';
+
+-- Drops the live_departures partitions of days before keep_from, or with
+-- archive detaches them as live_departures_archive_<day>. Returns how many
+CREATE OR REPLACE FUNCTION drop_live_departures_partitions(keep_from DATE, archive BOOLEAN)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_name TEXT;
+    removed INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('live_departures_partitions'));
+    FOR partition_name IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'live_departures'::regclass
+        AND c.relname ~ '^live_departures_[0-9]{8}$'
+        AND to_date(substring(c.relname FROM 17), 'YYYYMMDD') < keep_from
+    LOOP
+        IF archive THEN
+            EXECUTE format('ALTER TABLE live_departures DETACH PARTITION %I', partition_name);
+            EXECUTE format('ALTER TABLE %I RENAME TO %I',
+                partition_name, 'live_departures_archive_' || substring(partition_name FROM 17));
+        ELSE
+            EXECUTE format('DROP TABLE %I', partition_name);
+        END IF;
+        removed := removed + 1;
+    END LOOP;
+    DELETE FROM live_departures_default WHERE service_day < keep_from;
+    RETURN removed;
+END;
+$$ language 'plpgsql';
+
+SELECT create_live_departures_partition(CURRENT_DATE + offset_days) FROM generate_series(-1, 2) AS offset_days;
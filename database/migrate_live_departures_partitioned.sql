@@ -0,0 +1,128 @@
+-- Converts live_departures of a database created before it was partitioned.
+-- Keeps the reports of today and yesterday, the only ones the backend reads.
+-- Stop the backends or their live feed first: the table is locked meanwhile.
+--
+--   psql -v ON_ERROR_STOP=1 -f database/migrate_live_departures_partitioned.sql livelink_db
+
+BEGIN;
+
+ALTER TABLE live_departures RENAME TO live_departures_unpartitioned;
+ALTER TABLE live_departures_unpartitioned RENAME CONSTRAINT live_departures_pkey TO live_departures_unpartitioned_pkey;
+DROP INDEX IF EXISTS idx_live_departures_scheduled_id;
+DROP INDEX IF EXISTS idx_live_departures_updated_at;
+
+-- Live departure updates, partitioned by service day: the day of the
+-- departure run in the session time zone, as CURRENT_DATE in the board
+-- queries (see live_service_day). Partitions are created ahead and dropped
+-- by the backend's retention job
+CREATE TABLE live_departures (
+    id UUID NOT NULL DEFAULT uuid_generate_v4(),
+    service_day DATE NOT NULL DEFAULT CURRENT_DATE,
+    scheduled_departure_id UUID REFERENCES scheduled_departures(id),
+    actual_departure_time TIMESTAMP WITH TIME ZONE,
+    delay_minutes INTEGER DEFAULT 0,
+    status VARCHAR(20) NOT NULL CHECK (status IN ('on-time', 'delayed', 'cancelled', 'boarding')),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (service_day, id)
+) PARTITION BY RANGE (service_day);
+
+-- Reports for days without a partition of their own
+CREATE TABLE live_departures_default PARTITION OF live_departures DEFAULT;
+
+CREATE UNIQUE INDEX idx_live_departures_scheduled_id ON live_departures(service_day, scheduled_departure_id);
+
+-- Service day of the run a live report is for, in the session time zone,
+-- which the backend sets to livelink.timezone: the day whose departure is
+-- nearest the report, so a 23:55 report on a 00:10 departure belongs to
+-- the next day and a 00:05 report on a late 23:50 departure to the last
+CREATE OR REPLACE FUNCTION live_service_day(reported_at TIMESTAMPTZ, departure TIME)
+RETURNS DATE AS $$
+    SELECT reported_at::date + CASE
+        WHEN departure - reported_at::time < INTERVAL '-12 hours' THEN 1
+        WHEN departure - reported_at::time > INTERVAL '12 hours' THEN -1
+        ELSE 0
+    END
+$$ LANGUAGE sql STABLE;
+
+-- Creates the live_departures partition of a service day, moving reports
+-- for it out of the default partition. Returns false if it existed
+CREATE OR REPLACE FUNCTION create_live_departures_partition(for_day DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+    partition_name TEXT := 'live_departures_' || to_char(for_day, 'YYYYMMDD');
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('live_departures_partitions'));
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN false;
+    END IF;
+    CREATE TEMP TABLE live_departures_moved (LIKE live_departures) ON COMMIT DROP;
+    WITH moved AS (
+        DELETE FROM live_departures_default WHERE service_day = for_day RETURNING *
+    )
+    INSERT INTO live_departures_moved SELECT * FROM moved;
+    EXECUTE format('CREATE TABLE %I PARTITION OF live_departures FOR VALUES FROM (%L) TO (%L)',
+        partition_name, for_day, for_day + 1);
+    INSERT INTO live_departures SELECT * FROM live_departures_moved;
+    DROP TABLE live_departures_moved;
+    RETURN true;
+END;
+$$ language 'plpgsql';
+
+-- Drops the live_departures partitions of days before keep_from, or with
+-- archive detaches them as live_departures_archive_<day>. Returns how many
+CREATE OR REPLACE FUNCTION drop_live_departures_partitions(keep_from DATE, archive BOOLEAN)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_name TEXT;
+    removed INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('live_departures_partitions'));
+    FOR partition_name IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'live_departures'::regclass
+        AND c.relname ~ '^live_departures_[0-9]{8}$'
+        AND to_date(substring(c.relname FROM 17), 'YYYYMMDD') < keep_from
+    LOOP
+        IF archive THEN
+            EXECUTE format('ALTER TABLE live_departures DETACH PARTITION %I', partition_name);
+            EXECUTE format('ALTER TABLE %I RENAME TO %I',
+                partition_name, 'live_departures_archive_' || substring(partition_name FROM 17));
+        ELSE
+            EXECUTE format('DROP TABLE %I', partition_name);
+        END IF;
+        removed := removed + 1;
+    END LOOP;
+    DELETE FROM live_departures_default WHERE service_day < keep_from;
+    RETURN removed;
+END;
+$$ language 'plpgsql';
+
+SELECT create_live_departures_partition(CURRENT_DATE + offset_days) FROM generate_series(-1, 2) AS offset_days;
+
+-- Latest report per departure and run. Run it in the backend's time zone:
+--   PGTZ=Europe/Berlin psql ...
+INSERT INTO live_departures
+    (id, service_day, scheduled_departure_id, actual_departure_time, delay_minutes, status, updated_at)
+SELECT DISTINCT ON (live_service_day(ld.updated_at, sd.departure_time), ld.scheduled_departure_id)
+    ld.id, live_service_day(ld.updated_at, sd.departure_time), ld.scheduled_departure_id,
+    ld.actual_departure_time, ld.delay_minutes, ld.status, ld.updated_at
+FROM live_departures_unpartitioned ld
+JOIN scheduled_departures sd ON sd.id = ld.scheduled_departure_id
+WHERE ld.updated_at >= CURRENT_DATE - 1
+ORDER BY live_service_day(ld.updated_at, sd.departure_time), ld.scheduled_departure_id, ld.updated_at DESC;
+
+DROP TABLE live_departures_unpartitioned;
+
+-- Covering indexes of the board queries
+CREATE INDEX IF NOT EXISTS idx_scheduled_departures_board ON scheduled_departures(stop_id, departure_time)
+    INCLUDE (id, line_id, direction, platform, days_of_week)
+    WHERE is_active = true;
+DROP INDEX IF EXISTS idx_transport_stops_pincode;
+CREATE INDEX idx_transport_stops_pincode ON transport_stops(pincode) INCLUDE (id, is_active);
+
+COMMIT;
+
+ANALYZE live_departures;
+VACUUM ANALYZE scheduled_departures;